@@ -0,0 +1,59 @@
+package cn.misection.cvac;
+
+import cn.misection.cvac.constant.EnumLexerCommon;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName CvaClassLoader
+ * @Description 直接定义CvaCompiler.compile()得到的class字节, 不经过文件;
+ * 找不到的类先交给父加载器, 所以生成的类能用到java.lang与java.io;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class CvaClassLoader extends ClassLoader
+{
+    static
+    {
+        registerAsParallelCapable();
+    }
+
+    private final Map<String, byte[]> classFileMap;
+
+    public CvaClassLoader(Map<String, byte[]> classFileMap)
+    {
+        this(classFileMap, CvaClassLoader.class.getClassLoader());
+    }
+
+    public CvaClassLoader(Map<String, byte[]> classFileMap, ClassLoader parent)
+    {
+        super(parent);
+        this.classFileMap = new HashMap<>(classFileMap);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException
+    {
+        byte[] bytes = classFileMap.get(name);
+        if (bytes == null)
+        {
+            throw new ClassNotFoundException(name);
+        }
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+
+    /**
+     * 调用入口类Application的main;
+     *
+     * @throws InvocationTargetException Cva程序运行时抛出的异常包在里面;
+     */
+    public void runMain(String... args) throws ReflectiveOperationException
+    {
+        loadClass(EnumLexerCommon.MAIN_CLASS_NAME.string())
+                .getMethod(EnumLexerCommon.MAIN_METHOD_NAME.string(), String[].class)
+                .invoke(null, (Object) args);
+    }
+}
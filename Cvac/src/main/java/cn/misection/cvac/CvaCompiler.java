@@ -1,20 +1,38 @@
 package cn.misection.cvac;
 
 import cn.misection.cvac.ast.program.AbstractProgram;
-import cn.misection.cvac.codegen.IntermLangGenerator;
-import cn.misection.cvac.codegen.TranslatorVisitor;
+import cn.misection.cvac.codegen.ParallelCodeGenerator;
 import cn.misection.cvac.codegen.bst.bclas.TargetClass;
+import cn.misection.cvac.codegen.bst.bprogram.TargetProgram;
+import cn.misection.cvac.codegen.peephole.PeepholeOptimizer;
 import cn.misection.cvac.config.DebugMacro;
 import cn.misection.cvac.config.Macro;
 import cn.misection.cvac.config.VersionMacro;
 import cn.misection.cvac.constant.UserInterfaceCommon;
-import cn.misection.cvac.io.BufferedHandler;
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.context.CompileException;
+import cn.misection.cvac.context.CompileOptions;
+import cn.misection.cvac.daemon.CompileDaemon;
+import cn.misection.cvac.incremental.IncrementalCompiler;
+import cn.misection.cvac.io.ChannelBufferedHandler;
 import cn.misection.cvac.io.IBufferedQueue;
+import cn.misection.cvac.io.MappedBufferedHandler;
+import cn.misection.cvac.lexer.DfaLexer;
 import cn.misection.cvac.optimize.Optimizer;
 import cn.misection.cvac.parser.Parser;
 import cn.misection.cvac.semantic.SemanticVisitor;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Created by MI6 root 1/4.
@@ -38,12 +56,65 @@ public final class CvaCompiler
     private static final String COMPILE_TO_IL = "-i";
 
     /**
-     * 用户选择;
+     * 经SSA中间表示生成代码, 与-i同用时另写出每个类的.ssa;
      */
+    private static final String SSA = "-ssa";
 
-    public static void main(String[] args)
+    /**
+     * -daemon [端口] [-w 源文件 输出目录], 常驻并接受CompileClient的请求;
+     */
+    private static final String DAEMON = "-daemon";
+
+    /**
+     * 用输出目录下的CACHE_DIR做增量编译, 只写出变了的类, -i时不起作用;
+     */
+    private static final String INCREMENTAL = "-cache";
+
+    private static final String CACHE_DIR = ".cvac-cache";
+
+    /**
+     * -encoding 编码名, 源文件的编码, 缺省为UTF-8, 文件与stdin都按它解码;
+     */
+    private static final String ENCODING = "-encoding";
+
+    /**
+     * 文件名为"-"时从stdin读入;
+     */
+    private static final String READ_STDIN = "-";
+
+    public static void main(String[] args) throws IOException
     {
+        if (args.length > 0 && DAEMON.equals(args[0]))
+        {
+            CompileDaemon.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         logBanner();
+        List<String> argList = Arrays.asList(args);
+        CompileOptions.Builder builder = new CompileOptions.Builder()
+                .putIlOutput(argList.contains(COMPILE_TO_IL))
+                .putSsa(argList.contains(SSA))
+                .putPeephole(!argList.contains(OPTIMIZE_0));
+        if (argList.contains(INCREMENTAL))
+        {
+            builder.putCacheDir(new File(builder.build().getOutputDir(), CACHE_DIR));
+        }
+        int encodingIndex = argList.indexOf(ENCODING);
+        if (encodingIndex >= 0 && encodingIndex + 1 < argList.size())
+        {
+            try
+            {
+                builder.putCharset(Charset.forName(argList.get(encodingIndex + 1)));
+            }
+            catch (IllegalArgumentException e)
+            {
+                System.err.printf("unsupported encoding: %s%n", argList.get(encodingIndex + 1));
+                System.exit(1);
+            }
+        }
+        CompileOptions options = builder.build();
+        // 命令行的诊断直接打到stderr;
+        CompilationContext context = new CompilationContext(options, System.err::println);
         String fName = null;
         if (Macro.RELEASE_WINDOWS)
         {
@@ -53,69 +124,205 @@ public final class CvaCompiler
         {
             fName = DebugMacro.DEBUG_FILE;
         }
-        IBufferedQueue fStream = readStream(fName);
-        AbstractProgram program = grammarAnalysis(fStream);
-        geneCode(program);
+        try
+        {
+            if (options.getCacheDir() != null && !options.isIlOutput())
+            {
+                geneIncremental(fName, context);
+                return;
+            }
+            IBufferedQueue fStream = readStream(fName, context);
+            AbstractProgram program = grammarAnalysis(fStream, context);
+            geneCode(program, context);
+        }
+        catch (CompileException e)
+        {
+            // 诊断已经经sink打出, 只有命令行入口才退出进程;
+            System.exit(1);
+        }
     }
 
-    private static void geneCode(AbstractProgram program)
+    /**
+     * 库用法: 整个流程在内存里做完, 不读写文件, 也不生成il, options里的-i与输出目录不起作用;
+     * 结果可以交给CvaClassLoader直接定义;
+     *
+     * @return 类名 -> class文件字节, 入口类在前;
+     * @throws CompileException 词法, 语法或语义错误, 诊断在异常里;
+     */
+    public static Map<String, byte[]> compile(CharSequence source, CompileOptions options)
+    {
+        return compile(source, new CompilationContext(options, diagnostic -> {}));
+    }
+
+    /**
+     * 同上, 需要全部诊断时自己给上下文;
+     */
+    public static Map<String, byte[]> compile(CharSequence source, CompilationContext context)
     {
-        if (Macro.DEBUG_OPTIMIZE_FLAG)
+        // 与命令行一样经MappedBufferedHandler统一行尾, 补末行换行与EOF;
+        char[] chars = MappedBufferedHandler.of(source).array();
+        AbstractProgram program = new Parser(new DfaLexer(chars, context).tokenize(), context).parse();
+        SemanticVisitor checker = new SemanticVisitor(context);
+        checker.visit(program);
+        if (!checker.isOkay())
+        {
+            throw context.abort(0, "check failed");
+        }
+        CompileOptions options = context.getOptions();
+        if (options.isOptimize())
         {
-            optimize(program);
+            new Optimizer(context).optimize(program);
         }
-        System.out.println("start intermediate code gene");
-        TranslatorVisitor translator = new TranslatorVisitor();
-        translator.visit(program);
+        PeepholeOptimizer peepholeOptimizer = options.isPeephole() ? new PeepholeOptimizer() : null;
+        return new ParallelCodeGenerator(context, ForkJoinPool.commonPool(), peepholeOptimizer)
+                .generate(program);
+    }
 
-        IntermLangGenerator generator = new IntermLangGenerator();
-        generator.visit(translator.getTargetProgram());
-        System.out.println("finish intermediate code gene\n");
+    private static void geneCode(AbstractProgram program, CompilationContext context)
+    {
+        CompileOptions options = context.getOptions();
+        if (options.isOptimize())
+        {
+            optimize(program, context);
+        }
+        PeepholeOptimizer peepholeOptimizer = options.isPeephole() ? new PeepholeOptimizer() : null;
+        // 每个类一个任务, 翻译与生成都在公共池上并行;
+        ParallelCodeGenerator generator = new ParallelCodeGenerator(
+                context, ForkJoinPool.commonPool(), peepholeOptimizer);
 
-        doMakeDirs();
+        doMakeDirs(context);
 
         System.out.println("start gene .class file\n");
+        if (options.isIlOutput())
+        {
+            geneByJasmin(generator, program, context);
+        }
+        else
+        {
+            generator.generate(program).forEach((className, bytes) ->
+                    writeClassFile(className, bytes, context));
+        }
+        if (peepholeOptimizer != null)
+        {
+            logPeephole(peepholeOptimizer);
+        }
+        System.out.println("\nwell down!\n");
+    }
+
+    /**
+     * -cache, 没变且已经写出过的类不再写;
+     */
+    private static void geneIncremental(String fName, CompilationContext context)
+    {
+        Charset charset = context.getOptions().getCharset();
+        String source;
+        try
+        {
+            source = READ_STDIN.equals(fName)
+                    ? readAll(System.in, charset)
+                    : new String(Files.readAllBytes(Paths.get(fName)), charset);
+        }
+        catch (IOException e)
+        {
+            throw context.abort(0, String.format("Cannot find the file: %s", fName));
+        }
+        IncrementalCompiler compiler = new IncrementalCompiler(context.getOptions().getCacheDir());
+        Map<String, byte[]> classFileMap = compiler.compile(source, context);
+        doMakeDirs(context);
+        Set<String> changedSet = new HashSet<>(compiler.getChangedList());
+        classFileMap.forEach((className, bytes) ->
+        {
+            if (changedSet.contains(className) || !context.outputFile(className, "class").isFile())
+            {
+                writeClassFile(className, bytes, context);
+            }
+        });
+        System.out.printf("%d of %d classes changed%n", changedSet.size(), classFileMap.size());
+    }
+
+    private static String readAll(InputStream in, Charset charset) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1)
+        {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), charset);
+    }
+
+    /**
+     * -i 调试用, 先写il再由jasmin汇编;
+     */
+    private static void geneByJasmin(ParallelCodeGenerator generator,
+                                     AbstractProgram program,
+                                     CompilationContext context)
+    {
+        TargetProgram targetProgram = generator.translate(program);
+        generator.generateIntermLang(targetProgram);
 
+        String outputDir = context.getOptions().getOutputDir().getPath();
         // 现在是从il读到文件中而不是先创建il, il步骤在前, 需要设定一个全局;
-        String ilPath = String.format("%s.il", translator.getTargetProgram().getEntryClass().getName());
+        String ilPath = context.outputFile(targetProgram.getEntryClass().getName(), "il").getPath();
         // ascii instructions to binary file
-        jasmin.Main.main(new String[] {ilPath});
+        jasmin.Main.main(new String[] {"-d", outputDir, ilPath});
 
-        for (TargetClass cla : translator.getTargetProgram().getClassList())
+        for (TargetClass cla : targetProgram.getClassList())
         {
-            String filePath = String.format("%s.il", cla.getClassName());
-            jasmin.Main.main(new String[] {filePath});
+            String filePath = context.outputFile(cla.getClassName(), "il").getPath();
+            jasmin.Main.main(new String[] {"-d", outputDir, filePath});
         }
-        System.out.println("\nwell down!\n");
     }
 
-    private static AbstractProgram grammarAnalysis(IBufferedQueue fStream)
+    private static void writeClassFile(String className, byte[] bytes, CompilationContext context)
+    {
+        File file = context.outputFile(className, "class");
+        try (OutputStream out = new FileOutputStream(file))
+        {
+            out.write(bytes);
+        }
+        catch (IOException e)
+        {
+            throw context.abort(0, String.format("cannot write %s: %s", file, e.getMessage()));
+        }
+        System.out.printf("Generated: %s%n", file.getPath());
+    }
+
+    private static AbstractProgram grammarAnalysis(IBufferedQueue fStream, CompilationContext context)
     {
         System.out.println("\nstart grammar analysis");
-        Parser parser = new Parser(fStream);
+        // 与compile()同用DfaLexer, Lexer只留作差分测试的参照; 文件用映射的整段数组, stdin经窗口边读边切;
+        Parser parser = new Parser(new DfaLexer(fStream, context).tokenize(), context);
         AbstractProgram program = parser.parse();
-        doCheck(program);
+        doCheck(program, context);
         System.out.println("finish grammar analysis\n");
         return program;
     }
 
-    private static void optimize(AbstractProgram program)
+    private static void optimize(AbstractProgram program, CompilationContext context)
     {
         System.out.println("start optimize");
-        Optimizer optimizer = new Optimizer();
+        Optimizer optimizer = new Optimizer(context);
         optimizer.optimize(program);
         System.out.println("finish optimize\n");
     }
 
-    private static void doCheck(AbstractProgram program)
+    private static void logPeephole(PeepholeOptimizer optimizer)
+    {
+        System.out.println("peephole");
+        optimizer.getHitCountMap().forEach((rule, count) ->
+                System.out.printf("  %s: %d%n", rule, count));
+    }
+
+    private static void doCheck(AbstractProgram program, CompilationContext context)
     {
-        SemanticVisitor checker = new SemanticVisitor();
+        SemanticVisitor checker = new SemanticVisitor(context);
         checker.visit(program);
         // if the program is correct, we generate code for it
         if (!checker.isOkay())
         {
-            System.err.println("ERROE: check failed");
-            System.exit(1);
+            throw context.abort(0, "ERROE: check failed");
         }
     }
 
@@ -128,18 +335,30 @@ public final class CvaCompiler
                     "Cvac version %s\n", VersionMacro.VERSION);
             System.exit(0);
         }
+        for (int i = 0; i < args.length; i++)
+        {
+            if (ENCODING.equals(args[i]))
+            {
+                // 跳过编码名;
+                i++;
+                continue;
+            }
+            if (READ_STDIN.equals(args[i]) || !args[i].startsWith("-"))
+            {
+                return args[i];
+            }
+        }
         return args[0];
     }
 
-    private static boolean makeDirs(String dirPath)
+    private static boolean makeDirs(String dirPath, CompilationContext context)
     {
         File dir = new File(dirPath);
         if (dir.exists())
         {
             if (dir.isFile())
             {
-                System.err.println("ERROR: 当前路径下存在同名文件, 请清除后再编译!");
-                System.exit(1);
+                throw context.abort(0, "ERROR: 当前路径下存在同名文件, 请清除后再编译!");
             }
             return true;
         }
@@ -149,15 +368,15 @@ public final class CvaCompiler
         }
     }
 
-    private static void doMakeDirs()
+    /**
+     * class与il都写到选项里的输出目录;
+     */
+    private static void doMakeDirs(CompilationContext context)
     {
-        if (!makeDirs(DebugMacro.DEBUG_CLASS_DIR))
+        File outputDir = context.getOptions().getOutputDir();
+        if (!makeDirs(outputDir.getPath(), context))
         {
-            System.err.printf("mkdir %s failed!\n", DebugMacro.DEBUG_CLASS_DIR);
-        }
-        if (!makeDirs(DebugMacro.DEBUG_IL_DIR))
-        {
-            System.err.printf("mkdir %s failed\n", DebugMacro.DEBUG_IL_DIR);
+            throw context.abort(0, String.format("mkdir %s failed", outputDir));
         }
     }
 
@@ -202,18 +421,20 @@ public final class CvaCompiler
         }
     }
 
-    private static IBufferedQueue readStream(String fName)
+    private static IBufferedQueue readStream(String fName, CompilationContext context)
     {
         try
         {
-            return new BufferedHandler(fName);
+            // stdin与管道只经固定大小的环读入, 不整段留在内存里;
+            Charset charset = context.getOptions().getCharset();
+            return READ_STDIN.equals(fName)
+                    ? new ChannelBufferedHandler(Channels.newChannel(System.in),
+                    ChannelBufferedHandler.DEFAULT_CAPACITY, charset)
+                    : new MappedBufferedHandler(fName, charset);
         }
         catch (IOException e)
         {
-            System.err.printf("Cannot find the file: %s%n", fName);
-            System.exit(1);
+            throw context.abort(0, String.format("Cannot find the file: %s", fName));
         }
-        // 不可达;
-        return null;
     }
 }
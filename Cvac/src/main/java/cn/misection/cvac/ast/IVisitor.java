@@ -18,6 +18,9 @@ import cn.misection.cvac.ast.type.basic.EnumCvaType;
 import cn.misection.cvac.ast.type.reference.CvaClassType;
 import cn.misection.cvac.ast.type.advance.CvaStringType;
 
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
 /**
  * Created by MI6 root 1/7.
  */
@@ -93,91 +96,104 @@ public interface IVisitor
      */
     default void visit(AbstractExpression expr)
     {
-        // 用typeCode代替, 可以避免反射以及改名麻烦;
-        switch (expr.toEnum())
+        if (!StackSegment.enter())
         {
-            case AND_AND:
-            {
-                visit((CvaAndAndExpr) expr);
-                break;
-            }
-            case CALL:
-            {
-                visit((CvaCallExpr) expr);
-                break;
-            }
-            case IDENTIFIER:
-            {
-                visit((CvaIdentifierExpr) expr);
-                break;
-            }
-            case LESS_OR_MORE_THAN:
-            {
-                visit((CvaLessOrMoreThanExpr) expr);
-                break;
-            }
-            case NEW:
-            {
-                visit((CvaNewExpr) expr);
-                break;
-            }
-            case NEGATE:
-            {
-                visit((CvaNegateExpr) expr);
-                break;
-            }
-            case CONST_INT:
-            {
-                visit((CvaConstIntExpr) expr);
-                break;
-            }
-            case CONST_STRING:
-            {
-                visit((CvaConstStringExpr) expr);
-                break;
-            }
-            case CONST_TRUE:
-            {
-                visit((CvaConstTrueExpr) expr);
-                break;
-            }
-            case CONST_FALSE:
-            {
-                visit((CvaConstFalseExpr) expr);
-                break;
-            }
-            case CONST_NULL:
-            {
-                // TODO;
-                break;
-            }
-            case THIS:
-            {
-                visit((CvaThisExpr) expr);
-                break;
-            }
-            case BINARY_OPERAND_OP:
-            {
-                visit((CvaOperandOperatorExpr) expr);
-                break;
-            }
-            case INCREMENT:
-            case DECREMENT:
-            {
-                visit((CvaIncDecExpr) expr);
-                break;
-            }
-            case NULL_POINTER:
-            {
-                // 直接忽略, 转都不转;
-                break;
-            }
-            default:
+            // 嵌套太深, 换一段新栈继续;
+            StackSegment.spill(() -> visit(expr));
+            return;
+        }
+        try
+        {
+            // 用typeCode代替, 可以避免反射以及改名麻烦;
+            switch (expr.toEnum())
             {
-                // 将所有的都用绑定的enum判定;
-                System.err.println("unknown expr");
+                case AND_AND:
+                {
+                    visit((CvaAndAndExpr) expr);
+                    break;
+                }
+                case CALL:
+                {
+                    visit((CvaCallExpr) expr);
+                    break;
+                }
+                case IDENTIFIER:
+                {
+                    visit((CvaIdentifierExpr) expr);
+                    break;
+                }
+                case LESS_OR_MORE_THAN:
+                {
+                    visit((CvaLessOrMoreThanExpr) expr);
+                    break;
+                }
+                case NEW:
+                {
+                    visit((CvaNewExpr) expr);
+                    break;
+                }
+                case NEGATE:
+                {
+                    visit((CvaNegateExpr) expr);
+                    break;
+                }
+                case CONST_INT:
+                {
+                    visit((CvaConstIntExpr) expr);
+                    break;
+                }
+                case CONST_STRING:
+                {
+                    visit((CvaConstStringExpr) expr);
+                    break;
+                }
+                case CONST_TRUE:
+                {
+                    visit((CvaConstTrueExpr) expr);
+                    break;
+                }
+                case CONST_FALSE:
+                {
+                    visit((CvaConstFalseExpr) expr);
+                    break;
+                }
+                case CONST_NULL:
+                {
+                    // TODO;
+                    break;
+                }
+                case THIS:
+                {
+                    visit((CvaThisExpr) expr);
+                    break;
+                }
+                case BINARY_OPERAND_OP:
+                {
+                    visit((CvaOperandOperatorExpr) expr);
+                    break;
+                }
+                case INCREMENT:
+                case DECREMENT:
+                {
+                    visit((CvaIncDecExpr) expr);
+                    break;
+                }
+                case NULL_POINTER:
+                {
+                    // 直接忽略, 转都不转;
+                    break;
+                }
+                default:
+                {
+                    // 将所有的都用绑定的enum判定;
+                    System.err.println("unknown expr");
+                }
             }
         }
+        finally
+        {
+            StackSegment.exit();
+        }
     }
 
     void visit(CvaAndAndExpr expr);
@@ -207,55 +223,110 @@ public interface IVisitor
     void visit(CvaIncDecExpr expr);
 
     /**
-     * stm;
-     * @param abstStm stm;
+     * 算术二元树用显式栈后序遍历, 长算式与深括号都不占调用栈;
+     * 非算术的子树交给leaf, 照常经visit分派, 每个算术节点在左右子树走完后交给after;
+     * 各visitor要带的值(类型, 翻译结果)自己在leaf/after里压栈出栈;
+     *
+     * @param root 根;
+     * @param leaf 非算术子树, 从左到右;
+     * @param after 算术节点, 后序;
      */
-    default void visit(AbstractStatement abstStm)
+    default void walkOperandTree(CvaOperandOperatorExpr root,
+                                 Consumer<AbstractExpression> leaf,
+                                 Consumer<CvaOperandOperatorExpr> after)
     {
-        switch (abstStm.toEnum())
+        // path上的每个节点在rightWalked里对应一格, 记它的右子树是否已经开始走;
+        ArrayDeque<CvaOperandOperatorExpr> path = new ArrayDeque<>();
+        ArrayDeque<Boolean> rightWalked = new ArrayDeque<>();
+        AbstractExpression cur = root;
+        while (true)
         {
-            case ASSIGN:
-            {
-                visit((CvaAssignStatement) abstStm);
-                break;
-            }
-            case BLOCK:
-            {
-                visit((CvaBlockStatement) abstStm);
-                break;
-            }
-            case IF:
-            {
-                visit((CvaIfStatement) abstStm);
-                break;
-            }
-            case WRITE:
+            while (cur.toEnum() == EnumCvaExpr.BINARY_OPERAND_OP)
             {
-                visit((CvaWriteStatement) abstStm);
-                break;
+                CvaOperandOperatorExpr node = (CvaOperandOperatorExpr) cur;
+                path.push(node);
+                rightWalked.push(Boolean.FALSE);
+                cur = node.getLeft();
             }
-            case WHILE_FOR:
+            leaf.accept(cur);
+            while (!path.isEmpty() && rightWalked.peek())
             {
-                visit((CvaWhileForStatement) abstStm);
-                break;
+                rightWalked.pop();
+                after.accept(path.pop());
             }
-            case NULL_POINTER:
+            if (path.isEmpty())
             {
-                // 直接忽略, 转都不用转;
-                break;
+                return;
             }
-            case EXPR_STATEMENT:
-            {
-                // decl statement 不需要用, 其只是辅助数据结构, 用完就扔;
-                visit((CvaExprStatement) abstStm);
-                break;
-            }
-            default:
+            rightWalked.pop();
+            rightWalked.push(Boolean.TRUE);
+            cur = path.peek().getRight();
+        }
+    }
+
+    /**
+     * stm;
+     * @param abstStm stm;
+     */
+    default void visit(AbstractStatement abstStm)
+    {
+        if (!StackSegment.enter())
+        {
+            // 嵌套太深, 换一段新栈继续;
+            StackSegment.spill(() -> visit(abstStm));
+            return;
+        }
+        try
+        {
+            switch (abstStm.toEnum())
             {
-                System.err.println("unknown statement");
-                break;
+                case ASSIGN:
+                {
+                    visit((CvaAssignStatement) abstStm);
+                    break;
+                }
+                case BLOCK:
+                {
+                    visit((CvaBlockStatement) abstStm);
+                    break;
+                }
+                case IF:
+                {
+                    visit((CvaIfStatement) abstStm);
+                    break;
+                }
+                case WRITE:
+                {
+                    visit((CvaWriteStatement) abstStm);
+                    break;
+                }
+                case WHILE_FOR:
+                {
+                    visit((CvaWhileForStatement) abstStm);
+                    break;
+                }
+                case NULL_POINTER:
+                {
+                    // 直接忽略, 转都不用转;
+                    break;
+                }
+                case EXPR_STATEMENT:
+                {
+                    // decl statement 不需要用, 其只是辅助数据结构, 用完就扔;
+                    visit((CvaExprStatement) abstStm);
+                    break;
+                }
+                default:
+                {
+                    System.err.println("unknown statement");
+                    break;
+                }
             }
         }
+        finally
+        {
+            StackSegment.exit();
+        }
     }
 
     void visit(CvaAssignStatement stm);
@@ -0,0 +1,175 @@
+package cn.misection.cvac.ast;
+
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName StackSegment
+ * @Description 分段栈, 递归深度每到一段就换到另一线程的大栈上继续, 当前线程等待,
+ * 嵌套深度不再受单个线程栈大小限制;
+ * 最深的几处已是显式栈: Parser的表达式与语句嵌套, 各visitor的算术二元树(IVisitor.walkOperandTree),
+ * 这里只兜底其余仍按子树递归的地方(visitor里的语句嵌套, 比较与&&, 调用实参, SSA与优化遍里的递归);
+ * 浅的程序在调用方线程上直接跑, enter/exit只是一个线程局部计数, 只有嵌套真的深了才spill换栈;
+ * 新写的递归遍必须在递归入口enter/spill, DeepNestingTest在小栈上跑所有遍来守住这一点;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class StackSegment
+{
+    /**
+     * 不是段线程时最多的嵌套层数; 拿不到线程的栈大小, 按HotSpot允许的最小栈(一百多KB)算,
+     * 1MB上最费栈的遍实测一千层出头溢出, 即每层约1KB;
+     */
+    private static final int CALLER_DEPTH = 64;
+
+    /**
+     * 每段新栈的大小, 只是保留虚拟内存;
+     */
+    private static final long SEGMENT_STACK_SIZE = 16L << 20;
+
+    /**
+     * 段线程上最多的嵌套层数, 按每层2KB算, 比实测多留一倍余量;
+     */
+    private static final int SEGMENT_DEPTH = (int) (SEGMENT_STACK_SIZE >> 11);
+
+    /**
+     * 非段线程还能进入的层数;
+     */
+    private static final ThreadLocal<int[]> CALLER_BUDGET = ThreadLocal.withInitial(() -> new int[] {CALLER_DEPTH});
+
+    /**
+     * 段线程闲置一会儿就退出, 不留常驻线程;
+     * 段线程里再spill时池里没有闲线程就新开一条, 不会互相等死;
+     */
+    private static final ExecutorService SEGMENT_POOL = new ThreadPoolExecutor(
+            0, Integer.MAX_VALUE, 30L, TimeUnit.SECONDS, new SynchronousQueue<>(), SegmentThread::new);
+
+    private StackSegment() {}
+
+    /**
+     * 进入一层嵌套, 返回false时说明本段已满, 调用方应改用spill, 且不需要exit;
+     *
+     * @return 本段还有余量;
+     */
+    public static boolean enter()
+    {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof SegmentThread)
+        {
+            SegmentThread segment = (SegmentThread) thread;
+            if (segment.budget <= 0)
+            {
+                return false;
+            }
+            segment.budget--;
+            return true;
+        }
+        int[] budget = CALLER_BUDGET.get();
+        if (budget[0] <= 0)
+        {
+            return false;
+        }
+        budget[0]--;
+        return true;
+    }
+
+    public static void exit()
+    {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof SegmentThread)
+        {
+            ((SegmentThread) thread).budget++;
+        }
+        else
+        {
+            CALLER_BUDGET.get()[0]++;
+        }
+    }
+
+    /**
+     * 在新的一段栈上同步执行;
+     *
+     * @param task 任务;
+     */
+    public static void spill(Runnable task)
+    {
+        spill(() ->
+        {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * 在新的一段栈上同步执行, 异常原样抛回当前线程;
+     * 段线程里再spill时池里没有闲线程就新开一条, 不设许可, 不会互相等死;
+     *
+     * @param task 任务;
+     * @param <T> 返回值类型;
+     * @return 任务返回值;
+     */
+    public static <T> T spill(Supplier<T> task)
+    {
+        return await(SEGMENT_POOL.submit(() ->
+        {
+            // 池里的线程重用, 每段从满额开始;
+            ((SegmentThread) Thread.currentThread()).budget = SEGMENT_DEPTH;
+            return task.get();
+        }));
+    }
+
+    private static <T> T await(Future<T> future)
+    {
+        boolean interrupted = false;
+        try
+        {
+            while (true)
+            {
+                try
+                {
+                    return future.get();
+                }
+                catch (InterruptedException e)
+                {
+                    // 外层还在等这一段的结果, 不能半途丢下;
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException)
+                    {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error)
+                    {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 段线程, 栈大, 不阻止进程退出, 层数预算就放在线程上;
+     */
+    private static final class SegmentThread extends Thread
+    {
+        private int budget = SEGMENT_DEPTH;
+
+        private SegmentThread(Runnable task)
+        {
+            super(null, task, "cva-stack-segment", SEGMENT_STACK_SIZE);
+            setDaemon(true);
+        }
+    }
+}
@@ -82,6 +82,11 @@ public final class CvaWhileForStatement extends AbstractStatement
         this.body = body;
     }
 
+    public void setForInit(AbstractStatement forInit)
+    {
+        this.forInit = forInit;
+    }
+
     public static class Builder
     {
         private int lineNum;
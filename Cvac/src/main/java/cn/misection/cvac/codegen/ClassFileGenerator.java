@@ -0,0 +1,642 @@
+package cn.misection.cvac.codegen;
+
+import cn.misection.cvac.codegen.bst.IBackendVisitor;
+import cn.misection.cvac.codegen.bst.bclas.TargetClass;
+import cn.misection.cvac.codegen.bst.bdecl.TargetDeclaration;
+import cn.misection.cvac.codegen.bst.bentry.TargetEntryClass;
+import cn.misection.cvac.codegen.bst.bmethod.TargetMethod;
+import cn.misection.cvac.codegen.bst.bprogram.TargetProgram;
+import cn.misection.cvac.codegen.bst.btype.ITargetType;
+import cn.misection.cvac.codegen.bst.btype.advance.BaseAdvanceType;
+import cn.misection.cvac.codegen.bst.btype.basic.EnumTargetType;
+import cn.misection.cvac.codegen.bst.btype.reference.BaseReferenceType;
+import cn.misection.cvac.codegen.bst.instructor.*;
+import cn.misection.cvac.codegen.classfile.CodeBuffer;
+import cn.misection.cvac.codegen.classfile.ConstantPool;
+import cn.misection.cvac.codegen.classfile.InstructionSelector;
+import cn.misection.cvac.codegen.classfile.JvmOpcode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName ClassFileGenerator
+ * @Description 直接把TargetProgram写成class文件字节, 不经过il文本与jasmin;
+ * 指令与IntermLangGenerator写出的il逐条对应, 版本号, 访问标志也与jasmin汇编结果一致;
+ * max stack与max locals由StackEffectAnalyzer算出;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+@SuppressWarnings("rawtypes")
+public final class ClassFileGenerator implements IBackendVisitor
+{
+    private static final int MAGIC = 0xCAFEBABE;
+
+    /**
+     * 与jasmin相同的45.3, 不需要StackMapTable;
+     */
+    private static final int MINOR_VERSION = 3;
+
+    private static final int MAJOR_VERSION = 45;
+
+    private static final int ACC_PUBLIC = 0x0001;
+
+    private static final int ACC_STATIC = 0x0008;
+
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final String OBJECT_CLASS = "java/lang/Object";
+
+    private static final String INIT_NAME = "<init>";
+
+    private static final String VOID_DESCRIPTOR = "()V";
+
+    private static final String CODE_ATTRIBUTE = "Code";
+
+    /**
+     * 无参数的构造器只需要一个栈位和一个this;
+     */
+    private static final int INIT_LIMIT = 1;
+
+    /**
+     * 按生成顺序, 类名 -> class文件字节;
+     */
+    private final Map<String, byte[]> classFileMap = new LinkedHashMap<>();
+
+    private final StackEffectAnalyzer stackAnalyzer = new StackEffectAnalyzer();
+
+    private ConstantPool pool;
+
+    private CodeBuffer code;
+
+    private final List<MemberInfo> fieldList = new ArrayList<>();
+
+    private final List<MemberInfo> methodList = new ArrayList<>();
+
+    /**
+     * 类型描述符;
+     */
+    private final StringBuilder descriptor = new StringBuilder();
+
+    /**
+     * il中EnumOperandType与后面的EnumOperator拼成一个助记符;
+     */
+    private String operandPrefix = "";
+
+    private String descriptorOf(ITargetType type)
+    {
+        descriptor.setLength(0);
+        visit(type);
+        return descriptor.toString();
+    }
+
+    private String methodDescriptorOf(List<ITargetType> argTypeList, ITargetType retType)
+    {
+        StringBuilder builder = new StringBuilder("(");
+        argTypeList.forEach(argType -> builder.append(descriptorOf(argType)));
+        return builder.append(')').append(descriptorOf(retType)).toString();
+    }
+
+    private void emitMnemonic(String mnemonic)
+    {
+        int opcode = JvmOpcode.ofMnemonic(mnemonic);
+        if (opcode < 0)
+        {
+            throw new IllegalStateException(
+                    String.format("unknown instruction '%s'", mnemonic));
+        }
+        code.u1(opcode);
+    }
+
+    /**
+     * 0到3号用短形式, 下标超过一个字节时用wide;
+     *
+     * @param mnemonic iload, aload, istore或astore;
+     */
+    private void emitLocal(String mnemonic, int index)
+    {
+        String shortForm = InstructionSelector.selectShortLocal(mnemonic, index);
+        if (shortForm != null)
+        {
+            emitMnemonic(shortForm);
+        }
+        else if (InstructionSelector.needsWide(index))
+        {
+            code.u1(JvmOpcode.WIDE);
+            emitMnemonic(mnemonic);
+            code.u2(index);
+        }
+        else
+        {
+            emitMnemonic(mnemonic);
+            code.u1(index);
+        }
+    }
+
+    /**
+     * 只有iconst, bipush, sipush都放不下的才进常量池;
+     */
+    private void emitIntConstant(int value)
+    {
+        String selected = InstructionSelector.selectIntPush(value);
+        switch (selected)
+        {
+            case InstructionSelector.BIPUSH:
+            {
+                code.u1(JvmOpcode.BIPUSH);
+                code.u1(value);
+                break;
+            }
+            case InstructionSelector.SIPUSH:
+            {
+                code.u1(JvmOpcode.SIPUSH);
+                code.u2(value);
+                break;
+            }
+            case InstructionSelector.LDC:
+            {
+                emitConstant(pool.integer(value));
+                break;
+            }
+            default:
+            {
+                emitMnemonic(selected);
+                break;
+            }
+        }
+    }
+
+    private void emitConstant(int index)
+    {
+        if (index > 0xff)
+        {
+            code.u1(JvmOpcode.LDC_W);
+            code.u2(index);
+        }
+        else
+        {
+            code.u1(JvmOpcode.LDC);
+            code.u1(index);
+        }
+    }
+
+    /**
+     * @param spec 形如owner/name;
+     */
+    private int fieldRefOf(String spec, String fieldDescriptor)
+    {
+        int split = spec.lastIndexOf('/');
+        return pool.fieldRef(spec.substring(0, split), spec.substring(split + 1), fieldDescriptor);
+    }
+
+    @Override
+    public void visit(EnumTargetType type)
+    {
+        descriptor.append(type.toInst());
+    }
+
+    @Override
+    public void visit(BaseAdvanceType type)
+    {
+        descriptor.append('L').append(type.toInst()).append(';');
+    }
+
+    @Override
+    public void visit(BaseReferenceType type)
+    {
+        descriptor.append('L').append(type.typeName()).append(';');
+    }
+
+    @Override
+    public void visit(TargetDeclaration decl)
+    {
+        // 声明不单独生成字节;
+    }
+
+    @Override
+    public void visit(EnumInstructor instructor)
+    {
+        emitMnemonic(instructor.toInst());
+    }
+
+    @Override
+    public void visit(EnumOperandType instructor)
+    {
+        operandPrefix = instructor.toInst();
+    }
+
+    @Override
+    public void visit(EnumOperator instructor)
+    {
+        emitMnemonic(operandPrefix + instructor.toInst());
+        operandPrefix = "";
+    }
+
+    @Override
+    public void visit(ALoad instructor)
+    {
+        emitLocal("aload", instructor.getIndex());
+    }
+
+    @Override
+    public void visit(AStore instructor)
+    {
+        emitLocal("astore", instructor.getIndex());
+    }
+
+    @Override
+    public void visit(Goto instructor)
+    {
+        code.branch(JvmOpcode.GOTO, instructor.getLabel());
+    }
+
+    @Override
+    public void visit(GetField instructor)
+    {
+        code.u1(JvmOpcode.GETFIELD);
+        code.u2(fieldRefOf(instructor.getFieldSpec(), instructor.getDescriptor()));
+    }
+
+    @Override
+    public void visit(GetStatic instructor)
+    {
+        code.u1(JvmOpcode.GETSTATIC);
+        code.u2(fieldRefOf(instructor.getFieldSpec(), instructor.getDescriptor()));
+    }
+
+    @Override
+    public void visit(IfICmpLt instructor)
+    {
+        code.branch(JvmOpcode.IF_ICMPLT, instructor.getLabel());
+    }
+
+    @Override
+    public void visit(IfJump instructor)
+    {
+        code.branch(JvmOpcode.ofMnemonic(instructor.getCondition().toInst()), instructor.getLabel());
+    }
+
+    @Override
+    public void visit(ILoad instructor)
+    {
+        emitLocal("iload", instructor.getIndex());
+    }
+
+    @Override
+    public void visit(InvokeVirtual instructor)
+    {
+        code.u1(JvmOpcode.INVOKEVIRTUAL);
+        code.u2(pool.methodRef(instructor.getFirstFieldType(),
+                instructor.getFuncName(),
+                methodDescriptorOf(instructor.getArgTypeList(), instructor.getRetType())));
+    }
+
+    @Override
+    public void visit(IStore instructor)
+    {
+        emitLocal("istore", instructor.getIndex());
+    }
+
+    @Override
+    public void visit(LabelJ instructor)
+    {
+        code.mark(instructor.getLabel());
+    }
+
+    @Override
+    public void visit(Ldc instructor)
+    {
+        Object value = instructor.value();
+        if (value instanceof Integer)
+        {
+            emitIntConstant((Integer) value);
+        }
+        else
+        {
+            emitConstant(pool.string(unquote(String.valueOf(value))));
+        }
+    }
+
+    @Override
+    public void visit(New instructor)
+    {
+        code.u1(JvmOpcode.NEW);
+        code.u2(pool.classRef(instructor.getNewClassName()));
+        code.u1(JvmOpcode.DUP);
+        code.u1(JvmOpcode.INVOKESPECIAL);
+        code.u2(pool.methodRef(instructor.getNewClassName(), INIT_NAME, VOID_DESCRIPTOR));
+    }
+
+    @Override
+    public void visit(WriteInstructor instructor)
+    {
+        if (!instructor.isStreamLoaded())
+        {
+            code.u1(JvmOpcode.GETSTATIC);
+            code.u2(pool.fieldRef("java/lang/System", "out", "Ljava/io/PrintStream;"));
+            code.u1(JvmOpcode.SWAP);
+        }
+        // 形如println(I)V;
+        String invoke = instructor.requireInvoke();
+        int split = invoke.indexOf('(');
+        code.u1(JvmOpcode.INVOKEVIRTUAL);
+        code.u2(pool.methodRef("java/io/PrintStream",
+                invoke.substring(0, split),
+                invoke.substring(split)));
+    }
+
+    @Override
+    public void visit(PutField instructor)
+    {
+        code.u1(JvmOpcode.PUTFIELD);
+        code.u2(fieldRefOf(instructor.getFieldSpec(), instructor.getDescriptor()));
+    }
+
+    @Override
+    public void visit(IInc instructor)
+    {
+        int index = instructor.getIndex();
+        int increment = instructor.getDirection().direction();
+        if (InstructionSelector.fitsNarrowIInc(index, increment))
+        {
+            code.u1(JvmOpcode.IINC);
+            code.u1(index);
+            code.u1(increment);
+        }
+        else
+        {
+            code.u1(JvmOpcode.WIDE);
+            code.u1(JvmOpcode.IINC);
+            code.u2(index);
+            code.u2(increment);
+        }
+    }
+
+    @Override
+    public void visit(TargetMethod targetMethod)
+    {
+        List<ITargetType> formalTypeList = new ArrayList<>();
+        targetMethod.getFormalList().forEach(f -> formalTypeList.add(f.getType()));
+        code = new CodeBuffer();
+        targetMethod.getStatementList().forEach(this::visit);
+        stackAnalyzer.visit(targetMethod);
+        methodList.add(new MemberInfo(ACC_PUBLIC,
+                targetMethod.getName(),
+                methodDescriptorOf(formalTypeList, targetMethod.getRetType()),
+                code.toByteArray(),
+                stackAnalyzer.getMaxStack(),
+                stackAnalyzer.getMaxLocals()));
+    }
+
+    @Override
+    public void visit(TargetClass targetClass)
+    {
+        pool = new ConstantPool();
+        String parent = targetClass.getParent() == null
+                ? OBJECT_CLASS
+                : targetClass.getParent();
+
+        targetClass.getFieldList().forEach(f ->
+                fieldList.add(new MemberInfo(ACC_PUBLIC,
+                        f.getVarName(),
+                        descriptorOf(f.getType()),
+                        null, 0, 0)));
+
+        code = new CodeBuffer();
+        emitLocal("aload", 0);
+        code.u1(JvmOpcode.INVOKESPECIAL);
+        code.u2(pool.methodRef(parent, INIT_NAME, VOID_DESCRIPTOR));
+        code.u1(JvmOpcode.RETURN);
+        methodList.add(new MemberInfo(ACC_PUBLIC, INIT_NAME, VOID_DESCRIPTOR,
+                code.toByteArray(), INIT_LIMIT, INIT_LIMIT));
+        targetClass.getMethodList().forEach(this::visit);
+
+        saveAndReinit(targetClass.getClassName(), parent);
+    }
+
+    @Override
+    public void visit(TargetEntryClass entryClass)
+    {
+        pool = new ConstantPool();
+        code = new CodeBuffer();
+        entryClass.getStatementList().forEach(this::visit);
+        code.u1(JvmOpcode.RETURN);
+        stackAnalyzer.visit(entryClass);
+        methodList.add(new MemberInfo(ACC_PUBLIC | ACC_STATIC,
+                "main",
+                "([Ljava/lang/String;)V",
+                code.toByteArray(),
+                stackAnalyzer.getMaxStack(),
+                stackAnalyzer.getMaxLocals()));
+
+        saveAndReinit(entryClass.getName(), OBJECT_CLASS);
+    }
+
+    @Override
+    public void visit(TargetProgram targetProgram)
+    {
+        visit(targetProgram.getEntryClass());
+        targetProgram.getClassList().forEach(this::visit);
+    }
+
+    /**
+     * @return 按生成顺序, 类名 -> class文件字节;
+     */
+    public Map<String, byte[]> getClassFileMap()
+    {
+        return Collections.unmodifiableMap(classFileMap);
+    }
+
+    private void saveAndReinit(String className, String parent)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try
+        {
+            int thisIndex = pool.classRef(className);
+            int superIndex = pool.classRef(parent);
+            int codeIndex = pool.utf8(CODE_ATTRIBUTE);
+            for (MemberInfo member : fieldList)
+            {
+                member.resolve(pool);
+            }
+            for (MemberInfo member : methodList)
+            {
+                member.resolve(pool);
+            }
+
+            out.writeInt(MAGIC);
+            out.writeShort(MINOR_VERSION);
+            out.writeShort(MAJOR_VERSION);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            // interfaces;
+            out.writeShort(0);
+            out.writeShort(fieldList.size());
+            for (MemberInfo field : fieldList)
+            {
+                field.writeTo(out, codeIndex);
+            }
+            out.writeShort(methodList.size());
+            for (MemberInfo method : methodList)
+            {
+                method.writeTo(out, codeIndex);
+            }
+            // class attributes;
+            out.writeShort(0);
+        }
+        catch (IOException e)
+        {
+            // ByteArrayOutputStream不会抛;
+            throw new IllegalStateException(e);
+        }
+        classFileMap.put(className, bytes.toByteArray());
+        fieldList.clear();
+        methodList.clear();
+        pool = null;
+        code = null;
+    }
+
+    /**
+     * il里的串带引号, jasmin读入时去引号并处理转义, 这里按同样规则;
+     */
+    private static String unquote(String literal)
+    {
+        if (literal.length() < 2 || literal.charAt(0) != '"'
+                || literal.charAt(literal.length() - 1) != '"')
+        {
+            return literal;
+        }
+        StringBuilder builder = new StringBuilder(literal.length());
+        int end = literal.length() - 1;
+        for (int i = 1; i < end; i++)
+        {
+            char ch = literal.charAt(i);
+            if (ch != '\\' || i + 1 == end)
+            {
+                builder.append(ch);
+                continue;
+            }
+            char escape = literal.charAt(++i);
+            switch (escape)
+            {
+                case 'n':
+                {
+                    builder.append('\n');
+                    break;
+                }
+                case 't':
+                {
+                    builder.append('\t');
+                    break;
+                }
+                case 'r':
+                {
+                    builder.append('\r');
+                    break;
+                }
+                case 'b':
+                {
+                    builder.append('\b');
+                    break;
+                }
+                case 'f':
+                {
+                    builder.append('\f');
+                    break;
+                }
+                case 'u':
+                {
+                    if (i + 4 < end)
+                    {
+                        builder.append((char) Integer.parseInt(literal.substring(i + 1, i + 5), 16));
+                        i += 4;
+                        break;
+                    }
+                    builder.append(escape);
+                    break;
+                }
+                default:
+                {
+                    // \" \' \\ 以及其他;
+                    builder.append(escape);
+                    break;
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * field或method, 常量池下标在类收尾时统一解析;
+     */
+    private static final class MemberInfo
+    {
+        private final int access;
+
+        private final String name;
+
+        private final String memberDescriptor;
+
+        /**
+         * field为null;
+         */
+        private final byte[] code;
+
+        private final int maxStack;
+
+        private final int maxLocals;
+
+        private int nameIndex;
+
+        private int descriptorIndex;
+
+        private MemberInfo(int access, String name, String memberDescriptor,
+                           byte[] code, int maxStack, int maxLocals)
+        {
+            this.access = access;
+            this.name = name;
+            this.memberDescriptor = memberDescriptor;
+            this.code = code;
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+        }
+
+        private void resolve(ConstantPool pool)
+        {
+            nameIndex = pool.utf8(name);
+            descriptorIndex = pool.utf8(memberDescriptor);
+        }
+
+        private void writeTo(DataOutputStream out, int codeIndex) throws IOException
+        {
+            out.writeShort(access);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            if (code == null)
+            {
+                out.writeShort(0);
+                return;
+            }
+            out.writeShort(1);
+            out.writeShort(codeIndex);
+            // max_stack, max_locals, code_length, code, exception_table_length, attributes_count;
+            out.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+    }
+}
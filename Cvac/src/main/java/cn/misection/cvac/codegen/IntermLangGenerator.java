@@ -1,6 +1,7 @@
 package cn.misection.cvac.codegen;
 
 import cn.misection.cvac.codegen.bst.IBackendVisitor;
+import cn.misection.cvac.codegen.bst.Label;
 import cn.misection.cvac.codegen.bst.bclas.TargetClass;
 import cn.misection.cvac.codegen.bst.bdecl.TargetDeclaration;
 import cn.misection.cvac.codegen.bst.bentry.TargetEntryClass;
@@ -10,9 +11,13 @@ import cn.misection.cvac.codegen.bst.btype.advance.BaseAdvanceType;
 import cn.misection.cvac.codegen.bst.btype.basic.EnumTargetType;
 import cn.misection.cvac.codegen.bst.instructor.*;
 import cn.misection.cvac.codegen.bst.btype.reference.BaseReferenceType;
+import cn.misection.cvac.codegen.classfile.InstructionSelector;
 import cn.misection.cvac.constant.IntermLangCommon;
+import cn.misection.cvac.context.CompilationContext;
 
 import java.io.*;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  *
@@ -26,6 +31,28 @@ public final class IntermLangGenerator implements IBackendVisitor
 
     private final StringBuffer buffer = new StringBuffer();
 
+    private final StackEffectAnalyzer stackAnalyzer = new StackEffectAnalyzer();
+
+    /**
+     * 方法内按出现顺序给label编号, 输出不随翻译时的全局计数变;
+     */
+    private final Map<Label, String> labelNameMap = new IdentityHashMap<>();
+
+    /**
+     * il文件写到上下文的输出目录, 写不了时经它报错;
+     */
+    private final CompilationContext context;
+
+    public IntermLangGenerator()
+    {
+        this(new CompilationContext());
+    }
+
+    public IntermLangGenerator(CompilationContext context)
+    {
+        this.context = context;
+    }
+
     private void write(String s)
     {
         buffer.append(s);
@@ -84,6 +111,22 @@ public final class IntermLangGenerator implements IBackendVisitor
         writeln();
     }
 
+    /**
+     * 0到3号写成iload_0这样的短形式, wide由jasmin按下标自动加;
+     */
+    private void writeLocal(String mnemonic, int index)
+    {
+        String shortForm = InstructionSelector.selectShortLocal(mnemonic, index);
+        if (shortForm != null)
+        {
+            iwriteLine(shortForm);
+        }
+        else
+        {
+            iwritefln("%s %d", mnemonic, index);
+        }
+    }
+
     @Override
     public void visit(EnumTargetType type)
     {
@@ -129,19 +172,19 @@ public final class IntermLangGenerator implements IBackendVisitor
     @Override
     public void visit(ALoad instructor)
     {
-        iwritefln("aload %d", instructor.getIndex());
+        writeLocal("aload", instructor.getIndex());
     }
 
     @Override
     public void visit(AStore instructor)
     {
-        iwritefln("astore %d", instructor.getIndex());
+        writeLocal("astore", instructor.getIndex());
     }
 
     @Override
     public void visit(Goto instructor)
     {
-        iwritefln("goto %s", instructor.getLabel().toString());
+        iwritefln("goto %s", labelName(instructor.getLabel()));
     }
 
     @Override
@@ -150,16 +193,28 @@ public final class IntermLangGenerator implements IBackendVisitor
         iwritefln("getfield %s %s", instructor.getFieldSpec(), instructor.getDescriptor());
     }
 
+    @Override
+    public void visit(GetStatic instructor)
+    {
+        iwritefln("getstatic %s %s", instructor.getFieldSpec(), instructor.getDescriptor());
+    }
+
     @Override
     public void visit(IfICmpLt instructor)
     {
-        iwritefln("if_icmplt %s", instructor.getLabel().toString());
+        iwritefln("if_icmplt %s", labelName(instructor.getLabel()));
+    }
+
+    @Override
+    public void visit(IfJump instructor)
+    {
+        iwritefln("%s %s", instructor.getCondition().toInst(), labelName(instructor.getLabel()));
     }
 
     @Override
     public void visit(ILoad instructor)
     {
-        iwritefln("iload %d", instructor.getIndex());
+        writeLocal("iload", instructor.getIndex());
     }
 
     @Override
@@ -175,19 +230,40 @@ public final class IntermLangGenerator implements IBackendVisitor
     @Override
     public void visit(IStore instructor)
     {
-        iwritefln("istore %d", instructor.getIndex());
+        writeLocal("istore", instructor.getIndex());
     }
 
     @Override
     public void visit(LabelJ instructor)
     {
-        writef("%s:\n", instructor.getLabel().toString());
+        writef("%s:\n", labelName(instructor.getLabel()));
     }
 
     @Override
     public void visit(Ldc instructor)
     {
-        iwritefln("ldc %s", instructor.value());
+        Object value = instructor.value();
+        if (!(value instanceof Integer))
+        {
+            iwritefln("ldc %s", value);
+            return;
+        }
+        String selected = InstructionSelector.selectIntPush((Integer) value);
+        switch (selected)
+        {
+            case InstructionSelector.BIPUSH:
+            case InstructionSelector.SIPUSH:
+            case InstructionSelector.LDC:
+            {
+                iwritefln("%s %d", selected, value);
+                break;
+            }
+            default:
+            {
+                iwriteLine(selected);
+                break;
+            }
+        }
     }
 
     @Override
@@ -201,8 +277,11 @@ public final class IntermLangGenerator implements IBackendVisitor
     @Override
     public void visit(WriteInstructor instructor)
     {
-        iwriteLine("getstatic java/lang/System/out Ljava/io/PrintStream;");
-        iwriteLine("swap");
+        if (!instructor.isStreamLoaded())
+        {
+            iwriteLine("getstatic java/lang/System/out Ljava/io/PrintStream;");
+            iwriteLine("swap");
+        }
         iwritefln("invokevirtual java/io/PrintStream/%s", instructor.requireInvoke());
     }
 
@@ -226,9 +305,11 @@ public final class IntermLangGenerator implements IBackendVisitor
         write(")");
         visit(targetMethod.getRetType());
         writeln();
-        writef(".limit stack %d\n", StackConst.MAX_STACK_DEPTH);
-        writef(".limit locals %d\n", targetMethod.getIndex() + 1);
+        stackAnalyzer.visit(targetMethod);
+        writef(".limit stack %d\n", stackAnalyzer.getMaxStack());
+        writef(".limit locals %d\n", stackAnalyzer.getMaxLocals());
 
+        labelNameMap.clear();
         targetMethod.getStatementList().forEach(this::visit);
         writeln(".end method");
     }
@@ -236,7 +317,7 @@ public final class IntermLangGenerator implements IBackendVisitor
     @Override
     public void visit(TargetClass targetClass)
     {
-        initWriter(String.format("%s.il", targetClass.getClassName()));
+        initWriter(context.outputFile(targetClass.getClassName(), "il"));
         writef(".class public %s\n", targetClass.getClassName());
         if (targetClass.getParent() == null)
         {
@@ -255,7 +336,7 @@ public final class IntermLangGenerator implements IBackendVisitor
         });
 
         writeln(".method public <init>()V");
-        iwriteLine("aload 0");
+        writeLocal("aload", 0);
         if (targetClass.getParent() == null)
         {
             iwriteLine("invokespecial java/lang/Object/<init>()V");
@@ -274,13 +355,15 @@ public final class IntermLangGenerator implements IBackendVisitor
     @Override
     public void visit(TargetEntryClass entryClass)
     {
-        initWriter(String.format("%s.il", entryClass.getName()));
+        initWriter(context.outputFile(entryClass.getName(), "il"));
 
         writef(".class public %s\n", entryClass.getName());
         writeln(".super java/lang/Object");
         writeln(".method public static main([Ljava/lang/String;)V");
-        writef(".limit stack %d\n", StackConst.MAX_STACK_DEPTH);
-        writeln(".limit locals 2");
+        stackAnalyzer.visit(entryClass);
+        writef(".limit stack %d\n", stackAnalyzer.getMaxStack());
+        writef(".limit locals %d\n", stackAnalyzer.getMaxLocals());
+        labelNameMap.clear();
         entryClass.getStatementList().forEach(this::visit);
         iwriteLine("return");
         writeln(".end method");
@@ -296,18 +379,22 @@ public final class IntermLangGenerator implements IBackendVisitor
     }
 
 
-    private void initWriter(String path)
+    private String labelName(Label label)
+    {
+        return labelNameMap.computeIfAbsent(label,
+                l -> String.format("Label_%d", labelNameMap.size()));
+    }
+
+    private void initWriter(File file)
     {
         try
         {
-            // FIXME 路劲;
             writer = new BufferedWriter(new OutputStreamWriter(
-                    new FileOutputStream(path)));
+                    new FileOutputStream(file)));
         }
         catch (FileNotFoundException e)
         {
-            e.printStackTrace();
-            System.exit(1);
+            throw context.abort(0, String.format("cannot write %s: %s", file, e.getMessage()));
         }
         writeln("; This file is automatically generated by the compiler");
         writeln("; Do Not Modify!\n");
@@ -323,8 +410,7 @@ public final class IntermLangGenerator implements IBackendVisitor
         }
         catch (IOException e)
         {
-            e.printStackTrace();
-            System.exit(1);
+            throw context.abort(0, String.format("cannot write il: %s", e.getMessage()));
         }
     }
 
@@ -0,0 +1,354 @@
+package cn.misection.cvac.codegen;
+
+import cn.misection.cvac.codegen.bst.Label;
+import cn.misection.cvac.codegen.bst.instructor.*;
+import cn.misection.cvac.dataflow.*;
+
+import java.util.*;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName LocalSlotAllocator
+ * @Description 按活跃区间给局部变量重新分配slot, 生命期不重叠的变量共用一个slot;
+ * 先按跳转切基本块, 在块上用DataflowSolver求活跃变量, 再在块内倒着走一遍建冲突图, 最后按原slot顺序贪心着色;
+ * this与参数占的slot不动;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class LocalSlotAllocator
+{
+    /**
+     * 对指令表就地改写slot;
+     *
+     * @param instrList 一个方法的指令;
+     * @param fixedSlots this与参数占的slot数, 这些slot不参与分配;
+     * @return 改写后用到的slot数, 至少为fixedSlots;
+     */
+    public int allocate(List<IInstructor> instrList, int fixedSlots)
+    {
+        int size = instrList.size();
+        // 原slot -> 变量编号;
+        Map<Integer, Integer> varMap = new TreeMap<>();
+        for (IInstructor instructor : instrList)
+        {
+            int slot = slotOf(instructor);
+            if (slot >= fixedSlots)
+            {
+                varMap.put(slot, 0);
+            }
+        }
+        if (varMap.isEmpty())
+        {
+            return fixedSlots;
+        }
+        int varCount = 0;
+        for (Map.Entry<Integer, Integer> entry : varMap.entrySet())
+        {
+            entry.setValue(varCount++);
+        }
+        if (varCount == 1)
+        {
+            // 只有一个变量, 不用求活跃区间;
+            instrList.stream()
+                    .filter(instructor -> slotOf(instructor) >= fixedSlots)
+                    .forEach(instructor -> setSlot(instructor, fixedSlots));
+            return fixedSlots + 1;
+        }
+
+        // 切基本块;
+        Map<Label, Integer> labelIndexMap = new IdentityHashMap<>();
+        BitSet leaders = new BitSet(size + 1);
+        leaders.set(0);
+        for (int i = 0; i < size; i++)
+        {
+            IInstructor instructor = instrList.get(i);
+            if (instructor instanceof LabelJ)
+            {
+                labelIndexMap.put(((LabelJ) instructor).getLabel(), i);
+                leaders.set(i);
+            }
+            else if (branchLabelOf(instructor) != null || isTerminal(instructor))
+            {
+                leaders.set(i + 1);
+            }
+        }
+        int[] blockStarts = leaders.stream().filter(i -> i < size).toArray();
+        int blockCount = blockStarts.length;
+        int[] blockOfIndex = new int[size];
+        for (int b = 0; b < blockCount; b++)
+        {
+            int end = b + 1 < blockCount ? blockStarts[b + 1] : size;
+            Arrays.fill(blockOfIndex, blockStarts[b], end, b);
+        }
+
+        // 块的use, def与后继;
+        BitSet[] uses = new BitSet[blockCount];
+        BitSet[] defs = new BitSet[blockCount];
+        int[][] successors = new int[blockCount][];
+        for (int b = 0; b < blockCount; b++)
+        {
+            int start = blockStarts[b];
+            int end = b + 1 < blockCount ? blockStarts[b + 1] : size;
+            uses[b] = new BitSet(varCount);
+            defs[b] = new BitSet(varCount);
+            for (int i = start; i < end; i++)
+            {
+                IInstructor instructor = instrList.get(i);
+                int slot = slotOf(instructor);
+                if (slot < fixedSlots)
+                {
+                    continue;
+                }
+                int var = varMap.get(slot);
+                if (isUse(instructor) && !defs[b].get(var))
+                {
+                    uses[b].set(var);
+                }
+                if (isDef(instructor))
+                {
+                    defs[b].set(var);
+                }
+            }
+            IInstructor last = instrList.get(end - 1);
+            List<Integer> succList = new ArrayList<>(2);
+            Label label = branchLabelOf(last);
+            if (label != null)
+            {
+                succList.add(blockOfIndex[labelIndexMap.get(label)]);
+            }
+            if (!isTerminal(last) && end < size)
+            {
+                succList.add(b + 1);
+            }
+            successors[b] = succList.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // 活跃变量;
+        DataflowResult liveness = DataflowSolver.solve(new EdgeListGraph(successors),
+                new SlotLiveness(varCount, uses, defs));
+        BitSet[] liveOuts = new BitSet[blockCount];
+        for (int b = 0; b < blockCount; b++)
+        {
+            liveOuts[b] = BitSet.valueOf(liveness.out(b));
+        }
+
+        // 冲突图: 定值点上与其后活跃的变量冲突;
+        BitSet[] interferences = new BitSet[varCount];
+        for (int v = 0; v < varCount; v++)
+        {
+            interferences[v] = new BitSet(varCount);
+        }
+        for (int b = 0; b < blockCount; b++)
+        {
+            int start = blockStarts[b];
+            int end = b + 1 < blockCount ? blockStarts[b + 1] : size;
+            BitSet live = (BitSet) liveOuts[b].clone();
+            for (int i = end - 1; i >= start; i--)
+            {
+                IInstructor instructor = instrList.get(i);
+                int slot = slotOf(instructor);
+                if (slot < fixedSlots)
+                {
+                    continue;
+                }
+                int var = varMap.get(slot);
+                if (isDef(instructor))
+                {
+                    for (int other = live.nextSetBit(0); other >= 0; other = live.nextSetBit(other + 1))
+                    {
+                        if (other != var)
+                        {
+                            interferences[var].set(other);
+                            interferences[other].set(var);
+                        }
+                    }
+                    live.clear(var);
+                }
+                if (isUse(instructor))
+                {
+                    live.set(var);
+                }
+            }
+        }
+        // 入口处就活跃的是先用后定值的变量, 不与任何变量共用;
+        BitSet entryLive = BitSet.valueOf(liveness.in(0));
+        for (int var = entryLive.nextSetBit(0); var >= 0; var = entryLive.nextSetBit(var + 1))
+        {
+            interferences[var].set(0, varCount);
+            interferences[var].clear(var);
+            for (int other = 0; other < varCount; other++)
+            {
+                if (other != var)
+                {
+                    interferences[other].set(var);
+                }
+            }
+        }
+
+        // 按原slot顺序贪心着色;
+        int[] newSlotOfVar = new int[varCount];
+        int slotCount = fixedSlots;
+        for (int var = 0; var < varCount; var++)
+        {
+            BitSet taken = new BitSet();
+            BitSet neighbours = interferences[var];
+            for (int other = neighbours.nextSetBit(0); other >= 0 && other < var; other = neighbours.nextSetBit(other + 1))
+            {
+                taken.set(newSlotOfVar[other]);
+            }
+            int slot = taken.nextClearBit(fixedSlots);
+            newSlotOfVar[var] = slot;
+            slotCount = Math.max(slotCount, slot + 1);
+        }
+
+        for (IInstructor instructor : instrList)
+        {
+            int slot = slotOf(instructor);
+            if (slot >= fixedSlots)
+            {
+                setSlot(instructor, newSlotOfVar[varMap.get(slot)]);
+            }
+        }
+        return slotCount;
+    }
+
+    /**
+     * @return 存取局部变量的指令的slot, 其余为-1;
+     */
+    private static int slotOf(IInstructor instructor)
+    {
+        if (instructor instanceof ILoad)
+        {
+            return ((ILoad) instructor).getIndex();
+        }
+        if (instructor instanceof ALoad)
+        {
+            return ((ALoad) instructor).getIndex();
+        }
+        if (instructor instanceof IStore)
+        {
+            return ((IStore) instructor).getIndex();
+        }
+        if (instructor instanceof AStore)
+        {
+            return ((AStore) instructor).getIndex();
+        }
+        if (instructor instanceof IInc)
+        {
+            return ((IInc) instructor).getIndex();
+        }
+        return -1;
+    }
+
+    private static void setSlot(IInstructor instructor, int slot)
+    {
+        if (instructor instanceof ILoad)
+        {
+            ((ILoad) instructor).setIndex(slot);
+        }
+        else if (instructor instanceof ALoad)
+        {
+            ((ALoad) instructor).setIndex(slot);
+        }
+        else if (instructor instanceof IStore)
+        {
+            ((IStore) instructor).setIndex(slot);
+        }
+        else if (instructor instanceof AStore)
+        {
+            ((AStore) instructor).setIndex(slot);
+        }
+        else if (instructor instanceof IInc)
+        {
+            ((IInc) instructor).setIndex(slot);
+        }
+    }
+
+    private static boolean isUse(IInstructor instructor)
+    {
+        return instructor instanceof ILoad
+                || instructor instanceof ALoad
+                || instructor instanceof IInc;
+    }
+
+    private static boolean isDef(IInstructor instructor)
+    {
+        return instructor instanceof IStore
+                || instructor instanceof AStore
+                || instructor instanceof IInc;
+    }
+
+    private static Label branchLabelOf(IInstructor instructor)
+    {
+        if (instructor instanceof Goto)
+        {
+            return ((Goto) instructor).getLabel();
+        }
+        if (instructor instanceof IfJump)
+        {
+            return ((IfJump) instructor).getLabel();
+        }
+        if (instructor instanceof IfICmpLt)
+        {
+            return ((IfICmpLt) instructor).getLabel();
+        }
+        return null;
+    }
+
+    /**
+     * goto与各种return之后不会顺序往下走;
+     */
+    private static boolean isTerminal(IInstructor instructor)
+    {
+        return instructor instanceof Goto
+                || instructor == EnumInstructor.I_RETURN
+                || instructor == EnumInstructor.A_RETURN
+                || instructor == EnumOperator.RETURN;
+    }
+
+    /**
+     * 块的use与def就是gen与kill;
+     */
+    private static final class SlotLiveness extends GenKillProblem
+    {
+        private final int varCount;
+
+        private final BitSet[] uses;
+
+        private final BitSet[] defs;
+
+        private SlotLiveness(int varCount, BitSet[] uses, BitSet[] defs)
+        {
+            this.varCount = varCount;
+            this.uses = uses;
+            this.defs = defs;
+        }
+
+        @Override
+        public EnumFlowDirection direction()
+        {
+            return EnumFlowDirection.BACKWARD;
+        }
+
+        @Override
+        public EnumMeet meet()
+        {
+            return EnumMeet.UNION;
+        }
+
+        @Override
+        public int bitCount()
+        {
+            return varCount;
+        }
+
+        @Override
+        public void transfer(int block, long[] gen, long[] kill)
+        {
+            long[] useWords = uses[block].toLongArray();
+            System.arraycopy(useWords, 0, gen, 0, useWords.length);
+            long[] defWords = defs[block].toLongArray();
+            System.arraycopy(defWords, 0, kill, 0, defWords.length);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package cn.misection.cvac.codegen;
+
+import cn.misection.cvac.ast.clas.AbstractCvaClass;
+import cn.misection.cvac.ast.entry.AbstractEntryClass;
+import cn.misection.cvac.ast.program.AbstractProgram;
+import cn.misection.cvac.codegen.bst.bclas.TargetClass;
+import cn.misection.cvac.codegen.bst.bentry.TargetEntryClass;
+import cn.misection.cvac.codegen.bst.bprogram.TargetProgram;
+import cn.misection.cvac.codegen.peephole.PeepholeOptimizer;
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.ssa.SsaPrinter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName ParallelCodeGenerator
+ * @Description 每个类一个ForkJoin任务, 各任务用自己的TranslatorVisitor与生成器, 互不共享缓冲;
+ * 选了-ssa时翻译换成SsaTranslator, 经SSA中间表示生成指令;
+ * 任务按入口类在前, 其余按源码顺序提交, 也按这个顺序join, 所以输出顺序与串行时一样;
+ * 翻译直接在池线程上做, 只有嵌套真的深了才经StackSegment换到段线程;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class ParallelCodeGenerator
+{
+    /**
+     * 各任务共用, label编号与报错都经过它;
+     */
+    private final CompilationContext context;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * 为null时不做窥孔优化;
+     */
+    private final PeepholeOptimizer peepholeOptimizer;
+
+    public ParallelCodeGenerator(CompilationContext context,
+                                 ForkJoinPool pool,
+                                 PeepholeOptimizer peepholeOptimizer)
+    {
+        this.context = context;
+        this.pool = pool;
+        this.peepholeOptimizer = peepholeOptimizer;
+    }
+
+    /**
+     * 翻译, 窥孔, 生成class字节在同一个任务里做完;
+     *
+     * @return 类名 -> class文件字节, 入口类在前;
+     */
+    public Map<String, byte[]> generate(AbstractProgram program)
+    {
+        return generate(program, className -> true);
+    }
+
+    /**
+     * 只生成被选中的类, 增量编译时其余的类从缓存取;
+     *
+     * @param selector 按类名选择;
+     * @return 类名 -> class文件字节, 只含选中的类, 顺序同上;
+     */
+    public Map<String, byte[]> generate(AbstractProgram program, Predicate<String> selector)
+    {
+        List<ForkJoinTask<Map<String, byte[]>>> taskList = new ArrayList<>();
+        AbstractEntryClass entryClass = program.getEntryClass();
+        if (selector.test(entryClass.name()))
+        {
+            taskList.add(pool.submit(() -> emit(translate(entryClass, false))));
+        }
+        for (AbstractCvaClass cvaClass : program.getClassList())
+        {
+            if (selector.test(cvaClass.name()))
+            {
+                taskList.add(pool.submit(() -> emit(translate(cvaClass, false))));
+            }
+        }
+        Map<String, byte[]> classFileMap = new LinkedHashMap<>();
+        taskList.forEach(task -> classFileMap.putAll(task.join()));
+        return classFileMap;
+    }
+
+    /**
+     * 只翻译与窥孔, -i时交给IntermLangGenerator; 同时-ssa时每个类的SSA写进类名.ssa;
+     */
+    public TargetProgram translate(AbstractProgram program)
+    {
+        boolean dumpsSsa = context.getOptions().isSsa();
+        ForkJoinTask<TargetEntryClass> entryTask =
+                pool.submit(() -> translate(program.getEntryClass(), dumpsSsa));
+        List<ForkJoinTask<TargetClass>> taskList = new ArrayList<>();
+        for (AbstractCvaClass cvaClass : program.getClassList())
+        {
+            taskList.add(pool.submit(() -> translate(cvaClass, dumpsSsa)));
+        }
+        List<TargetClass> classList = new ArrayList<>(taskList.size());
+        taskList.forEach(task -> classList.add(task.join()));
+        return new TargetProgram(entryTask.join(), classList);
+    }
+
+    /**
+     * 每个类写一个il文件;
+     */
+    public void generateIntermLang(TargetProgram targetProgram)
+    {
+        List<ForkJoinTask<?>> taskList = new ArrayList<>();
+        taskList.add(pool.submit(() ->
+                new IntermLangGenerator(context).visit(targetProgram.getEntryClass())));
+        for (TargetClass targetClass : targetProgram.getClassList())
+        {
+            taskList.add(pool.submit(() -> new IntermLangGenerator(context).visit(targetClass)));
+        }
+        taskList.forEach(ForkJoinTask::join);
+    }
+
+    private TargetEntryClass translate(AbstractEntryClass entryClass, boolean dumpsSsa)
+    {
+        TargetEntryClass targetEntryClass;
+        if (context.getOptions().isSsa())
+        {
+            StringBuilder dump = new StringBuilder();
+            targetEntryClass = newSsaTranslator(dumpsSsa ? dump : null).translate(entryClass);
+            writeSsaDump(entryClass.name(), dump, dumpsSsa);
+        }
+        else
+        {
+            TranslatorVisitor translator = new TranslatorVisitor(context);
+            translator.visit(entryClass);
+            targetEntryClass = translator.getTargetEntryClass();
+        }
+        if (peepholeOptimizer != null)
+        {
+            peepholeOptimizer.optimize(targetEntryClass);
+        }
+        return targetEntryClass;
+    }
+
+    private TargetClass translate(AbstractCvaClass cvaClass, boolean dumpsSsa)
+    {
+        TargetClass targetClass;
+        if (context.getOptions().isSsa())
+        {
+            StringBuilder dump = new StringBuilder();
+            targetClass = newSsaTranslator(dumpsSsa ? dump : null).translate(cvaClass);
+            writeSsaDump(cvaClass.name(), dump, dumpsSsa);
+        }
+        else
+        {
+            TranslatorVisitor translator = new TranslatorVisitor(context);
+            translator.visit(cvaClass);
+            targetClass = translator.getTargetClass();
+        }
+        if (peepholeOptimizer != null)
+        {
+            peepholeOptimizer.optimize(targetClass);
+        }
+        return targetClass;
+    }
+
+    /**
+     * @param dump 不为null时各方法的SSA依次打进去;
+     */
+    private SsaTranslator newSsaTranslator(StringBuilder dump)
+    {
+        return dump == null
+                ? new SsaTranslator(context)
+                : new SsaTranslator(context, function -> dump.append(SsaPrinter.print(function)).append('\n'));
+    }
+
+    private void writeSsaDump(String className, StringBuilder dump, boolean dumpsSsa)
+    {
+        if (!dumpsSsa)
+        {
+            return;
+        }
+        File file = context.outputFile(className, "ssa");
+        try
+        {
+            Files.write(file.toPath(), dump.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException e)
+        {
+            throw context.abort(0, String.format("cannot write %s: %s", file, e.getMessage()));
+        }
+    }
+
+    private static Map<String, byte[]> emit(TargetEntryClass entryClass)
+    {
+        ClassFileGenerator generator = new ClassFileGenerator();
+        generator.visit(entryClass);
+        return generator.getClassFileMap();
+    }
+
+    private static Map<String, byte[]> emit(TargetClass targetClass)
+    {
+        ClassFileGenerator generator = new ClassFileGenerator();
+        generator.visit(targetClass);
+        return generator.getClassFileMap();
+    }
+}
@@ -0,0 +1,661 @@
+package cn.misection.cvac.codegen;
+
+import cn.misection.cvac.ast.StackSegment;
+import cn.misection.cvac.ast.clas.AbstractCvaClass;
+import cn.misection.cvac.ast.decl.AbstractDeclaration;
+import cn.misection.cvac.ast.decl.nullptr.CvaNullDecl;
+import cn.misection.cvac.ast.entry.AbstractEntryClass;
+import cn.misection.cvac.ast.method.AbstractMethod;
+import cn.misection.cvac.ast.type.ICvaType;
+import cn.misection.cvac.ast.type.advance.CvaStringType;
+import cn.misection.cvac.ast.type.basic.EnumCvaType;
+import cn.misection.cvac.ast.type.reference.CvaClassType;
+import cn.misection.cvac.codegen.bst.Label;
+import cn.misection.cvac.codegen.bst.bclas.TargetClass;
+import cn.misection.cvac.codegen.bst.bdecl.TargetDeclaration;
+import cn.misection.cvac.codegen.bst.bentry.TargetEntryClass;
+import cn.misection.cvac.codegen.bst.bmethod.TargetMethod;
+import cn.misection.cvac.codegen.bst.btype.ITargetType;
+import cn.misection.cvac.codegen.bst.btype.advance.TargetStringType;
+import cn.misection.cvac.codegen.bst.btype.basic.EnumTargetType;
+import cn.misection.cvac.codegen.bst.btype.reference.TargetClassType;
+import cn.misection.cvac.codegen.bst.instructor.*;
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.ssa.*;
+import cn.misection.cvac.ssa.value.*;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaTranslator
+ * @Description TranslatorVisitor的替代: 每个方法先经SsaBuilder建SSA并校验, 再从SSA生成指令;
+ * 块按逆后序排, 落到下一块的跳转省掉; 同块内只读一次且挪过去不越过冲突副作用的值直接留在栈上,
+ * 块末给后继phi拷的值也算同块的读,
+ * 其余的值各占一个slot, phi在前驱末尾先把各值都压栈再倒着存, 相当于并行拷贝;
+ * 没有pop指令, 没人读的调用结果存进一个丢弃用的slot; 最后仍由LocalSlotAllocator合并slot;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaTranslator
+{
+    /**
+     * 往后找冲突时最多看这么多条, 再远就不留在栈上;
+     */
+    private static final int STACK_WINDOW = 64;
+
+    private final CompilationContext context;
+
+    private final LocalSlotAllocator slotAllocator = new LocalSlotAllocator();
+
+    /**
+     * 调试用, 不为null时每个方法的SSA在生成前交给它;
+     */
+    private final Consumer<SsaFunction> dumper;
+
+    private List<IInstructor> linearInstrList;
+
+    private Map<SsaValue, Integer> slotMap;
+
+    private Set<SsaInstr> stackedSet;
+
+    private Map<SsaBlock, Label> labelMap;
+
+    /**
+     * 值的类型 -> 丢弃用的slot;
+     */
+    private Map<EnumSsaType, Integer> discardSlotMap;
+
+    private List<SsaBlock> layoutList;
+
+    private int nextSlot;
+
+    private String className;
+
+    public SsaTranslator(CompilationContext context)
+    {
+        this(context, null);
+    }
+
+    public SsaTranslator(CompilationContext context, Consumer<SsaFunction> dumper)
+    {
+        this.context = context;
+        this.dumper = dumper;
+    }
+
+    public TargetClass translate(AbstractCvaClass cvaClass)
+    {
+        List<TargetDeclaration> fieldList = declsOf(cvaClass.getFieldList());
+        List<TargetMethod> methodList = new ArrayList<>();
+        for (AbstractMethod method : cvaClass.getMethodList())
+        {
+            SsaFunction function = SsaBuilder.build(cvaClass.name(), method);
+            List<IInstructor> instrList = translate(function, false);
+            int maxLocals = slotAllocator.allocate(instrList, function.getParamList().size());
+            methodList.add(new TargetMethod(
+                    method.name(),
+                    targetTypeOf(method.getRetType()),
+                    cvaClass.name(),
+                    declsOf(method.getArgumentList()),
+                    declsOf(method.getLocalVarList()),
+                    instrList,
+                    0,
+                    maxLocals));
+        }
+        return new TargetClass(cvaClass.name(), cvaClass.parent(), fieldList, methodList);
+    }
+
+    public TargetEntryClass translate(AbstractEntryClass entryClass)
+    {
+        SsaFunction function = SsaBuilder.build(entryClass.name(), entryClass.getMainMethod());
+        List<IInstructor> instrList = translate(function, true);
+        // 静态main只有args占0号;
+        slotAllocator.allocate(instrList, function.getParamList().size());
+        return new TargetEntryClass(entryClass.name(), instrList);
+    }
+
+    private List<TargetDeclaration> declsOf(List<AbstractDeclaration> declList)
+    {
+        List<TargetDeclaration> targetList = new ArrayList<>();
+        for (AbstractDeclaration decl : declList)
+        {
+            if (!(decl instanceof CvaNullDecl))
+            {
+                targetList.add(new TargetDeclaration(decl.name(), targetTypeOf(decl.type())));
+            }
+        }
+        return targetList;
+    }
+
+    private static ITargetType targetTypeOf(ICvaType type)
+    {
+        if (type instanceof CvaClassType)
+        {
+            return new TargetClassType(((CvaClassType) type).getName());
+        }
+        if (type instanceof CvaStringType)
+        {
+            return new TargetStringType();
+        }
+        if (type == EnumCvaType.VOID)
+        {
+            return EnumTargetType.VOID;
+        }
+        if (type == EnumCvaType.INT || type == EnumCvaType.BOOLEAN)
+        {
+            return EnumTargetType.INT;
+        }
+        throw new IllegalStateException(String.format("no target type for %s", type));
+    }
+
+    /**
+     * main不生成返回, 由ClassFileGenerator在入口类末尾补上, 与TranslatorVisitor一致;
+     */
+    private List<IInstructor> translate(SsaFunction function, boolean isMain)
+    {
+        SsaVerifier.verify(function);
+        function.splitCriticalEdges();
+        if (dumper != null)
+        {
+            dumper.accept(function);
+        }
+        this.className = function.getClassName();
+        this.linearInstrList = new ArrayList<>();
+        this.slotMap = new IdentityHashMap<>();
+        this.stackedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.labelMap = new IdentityHashMap<>();
+        this.discardSlotMap = new EnumMap<>(EnumSsaType.class);
+        this.layoutList = function.reversePostOrder();
+        this.nextSlot = function.getParamList().size();
+        function.getParamList().forEach(param -> slotMap.put(param, param.getSlot()));
+
+        // 块内位置与各树的副作用按指令记, 整个方法共用;
+        Map<SsaInstr, Integer> positionMap = new IdentityHashMap<>();
+        Map<SsaInstr, Boolean> treeWritesMap = new IdentityHashMap<>();
+        Map<SsaInstr, Boolean> treeReadsMap = new IdentityHashMap<>();
+        layoutList.forEach(block -> stackify(block, positionMap, treeWritesMap, treeReadsMap));
+        collectLabels();
+        Label end = context.newLabel();
+        boolean endUsed = false;
+        for (int i = 0; i < layoutList.size(); i++)
+        {
+            SsaBlock block = layoutList.get(i);
+            Label label = labelMap.get(block);
+            if (label != null)
+            {
+                emit(new LabelJ(label));
+            }
+            for (SsaInstr instr : block.getInstrList())
+            {
+                if (instr.isTerminator())
+                {
+                    if (isMain && instr.toEnum() == EnumSsaOp.RETURN && i != layoutList.size() - 1)
+                    {
+                        emit(new Goto(end));
+                        endUsed = true;
+                        continue;
+                    }
+                    emitTerminator(block, i + 1 < layoutList.size() ? layoutList.get(i + 1) : null, instr, isMain);
+                }
+                else if (!stackedSet.contains(instr))
+                {
+                    emitRoot(instr);
+                }
+            }
+        }
+        if (endUsed)
+        {
+            emit(new LabelJ(end));
+        }
+        return linearInstrList;
+    }
+
+    private void emit(IInstructor instructor)
+    {
+        linearInstrList.add(instructor);
+    }
+
+    /**
+     * 只被同块里一条指令或块末的phi拷贝读一次, 且从定义挪到读的地方不越过与它冲突的副作用时, 留在栈上;
+     * 判断冲突时算上已经留在栈上的操作数, 它们随它一起挪;
+     */
+    private void stackify(SsaBlock block,
+                          Map<SsaInstr, Integer> positionMap,
+                          Map<SsaInstr, Boolean> treeWritesMap,
+                          Map<SsaInstr, Boolean> treeReadsMap)
+    {
+        List<SsaInstr> instrList = block.getInstrList();
+        for (int i = 0; i < instrList.size(); i++)
+        {
+            positionMap.put(instrList.get(i), i);
+        }
+        for (int i = 0; i < instrList.size(); i++)
+        {
+            SsaInstr instr = instrList.get(i);
+            boolean writes = instr.hasSideEffect();
+            boolean reads = readsHeap(instr);
+            for (SsaValue operand : instr.getOperandList())
+            {
+                if (operand instanceof SsaInstr && stackedSet.contains(operand))
+                {
+                    writes |= treeWritesMap.get(operand);
+                    reads |= treeReadsMap.get(operand);
+                }
+            }
+            treeWritesMap.put(instr, writes);
+            treeReadsMap.put(instr, reads);
+            if (instr.getType() == EnumSsaType.VOID || instr.getUserList().size() != 1)
+            {
+                continue;
+            }
+            SsaInstr user = instr.getUserList().get(0);
+            Integer userPos = user.toEnum() == EnumSsaOp.PHI
+                    ? phiCopyPosition(block, (SsaPhi) user)
+                    : user.getBlock() == block ? positionMap.get(user) : null;
+            if (userPos == null)
+            {
+                continue;
+            }
+            if (!writes && !reads)
+            {
+                stackedSet.add(instr);
+                continue;
+            }
+            if (userPos - i > STACK_WINDOW)
+            {
+                continue;
+            }
+            boolean conflicts = false;
+            for (int k = i + 1; k < userPos && !conflicts; k++)
+            {
+                SsaInstr between = instrList.get(k);
+                conflicts = between.hasSideEffect() && (writes || reads)
+                        || readsHeap(between) && writes;
+            }
+            if (!conflicts)
+            {
+                stackedSet.add(instr);
+            }
+        }
+    }
+
+    /**
+     * phi的拷贝在前驱末尾, 跳转之前;
+     *
+     * @return 本块末尾给user拷值时在块里的位置, 不在本块拷时为null;
+     */
+    private static Integer phiCopyPosition(SsaBlock block, SsaPhi user)
+    {
+        SsaInstr terminator = block.getTerminator();
+        if (terminator.toEnum() != EnumSsaOp.JUMP || ((SsaJump) terminator).getTarget() != user.getBlock())
+        {
+            return null;
+        }
+        return block.getInstrList().size() - 1;
+    }
+
+    private static boolean readsHeap(SsaInstr instr)
+    {
+        return instr.toEnum() == EnumSsaOp.GET_FIELD;
+    }
+
+    /**
+     * 只给不能落到下一块的跳转目标建label;
+     */
+    private void collectLabels()
+    {
+        for (int i = 0; i < layoutList.size(); i++)
+        {
+            SsaBlock next = i + 1 < layoutList.size() ? layoutList.get(i + 1) : null;
+            SsaInstr terminator = layoutList.get(i).getTerminator();
+            if (terminator.toEnum() == EnumSsaOp.JUMP)
+            {
+                SsaBlock target = ((SsaJump) terminator).getTarget();
+                if (target != next)
+                {
+                    labelOf(target);
+                }
+            }
+            else if (terminator.toEnum() == EnumSsaOp.BRANCH)
+            {
+                SsaBranch branch = (SsaBranch) terminator;
+                // 与emitTerminator()的取舍一致;
+                if (branch.getIfTrue() != next)
+                {
+                    labelOf(branch.getIfTrue());
+                }
+                if (branch.getIfFalse() != next)
+                {
+                    labelOf(branch.getIfFalse());
+                }
+            }
+        }
+    }
+
+    private Label labelOf(SsaBlock block)
+    {
+        return labelMap.computeIfAbsent(block, b -> context.newLabel());
+    }
+
+    private int slotOf(SsaValue value)
+    {
+        return slotMap.computeIfAbsent(value, v -> nextSlot++);
+    }
+
+    private void load(SsaValue value)
+    {
+        if (value instanceof SsaConst)
+        {
+            SsaConst constant = (SsaConst) value;
+            if (constant.isInt())
+            {
+                emit(new Ldc<>(constant.intValue()));
+            }
+            else if (!constant.isUndef())
+            {
+                emit(new Ldc<>(String.format("\"%s\"", constant.stringValue())));
+            }
+            else if (constant.getType() == EnumSsaType.INT)
+            {
+                emit(new Ldc<>(0));
+            }
+            else
+            {
+                // 读没赋过值的引用, 与TranslatorVisitor一样读一个没存过的slot;
+                emit(new ALoad(slotOf(constant)));
+            }
+            return;
+        }
+        if (value instanceof SsaInstr && stackedSet.contains(value))
+        {
+            if (!StackSegment.enter())
+            {
+                // 栈上的表达式树太深, 换一段新栈继续;
+                StackSegment.spill(() -> load(value));
+                return;
+            }
+            try
+            {
+                emitTree((SsaInstr) value);
+            }
+            finally
+            {
+                StackSegment.exit();
+            }
+            return;
+        }
+        int slot = slotOf(value);
+        emit(value.getType() == EnumSsaType.INT ? new ILoad(slot) : new ALoad(slot));
+    }
+
+    private void store(SsaValue value, int slot)
+    {
+        emit(value.getType() == EnumSsaType.INT ? new IStore(slot) : new AStore(slot));
+    }
+
+    /**
+     * 不在栈上的指令: 有人读就存进自己的slot, 没人读时纯计算整个不生成, 有副作用的结果丢掉;
+     */
+    private void emitRoot(SsaInstr instr)
+    {
+        if (instr.getType() == EnumSsaType.VOID)
+        {
+            emitTree(instr);
+            return;
+        }
+        if (!instr.getUserList().isEmpty())
+        {
+            emitTree(instr);
+            store(instr, slotOf(instr));
+            return;
+        }
+        if (instr.hasSideEffect())
+        {
+            emitTree(instr);
+            // 没有pop, 存进每个方法各一个的丢弃slot;
+            store(instr, discardSlotMap.computeIfAbsent(instr.getType(), type -> nextSlot++));
+        }
+    }
+
+    private void emitTree(SsaInstr instr)
+    {
+        switch (instr.toEnum())
+        {
+            case BINARY:
+            {
+                SsaBinary binary = (SsaBinary) instr;
+                load(binary.getLeft());
+                load(binary.getRight());
+                emit(binary.getOperandType());
+                emit(binary.getOperator());
+                break;
+            }
+            case LESS_THAN:
+            {
+                // 要值时仍借助跳转算出0/1;
+                SsaLessThan lessThan = (SsaLessThan) instr;
+                Label f = context.newLabel();
+                Label r = context.newLabel();
+                load(lessThan.getLeft());
+                load(lessThan.getRight());
+                emit(new IfJump(EnumCondition.I_CMP_GE, f));
+                emit(new Ldc<>(1));
+                emit(new Goto(r));
+                emit(new LabelJ(f));
+                emit(new Ldc<>(0));
+                emit(new LabelJ(r));
+                break;
+            }
+            case NOT:
+            {
+                load(((SsaNot) instr).getValue());
+                emit(new Ldc<>(1));
+                emit(EnumOperandType.INT);
+                emit(EnumOperator.BIT_XOR);
+                break;
+            }
+            case CALL:
+            {
+                SsaCall call = (SsaCall) instr;
+                call.getOperandList().forEach(this::load);
+                List<ITargetType> argTypeList = new ArrayList<>();
+                call.getArgTypeList().forEach(argType -> argTypeList.add(targetTypeOf(argType)));
+                emit(new InvokeVirtual(
+                        call.getFuncName(),
+                        call.getClassName(),
+                        argTypeList,
+                        targetTypeOf(call.getRetType())));
+                break;
+            }
+            case NEW:
+            {
+                emit(new New(((SsaNew) instr).getNewClassName()));
+                break;
+            }
+            case GET_FIELD:
+            {
+                SsaGetField getField = (SsaGetField) instr;
+                load(getField.getOperand(0));
+                emit(new GetField(fieldSpecOf(getField.getFieldName()),
+                        descriptorOf(getField.getFieldType())));
+                break;
+            }
+            case PUT_FIELD:
+            {
+                SsaPutField putField = (SsaPutField) instr;
+                load(putField.getOperand(0));
+                load(putField.getValue());
+                emit(new PutField(fieldSpecOf(putField.getFieldName()),
+                        descriptorOf(putField.getFieldType())));
+                break;
+            }
+            case WRITE:
+            {
+                SsaWrite write = (SsaWrite) instr;
+                load(write.getValue());
+                emit(new WriteInstructor(write.getWriteMode(), write.getWriteType().toTarget()));
+                break;
+            }
+            default:
+            {
+                throw new IllegalStateException(String.format("cannot emit %s as a value", instr.toEnum()));
+            }
+        }
+    }
+
+    private String fieldSpecOf(String fieldName)
+    {
+        return String.format("%s/%s", className, fieldName);
+    }
+
+    private static String descriptorOf(ICvaType type)
+    {
+        return type instanceof CvaClassType
+                ? String.format("L%s;", ((CvaClassType) type).getName())
+                : "I";
+    }
+
+    /**
+     * @param next 排在block后面的块, 没有时为null;
+     */
+    private void emitTerminator(SsaBlock block, SsaBlock next, SsaInstr terminator, boolean isMain)
+    {
+        switch (terminator.toEnum())
+        {
+            case JUMP:
+            {
+                SsaBlock target = ((SsaJump) terminator).getTarget();
+                emitPhiCopies(block, target);
+                if (target != next)
+                {
+                    emit(new Goto(labelOf(target)));
+                }
+                break;
+            }
+            case BRANCH:
+            {
+                SsaBranch branch = (SsaBranch) terminator;
+                if (!branch.getIfTrue().getPhiList().isEmpty() || !branch.getIfFalse().getPhiList().isEmpty())
+                {
+                    throw new IllegalStateException(String.format("critical edge left at %s", block.name()));
+                }
+                if (branch.getIfTrue() == next)
+                {
+                    emitBranch(branch.getCondition(), labelOf(branch.getIfFalse()), false);
+                }
+                else
+                {
+                    emitBranch(branch.getCondition(), labelOf(branch.getIfTrue()), true);
+                    if (branch.getIfFalse() != next)
+                    {
+                        emit(new Goto(labelOf(branch.getIfFalse())));
+                    }
+                }
+                break;
+            }
+            case RETURN:
+            {
+                emitReturn((SsaReturn) terminator, isMain);
+                break;
+            }
+            default:
+            {
+                throw new IllegalStateException(String.format("%s is not a terminator", terminator.toEnum()));
+            }
+        }
+    }
+
+    /**
+     * @param jumpWhen 条件为该值时跳, 否则落到下一块;
+     */
+    private void emitBranch(SsaValue cond, Label target, boolean jumpWhen)
+    {
+        if (cond instanceof SsaInstr && stackedSet.contains(cond))
+        {
+            SsaInstr instr = (SsaInstr) cond;
+            if (instr.toEnum() == EnumSsaOp.LESS_THAN)
+            {
+                load(instr.getOperand(0));
+                load(instr.getOperand(1));
+                emit(new IfJump(jumpWhen ? EnumCondition.I_CMP_LT : EnumCondition.I_CMP_GE, target));
+                return;
+            }
+            if (instr.toEnum() == EnumSsaOp.NOT)
+            {
+                if (!StackSegment.enter())
+                {
+                    // 取反套得太深, 换一段新栈继续;
+                    StackSegment.spill(() -> emitBranch(instr.getOperand(0), target, !jumpWhen));
+                    return;
+                }
+                try
+                {
+                    emitBranch(instr.getOperand(0), target, !jumpWhen);
+                }
+                finally
+                {
+                    StackSegment.exit();
+                }
+                return;
+            }
+        }
+        if (cond instanceof SsaConst && ((SsaConst) cond).isInt())
+        {
+            if ((((SsaConst) cond).intValue() != 0) == jumpWhen)
+            {
+                emit(new Goto(target));
+            }
+            return;
+        }
+        load(cond);
+        emit(new IfJump(jumpWhen ? EnumCondition.NE : EnumCondition.EQ, target));
+    }
+
+    /**
+     * 先把各phi要的值都压栈, 再倒着存, 一个phi的新值不会在读另一个的旧值之前写进去;
+     * 没赋过值的引用不拷, 免得读没存过的slot;
+     */
+    private void emitPhiCopies(SsaBlock block, SsaBlock target)
+    {
+        List<SsaPhi> phiList = target.getPhiList();
+        if (phiList.isEmpty())
+        {
+            return;
+        }
+        int predIndex = target.getPredList().indexOf(block);
+        List<SsaPhi> copyList = new ArrayList<>(phiList.size());
+        for (SsaPhi phi : phiList)
+        {
+            SsaValue value = phi.getOperand(predIndex);
+            boolean skip = value == phi
+                    || value instanceof SsaConst && ((SsaConst) value).isUndef() && value.getType() == EnumSsaType.REF;
+            if (!skip)
+            {
+                copyList.add(phi);
+                load(value);
+            }
+        }
+        for (int i = copyList.size() - 1; i >= 0; i--)
+        {
+            store(copyList.get(i), slotOf(copyList.get(i)));
+        }
+    }
+
+    private void emitReturn(SsaReturn ret, boolean isMain)
+    {
+        if (isMain)
+        {
+            return;
+        }
+        SsaValue value = ret.getValue();
+        if (value == null)
+        {
+            emit(EnumOperandType.VOID);
+            emit(EnumOperator.RETURN);
+            return;
+        }
+        load(value);
+        emit(value.getType() == EnumSsaType.INT ? EnumInstructor.I_RETURN : EnumInstructor.A_RETURN);
+    }
+}
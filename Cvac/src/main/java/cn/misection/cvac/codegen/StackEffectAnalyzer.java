@@ -0,0 +1,445 @@
+package cn.misection.cvac.codegen;
+
+import cn.misection.cvac.codegen.bst.IBackendVisitor;
+import cn.misection.cvac.codegen.bst.Label;
+import cn.misection.cvac.codegen.bst.bclas.TargetClass;
+import cn.misection.cvac.codegen.bst.bdecl.TargetDeclaration;
+import cn.misection.cvac.codegen.bst.bentry.TargetEntryClass;
+import cn.misection.cvac.codegen.bst.bmethod.TargetMethod;
+import cn.misection.cvac.codegen.bst.bprogram.TargetProgram;
+import cn.misection.cvac.codegen.bst.btype.ITargetType;
+import cn.misection.cvac.codegen.bst.btype.advance.BaseAdvanceType;
+import cn.misection.cvac.codegen.bst.btype.basic.EnumTargetType;
+import cn.misection.cvac.codegen.bst.btype.reference.BaseReferenceType;
+import cn.misection.cvac.codegen.bst.instructor.*;
+
+import java.util.*;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName StackEffectAnalyzer
+ * @Description 按每条指令的出入栈数沿顺序与跳转走一遍指令表,
+ * 算出准确的max stack与max locals, 同一位置栈高不一致时编译期就报错;
+ * 访问一个TargetMethod或TargetEntryClass后取结果;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+@SuppressWarnings("rawtypes")
+public final class StackEffectAnalyzer implements IBackendVisitor
+{
+    private static final int UNKNOWN = -1;
+
+    private int maxStack;
+
+    private int maxLocals;
+
+    /**
+     * 当前指令的效果, 由各visit填写;
+     */
+    private int pops;
+
+    private int pushes;
+
+    /**
+     * 指令执行过程中相对入口栈高的最高点, 如new后紧跟dup;
+     */
+    private int peakGain;
+
+    private Label branchLabel;
+
+    private boolean terminal;
+
+    private int localEnd;
+
+    private String operandPrefix = "";
+
+    /**
+     * 类型占的slot数, long与double占2个;
+     */
+    private static int slotsOf(ITargetType type)
+    {
+        switch (type.toEnum())
+        {
+            case VOID:
+            {
+                return 0;
+            }
+            case LONG:
+            case DOUBLE:
+            {
+                return 2;
+            }
+            default:
+            {
+                return 1;
+            }
+        }
+    }
+
+    /**
+     * 按描述符首字母;
+     */
+    private static int slotsOf(String descriptor)
+    {
+        switch (descriptor.charAt(0))
+        {
+            case 'V':
+            {
+                return 0;
+            }
+            case 'J':
+            case 'D':
+            {
+                return 2;
+            }
+            default:
+            {
+                return 1;
+            }
+        }
+    }
+
+    private void effect(int pops, int pushes)
+    {
+        this.pops = pops;
+        this.pushes = pushes;
+        this.peakGain = Math.max(0, pushes - pops);
+    }
+
+    private void local(int index, int slots)
+    {
+        localEnd = index + slots;
+    }
+
+    private void analyze(String owner, List<IInstructor> instrList, int paramSlots)
+    {
+        maxStack = 0;
+        maxLocals = paramSlots;
+        operandPrefix = "";
+        int size = instrList.size();
+        if (size == 0)
+        {
+            return;
+        }
+        Map<Label, Integer> labelIndexMap = new IdentityHashMap<>();
+        for (int i = 0; i < size; i++)
+        {
+            IInstructor instructor = instrList.get(i);
+            if (instructor instanceof LabelJ)
+            {
+                labelIndexMap.put(((LabelJ) instructor).getLabel(), i);
+            }
+        }
+
+        int[] heights = new int[size];
+        Arrays.fill(heights, UNKNOWN);
+        Deque<Integer> worklist = new ArrayDeque<>();
+        heights[0] = 0;
+        worklist.push(0);
+        while (!worklist.isEmpty())
+        {
+            int i = worklist.pop();
+            int height = heights[i];
+            // 沿直线代码往下走, 遇到已知位置或终结指令停;
+            while (true)
+            {
+                pops = 0;
+                pushes = 0;
+                peakGain = 0;
+                branchLabel = null;
+                terminal = false;
+                localEnd = 0;
+                visit(instrList.get(i));
+                if (height < pops)
+                {
+                    throw new IllegalStateException(String.format(
+                            "%s: stack underflow at instruction %d", owner, i));
+                }
+                maxStack = Math.max(maxStack, height + peakGain);
+                maxLocals = Math.max(maxLocals, localEnd);
+                height = height - pops + pushes;
+                maxStack = Math.max(maxStack, height);
+
+                if (branchLabel != null)
+                {
+                    Integer target = labelIndexMap.get(branchLabel);
+                    if (target == null)
+                    {
+                        throw new IllegalStateException(String.format(
+                                "%s: undefined label %s", owner, branchLabel));
+                    }
+                    if (merge(owner, heights, target, height))
+                    {
+                        worklist.push(target);
+                    }
+                }
+                if (terminal || ++i == size)
+                {
+                    break;
+                }
+                if (!merge(owner, heights, i, height))
+                {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 第一次到达该位置, 需要继续往下走;
+     */
+    private static boolean merge(String owner, int[] heights, int index, int height)
+    {
+        if (heights[index] == UNKNOWN)
+        {
+            heights[index] = height;
+            return true;
+        }
+        if (heights[index] != height)
+        {
+            throw new IllegalStateException(String.format(
+                    "%s: inconsistent stack height at instruction %d: %d vs %d",
+                    owner, index, heights[index], height));
+        }
+        return false;
+    }
+
+    public int getMaxStack()
+    {
+        return maxStack;
+    }
+
+    public int getMaxLocals()
+    {
+        return maxLocals;
+    }
+
+    @Override
+    public void visit(EnumTargetType type) {}
+
+    @Override
+    public void visit(BaseAdvanceType type) {}
+
+    @Override
+    public void visit(BaseReferenceType type) {}
+
+    @Override
+    public void visit(TargetDeclaration decl) {}
+
+    @Override
+    public void visit(EnumInstructor instructor)
+    {
+        switch (instructor)
+        {
+            case A_RETURN:
+            case I_RETURN:
+            {
+                effect(1, 0);
+                terminal = true;
+                break;
+            }
+            case DUP:
+            {
+                effect(1, 2);
+                break;
+            }
+            default:
+            {
+                // 其余带助记符的都是int二元运算;
+                effect(2, 1);
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void visit(EnumOperandType instructor)
+    {
+        operandPrefix = instructor.toInst();
+    }
+
+    @Override
+    public void visit(EnumOperator instructor)
+    {
+        int slots = "l".equals(operandPrefix) || "d".equals(operandPrefix) ? 2 : 1;
+        switch (instructor)
+        {
+            case RETURN:
+            {
+                effect(operandPrefix.isEmpty() ? 0 : slots, 0);
+                terminal = true;
+                break;
+            }
+            case BIT_NEG:
+            {
+                effect(slots, slots);
+                break;
+            }
+            case LEFT_SHIFT:
+            case RIGHT_SHIFT:
+            case UNSIGNED_RIGHT_SHIFT:
+            {
+                // 移位数总是int;
+                effect(slots + 1, slots);
+                break;
+            }
+            default:
+            {
+                effect(slots * 2, slots);
+                break;
+            }
+        }
+        operandPrefix = "";
+    }
+
+    @Override
+    public void visit(ALoad instructor)
+    {
+        effect(0, 1);
+        local(instructor.getIndex(), 1);
+    }
+
+    @Override
+    public void visit(AStore instructor)
+    {
+        effect(1, 0);
+        local(instructor.getIndex(), 1);
+    }
+
+    @Override
+    public void visit(Goto instructor)
+    {
+        branchLabel = instructor.getLabel();
+        terminal = true;
+    }
+
+    @Override
+    public void visit(GetField instructor)
+    {
+        effect(1, slotsOf(instructor.getDescriptor()));
+    }
+
+    @Override
+    public void visit(GetStatic instructor)
+    {
+        effect(0, slotsOf(instructor.getDescriptor()));
+    }
+
+    @Override
+    public void visit(IfICmpLt instructor)
+    {
+        effect(2, 0);
+        branchLabel = instructor.getLabel();
+    }
+
+    @Override
+    public void visit(IfJump instructor)
+    {
+        effect(instructor.getCondition().operandCount(), 0);
+        branchLabel = instructor.getLabel();
+    }
+
+    @Override
+    public void visit(ILoad instructor)
+    {
+        effect(0, 1);
+        local(instructor.getIndex(), 1);
+    }
+
+    @Override
+    public void visit(InvokeVirtual instructor)
+    {
+        int argSlots = 0;
+        for (ITargetType argType : instructor.getArgTypeList())
+        {
+            argSlots += slotsOf(argType);
+        }
+        effect(1 + argSlots, slotsOf(instructor.getRetType()));
+    }
+
+    @Override
+    public void visit(IStore instructor)
+    {
+        effect(1, 0);
+        local(instructor.getIndex(), 1);
+    }
+
+    @Override
+    public void visit(LabelJ instructor) {}
+
+    @Override
+    public void visit(Ldc instructor)
+    {
+        effect(0, 1);
+    }
+
+    @Override
+    public void visit(New instructor)
+    {
+        // new, dup, invokespecial <init>;
+        effect(0, 1);
+        peakGain = 2;
+    }
+
+    @Override
+    public void visit(WriteInstructor instructor)
+    {
+        if (instructor.isStreamLoaded())
+        {
+            // out已在值下面, 只剩invokevirtual print;
+            effect(1 + slotsOf(instructor.getWriteType()), 0);
+            return;
+        }
+        // getstatic out, swap, invokevirtual print;
+        effect(slotsOf(instructor.getWriteType()), 0);
+        peakGain = 1;
+    }
+
+    @Override
+    public void visit(PutField instructor)
+    {
+        effect(1 + slotsOf(instructor.getDescriptor()), 0);
+    }
+
+    @Override
+    public void visit(IInc instructor)
+    {
+        local(instructor.getIndex(), 1);
+    }
+
+    @Override
+    public void visit(TargetMethod targetMethod)
+    {
+        // this;
+        int paramSlots = 1;
+        for (TargetDeclaration formal : targetMethod.getFormalList())
+        {
+            paramSlots += slotsOf(formal.getType());
+        }
+        analyze(String.format("%s.%s", targetMethod.getClassName(), targetMethod.getName()),
+                targetMethod.getStatementList(),
+                paramSlots);
+    }
+
+    @Override
+    public void visit(TargetEntryClass entryClass)
+    {
+        // 静态main只有args, 末尾的return由生成器补;
+        analyze(String.format("%s.main", entryClass.getName()),
+                entryClass.getStatementList(),
+                1);
+    }
+
+    @Override
+    public void visit(TargetClass targetClass)
+    {
+        targetClass.getMethodList().forEach(this::visit);
+    }
+
+    @Override
+    public void visit(TargetProgram targetProgram)
+    {
+        visit(targetProgram.getEntryClass());
+        targetProgram.getClassList().forEach(this::visit);
+    }
+}
@@ -1,10 +1,14 @@
 package cn.misection.cvac.codegen;
 
 import cn.misection.cvac.ast.IVisitor;
+import cn.misection.cvac.ast.StackSegment;
 import cn.misection.cvac.ast.clas.CvaClass;
+import cn.misection.cvac.ast.decl.AbstractDeclaration;
 import cn.misection.cvac.ast.decl.CvaDeclaration;
+import cn.misection.cvac.ast.decl.nullptr.CvaNullDecl;
 import cn.misection.cvac.ast.entry.CvaEntryClass;
 import cn.misection.cvac.ast.expr.AbstractExpression;
+import cn.misection.cvac.ast.expr.EnumCvaExpr;
 import cn.misection.cvac.ast.expr.nonterminal.binary.*;
 import cn.misection.cvac.ast.expr.terminator.*;
 import cn.misection.cvac.ast.expr.nonterminal.unary.*;
@@ -29,6 +33,7 @@ import cn.misection.cvac.codegen.bst.btype.advance.TargetStringType;
 import cn.misection.cvac.codegen.bst.btype.basic.EnumTargetType;
 import cn.misection.cvac.codegen.bst.btype.reference.TargetClassType;
 import cn.misection.cvac.codegen.bst.instructor.*;
+import cn.misection.cvac.context.CompilationContext;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -54,8 +59,21 @@ public final class TranslatorVisitor implements IVisitor
     private TargetEntryClass targetEntryClass;
     private TargetProgram targetProgram;
 
+    private final LocalSlotAllocator slotAllocator = new LocalSlotAllocator();
+
+    /**
+     * label从本次编译的上下文取号;
+     */
+    private final CompilationContext context;
+
     public TranslatorVisitor()
     {
+        this(new CompilationContext());
+    }
+
+    public TranslatorVisitor(CompilationContext context)
+    {
+        this.context = context;
         this.className = null;
         this.indexMap = null;
         this.targetType = null;
@@ -72,6 +90,99 @@ public final class TranslatorVisitor implements IVisitor
         linearInstrList.add(instruction);
     }
 
+    /**
+     * 条件按控制流翻译, 直接跳转而不先算出0/1;
+     *
+     * @param cond 条件表达式;
+     * @param target 跳转目标;
+     * @param jumpWhen 条件为该值时跳, 否则顺序往下走;
+     */
+    private void branch(AbstractExpression cond, Label target, boolean jumpWhen)
+    {
+        if (!StackSegment.enter())
+        {
+            // 嵌套太深, 换一段新栈继续;
+            StackSegment.spill(() -> branch(cond, target, jumpWhen));
+            return;
+        }
+        try
+        {
+            switch (cond.toEnum())
+            {
+                case LESS_OR_MORE_THAN:
+                {
+                    CvaLessOrMoreThanExpr expr = (CvaLessOrMoreThanExpr) cond;
+                    visit(expr.getLeft());
+                    visit(expr.getRight());
+                    emit(new IfJump(jumpWhen
+                            ? EnumCondition.I_CMP_LT
+                            : EnumCondition.I_CMP_GE, target));
+                    break;
+                }
+                case AND_AND:
+                {
+                    CvaAndAndExpr expr = (CvaAndAndExpr) cond;
+                    if (jumpWhen)
+                    {
+                        // 左边为假时短路, 越过右边;
+                        Label skip = context.newLabel();
+                        branch(expr.getLeft(), skip, false);
+                        branch(expr.getRight(), target, true);
+                        emit(new LabelJ(skip));
+                    }
+                    else
+                    {
+                        branch(expr.getLeft(), target, false);
+                        branch(expr.getRight(), target, false);
+                    }
+                    break;
+                }
+                case NEGATE:
+                {
+                    branch(((CvaNegateExpr) cond).getExpr(), target, !jumpWhen);
+                    break;
+                }
+                case CONST_TRUE:
+                case CONST_FALSE:
+                {
+                    if ((cond.toEnum() == EnumCvaExpr.CONST_TRUE) == jumpWhen)
+                    {
+                        emit(new Goto(target));
+                    }
+                    break;
+                }
+                default:
+                {
+                    // 其余都是值为0/1的int;
+                    visit(cond);
+                    emit(new IfJump(jumpWhen
+                            ? EnumCondition.NE
+                            : EnumCondition.EQ, target));
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            StackSegment.exit();
+        }
+    }
+
+    /**
+     * 需要布尔值时, 仍借助跳转算出0/1;
+     */
+    private void emitBooleanValue(AbstractExpression cond)
+    {
+        Label f = context.newLabel();
+        Label r = context.newLabel();
+        branch(cond, f, false);
+        emit(new Ldc<>(1));
+        emit(new Goto(r));
+        emit(new LabelJ(f));
+        emit(new Ldc<>(0));
+        emit(new LabelJ(r));
+    }
+
 
     @Override
     public void visit(CvaClassType type)
@@ -125,22 +236,23 @@ public final class TranslatorVisitor implements IVisitor
         }
     }
 
+    /**
+     * 解析器用CvaNullDecl占位, visit时什么都不做, 不能把上一个targetDecl再加一遍;
+     */
+    private void collectDecl(AbstractDeclaration decl, List<TargetDeclaration> declList)
+    {
+        if (decl instanceof CvaNullDecl)
+        {
+            return;
+        }
+        visit(decl);
+        declList.add(this.targetDecl);
+    }
+
     @Override
     public void visit(CvaAndAndExpr expr)
     {
-        Label f = new Label();
-        Label r = new Label();
-        visit(expr.getLeft());
-        emit(new Ldc<>(1));
-        emit(new IfICmpLt(f));
-        visit(expr.getRight());
-        emit(new Ldc<>(1));
-        emit(new IfICmpLt(f));
-        emit(new Ldc<>(1));
-        emit(new Goto(r));
-        emit(new LabelJ(f));
-        emit(new Ldc<>(0));
-        emit(new LabelJ(r));
+        emitBooleanValue(expr);
     }
 
     @Override
@@ -210,16 +322,7 @@ public final class TranslatorVisitor implements IVisitor
     @Override
     public void visit(CvaLessOrMoreThanExpr expr)
     {
-        Label t = new Label();
-        Label r = new Label();
-        visit(expr.getLeft());
-        visit(expr.getRight());
-        emit(new IfICmpLt(t));
-        emit(new Ldc<>(0));
-        emit(new Goto(r));
-        emit(new LabelJ(t));
-        emit(new Ldc<>(1));
-        emit(new LabelJ(r));
+        emitBooleanValue(expr);
     }
 
     @Override
@@ -231,16 +334,7 @@ public final class TranslatorVisitor implements IVisitor
     @Override
     public void visit(CvaNegateExpr expr)
     {
-        Label f = new Label();
-        Label r = new Label();
-        visit(expr.getExpr());
-        emit(new Ldc<>(1));
-        emit(new IfICmpLt(f));
-        emit(new Ldc<>(1));
-        emit(new Goto(r));
-        emit(new LabelJ(f));
-        emit(new Ldc<>(0));
-        emit(new LabelJ(r));
+        emitBooleanValue(expr);
     }
 
     @Override
@@ -271,10 +365,12 @@ public final class TranslatorVisitor implements IVisitor
     @Override
     public void visit(CvaOperandOperatorExpr expr)
     {
-        visit(expr.getLeft());
-        visit(expr.getRight());
-        emit(expr.getInstType());
-        emit(expr.getInstOp());
+        // 后序正好是先算左右再运算的指令序;
+        walkOperandTree(expr, this::visit, node ->
+        {
+            emit(node.getInstType());
+            emit(node.getInstOp());
+        });
     }
 
     @Override
@@ -338,11 +434,9 @@ public final class TranslatorVisitor implements IVisitor
     @Override
     public void visit(CvaIfStatement stm)
     {
-        Label l = new Label();
-        Label r = new Label();
-        visit(stm.getCondition());
-        emit(new Ldc<>(1));
-        emit(new IfICmpLt(l));
+        Label l = context.newLabel();
+        Label r = context.newLabel();
+        branch(stm.getCondition(), l, false);
         visit(stm.getThenStatement());
         emit(new Goto(r));
         emit(new LabelJ(l));
@@ -401,18 +495,16 @@ public final class TranslatorVisitor implements IVisitor
     public void visit(CvaWhileForStatement stm)
     {
         visit(stm.getForInit());
-        // 条件体;
-        Label cond = new Label();
-        // 结束跳转;
-        Label end = new Label();
-        emit(new LabelJ(cond));
-        visit(stm.getCondition());
-        emit(new Ldc<>(1));
-        emit(new IfICmpLt(end));
+        // 条件放到循环体后面, 每轮只跳一次;
+        Label cond = context.newLabel();
+        // 循环体;
+        Label body = context.newLabel();
+        emit(new Goto(cond));
+        emit(new LabelJ(body));
         visit(stm.getBody());
         visit(stm.getAfterBody());
-        emit(new Goto(cond));
-        emit(new LabelJ(end));
+        emit(new LabelJ(cond));
+        branch(stm.getCondition(), body, true);
     }
 
     @Override
@@ -431,17 +523,9 @@ public final class TranslatorVisitor implements IVisitor
         ITargetType theRetType = this.targetType;
 
         List<TargetDeclaration> formalList = new ArrayList<>();
-        cvaMethod.getArgumentList().forEach(f ->
-        {
-            visit(f);
-            formalList.add(this.targetDecl);
-        });
+        cvaMethod.getArgumentList().forEach(f -> collectDecl(f, formalList));
         List<TargetDeclaration> localList = new ArrayList<>();
-        cvaMethod.getLocalVarList().forEach(l ->
-        {
-            visit(l);
-            localList.add(this.targetDecl);
-        });
+        cvaMethod.getLocalVarList().forEach(l -> collectDecl(l, localList));
         setLinearInstrList(new ArrayList<>());
         // 方法内的;
         cvaMethod.getStatementList().forEach(this::visit);
@@ -498,6 +582,8 @@ public final class TranslatorVisitor implements IVisitor
             }
         }
 
+        // 生命期不重叠的局部变量共用slot, this与参数不动;
+        this.index = slotAllocator.allocate(linearInstrList, formalList.size() + 1);
         targetMethod = new TargetMethod(
                 cvaMethod.name(),
                 theRetType,
@@ -518,21 +604,15 @@ public final class TranslatorVisitor implements IVisitor
         ITargetType theRetType = this.targetType;
 
         List<TargetDeclaration> formalList = new ArrayList<>();
-        mainMethod.getArgumentList().forEach(f ->
-        {
-            visit(f);
-            formalList.add(this.targetDecl);
-        });
+        mainMethod.getArgumentList().forEach(f -> collectDecl(f, formalList));
         List<TargetDeclaration> localList = new ArrayList<>();
-        mainMethod.getLocalVarList().forEach(l ->
-        {
-            visit(l);
-            localList.add(this.targetDecl);
-        });
+        mainMethod.getLocalVarList().forEach(l -> collectDecl(l, localList));
         this.linearInstrList = (new ArrayList<>());
         // 方法内的;
         mainMethod.getStatementList().forEach(this::visit);
 
+        // 静态main只有args占0号;
+        this.index = slotAllocator.allocate(linearInstrList, 1);
         targetMethod = new TargetMethod(
                 mainMethod.name(),
                 theRetType,
@@ -549,11 +629,7 @@ public final class TranslatorVisitor implements IVisitor
     {
         setClassName(cvaClass.name());
         List<TargetDeclaration> fieldList = new ArrayList<>();
-        cvaClass.getFieldList().forEach(f ->
-        {
-            visit(f);
-            fieldList.add(this.targetDecl);
-        });
+        cvaClass.getFieldList().forEach(f -> collectDecl(f, fieldList));
         List<TargetMethod> methodList = new ArrayList<>();
         cvaClass.getMethodList().forEach(m ->
         {
@@ -88,11 +88,21 @@ public interface IBackendVisitor
                 visit((GetField) instructor);
                 break;
             }
+            case Operator.GET_STATIC:
+            {
+                visit((GetStatic) instructor);
+                break;
+            }
             case Operator.IF_ICMP_LT:
             {
                 visit((IfICmpLt) instructor);
                 break;
             }
+            case Operator.IF_JUMP:
+            {
+                visit((IfJump) instructor);
+                break;
+            }
             case Operator.ILOAD:
             {
                 visit((ILoad) instructor);
@@ -174,8 +184,12 @@ public interface IBackendVisitor
 
     void visit(GetField instructor);
 
+    void visit(GetStatic instructor);
+
     void visit(IfICmpLt instructor);
 
+    void visit(IfJump instructor);
+
     void visit(ILoad instructor);
 
     void visit(InvokeVirtual instructor);
@@ -5,13 +5,14 @@ package cn.misection.cvac.codegen.bst;
  */
 public final class Label
 {
-    private static int globalLabelCount = 0;
-
     private final int instanceCount;
 
-    public Label()
+    /**
+     * 编号由CompilationContext.newLabel()给出, 一次编译内唯一;
+     */
+    public Label(int instanceCount)
     {
-        instanceCount = globalLabelCount++;
+        this.instanceCount = instanceCount;
     }
 
     @Override
@@ -0,0 +1,106 @@
+package cn.misection.cvac.codegen.bst.instructor;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName EnumCondition
+ * @Description JVM条件跳转的条件, 单操作数的与0或null比, 双操作数的两两比;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public enum EnumCondition implements Instructable
+{
+    /**
+     * 与0比较;
+     */
+    EQ("ifeq", 1),
+
+    NE("ifne", 1),
+
+    LT("iflt", 1),
+
+    GE("ifge", 1),
+
+    GT("ifgt", 1),
+
+    LE("ifle", 1),
+
+    /**
+     * 两个int比较;
+     */
+    I_CMP_EQ("if_icmpeq", 2),
+
+    I_CMP_NE("if_icmpne", 2),
+
+    I_CMP_LT("if_icmplt", 2),
+
+    I_CMP_GE("if_icmpge", 2),
+
+    I_CMP_GT("if_icmpgt", 2),
+
+    I_CMP_LE("if_icmple", 2),
+
+    /**
+     * 两个引用比较;
+     */
+    A_CMP_EQ("if_acmpeq", 2),
+
+    A_CMP_NE("if_acmpne", 2),
+
+    /**
+     * 与null比较;
+     */
+    NULL("ifnull", 1),
+
+    NON_NULL("ifnonnull", 1),
+    ;
+
+    private static final EnumCondition[] VALUES = values();
+
+    private final String instruction;
+
+    private final int operandCount;
+
+    EnumCondition(String instruction, int operandCount)
+    {
+        this.instruction = instruction;
+        this.operandCount = operandCount;
+    }
+
+    /**
+     * @return 条件取反后的跳转, 用于条件为假时跳;
+     */
+    public EnumCondition negate()
+    {
+        // 互为反条件的两个相邻排, 偶数位与奇数位成对;
+        return VALUES[ordinal() ^ 1];
+    }
+
+    /**
+     * 两个int比较而右边是0时, 换成与0比较的单操作数跳转;
+     *
+     * @return 对应条件, 不是int比较时为null;
+     */
+    public EnumCondition againstZero()
+    {
+        if (this.compareTo(I_CMP_EQ) < 0 || this.compareTo(I_CMP_LE) > 0)
+        {
+            return null;
+        }
+        // if_icmpeq到if_icmple与ifeq到ifle同序;
+        return VALUES[ordinal() - I_CMP_EQ.ordinal()];
+    }
+
+    /**
+     * @return 跳转时弹出的操作数个数;
+     */
+    public int operandCount()
+    {
+        return operandCount;
+    }
+
+    @Override
+    public String toInst()
+    {
+        return instruction;
+    }
+}
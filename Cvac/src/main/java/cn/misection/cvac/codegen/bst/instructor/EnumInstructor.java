@@ -21,10 +21,14 @@ public enum EnumInstructor implements IInstructor, Instructable
 
     GET_FIELD,
 
+    GET_STATIC,
+
     GOTO,
 
     IF_I_CMP_LT,
 
+    IF_JUMP,
+
     I_LOAD,
 
     INVOKE_VIRTUAL,
@@ -43,6 +47,8 @@ public enum EnumInstructor implements IInstructor, Instructable
 
     I_REM("irem"),
 
+    DUP("dup"),
+
     LABEL_J,
 
     /**
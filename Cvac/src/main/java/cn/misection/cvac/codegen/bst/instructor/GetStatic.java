@@ -0,0 +1,41 @@
+package cn.misection.cvac.codegen.bst.instructor;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName GetStatic
+ * @Description 取静态域, 如System.out;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class GetStatic extends BaseInstructor
+{
+    private String fieldSpec;
+
+    private String descriptor;
+
+    public GetStatic(String fieldSpec, String descriptor)
+    {
+        this.fieldSpec = fieldSpec;
+        this.descriptor = descriptor;
+    }
+
+    public String getFieldSpec()
+    {
+        return fieldSpec;
+    }
+
+    public void setFieldSpec(String fieldSpec)
+    {
+        this.fieldSpec = fieldSpec;
+    }
+
+    public String getDescriptor()
+    {
+        return descriptor;
+    }
+
+    public void setDescriptor(String descriptor)
+    {
+        this.descriptor = descriptor;
+    }
+}
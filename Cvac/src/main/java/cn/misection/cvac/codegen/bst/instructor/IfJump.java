@@ -0,0 +1,43 @@
+package cn.misection.cvac.codegen.bst.instructor;
+
+import cn.misection.cvac.codegen.bst.Label;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName IfJump
+ * @Description 条件成立时跳到label, 覆盖if_icmpge, ifeq等全部条件跳转;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class IfJump extends BaseInstructor
+{
+    private EnumCondition condition;
+
+    private Label label;
+
+    public IfJump(EnumCondition condition, Label label)
+    {
+        this.condition = condition;
+        this.label = label;
+    }
+
+    public EnumCondition getCondition()
+    {
+        return condition;
+    }
+
+    public void setCondition(EnumCondition condition)
+    {
+        this.condition = condition;
+    }
+
+    public Label getLabel()
+    {
+        return label;
+    }
+
+    public void setLabel(Label label)
+    {
+        this.label = label;
+    }
+}
@@ -20,12 +20,24 @@ public final class WriteInstructor extends BaseInstructor
      */
     private EnumTargetType writeType;
 
+    /**
+     * System.out已经先于值压栈, 不需要再getstatic与swap;
+     */
+    private boolean streamLoaded;
+
     public WriteInstructor(EnumWriteMode writeMode, EnumTargetType writeType)
     {
         this.writeMode = writeMode;
         this.writeType = writeType;
     }
 
+    public WriteInstructor(EnumWriteMode writeMode, EnumTargetType writeType, boolean streamLoaded)
+    {
+        this.writeMode = writeMode;
+        this.writeType = writeType;
+        this.streamLoaded = streamLoaded;
+    }
+
     public String requireInvoke()
     {
         return String.format("%s(%s)V", writeMode.toInst(), writeType.toInst());
@@ -50,4 +62,14 @@ public final class WriteInstructor extends BaseInstructor
     {
         this.writeType = writeType;
     }
+
+    public boolean isStreamLoaded()
+    {
+        return streamLoaded;
+    }
+
+    public void setStreamLoaded(boolean streamLoaded)
+    {
+        this.streamLoaded = streamLoaded;
+    }
 }
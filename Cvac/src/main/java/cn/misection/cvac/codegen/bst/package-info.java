@@ -35,6 +35,11 @@ final class Operator
      */
     public static final String GET_FIELD = "GetField";
 
+    /**
+     * GetStatic
+     */
+    public static final String GET_STATIC = "GetStatic";
+
     /**
      * IAdd
      */
@@ -45,6 +50,11 @@ final class Operator
      */
     public static final String IF_ICMP_LT = "IfICmpLt";
 
+    /**
+     * IfJump
+     */
+    public static final String IF_JUMP = "IfJump";
+
     /**
      * ILoad
      */
@@ -0,0 +1,107 @@
+package cn.misection.cvac.codegen.classfile;
+
+import cn.misection.cvac.codegen.bst.Label;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName CodeBuffer
+ * @Description 一个方法的字节码, 跳转先占位, 取字节时统一回填偏移;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class CodeBuffer
+{
+    /**
+     * code_length上限;
+     */
+    private static final int MAX_CODE_LENGTH = 0xffff;
+
+    private byte[] bytes = new byte[256];
+
+    private int size;
+
+    private final Map<Label, Integer> labelMap = new IdentityHashMap<>();
+
+    /**
+     * 每个待回填跳转: {跳转指令位置, 偏移位置};
+     */
+    private final List<int[]> fixupList = new ArrayList<>();
+
+    private final List<Label> fixupLabelList = new ArrayList<>();
+
+    public int size()
+    {
+        return size;
+    }
+
+    public void u1(int value)
+    {
+        ensure(1);
+        bytes[size++] = (byte) value;
+    }
+
+    public void u2(int value)
+    {
+        ensure(2);
+        bytes[size++] = (byte) (value >>> 8);
+        bytes[size++] = (byte) value;
+    }
+
+    public void mark(Label label)
+    {
+        labelMap.put(label, size);
+    }
+
+    /**
+     * 16位偏移的跳转;
+     */
+    public void branch(int opcode, Label label)
+    {
+        fixupList.add(new int[] {size, size + 1});
+        fixupLabelList.add(label);
+        u1(opcode);
+        u2(0);
+    }
+
+    public byte[] toByteArray()
+    {
+        if (size > MAX_CODE_LENGTH)
+        {
+            throw new IllegalStateException(
+                    String.format("method code too large: %d bytes", size));
+        }
+        for (int i = 0; i < fixupList.size(); i++)
+        {
+            Integer target = labelMap.get(fixupLabelList.get(i));
+            if (target == null)
+            {
+                throw new IllegalStateException(
+                        String.format("undefined label %s", fixupLabelList.get(i)));
+            }
+            int[] fixup = fixupList.get(i);
+            int offset = target - fixup[0];
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+            {
+                throw new IllegalStateException(
+                        String.format("branch offset out of range: %d", offset));
+            }
+            bytes[fixup[1]] = (byte) (offset >>> 8);
+            bytes[fixup[1] + 1] = (byte) offset;
+        }
+        return Arrays.copyOf(bytes, size);
+    }
+
+    private void ensure(int more)
+    {
+        if (size + more > bytes.length)
+        {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, size + more));
+        }
+    }
+}
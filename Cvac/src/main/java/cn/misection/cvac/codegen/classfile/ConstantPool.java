@@ -0,0 +1,182 @@
+package cn.misection.cvac.codegen.classfile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName ConstantPool
+ * @Description class文件常量池, 同一常量只占一项;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class ConstantPool
+{
+    private static final int TAG_UTF8 = 1;
+
+    private static final int TAG_INTEGER = 3;
+
+    private static final int TAG_CLASS = 7;
+
+    private static final int TAG_STRING = 8;
+
+    private static final int TAG_FIELD_REF = 9;
+
+    private static final int TAG_METHOD_REF = 10;
+
+    private static final int TAG_NAME_AND_TYPE = 12;
+
+    /**
+     * 常量池下标是u2, 0号不用;
+     */
+    private static final int MAX_COUNT = 0xffff;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    /**
+     * key为tag与内容拼成的串;
+     */
+    private final Map<String, Integer> indexMap = new HashMap<>();
+
+    private int count = 1;
+
+    public int utf8(String value)
+    {
+        String key = "U" + value;
+        Integer index = indexMap.get(key);
+        if (index != null)
+        {
+            return index;
+        }
+        try
+        {
+            out.writeByte(TAG_UTF8);
+            out.writeUTF(value);
+        }
+        catch (IOException e)
+        {
+            // ByteArrayOutputStream不会抛, 只有串超过65535字节;
+            throw new IllegalStateException(e);
+        }
+        return register(key);
+    }
+
+    public int integer(int value)
+    {
+        String key = "I" + value;
+        Integer index = indexMap.get(key);
+        if (index != null)
+        {
+            return index;
+        }
+        writeEntry(TAG_INTEGER, value >>> 16, value & 0xffff);
+        return register(key);
+    }
+
+    /**
+     * @param internalName 如java/lang/Object;
+     */
+    public int classRef(String internalName)
+    {
+        String key = "C" + internalName;
+        Integer index = indexMap.get(key);
+        if (index != null)
+        {
+            return index;
+        }
+        int name = utf8(internalName);
+        writeEntry(TAG_CLASS, name);
+        return register(key);
+    }
+
+    public int string(String value)
+    {
+        String key = "S" + value;
+        Integer index = indexMap.get(key);
+        if (index != null)
+        {
+            return index;
+        }
+        int utf8 = utf8(value);
+        writeEntry(TAG_STRING, utf8);
+        return register(key);
+    }
+
+    public int nameAndType(String name, String descriptor)
+    {
+        String key = "N" + name + ' ' + descriptor;
+        Integer index = indexMap.get(key);
+        if (index != null)
+        {
+            return index;
+        }
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        writeEntry(TAG_NAME_AND_TYPE, nameIndex, descriptorIndex);
+        return register(key);
+    }
+
+    public int fieldRef(String owner, String name, String descriptor)
+    {
+        return memberRef(TAG_FIELD_REF, "F", owner, name, descriptor);
+    }
+
+    public int methodRef(String owner, String name, String descriptor)
+    {
+        return memberRef(TAG_METHOD_REF, "M", owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String prefix, String owner, String name, String descriptor)
+    {
+        String key = prefix + owner + '.' + name + ' ' + descriptor;
+        Integer index = indexMap.get(key);
+        if (index != null)
+        {
+            return index;
+        }
+        int classIndex = classRef(owner);
+        int nameAndTypeIndex = nameAndType(name, descriptor);
+        writeEntry(tag, classIndex, nameAndTypeIndex);
+        return register(key);
+    }
+
+    private void writeEntry(int tag, int... u2s)
+    {
+        try
+        {
+            out.writeByte(tag);
+            for (int u2 : u2s)
+            {
+                out.writeShort(u2);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int register(String key)
+    {
+        if (count >= MAX_COUNT)
+        {
+            throw new IllegalStateException("too many constants in one class");
+        }
+        indexMap.put(key, count);
+        return count++;
+    }
+
+    /**
+     * 写出constant_pool_count与全部常量;
+     */
+    public void writeTo(DataOutputStream dest) throws IOException
+    {
+        dest.writeShort(count);
+        bytes.writeTo(dest);
+    }
+}
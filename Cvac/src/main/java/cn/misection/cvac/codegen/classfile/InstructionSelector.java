@@ -0,0 +1,80 @@
+package cn.misection.cvac.codegen.classfile;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName InstructionSelector
+ * @Description 指令选择, 为常量与局部变量存取挑最短的编码;
+ * il与class两个后端共用, 保证两边选出的指令一致;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class InstructionSelector
+{
+    public static final String BIPUSH = "bipush";
+
+    public static final String SIPUSH = "sipush";
+
+    public static final String LDC = "ldc";
+
+    /**
+     * 有短形式的最大局部变量号;
+     */
+    private static final int MAX_SHORT_LOCAL = 3;
+
+    /**
+     * 局部变量号超过时要加wide;
+     */
+    private static final int MAX_NARROW_LOCAL = 0xff;
+
+    private InstructionSelector() {}
+
+    /**
+     * -1到5用iconst, byte范围用bipush, short范围用sipush, 其余才进常量池;
+     *
+     * @param value int常量;
+     * @return iconst_x完整助记符, 或bipush, sipush, ldc;
+     */
+    public static String selectIntPush(int value)
+    {
+        if (value >= -1 && value <= 5)
+        {
+            return value < 0 ? "iconst_m1" : "iconst_" + value;
+        }
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+        {
+            return BIPUSH;
+        }
+        if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+        {
+            return SIPUSH;
+        }
+        return LDC;
+    }
+
+    /**
+     * @param mnemonic iload, aload, istore或astore;
+     * @param index 局部变量号;
+     * @return 0到3号为iload_0这样的短形式, 否则为null;
+     */
+    public static String selectShortLocal(String mnemonic, int index)
+    {
+        return index >= 0 && index <= MAX_SHORT_LOCAL
+                ? mnemonic + '_' + index
+                : null;
+    }
+
+    public static boolean needsWide(int index)
+    {
+        return index > MAX_NARROW_LOCAL;
+    }
+
+    /**
+     * @return iinc的变量号与增量都放得进一个字节;
+     */
+    public static boolean fitsNarrowIInc(int index, int increment)
+    {
+        return !needsWide(index)
+                && increment >= Byte.MIN_VALUE
+                && increment <= Byte.MAX_VALUE;
+    }
+}
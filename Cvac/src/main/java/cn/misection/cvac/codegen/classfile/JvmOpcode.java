@@ -0,0 +1,128 @@
+package cn.misection.cvac.codegen.classfile;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName JvmOpcode
+ * @Description 直接生成class文件用到的JVM操作码;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class JvmOpcode
+{
+    public static final int ILOAD = 0x15;
+
+    public static final int ALOAD = 0x19;
+
+    public static final int ISTORE = 0x36;
+
+    public static final int ASTORE = 0x3a;
+
+    public static final int BIPUSH = 0x10;
+
+    public static final int SIPUSH = 0x11;
+
+    public static final int LDC = 0x12;
+
+    public static final int LDC_W = 0x13;
+
+    public static final int DUP = 0x59;
+
+    public static final int SWAP = 0x5f;
+
+    public static final int IINC = 0x84;
+
+    public static final int IF_ICMPLT = 0xa1;
+
+    public static final int GOTO = 0xa7;
+
+    public static final int RETURN = 0xb1;
+
+    public static final int GETSTATIC = 0xb2;
+
+    public static final int GETFIELD = 0xb4;
+
+    public static final int PUTFIELD = 0xb5;
+
+    public static final int INVOKEVIRTUAL = 0xb6;
+
+    public static final int INVOKESPECIAL = 0xb7;
+
+    public static final int NEW = 0xbb;
+
+    public static final int WIDE = 0xc4;
+
+    /**
+     * 无操作数指令, 局部变量存取与条件跳转按助记符查表, 助记符与il文本中的一致;
+     */
+    private static final Map<String, Integer> MNEMONIC_MAP = new HashMap<>();
+
+    static
+    {
+        String[] typePrefixes = {"i", "l", "f", "d"};
+        String[] arithmetics = {"add", "sub", "mul", "div", "rem", "neg"};
+        // iadd 0x60起, 每种运算按i/l/f/d依次排4个;
+        for (int op = 0; op < arithmetics.length; op++)
+        {
+            for (int type = 0; type < typePrefixes.length; type++)
+            {
+                MNEMONIC_MAP.put(typePrefixes[type] + arithmetics[op], 0x60 + op * 4 + type);
+            }
+        }
+        // 位运算只有i/l两种;
+        String[] bitwises = {"shl", "shr", "ushr", "and", "or", "xor"};
+        for (int op = 0; op < bitwises.length; op++)
+        {
+            MNEMONIC_MAP.put("i" + bitwises[op], 0x78 + op * 2);
+            MNEMONIC_MAP.put("l" + bitwises[op], 0x79 + op * 2);
+        }
+        String[] returns = {"ireturn", "lreturn", "freturn", "dreturn", "areturn", "return"};
+        for (int i = 0; i < returns.length; i++)
+        {
+            MNEMONIC_MAP.put(returns[i], 0xac + i);
+        }
+        // 条件跳转ifeq 0x99起连续14个, ifnull与ifnonnull另排;
+        String[] branches = {"ifeq", "ifne", "iflt", "ifge", "ifgt", "ifle",
+                "if_icmpeq", "if_icmpne", "if_icmplt", "if_icmpge", "if_icmpgt", "if_icmple",
+                "if_acmpeq", "if_acmpne"};
+        for (int i = 0; i < branches.length; i++)
+        {
+            MNEMONIC_MAP.put(branches[i], 0x99 + i);
+        }
+        MNEMONIC_MAP.put("ifnull", 0xc6);
+        MNEMONIC_MAP.put("ifnonnull", 0xc7);
+        // iconst_m1到iconst_5;
+        for (int value = -1; value <= 5; value++)
+        {
+            MNEMONIC_MAP.put(value < 0 ? "iconst_m1" : "iconst_" + value, 0x03 + value);
+        }
+        // 局部变量存取, 0到3号有不带操作数的短形式;
+        String[] locals = {"iload", "aload", "istore", "astore"};
+        int[] longForms = {ILOAD, ALOAD, ISTORE, ASTORE};
+        int[] shortForms = {0x1a, 0x2a, 0x3b, 0x4b};
+        for (int i = 0; i < locals.length; i++)
+        {
+            MNEMONIC_MAP.put(locals[i], longForms[i]);
+            for (int index = 0; index < 4; index++)
+            {
+                MNEMONIC_MAP.put(locals[i] + '_' + index, shortForms[i] + index);
+            }
+        }
+        MNEMONIC_MAP.put("dup", DUP);
+        MNEMONIC_MAP.put("swap", SWAP);
+    }
+
+    private JvmOpcode() {}
+
+    /**
+     * @param mnemonic 表中指令的助记符;
+     * @return 操作码, 不认识时为-1;
+     */
+    public static int ofMnemonic(String mnemonic)
+    {
+        Integer opcode = MNEMONIC_MAP.get(mnemonic);
+        return opcode == null ? -1 : opcode;
+    }
+}
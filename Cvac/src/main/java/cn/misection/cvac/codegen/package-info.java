@@ -6,17 +6,3 @@
  * @CreateTime 2021年02月16日 12:00:00
  */
 package cn.misection.cvac.codegen;
-
-
-final class StackConst
-{
-    /**
-     * 最大栈深度;
-     */
-    public static final int MAX_STACK_DEPTH = 4096;
-
-    /**
-     * 禁止构造;
-     */
-    private StackConst() {}
-}
\ No newline at end of file
@@ -0,0 +1,112 @@
+package cn.misection.cvac.codegen.peephole;
+
+import cn.misection.cvac.codegen.bst.bclas.TargetClass;
+import cn.misection.cvac.codegen.bst.bentry.TargetEntryClass;
+import cn.misection.cvac.codegen.bst.bmethod.TargetMethod;
+import cn.misection.cvac.codegen.bst.bprogram.TargetProgram;
+import cn.misection.cvac.codegen.bst.instructor.IInstructor;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName PeepholeOptimizer
+ * @Description TranslatorVisitor之后, 生成代码之前的窥孔优化;
+ * 指令逐条移入输出, 每移入一条就用各规则去匹配输出末尾的窗口, 替换后继续匹配,
+ * 所以替换结果与前面的指令又能组成新的匹配;
+ * 各类可以在不同线程里共用一个实例, 只有命中计数是共享的;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class PeepholeOptimizer
+{
+    private final List<PeepholeRule> ruleList;
+
+    /**
+     * 规则名 -> 命中次数, 构造后不再增删键, 只原子地加计数;
+     */
+    private final Map<String, AtomicInteger> hitCountMap = new LinkedHashMap<>();
+
+    public PeepholeOptimizer()
+    {
+        this(PeepholeRules.defaultRules());
+    }
+
+    public PeepholeOptimizer(List<PeepholeRule> ruleList)
+    {
+        this.ruleList = ruleList;
+        ruleList.forEach(rule -> hitCountMap.put(rule.getName(), new AtomicInteger()));
+    }
+
+    public void optimize(TargetProgram program)
+    {
+        optimize(program.getEntryClass());
+        program.getClassList().forEach(this::optimize);
+    }
+
+    public void optimize(TargetEntryClass entryClass)
+    {
+        entryClass.setStatementList(optimize(entryClass.getStatementList()));
+    }
+
+    public void optimize(TargetClass targetClass)
+    {
+        for (TargetMethod method : targetClass.getMethodList())
+        {
+            method.setStatementList(optimize(method.getStatementList()));
+        }
+    }
+
+    public List<IInstructor> optimize(List<IInstructor> instrList)
+    {
+        List<IInstructor> resultList = new ArrayList<>(instrList.size());
+        for (IInstructor instructor : instrList)
+        {
+            resultList.add(instructor);
+            while (rewriteTail(resultList))
+            {
+                // 一直替换到末尾没有匹配;
+            }
+        }
+        return resultList;
+    }
+
+    private boolean rewriteTail(List<IInstructor> resultList)
+    {
+        int size = resultList.size();
+        for (PeepholeRule rule : ruleList)
+        {
+            if (size < rule.getSize())
+            {
+                continue;
+            }
+            List<IInstructor> window = resultList.subList(size - rule.getSize(), size);
+            if (rule.matches(window))
+            {
+                List<IInstructor> replacement = rule.rewrite(new ArrayList<>(window));
+                window.clear();
+                resultList.addAll(replacement);
+                hitCountMap.get(rule.getName()).incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getHitCount(String ruleName)
+    {
+        AtomicInteger count = hitCountMap.get(ruleName);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return 规则名 -> 命中次数的快照, 按规则顺序;
+     */
+    public Map<String, Integer> getHitCountMap()
+    {
+        Map<String, Integer> snapshot = new LinkedHashMap<>();
+        hitCountMap.forEach((name, count) -> snapshot.put(name, count.get()));
+        return Collections.unmodifiableMap(snapshot);
+    }
+}
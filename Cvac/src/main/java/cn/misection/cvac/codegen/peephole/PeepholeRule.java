@@ -0,0 +1,56 @@
+package cn.misection.cvac.codegen.peephole;
+
+import cn.misection.cvac.codegen.bst.instructor.IInstructor;
+
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName PeepholeRule
+ * @Description 一条窥孔规则, 窗口内连续size条指令满足matcher时整体替换成rewriter的结果;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class PeepholeRule
+{
+    private final String name;
+
+    private final int size;
+
+    private final Predicate<List<IInstructor>> matcher;
+
+    private final UnaryOperator<List<IInstructor>> rewriter;
+
+    public PeepholeRule(String name,
+                        int size,
+                        Predicate<List<IInstructor>> matcher,
+                        UnaryOperator<List<IInstructor>> rewriter)
+    {
+        this.name = name;
+        this.size = size;
+        this.matcher = matcher;
+        this.rewriter = rewriter;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getSize()
+    {
+        return size;
+    }
+
+    public boolean matches(List<IInstructor> window)
+    {
+        return matcher.test(window);
+    }
+
+    public List<IInstructor> rewrite(List<IInstructor> window)
+    {
+        return rewriter.apply(window);
+    }
+}
@@ -0,0 +1,177 @@
+package cn.misection.cvac.codegen.peephole;
+
+import cn.misection.cvac.codegen.bst.instructor.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName PeepholeRules
+ * @Description 默认的窥孔规则表, 规则按表中顺序尝试;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class PeepholeRules
+{
+    /**
+     * goto到紧跟着的label;
+     */
+    public static final String GOTO_NEXT = "goto-next";
+
+    /**
+     * istore n; iload n -> dup; istore n, astore同;
+     * 后面紧跟iload时不换, 解释器会把相邻两个iload合成一条, dup反而打断它, 实测更慢;
+     */
+    public static final String STORE_LOAD = "store-load";
+
+    /**
+     * ldc 0; if_icmpxx -> ifxx;
+     */
+    public static final String COMPARE_ZERO = "compare-zero";
+
+    /**
+     * ldc 0或1; if_icmplt -> iflt或ifle;
+     */
+    public static final String LESS_THAN_CONST = "less-than-const";
+
+    /**
+     * ldc c; ifxx -> goto或删除;
+     */
+    public static final String CONST_BRANCH = "const-branch";
+
+    /**
+     * 值只由一条指令压栈时, 先取System.out, 省掉swap;
+     */
+    public static final String WRITE_STREAM = "write-stream";
+
+    private static final String OUT_SPEC = "java/lang/System/out";
+
+    private static final String OUT_DESCRIPTOR = "Ljava/io/PrintStream;";
+
+    private static final List<PeepholeRule> DEFAULT_RULES = Collections.unmodifiableList(Arrays.asList(
+            new PeepholeRule(GOTO_NEXT, 2,
+                    w -> w.get(0) instanceof Goto
+                            && w.get(1) instanceof LabelJ
+                            && ((Goto) w.get(0)).getLabel() == ((LabelJ) w.get(1)).getLabel(),
+                    w -> of(w.get(1))),
+            new PeepholeRule(STORE_LOAD, 3,
+                    w -> storeThenLoad(w.get(0), w.get(1)) && !(w.get(2) instanceof ILoad),
+                    w -> of(EnumInstructor.DUP, w.get(0), w.get(2))),
+            new PeepholeRule(COMPARE_ZERO, 2,
+                    w -> intConst(w.get(0)) == 0
+                            && w.get(1) instanceof IfJump
+                            && ((IfJump) w.get(1)).getCondition().againstZero() != null,
+                    w -> of(new IfJump(((IfJump) w.get(1)).getCondition().againstZero(),
+                            ((IfJump) w.get(1)).getLabel()))),
+            new PeepholeRule(LESS_THAN_CONST, 2,
+                    w -> w.get(1) instanceof IfICmpLt
+                            && (intConst(w.get(0)) == 0 || intConst(w.get(0)) == 1),
+                    // x < 1即x <= 0;
+                    w -> of(new IfJump(intConst(w.get(0)) == 0 ? EnumCondition.LT : EnumCondition.LE,
+                            ((IfICmpLt) w.get(1)).getLabel()))),
+            new PeepholeRule(CONST_BRANCH, 2,
+                    w -> w.get(0) instanceof Ldc
+                            && ((Ldc) w.get(0)).value() instanceof Integer
+                            && w.get(1) instanceof IfJump
+                            && ((IfJump) w.get(1)).getCondition().compareTo(EnumCondition.LE) <= 0,
+                    w -> holds(((IfJump) w.get(1)).getCondition(), (Integer) ((Ldc) w.get(0)).value())
+                            ? of(new Goto(((IfJump) w.get(1)).getLabel()))
+                            : of()),
+            new PeepholeRule(WRITE_STREAM, 2,
+                    w -> (w.get(0) instanceof Ldc
+                            || w.get(0) instanceof ILoad
+                            || w.get(0) instanceof ALoad)
+                            && w.get(1) instanceof WriteInstructor
+                            && !((WriteInstructor) w.get(1)).isStreamLoaded(),
+                    w ->
+                    {
+                        WriteInstructor write = (WriteInstructor) w.get(1);
+                        return of(new GetStatic(OUT_SPEC, OUT_DESCRIPTOR),
+                                w.get(0),
+                                new WriteInstructor(write.getWriteMode(), write.getWriteType(), true));
+                    })
+    ));
+
+    private PeepholeRules() {}
+
+    /**
+     * @return 默认规则, 不可修改, 需要增删时复制一份;
+     */
+    public static List<PeepholeRule> defaultRules()
+    {
+        return DEFAULT_RULES;
+    }
+
+    private static List<IInstructor> of(IInstructor... instructors)
+    {
+        return new ArrayList<>(Arrays.asList(instructors));
+    }
+
+    private static boolean storeThenLoad(IInstructor store, IInstructor load)
+    {
+        if (store instanceof IStore && load instanceof ILoad)
+        {
+            return ((IStore) store).getIndex() == ((ILoad) load).getIndex();
+        }
+        if (store instanceof AStore && load instanceof ALoad)
+        {
+            return ((AStore) store).getIndex() == ((ALoad) load).getIndex();
+        }
+        return false;
+    }
+
+    /**
+     * @return int常量的值, 不是时为-1;
+     */
+    @SuppressWarnings("rawtypes")
+    private static int intConst(IInstructor instructor)
+    {
+        if (instructor instanceof Ldc && ((Ldc) instructor).value() instanceof Integer)
+        {
+            int value = (Integer) ((Ldc) instructor).value();
+            return value >= 0 ? value : -1;
+        }
+        return -1;
+    }
+
+    /**
+     * 单操作数条件对常量是否成立;
+     */
+    private static boolean holds(EnumCondition condition, int value)
+    {
+        switch (condition)
+        {
+            case EQ:
+            {
+                return value == 0;
+            }
+            case NE:
+            {
+                return value != 0;
+            }
+            case LT:
+            {
+                return value < 0;
+            }
+            case GE:
+            {
+                return value >= 0;
+            }
+            case GT:
+            {
+                return value > 0;
+            }
+            case LE:
+            {
+                return value <= 0;
+            }
+            default:
+            {
+                throw new IllegalArgumentException(condition.toInst());
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package cn.misection.cvac.context;
+
+import cn.misection.cvac.codegen.bst.Label;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName CompilationContext
+ * @Description 一次编译独有的状态, 词法, 语法, 语义与代码生成都从这里取选项, 编号与报错,
+ * 不再用静态变量和System.exit, 所以一个进程里可以同时跑多次编译;
+ * 一次编译内部的代码生成是并行的, 所以计数与诊断表都是线程安全的;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class CompilationContext
+{
+    private final CompileOptions options;
+
+    private final IDiagnosticSink sink;
+
+    private final List<Diagnostic> diagnosticList = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicInteger labelCount = new AtomicInteger();
+
+    public CompilationContext()
+    {
+        this(CompileOptions.defaults(), diagnostic -> {});
+    }
+
+    public CompilationContext(CompileOptions options, IDiagnosticSink sink)
+    {
+        this.options = options;
+        this.sink = sink;
+    }
+
+    public CompileOptions getOptions()
+    {
+        return options;
+    }
+
+    /**
+     * @return 本次编译内编号唯一的label;
+     */
+    public Label newLabel()
+    {
+        return new Label(labelCount.getAndIncrement());
+    }
+
+    /**
+     * @return 类名对应的输出文件, 如Application.class;
+     */
+    public File outputFile(String className, String suffix)
+    {
+        return new File(options.getOutputDir(), String.format("%s.%s", className, suffix));
+    }
+
+    /**
+     * 记一条诊断, 编译继续;
+     */
+    public void report(int lineNum, String message)
+    {
+        report(new Diagnostic(lineNum, message));
+    }
+
+    /**
+     * 记一条诊断并返回异常, 调用处throw, 终止本次编译;
+     */
+    public CompileException abort(int lineNum, String message)
+    {
+        Diagnostic diagnostic = new Diagnostic(lineNum, message);
+        report(diagnostic);
+        return new CompileException(diagnostic);
+    }
+
+    private void report(Diagnostic diagnostic)
+    {
+        diagnosticList.add(diagnostic);
+        sink.report(diagnostic);
+    }
+
+    public boolean hasDiagnostic()
+    {
+        return !diagnosticList.isEmpty();
+    }
+
+    /**
+     * @return 到目前为止的诊断, 按报告顺序;
+     */
+    public List<Diagnostic> getDiagnosticList()
+    {
+        synchronized (diagnosticList)
+        {
+            return Collections.unmodifiableList(new ArrayList<>(diagnosticList));
+        }
+    }
+}
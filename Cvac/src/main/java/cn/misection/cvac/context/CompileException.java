@@ -0,0 +1,26 @@
+package cn.misection.cvac.context;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName CompileException
+ * @Description 无法继续的错误, 代替原来的System.exit(1), 只终止当前这次编译;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class CompileException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final Diagnostic diagnostic;
+
+    public CompileException(Diagnostic diagnostic)
+    {
+        super(diagnostic.toString());
+        this.diagnostic = diagnostic;
+    }
+
+    public Diagnostic getDiagnostic()
+    {
+        return diagnostic;
+    }
+}
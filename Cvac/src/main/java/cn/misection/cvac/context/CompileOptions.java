@@ -0,0 +1,168 @@
+package cn.misection.cvac.context;
+
+import cn.misection.cvac.config.Macro;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName CompileOptions
+ * @Description 一次编译的选项, 不可变, 可在多次编译间共用;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class CompileOptions
+{
+    private final boolean optimize;
+
+    private final boolean peephole;
+
+    private final boolean ilOutput;
+
+    private final boolean ssa;
+
+    private final File outputDir;
+
+    private final File cacheDir;
+
+    private final Charset charset;
+
+    private CompileOptions(Builder builder)
+    {
+        this.optimize = builder.optimize;
+        this.peephole = builder.peephole;
+        this.ilOutput = builder.ilOutput;
+        this.ssa = builder.ssa;
+        this.outputDir = builder.outputDir;
+        this.cacheDir = builder.cacheDir;
+        this.charset = builder.charset;
+    }
+
+    /**
+     * @return 与命令行不带参数时相同的选项;
+     */
+    public static CompileOptions defaults()
+    {
+        return new Builder().build();
+    }
+
+    /**
+     * @return 是否做ast上的Optimizer优化;
+     */
+    public boolean isOptimize()
+    {
+        return optimize;
+    }
+
+    public boolean isPeephole()
+    {
+        return peephole;
+    }
+
+    /**
+     * @return 是否先写il再由jasmin汇编;
+     */
+    public boolean isIlOutput()
+    {
+        return ilOutput;
+    }
+
+    /**
+     * @return 是否经SSA中间表示由SsaTranslator生成指令;
+     */
+    public boolean isSsa()
+    {
+        return ssa;
+    }
+
+    public File getOutputDir()
+    {
+        return outputDir;
+    }
+
+    /**
+     * @return 增量编译的缓存目录, 为null时不用缓存;
+     */
+    public File getCacheDir()
+    {
+        return cacheDir;
+    }
+
+    /**
+     * @return 源文件的编码, 文件, stdin, 增量编译与CompileClient都按它解码;
+     */
+    public Charset getCharset()
+    {
+        return charset;
+    }
+
+    public static class Builder
+    {
+        private boolean optimize = Macro.DEBUG_OPTIMIZE_FLAG;
+
+        private boolean peephole = true;
+
+        private boolean ilOutput = false;
+
+        private boolean ssa = false;
+
+        private File outputDir = new File(".");
+
+        private File cacheDir = null;
+
+        private Charset charset = StandardCharsets.UTF_8;
+
+        public Builder()
+        {
+        }
+
+        public CompileOptions build()
+        {
+            return new CompileOptions(this);
+        }
+
+        public Builder putOptimize(boolean optimize)
+        {
+            this.optimize = optimize;
+            return this;
+        }
+
+        public Builder putPeephole(boolean peephole)
+        {
+            this.peephole = peephole;
+            return this;
+        }
+
+        public Builder putIlOutput(boolean ilOutput)
+        {
+            this.ilOutput = ilOutput;
+            return this;
+        }
+
+        public Builder putSsa(boolean ssa)
+        {
+            this.ssa = ssa;
+            return this;
+        }
+
+        public Builder putOutputDir(File outputDir)
+        {
+            this.outputDir = outputDir;
+            return this;
+        }
+
+        public Builder putCacheDir(File cacheDir)
+        {
+            this.cacheDir = cacheDir;
+            return this;
+        }
+
+        public Builder putCharset(Charset charset)
+        {
+            this.charset = charset;
+            return this;
+        }
+    }
+}
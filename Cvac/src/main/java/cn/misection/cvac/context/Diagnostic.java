@@ -0,0 +1,39 @@
+package cn.misection.cvac.context;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName Diagnostic
+ * @Description 一条编译诊断, 行号未知时为0;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class Diagnostic
+{
+    private final int lineNum;
+
+    private final String message;
+
+    public Diagnostic(int lineNum, String message)
+    {
+        this.lineNum = lineNum;
+        this.message = message;
+    }
+
+    public int getLineNum()
+    {
+        return lineNum;
+    }
+
+    public String getMessage()
+    {
+        return message;
+    }
+
+    @Override
+    public String toString()
+    {
+        return lineNum > 0
+                ? String.format("Line %d: %s", lineNum, message)
+                : message;
+    }
+}
@@ -0,0 +1,19 @@
+package cn.misection.cvac.context;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName IDiagnosticSink
+ * @Description 诊断的去处, 命令行打到stderr, 编译服务可以按请求收集;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+@FunctionalInterface
+public interface IDiagnosticSink
+{
+    /**
+     * 并行生成代码时可能从多个线程调用;
+     *
+     * @param diagnostic 诊断;
+     */
+    void report(Diagnostic diagnostic);
+}
@@ -0,0 +1,8 @@
+/**
+ * @ClassName package-info
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @Description 一次编译的上下文: 选项, 输出路径, label编号与诊断, 同一进程里的多次编译互不影响;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+package cn.misection.cvac.context;
@@ -0,0 +1,87 @@
+package cn.misection.cvac.daemon;
+
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.context.CompileException;
+import cn.misection.cvac.context.CompileOptions;
+import cn.misection.cvac.context.Diagnostic;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName CompileClient
+ * @Description 瘦客户端, 只读源文件, 发给CompileDaemon, 再把收到的class写出来, 不加载编译器;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class CompileClient
+{
+    private final int port;
+
+    public CompileClient(int port)
+    {
+        this.port = port;
+    }
+
+    /**
+     * 与CvaCompiler.compile()同样的约定, 诊断逐条报给context, 失败时抛出最后一条;
+     */
+    public Map<String, byte[]> compile(CharSequence source, CompilationContext context) throws IOException
+    {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream())))
+        {
+            DaemonProtocol.writeRequest(out, source, context.getOptions());
+            if (in.readByte() == DaemonProtocol.STATUS_OK)
+            {
+                return DaemonProtocol.readClassFiles(in);
+            }
+            List<Diagnostic> diagnosticList = DaemonProtocol.readDiagnostics(in);
+            int last = diagnosticList.size() - 1;
+            for (int i = 0; i < last; i++)
+            {
+                context.report(diagnosticList.get(i).getLineNum(), diagnosticList.get(i).getMessage());
+            }
+            Diagnostic fatal = diagnosticList.get(last);
+            throw context.abort(fatal.getLineNum(), fatal.getMessage());
+        }
+    }
+
+    /**
+     * @param args 源文件 [输出目录] [端口];
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0)
+        {
+            System.err.println("usage: CompileClient <file> [outputDir] [port]");
+            System.exit(2);
+        }
+        File outputDir = new File(args.length > 1 ? args[1] : ".");
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : DaemonProtocol.DEFAULT_PORT;
+        CompilationContext context = new CompilationContext(
+                new CompileOptions.Builder().putOutputDir(outputDir).build(), System.err::println);
+        String source = new String(Files.readAllBytes(Paths.get(args[0])), context.getOptions().getCharset());
+        try
+        {
+            Map<String, byte[]> classFileMap = new CompileClient(port).compile(source, context);
+            for (Map.Entry<String, byte[]> entry : classFileMap.entrySet())
+            {
+                File file = context.outputFile(entry.getKey(), "class");
+                Files.write(file.toPath(), entry.getValue());
+                System.out.printf("Generated: %s%n", file.getPath());
+            }
+        }
+        catch (CompileException e)
+        {
+            System.exit(1);
+        }
+    }
+}
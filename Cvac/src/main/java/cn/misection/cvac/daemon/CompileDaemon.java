@@ -0,0 +1,205 @@
+package cn.misection.cvac.daemon;
+
+import cn.misection.cvac.CvaCompiler;
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.context.CompileException;
+import cn.misection.cvac.context.CompileOptions;
+import cn.misection.cvac.context.Diagnostic;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName CompileDaemon
+ * @Description 常驻的编译进程, 只监听回环地址, 每个连接交给工作线程, 用CvaCompiler.compile()在内存里编译;
+ * 启动时先把一段样例编译若干遍, 让词法, 语法与代码生成都被JIT编译过, 之后的请求都是热的;
+ * 每次编译有自己的CompilationContext, 一次编译出错只回给它自己的客户端;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class CompileDaemon implements Closeable
+{
+    private static final String WATCH = "-w";
+
+    /**
+     * 预热用的程序, 覆盖类, 方法调用, 循环, 条件与输出;
+     */
+    private static final String WARM_UP_SOURCE = "class Warm\n"
+            + "{\n"
+            + "    int run(int n)\n"
+            + "    {\n"
+            + "        int s = 0;\n"
+            + "        int i = 0;\n"
+            + "        for (i = 0; i < n; i++)\n"
+            + "        {\n"
+            + "            if (0 < i && !(i < 3))\n"
+            + "            {\n"
+            + "                s = s + i * 2;\n"
+            + "            }\n"
+            + "        }\n"
+            + "        while (0 < s)\n"
+            + "        {\n"
+            + "            s -= 7;\n"
+            + "        }\n"
+            + "        echo \"s=\";\n"
+            + "        return s;\n"
+            + "    }\n"
+            + "}\n"
+            + "int main(string[] args)\n"
+            + "{\n"
+            + "    println new Warm().run(100);\n"
+            + "    return 0;\n"
+            + "}\n";
+
+    private static final int WARM_UP_ROUNDS = 300;
+
+    /**
+     * 连上后迟迟不发完请求的客户端, 到时就断开, 不让它一直占着工作线程;
+     */
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = 10_000;
+
+    private final ServerSocket serverSocket;
+
+    private final ExecutorService workerPool;
+
+    private final Thread acceptThread;
+
+    private final int readTimeoutMillis;
+
+    public CompileDaemon(int port, int workerCount) throws IOException
+    {
+        this(port, workerCount, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param readTimeoutMillis 读请求时每次阻塞的上限, 编译与写应答不受限;
+     */
+    public CompileDaemon(int port, int workerCount, int readTimeoutMillis) throws IOException
+    {
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        this.workerPool = Executors.newFixedThreadPool(workerCount);
+        this.acceptThread = new Thread(this::acceptLoop, "cvac-daemon-accept");
+    }
+
+    public void start()
+    {
+        acceptThread.start();
+    }
+
+    /**
+     * @return 实际监听的端口, 构造时传0则由系统分配;
+     */
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * 把样例编译rounds遍, 出错说明编译器自己坏了, 直接抛出;
+     */
+    public static void warmUp(int rounds)
+    {
+        CompileOptions options = CompileOptions.defaults();
+        for (int i = 0; i < rounds; i++)
+        {
+            CvaCompiler.compile(WARM_UP_SOURCE, options);
+        }
+    }
+
+    private void acceptLoop()
+    {
+        while (!serverSocket.isClosed())
+        {
+            try
+            {
+                Socket socket = serverSocket.accept();
+                workerPool.execute(() -> handle(socket));
+            }
+            catch (SocketException e)
+            {
+                // close()关掉了监听;
+                return;
+            }
+            catch (IOException e)
+            {
+                System.err.printf("accept failed: %s%n", e.getMessage());
+            }
+        }
+    }
+
+    private void handle(Socket socket)
+    {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream())))
+        {
+            s.setSoTimeout(readTimeoutMillis);
+            CompileOptions options = DaemonProtocol.readOptions(in);
+            String source = DaemonProtocol.readSource(in);
+            CompilationContext context = new CompilationContext(options, diagnostic -> {});
+            try
+            {
+                DaemonProtocol.writeClassFiles(out, CvaCompiler.compile(source, context));
+            }
+            catch (CompileException e)
+            {
+                DaemonProtocol.writeDiagnostics(out, context.getDiagnosticList());
+            }
+            catch (RuntimeException | StackOverflowError e)
+            {
+                // 编译器自身的错误也只回给这个请求, 进程继续服务;
+                DaemonProtocol.writeDiagnostics(out, Collections.singletonList(
+                        new Diagnostic(0, String.format("internal compiler error: %s", e))));
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.printf("request failed: %s%n", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        serverSocket.close();
+        workerPool.shutdown();
+    }
+
+    /**
+     * @param args [端口] [-w 源文件 输出目录], 给了-w时源文件一改就在本进程里重编;
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int port = args.length > 0 && !WATCH.equals(args[0])
+                ? Integer.parseInt(args[0])
+                : DaemonProtocol.DEFAULT_PORT;
+        CompileDaemon daemon = new CompileDaemon(port,
+                Runtime.getRuntime().availableProcessors());
+        long start = System.nanoTime();
+        warmUp(WARM_UP_ROUNDS);
+        System.out.printf("warmed up in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+        daemon.start();
+        System.out.printf("cvac daemon listening on %s:%d%n",
+                InetAddress.getLoopbackAddress().getHostAddress(), daemon.getPort());
+
+        int watchIndex = Arrays.asList(args).indexOf(WATCH);
+        if (watchIndex >= 0 && watchIndex + 2 < args.length)
+        {
+            SourceWatcher watcher = new SourceWatcher(Paths.get(args[watchIndex + 1]),
+                    new CompileOptions.Builder().putOutputDir(new File(args[watchIndex + 2])).build());
+            Thread watchThread = new Thread(watcher, "cvac-daemon-watch");
+            watchThread.setDaemon(true);
+            watchThread.start();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package cn.misection.cvac.daemon;
+
+import cn.misection.cvac.context.CompileOptions;
+import cn.misection.cvac.context.Diagnostic;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName DaemonProtocol
+ * @Description 每个连接一次请求一次应答;
+ * 请求: magic, 选项位, 源码长度与utf-8字节;
+ * 应答: 状态, 成功时是类的个数与各自的类名, 字节, 失败时是诊断的个数与各自的行号, 消息;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class DaemonProtocol
+{
+    /**
+     * "CVA1";
+     */
+    public static final int MAGIC = 0x43564131;
+
+    public static final int DEFAULT_PORT = 7890;
+
+    /**
+     * 源码与单个class的字节上限, 长度由对端给出, 不设限一个坏请求就能耗光堆;
+     */
+    public static final int MAX_PAYLOAD_BYTES = 64 << 20;
+
+    public static final byte STATUS_OK = 0;
+
+    public static final byte STATUS_ERROR = 1;
+
+    private static final byte FLAG_PEEPHOLE = 1;
+
+    private static final byte FLAG_OPTIMIZE = 1 << 1;
+
+    private static final byte FLAG_SSA = 1 << 2;
+
+    private DaemonProtocol() {}
+
+    public static void writeRequest(DataOutputStream out, CharSequence source, CompileOptions options)
+            throws IOException
+    {
+        byte flags = 0;
+        if (options.isPeephole())
+        {
+            flags |= FLAG_PEEPHOLE;
+        }
+        if (options.isOptimize())
+        {
+            flags |= FLAG_OPTIMIZE;
+        }
+        if (options.isSsa())
+        {
+            flags |= FLAG_SSA;
+        }
+        // writeUTF限64K, 源码按长度前缀写;
+        byte[] bytes = source.toString().getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_PAYLOAD_BYTES)
+        {
+            throw new IOException(String.format("source of %d bytes exceeds %d", bytes.length, MAX_PAYLOAD_BYTES));
+        }
+        out.writeInt(MAGIC);
+        out.writeByte(flags);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+
+    /**
+     * @return 选项只取编译相关的位, 输出目录是客户端的事;
+     */
+    public static CompileOptions readOptions(DataInputStream in) throws IOException
+    {
+        if (in.readInt() != MAGIC)
+        {
+            throw new IOException("not a cva compile request");
+        }
+        byte flags = in.readByte();
+        return new CompileOptions.Builder()
+                .putPeephole((flags & FLAG_PEEPHOLE) != 0)
+                .putOptimize((flags & FLAG_OPTIMIZE) != 0)
+                .putSsa((flags & FLAG_SSA) != 0)
+                .build();
+    }
+
+    public static String readSource(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void writeClassFiles(DataOutputStream out, Map<String, byte[]> classFileMap)
+            throws IOException
+    {
+        out.writeByte(STATUS_OK);
+        out.writeInt(classFileMap.size());
+        for (Map.Entry<String, byte[]> entry : classFileMap.entrySet())
+        {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().length);
+            out.write(entry.getValue());
+        }
+        out.flush();
+    }
+
+    public static void writeDiagnostics(DataOutputStream out, List<Diagnostic> diagnosticList)
+            throws IOException
+    {
+        out.writeByte(STATUS_ERROR);
+        out.writeInt(diagnosticList.size());
+        for (Diagnostic diagnostic : diagnosticList)
+        {
+            out.writeInt(diagnostic.getLineNum());
+            out.writeUTF(diagnostic.getMessage());
+        }
+        out.flush();
+    }
+
+    /**
+     * 读应答的状态之后的部分;
+     */
+    public static Map<String, byte[]> readClassFiles(DataInputStream in) throws IOException
+    {
+        int count = in.readInt();
+        Map<String, byte[]> classFileMap = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++)
+        {
+            String className = in.readUTF();
+            byte[] bytes = new byte[readLength(in)];
+            in.readFully(bytes);
+            classFileMap.put(className, bytes);
+        }
+        return classFileMap;
+    }
+
+    /**
+     * @return 校验过的长度, 负数或超过上限都是坏请求;
+     */
+    private static int readLength(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD_BYTES)
+        {
+            throw new IOException(String.format("bad payload length %d", length));
+        }
+        return length;
+    }
+
+    public static List<Diagnostic> readDiagnostics(DataInputStream in) throws IOException
+    {
+        int count = in.readInt();
+        List<Diagnostic> diagnosticList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            int lineNum = in.readInt();
+            diagnosticList.add(new Diagnostic(lineNum, in.readUTF()));
+        }
+        return diagnosticList;
+    }
+}
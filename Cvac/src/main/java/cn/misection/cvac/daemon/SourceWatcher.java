@@ -0,0 +1,132 @@
+package cn.misection.cvac.daemon;
+
+import cn.misection.cvac.CvaCompiler;
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.context.CompileException;
+import cn.misection.cvac.context.CompileOptions;
+import cn.misection.cvac.incremental.IncrementalCompiler;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SourceWatcher
+ * @Description 监视一个源文件, 内容变了就在当前进程里重编并写出class;
+ * 一次保存常常触发多个事件, 内容没变的跳过;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SourceWatcher implements Runnable
+{
+    private final Path source;
+
+    private final CompileOptions options;
+
+    private String lastSource;
+
+    /**
+     * options带缓存目录时只写出变了的类, 否则为null;
+     */
+    private final IncrementalCompiler incrementalCompiler;
+
+    /**
+     * @param options class写到其中的输出目录, 可带增量编译的缓存目录;
+     */
+    public SourceWatcher(Path source, CompileOptions options)
+    {
+        this.source = source.toAbsolutePath();
+        this.options = options;
+        this.incrementalCompiler = options.getCacheDir() == null
+                ? null
+                : new IncrementalCompiler(options.getCacheDir());
+    }
+
+    @Override
+    public void run()
+    {
+        try (WatchService watchService = source.getFileSystem().newWatchService())
+        {
+            source.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            recompile();
+            while (!Thread.currentThread().isInterrupted())
+            {
+                WatchKey key = watchService.take();
+                boolean touched = key.pollEvents().stream()
+                        .anyMatch(event -> source.getFileName().equals(event.context()));
+                key.reset();
+                if (touched)
+                {
+                    recompile();
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException e)
+        {
+            System.err.printf("cannot watch %s: %s%n", source, e.getMessage());
+        }
+    }
+
+    /**
+     * @return 是否真的编译了, 内容未变或读不到时为false;
+     */
+    public boolean recompile()
+    {
+        String text;
+        try
+        {
+            text = new String(Files.readAllBytes(source), options.getCharset());
+        }
+        catch (IOException e)
+        {
+            // 编辑器保存时文件可能短暂不存在, 等下一个事件;
+            return false;
+        }
+        if (text.equals(lastSource))
+        {
+            return false;
+        }
+        lastSource = text;
+        long start = System.nanoTime();
+        CompilationContext context = new CompilationContext(options, System.err::println);
+        try
+        {
+            Map<String, byte[]> classFileMap = incrementalCompiler == null
+                    ? CvaCompiler.compile(text, context)
+                    : incrementalCompiler.compile(text, context);
+            Set<String> changedSet = incrementalCompiler == null
+                    ? null
+                    : new HashSet<>(incrementalCompiler.getChangedList());
+            for (Map.Entry<String, byte[]> entry : classFileMap.entrySet())
+            {
+                Path path = context.outputFile(entry.getKey(), "class").toPath();
+                if (changedSet == null
+                        || changedSet.contains(entry.getKey())
+                        || !Files.isRegularFile(path))
+                {
+                    Files.write(path, entry.getValue());
+                }
+            }
+            System.out.printf("recompiled %s in %d ms%n",
+                    source.getFileName(), (System.nanoTime() - start) / 1_000_000);
+        }
+        catch (CompileException e)
+        {
+            System.err.printf("recompile %s failed%n", source.getFileName());
+        }
+        catch (IOException e)
+        {
+            System.err.printf("cannot write classes: %s%n", e.getMessage());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * @ClassName package-info
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @Description 常驻编译进程与瘦客户端, 走回环地址上的socket, 省掉每次编译的JVM启动与JIT预热;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+package cn.misection.cvac.daemon;
@@ -0,0 +1,104 @@
+package cn.misection.cvac.dataflow;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName Bits
+ * @Description 定长的long[]位向量, 长度在问题建立时就定了, 运算都就地做, 不像BitSet那样会扩容与克隆;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class Bits
+{
+    private Bits()
+    {
+    }
+
+    /**
+     * @return 能放下bitCount位的全0向量;
+     */
+    public static long[] of(int bitCount)
+    {
+        return new long[(bitCount + 63) >>> 6];
+    }
+
+    public static boolean get(long[] bits, int index)
+    {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public static void set(long[] bits, int index)
+    {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    public static void clear(long[] bits, int index)
+    {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    /**
+     * 前bitCount位置1, 多出的位保持0, equals才不会被它们干扰;
+     */
+    public static void fill(long[] bits, int bitCount)
+    {
+        for (int i = 0; i < bits.length; i++)
+        {
+            int rest = bitCount - (i << 6);
+            bits[i] = rest >= 64 ? -1L : rest <= 0 ? 0L : (1L << rest) - 1;
+        }
+    }
+
+    public static void or(long[] target, long[] source)
+    {
+        for (int i = 0; i < target.length; i++)
+        {
+            target[i] |= source[i];
+        }
+    }
+
+    public static void and(long[] target, long[] source)
+    {
+        for (int i = 0; i < target.length; i++)
+        {
+            target[i] &= source[i];
+        }
+    }
+
+    public static void andNot(long[] target, long[] source)
+    {
+        for (int i = 0; i < target.length; i++)
+        {
+            target[i] &= ~source[i];
+        }
+    }
+
+    /**
+     * target = gen | (source & ~kill);
+     *
+     * @return target是否变了;
+     */
+    public static boolean transfer(long[] target, long[] source, long[] gen, long[] kill)
+    {
+        boolean changed = false;
+        for (int i = 0; i < target.length; i++)
+        {
+            long value = gen[i] | (source[i] & ~kill[i]);
+            if (value != target[i])
+            {
+                target[i] = value;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public static int count(long[] bits)
+    {
+        int count = 0;
+        for (long word : bits)
+        {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
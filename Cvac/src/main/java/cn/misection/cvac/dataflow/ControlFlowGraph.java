@@ -0,0 +1,169 @@
+package cn.misection.cvac.dataflow;
+
+import cn.misection.cvac.ast.decl.AbstractDeclaration;
+import cn.misection.cvac.ast.expr.AbstractExpression;
+import cn.misection.cvac.ast.method.AbstractMethod;
+import cn.misection.cvac.ast.statement.AbstractStatement;
+
+import java.util.*;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName ControlFlowGraph
+ * @Description 一个方法(CvaMethod或CvaMainMethod)的ast上的控制流图;
+ * 参数与局部变量按声明顺序稠密编号, 参数在前, 编号就是位向量里的位;
+ * 块按建图顺序编号, 一个块的节点在getNode()里是连续的, 0号块是入口;
+ * 图只描述ast, 不持有它, ast改过之后要重建;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class ControlFlowGraph implements FlowGraph
+{
+    private final List<String> varNameList;
+
+    private final Map<String, Integer> varIndexMap;
+
+    private final int argCount;
+
+    private final List<FlowNode> nodeList;
+
+    /**
+     * 第b块的节点是[blockStarts[b], blockStarts[b + 1]);
+     */
+    private final int[] blockStarts;
+
+    private final int[][] successors;
+
+    private final int[][] predecessors;
+
+    /**
+     * 语句或条件表达式 -> 节点;
+     */
+    private final Map<Object, Integer> nodeIndexMap;
+
+    ControlFlowGraph(List<String> varNameList,
+                     Map<String, Integer> varIndexMap,
+                     int argCount,
+                     List<FlowNode> nodeList,
+                     int[] blockStarts,
+                     int[][] successors)
+    {
+        this.varNameList = varNameList;
+        this.varIndexMap = varIndexMap;
+        this.argCount = argCount;
+        this.nodeList = nodeList;
+        this.blockStarts = blockStarts;
+        this.successors = successors;
+        this.predecessors = EdgeListGraph.reverse(successors);
+        this.nodeIndexMap = new IdentityHashMap<>(nodeList.size());
+        for (FlowNode node : nodeList)
+        {
+            nodeIndexMap.put(node.getStatement() != null ? node.getStatement() : node.getExpr(), node.getIndex());
+        }
+    }
+
+    public static ControlFlowGraph of(AbstractMethod method)
+    {
+        List<String> varNameList = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (AbstractDeclaration decl : method.getArgumentList())
+        {
+            if (seen.add(decl.name()))
+            {
+                varNameList.add(decl.name());
+            }
+        }
+        int argCount = varNameList.size();
+        for (AbstractDeclaration decl : method.getLocalVarList())
+        {
+            if (seen.add(decl.name()))
+            {
+                varNameList.add(decl.name());
+            }
+        }
+        return new ControlFlowVisitor(varNameList, argCount).build(method);
+    }
+
+    @Override
+    public int blockCount()
+    {
+        return successors.length;
+    }
+
+    @Override
+    public int[] successorsOf(int block)
+    {
+        return successors[block];
+    }
+
+    @Override
+    public int[] predecessorsOf(int block)
+    {
+        return predecessors[block];
+    }
+
+    public int firstNodeOf(int block)
+    {
+        return blockStarts[block];
+    }
+
+    /**
+     * @return 块最后一个节点的下一个;
+     */
+    public int endNodeOf(int block)
+    {
+        return blockStarts[block + 1];
+    }
+
+    public int nodeCount()
+    {
+        return nodeList.size();
+    }
+
+    public FlowNode getNode(int index)
+    {
+        return nodeList.get(index);
+    }
+
+    /**
+     * @return 赋值, println或表达式语句的节点, 不在图里为-1;
+     */
+    public int nodeOf(AbstractStatement stm)
+    {
+        return nodeIndexMap.getOrDefault(stm, -1);
+    }
+
+    /**
+     * @return 条件, 返回值或for步进的节点, 不在图里为-1;
+     */
+    public int nodeOf(AbstractExpression expr)
+    {
+        return nodeIndexMap.getOrDefault(expr, -1);
+    }
+
+    public int varCount()
+    {
+        return varNameList.size();
+    }
+
+    /**
+     * @return 编号在[0, argCount())的是参数;
+     */
+    public int argCount()
+    {
+        return argCount;
+    }
+
+    /**
+     * @return 局部变量或参数的编号, 字段等为-1;
+     */
+    public int varIndexOf(String name)
+    {
+        return varIndexMap.getOrDefault(name, -1);
+    }
+
+    public String varNameOf(int var)
+    {
+        return varNameList.get(var);
+    }
+}
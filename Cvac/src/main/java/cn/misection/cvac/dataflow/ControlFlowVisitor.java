@@ -0,0 +1,323 @@
+package cn.misection.cvac.dataflow;
+
+import cn.misection.cvac.ast.IVisitor;
+import cn.misection.cvac.ast.clas.*;
+import cn.misection.cvac.ast.decl.*;
+import cn.misection.cvac.ast.entry.*;
+import cn.misection.cvac.ast.expr.AbstractExpression;
+import cn.misection.cvac.ast.expr.nonterminal.binary.*;
+import cn.misection.cvac.ast.expr.terminator.*;
+import cn.misection.cvac.ast.expr.nonterminal.unary.*;
+import cn.misection.cvac.ast.method.*;
+import cn.misection.cvac.ast.program.*;
+import cn.misection.cvac.ast.statement.*;
+import cn.misection.cvac.ast.type.basic.EnumCvaType;
+import cn.misection.cvac.ast.type.reference.CvaClassType;
+import cn.misection.cvac.ast.type.advance.CvaStringType;
+
+import java.util.*;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName ControlFlowVisitor
+ * @Description 走一遍方法体建ControlFlowGraph;
+ * 节点总是加在最新建的块上, 所以每个块的节点是连续的;
+ * 循环按codegen的顺序: 初始化, 条件所在的循环头, 循环体加步进, 回到循环头, 出口;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+final class ControlFlowVisitor implements IVisitor
+{
+    private final List<String> varNameList;
+
+    private final int argCount;
+
+    private final Map<String, Integer> varIndexMap;
+
+    private final List<FlowNode> nodeList = new ArrayList<>();
+
+    private final List<Integer> blockStartList = new ArrayList<>();
+
+    private final List<List<Integer>> successorList = new ArrayList<>();
+
+    private int curBlock;
+
+    /**
+     * 当前节点里读写到的变量与有无副作用;
+     */
+    private int[] defBuffer = new int[4];
+
+    private int defCount;
+
+    private int[] useBuffer = new int[8];
+
+    private int useCount;
+
+    private boolean sideEffect;
+
+    ControlFlowVisitor(List<String> varNameList, int argCount)
+    {
+        this.varNameList = varNameList;
+        this.argCount = argCount;
+        this.varIndexMap = new HashMap<>(varNameList.size() * 2);
+        for (int i = 0; i < varNameList.size(); i++)
+        {
+            varIndexMap.put(varNameList.get(i), i);
+        }
+    }
+
+    ControlFlowGraph build(AbstractMethod method)
+    {
+        this.curBlock = newBlock();
+        method.getStatementList().forEach(this::visit);
+        AbstractExpression retExpr = method.getRetExpr();
+        if (retExpr != null && !retExpr.isNull())
+        {
+            startNode();
+            visit(retExpr);
+            addNode(EnumFlowNode.RETURN, null, retExpr);
+        }
+        int blockCount = successorList.size();
+        int[] blockStarts = new int[blockCount + 1];
+        int[][] successors = new int[blockCount][];
+        for (int b = 0; b < blockCount; b++)
+        {
+            blockStarts[b] = blockStartList.get(b);
+            successors[b] = successorList.get(b).stream().mapToInt(Integer::intValue).toArray();
+        }
+        blockStarts[blockCount] = nodeList.size();
+        return new ControlFlowGraph(varNameList, varIndexMap, argCount, nodeList, blockStarts, successors);
+    }
+
+    private int newBlock()
+    {
+        blockStartList.add(nodeList.size());
+        successorList.add(new ArrayList<>(2));
+        return successorList.size() - 1;
+    }
+
+    private void addEdge(int from, int to)
+    {
+        successorList.get(from).add(to);
+    }
+
+    private void startNode()
+    {
+        this.defCount = 0;
+        this.useCount = 0;
+        this.sideEffect = false;
+    }
+
+    private void addNode(EnumFlowNode kind, AbstractStatement stm, AbstractExpression expr)
+    {
+        nodeList.add(new FlowNode(nodeList.size(), curBlock, kind, stm, expr,
+                Arrays.copyOf(defBuffer, defCount),
+                Arrays.copyOf(useBuffer, useCount),
+                sideEffect));
+    }
+
+    private void def(String name)
+    {
+        int var = varIndexMap.getOrDefault(name, -1);
+        if (var >= 0)
+        {
+            if (defCount == defBuffer.length)
+            {
+                defBuffer = Arrays.copyOf(defBuffer, defCount * 2);
+            }
+            defBuffer[defCount++] = var;
+        }
+    }
+
+    private void use(String name)
+    {
+        int var = varIndexMap.getOrDefault(name, -1);
+        if (var >= 0)
+        {
+            if (useCount == useBuffer.length)
+            {
+                useBuffer = Arrays.copyOf(useBuffer, useCount * 2);
+            }
+            useBuffer[useCount++] = var;
+        }
+    }
+
+    /**
+     * 在当前块上加一个条件节点, 当前块到此为止;
+     */
+    private void branch(AbstractExpression condition)
+    {
+        startNode();
+        visit(condition);
+        addNode(EnumFlowNode.BRANCH, null, condition);
+    }
+
+    @Override
+    public void visit(EnumCvaType basicType) {}
+
+    @Override
+    public void visit(CvaStringType type) {}
+
+    @Override
+    public void visit(CvaClassType type) {}
+
+    @Override
+    public void visit(CvaDeclaration decl) {}
+
+    @Override
+    public void visit(CvaAndAndExpr expr)
+    {
+        // 短路只影响求值, 不影响读到哪些变量, 不拆块;
+        visit(expr.getLeft());
+        visit(expr.getRight());
+    }
+
+    @Override
+    public void visit(CvaCallExpr expr)
+    {
+        visit(expr.getExpr());
+        expr.getArgs().forEach(this::visit);
+        this.sideEffect = true;
+    }
+
+    @Override
+    public void visit(CvaConstFalseExpr expr) {}
+
+    @Override
+    public void visit(CvaIdentifierExpr expr)
+    {
+        use(expr.name());
+    }
+
+    @Override
+    public void visit(CvaLessOrMoreThanExpr expr)
+    {
+        visit(expr.getLeft());
+        visit(expr.getRight());
+    }
+
+    @Override
+    public void visit(CvaNewExpr expr) {}
+
+    @Override
+    public void visit(CvaNegateExpr expr)
+    {
+        visit(expr.getExpr());
+    }
+
+    @Override
+    public void visit(CvaConstIntExpr expr) {}
+
+    @Override
+    public void visit(CvaConstStringExpr expr) {}
+
+    @Override
+    public void visit(CvaThisExpr expr) {}
+
+    @Override
+    public void visit(CvaConstTrueExpr expr) {}
+
+    @Override
+    public void visit(CvaOperandOperatorExpr expr)
+    {
+        walkOperandTree(expr, this::visit, node -> {});
+    }
+
+    @Override
+    public void visit(CvaIncDecExpr expr)
+    {
+        use(expr.name());
+        def(expr.name());
+        this.sideEffect = true;
+    }
+
+    @Override
+    public void visit(CvaAssignStatement stm)
+    {
+        startNode();
+        def(stm.getVarName());
+        visit(stm.getExpr());
+        addNode(EnumFlowNode.ASSIGN, stm, null);
+    }
+
+    @Override
+    public void visit(CvaBlockStatement stm)
+    {
+        stm.getStatementList().forEach(this::visit);
+    }
+
+    @Override
+    public void visit(CvaIfStatement stm)
+    {
+        branch(stm.getCondition());
+        int condBlock = curBlock;
+        this.curBlock = newBlock();
+        addEdge(condBlock, curBlock);
+        visit(stm.getThenStatement());
+        int thenEnd = curBlock;
+        int elseEnd = condBlock;
+        if (stm.getElseStatement() != null && !stm.getElseStatement().isNull())
+        {
+            this.curBlock = newBlock();
+            addEdge(condBlock, curBlock);
+            visit(stm.getElseStatement());
+            elseEnd = curBlock;
+        }
+        this.curBlock = newBlock();
+        addEdge(thenEnd, curBlock);
+        addEdge(elseEnd, curBlock);
+    }
+
+    @Override
+    public void visit(CvaWriteStatement stm)
+    {
+        startNode();
+        visit(stm.getExpr());
+        addNode(EnumFlowNode.EFFECT, stm, null);
+    }
+
+    @Override
+    public void visit(CvaWhileForStatement stm)
+    {
+        visit(stm.getForInit());
+        int header = newBlock();
+        addEdge(curBlock, header);
+        this.curBlock = header;
+        branch(stm.getCondition());
+        this.curBlock = newBlock();
+        addEdge(header, curBlock);
+        visit(stm.getBody());
+        if (!stm.getAfterBody().isNull())
+        {
+            startNode();
+            visit(stm.getAfterBody());
+            addNode(EnumFlowNode.EFFECT, null, stm.getAfterBody());
+        }
+        addEdge(curBlock, header);
+        this.curBlock = newBlock();
+        addEdge(header, curBlock);
+    }
+
+    @Override
+    public void visit(CvaExprStatement stm)
+    {
+        startNode();
+        visit(stm.getExpr());
+        addNode(EnumFlowNode.EFFECT, stm, null);
+    }
+
+    @Override
+    public void visit(CvaMethod cvaMethod) {}
+
+    @Override
+    public void visit(CvaMainMethod entryMethod) {}
+
+    @Override
+    public void visit(CvaClass cvaClass) {}
+
+    @Override
+    public void visit(CvaEntryClass entryClass) {}
+
+    @Override
+    public void visit(CvaProgram program) {}
+}
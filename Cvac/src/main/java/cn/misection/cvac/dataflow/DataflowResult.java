@@ -0,0 +1,43 @@
+package cn.misection.cvac.dataflow;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName DataflowResult
+ * @Description 每个块开头(in)与结尾(out)处的值, 与方向无关;
+ * 返回的数组就是内部的, 不要改;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class DataflowResult
+{
+    private final long[][] ins;
+
+    private final long[][] outs;
+
+    private final int visitCount;
+
+    DataflowResult(long[][] ins, long[][] outs, int visitCount)
+    {
+        this.ins = ins;
+        this.outs = outs;
+        this.visitCount = visitCount;
+    }
+
+    public long[] in(int block)
+    {
+        return ins[block];
+    }
+
+    public long[] out(int block)
+    {
+        return outs[block];
+    }
+
+    /**
+     * @return 求解时算了多少次块的传递函数;
+     */
+    public int getVisitCount()
+    {
+        return visitCount;
+    }
+}
@@ -0,0 +1,119 @@
+package cn.misection.cvac.dataflow;
+
+import java.util.Arrays;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName DataflowSolver
+ * @Description 工作表求解GenKillProblem;
+ * 每块的gen/kill只在开始时算一次, 之后只做整字的位运算, 一个块的值变了才把受影响的邻块放回表里;
+ * 前向按块号, 后向按块号倒序放入初始表, 对结构化代码建的图差不多就是逆后序;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class DataflowSolver
+{
+    private DataflowSolver()
+    {
+    }
+
+    public static DataflowResult solve(FlowGraph graph, GenKillProblem problem)
+    {
+        int blockCount = graph.blockCount();
+        int bitCount = problem.bitCount();
+        boolean forward = problem.direction() == EnumFlowDirection.FORWARD;
+        boolean union = problem.meet() == EnumMeet.UNION;
+
+        long[][] gens = new long[blockCount][];
+        long[][] kills = new long[blockCount][];
+        long[][] ins = new long[blockCount][];
+        long[][] outs = new long[blockCount][];
+        for (int b = 0; b < blockCount; b++)
+        {
+            gens[b] = Bits.of(bitCount);
+            kills[b] = Bits.of(bitCount);
+            problem.transfer(b, gens[b], kills[b]);
+            ins[b] = Bits.of(bitCount);
+            outs[b] = Bits.of(bitCount);
+            if (!union)
+            {
+                // 交的初值是全集, 否则回边上的值永远是空;
+                Bits.fill(forward ? outs[b] : ins[b], bitCount);
+            }
+        }
+        long[] boundary = Bits.of(bitCount);
+        problem.boundary(boundary);
+
+        // 循环队列, 每块最多在表里一次;
+        int[] queue = new int[blockCount + 1];
+        boolean[] queued = new boolean[blockCount];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < blockCount; i++)
+        {
+            int b = forward ? i : blockCount - 1 - i;
+            queue[tail++] = b;
+            queued[b] = true;
+        }
+        int visitCount = 0;
+        while (head != tail)
+        {
+            int b = queue[head];
+            head = head == blockCount ? 0 : head + 1;
+            queued[b] = false;
+            visitCount++;
+
+            int[] sources = forward ? graph.predecessorsOf(b) : graph.successorsOf(b);
+            long[] meetValue = forward ? ins[b] : outs[b];
+            long[][] sourceValues = forward ? outs : ins;
+            boolean atBoundary = forward ? b == 0 : sources.length == 0;
+            meet(meetValue, sources, sourceValues, atBoundary ? boundary : null, union, bitCount);
+
+            long[] result = forward ? outs[b] : ins[b];
+            if (!Bits.transfer(result, meetValue, gens[b], kills[b]))
+            {
+                continue;
+            }
+            for (int next : forward ? graph.successorsOf(b) : graph.predecessorsOf(b))
+            {
+                if (!queued[next])
+                {
+                    queued[next] = true;
+                    queue[tail] = next;
+                    tail = tail == blockCount ? 0 : tail + 1;
+                }
+            }
+        }
+        return new DataflowResult(ins, outs, visitCount);
+    }
+
+    /**
+     * 边界值当作一个额外的来源;
+     */
+    private static void meet(long[] target, int[] sources, long[][] values,
+                             long[] boundary, boolean union, int bitCount)
+    {
+        if (union)
+        {
+            Arrays.fill(target, 0L);
+            for (int source : sources)
+            {
+                Bits.or(target, values[source]);
+            }
+            if (boundary != null)
+            {
+                Bits.or(target, boundary);
+            }
+            return;
+        }
+        Bits.fill(target, bitCount);
+        for (int source : sources)
+        {
+            Bits.and(target, values[source]);
+        }
+        if (boundary != null)
+        {
+            Bits.and(target, boundary);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package cn.misection.cvac.dataflow;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName EdgeListGraph
+ * @Description 只由每块的后继给出的图, 前驱在构造时反推, 给字节码上的基本块等没有ast的图用;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class EdgeListGraph implements FlowGraph
+{
+    private final int[][] successors;
+
+    private final int[][] predecessors;
+
+    public EdgeListGraph(int[][] successors)
+    {
+        this.successors = successors;
+        this.predecessors = reverse(successors);
+    }
+
+    static int[][] reverse(int[][] edges)
+    {
+        int[] counts = new int[edges.length];
+        for (int[] targets : edges)
+        {
+            for (int target : targets)
+            {
+                counts[target]++;
+            }
+        }
+        int[][] reversed = new int[edges.length][];
+        for (int b = 0; b < edges.length; b++)
+        {
+            reversed[b] = new int[counts[b]];
+            counts[b] = 0;
+        }
+        for (int b = 0; b < edges.length; b++)
+        {
+            for (int target : edges[b])
+            {
+                reversed[target][counts[target]++] = b;
+            }
+        }
+        return reversed;
+    }
+
+    @Override
+    public int blockCount()
+    {
+        return successors.length;
+    }
+
+    @Override
+    public int[] successorsOf(int block)
+    {
+        return successors[block];
+    }
+
+    @Override
+    public int[] predecessorsOf(int block)
+    {
+        return predecessors[block];
+    }
+}
@@ -0,0 +1,22 @@
+package cn.misection.cvac.dataflow;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName EnumFlowDirection
+ * @Description 数据流沿控制流的方向;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public enum EnumFlowDirection
+{
+    /**
+     * 从入口往后, 块的in由前驱的out汇合, 如到达定值;
+     */
+    FORWARD,
+
+    /**
+     * 从出口往前, 块的out由后继的in汇合, 如活跃变量;
+     */
+    BACKWARD,
+    ;
+}
@@ -0,0 +1,32 @@
+package cn.misection.cvac.dataflow;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName EnumFlowNode
+ * @Description 控制流图里一个节点对应的ast;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public enum EnumFlowNode
+{
+    /**
+     * 赋值语句;
+     */
+    ASSIGN,
+
+    /**
+     * println与表达式语句, 以及for的步进;
+     */
+    EFFECT,
+
+    /**
+     * if与循环的条件, 块以它结尾;
+     */
+    BRANCH,
+
+    /**
+     * 方法的返回值;
+     */
+    RETURN,
+    ;
+}
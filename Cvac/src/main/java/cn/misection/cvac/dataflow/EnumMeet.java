@@ -0,0 +1,22 @@
+package cn.misection.cvac.dataflow;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName EnumMeet
+ * @Description 汇合点上的运算;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public enum EnumMeet
+{
+    /**
+     * 任一路径上成立即可, 初值为空集;
+     */
+    UNION,
+
+    /**
+     * 所有路径上都成立才行, 初值为全集;
+     */
+    INTERSECTION,
+    ;
+}
@@ -0,0 +1,18 @@
+package cn.misection.cvac.dataflow;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName FlowGraph
+ * @Description 求解器只需要块的编号与边, ast上的控制流图与字节码的基本块都可以实现它;
+ * 0号块是入口, 没有后继的块是出口;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public interface FlowGraph
+{
+    int blockCount();
+
+    int[] successorsOf(int block);
+
+    int[] predecessorsOf(int block);
+}
@@ -0,0 +1,95 @@
+package cn.misection.cvac.dataflow;
+
+import cn.misection.cvac.ast.expr.AbstractExpression;
+import cn.misection.cvac.ast.statement.AbstractStatement;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName FlowNode
+ * @Description 控制流图的节点, 一条不含分支的语句或一个条件;
+ * 读与写都是变量的稠密编号, 字段不编号, 不出现在这里;
+ * 节点内先读后写, 自增既读又写;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class FlowNode
+{
+    private final int index;
+
+    private final int block;
+
+    private final EnumFlowNode kind;
+
+    /**
+     * ASSIGN与EFFECT是语句, BRANCH与RETURN是表达式, 另一个为null;
+     */
+    private final AbstractStatement statement;
+
+    private final AbstractExpression expr;
+
+    private final int[] defs;
+
+    private final int[] uses;
+
+    private final boolean sideEffect;
+
+    FlowNode(int index, int block, EnumFlowNode kind,
+             AbstractStatement statement, AbstractExpression expr,
+             int[] defs, int[] uses, boolean sideEffect)
+    {
+        this.index = index;
+        this.block = block;
+        this.kind = kind;
+        this.statement = statement;
+        this.expr = expr;
+        this.defs = defs;
+        this.uses = uses;
+        this.sideEffect = sideEffect;
+    }
+
+    public int getIndex()
+    {
+        return index;
+    }
+
+    public int getBlock()
+    {
+        return block;
+    }
+
+    public EnumFlowNode getKind()
+    {
+        return kind;
+    }
+
+    public AbstractStatement getStatement()
+    {
+        return statement;
+    }
+
+    public AbstractExpression getExpr()
+    {
+        return expr;
+    }
+
+    /**
+     * @return 写的变量, 赋值的左边在最前;
+     */
+    public int[] getDefs()
+    {
+        return defs;
+    }
+
+    public int[] getUses()
+    {
+        return uses;
+    }
+
+    /**
+     * @return 是否含调用或自增, 含的节点即使结果没用也不能删;
+     */
+    public boolean hasSideEffect()
+    {
+        return sideEffect;
+    }
+}
@@ -0,0 +1,30 @@
+package cn.misection.cvac.dataflow;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName GenKillProblem
+ * @Description 块的传递函数形如 gen | (x & ~kill) 的位向量问题, 交给DataflowSolver求解;
+ * 子类只需说明方向, 汇合方式, 位数, 每块的gen/kill与边界值;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public abstract class GenKillProblem
+{
+    public abstract EnumFlowDirection direction();
+
+    public abstract EnumMeet meet();
+
+    public abstract int bitCount();
+
+    /**
+     * 填一个块的gen与kill, 传进来时都是全0;
+     */
+    public abstract void transfer(int block, long[] gen, long[] kill);
+
+    /**
+     * 前向问题是入口块in处的值, 后向问题是出口块out处的值, 默认为空集;
+     */
+    public void boundary(long[] value)
+    {
+    }
+}
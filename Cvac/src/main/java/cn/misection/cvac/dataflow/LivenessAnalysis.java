@@ -0,0 +1,109 @@
+package cn.misection.cvac.dataflow;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName LivenessAnalysis
+ * @Description 活跃变量: 后向, 并, 一位对应一个变量;
+ * 构造时就解好, 节点之后的活跃集第一次问到某块时才在块内倒着推一遍, 记下来;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class LivenessAnalysis extends GenKillProblem
+{
+    private final ControlFlowGraph graph;
+
+    private final DataflowResult result;
+
+    /**
+     * 节点 -> 节点之后活跃的变量, 按块懒算;
+     */
+    private final long[][] nodeLiveOuts;
+
+    public LivenessAnalysis(ControlFlowGraph graph)
+    {
+        this.graph = graph;
+        this.nodeLiveOuts = new long[graph.nodeCount()][];
+        this.result = DataflowSolver.solve(graph, this);
+    }
+
+    @Override
+    public EnumFlowDirection direction()
+    {
+        return EnumFlowDirection.BACKWARD;
+    }
+
+    @Override
+    public EnumMeet meet()
+    {
+        return EnumMeet.UNION;
+    }
+
+    @Override
+    public int bitCount()
+    {
+        return graph.varCount();
+    }
+
+    @Override
+    public void transfer(int block, long[] gen, long[] kill)
+    {
+        for (int node = graph.endNodeOf(block) - 1; node >= graph.firstNodeOf(block); node--)
+        {
+            FlowNode flowNode = graph.getNode(node);
+            for (int def : flowNode.getDefs())
+            {
+                Bits.clear(gen, def);
+                Bits.set(kill, def);
+            }
+            for (int use : flowNode.getUses())
+            {
+                Bits.set(gen, use);
+            }
+        }
+    }
+
+    public long[] liveIn(int block)
+    {
+        return result.in(block);
+    }
+
+    public long[] liveOut(int block)
+    {
+        return result.out(block);
+    }
+
+    public DataflowResult getResult()
+    {
+        return result;
+    }
+
+    /**
+     * @return var在node执行完之后是否还会被读;
+     */
+    public boolean isLiveAfter(int node, int var)
+    {
+        if (nodeLiveOuts[node] == null)
+        {
+            sweep(graph.getNode(node).getBlock());
+        }
+        return Bits.get(nodeLiveOuts[node], var);
+    }
+
+    private void sweep(int block)
+    {
+        long[] live = result.out(block).clone();
+        for (int node = graph.endNodeOf(block) - 1; node >= graph.firstNodeOf(block); node--)
+        {
+            nodeLiveOuts[node] = live.clone();
+            FlowNode flowNode = graph.getNode(node);
+            for (int def : flowNode.getDefs())
+            {
+                Bits.clear(live, def);
+            }
+            for (int use : flowNode.getUses())
+            {
+                Bits.set(live, use);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package cn.misection.cvac.dataflow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName ReachingDefinitions
+ * @Description 到达定值: 前向, 并, 一位对应一个定值;
+ * 前argCount个定值是参数在入口处的值, 不对应节点, 之后是各节点对各变量的写, 按节点顺序;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class ReachingDefinitions extends GenKillProblem
+{
+    /**
+     * 参数定值的节点号;
+     */
+    public static final int ENTRY = -1;
+
+    private final ControlFlowGraph graph;
+
+    private final int[] defNodes;
+
+    private final int[] defVars;
+
+    /**
+     * 节点 -> 它的第一个定值, 没有写的节点为-1;
+     */
+    private final int[] firstDefOfNode;
+
+    /**
+     * 变量 -> 它的所有定值;
+     */
+    private final long[][] defsOfVar;
+
+    private final DataflowResult result;
+
+    public ReachingDefinitions(ControlFlowGraph graph)
+    {
+        this.graph = graph;
+        int defCount = graph.argCount();
+        for (int node = 0; node < graph.nodeCount(); node++)
+        {
+            defCount += graph.getNode(node).getDefs().length;
+        }
+        this.defNodes = new int[defCount];
+        this.defVars = new int[defCount];
+        this.firstDefOfNode = new int[graph.nodeCount()];
+        this.defsOfVar = new long[graph.varCount()][];
+        for (int var = 0; var < graph.varCount(); var++)
+        {
+            defsOfVar[var] = Bits.of(defCount);
+        }
+        int def = 0;
+        for (; def < graph.argCount(); def++)
+        {
+            defNodes[def] = ENTRY;
+            defVars[def] = def;
+            Bits.set(defsOfVar[def], def);
+        }
+        for (int node = 0; node < graph.nodeCount(); node++)
+        {
+            int[] vars = graph.getNode(node).getDefs();
+            firstDefOfNode[node] = vars.length == 0 ? -1 : def;
+            for (int var : vars)
+            {
+                defNodes[def] = node;
+                defVars[def] = var;
+                Bits.set(defsOfVar[var], def);
+                def++;
+            }
+        }
+        this.result = DataflowSolver.solve(graph, this);
+    }
+
+    @Override
+    public EnumFlowDirection direction()
+    {
+        return EnumFlowDirection.FORWARD;
+    }
+
+    @Override
+    public EnumMeet meet()
+    {
+        return EnumMeet.UNION;
+    }
+
+    @Override
+    public int bitCount()
+    {
+        return defNodes.length;
+    }
+
+    @Override
+    public void transfer(int block, long[] gen, long[] kill)
+    {
+        for (int node = graph.firstNodeOf(block); node < graph.endNodeOf(block); node++)
+        {
+            apply(node, gen, kill);
+        }
+    }
+
+    @Override
+    public void boundary(long[] value)
+    {
+        for (int def = 0; def < graph.argCount(); def++)
+        {
+            Bits.set(value, def);
+        }
+    }
+
+    /**
+     * kill为null时只推进gen, 用来在块内往后推到达的集合;
+     */
+    private void apply(int node, long[] gen, long[] kill)
+    {
+        int def = firstDefOfNode[node];
+        for (int var : graph.getNode(node).getDefs())
+        {
+            Bits.andNot(gen, defsOfVar[var]);
+            Bits.set(gen, def++);
+            if (kill != null)
+            {
+                Bits.or(kill, defsOfVar[var]);
+            }
+        }
+    }
+
+    public int defCount()
+    {
+        return defNodes.length;
+    }
+
+    /**
+     * @return 定值所在的节点, 参数为ENTRY;
+     */
+    public int getDefNode(int def)
+    {
+        return defNodes[def];
+    }
+
+    public int getDefVar(int def)
+    {
+        return defVars[def];
+    }
+
+    public long[] reachingIn(int block)
+    {
+        return result.in(block);
+    }
+
+    public DataflowResult getResult()
+    {
+        return result;
+    }
+
+    /**
+     * @return node执行之前能到达的定值;
+     */
+    public long[] reachingAt(int node)
+    {
+        int block = graph.getNode(node).getBlock();
+        long[] reaching = result.in(block).clone();
+        for (int before = graph.firstNodeOf(block); before < node; before++)
+        {
+            apply(before, reaching, null);
+        }
+        return reaching;
+    }
+
+    /**
+     * node读var时读到的值可能来自哪些节点, 参数的入口值为ENTRY, 一个都没有说明var可能未初始化;
+     */
+    public List<Integer> defNodesOf(int node, int var)
+    {
+        long[] reaching = reachingAt(node);
+        Bits.and(reaching, defsOfVar[var]);
+        List<Integer> nodeList = new ArrayList<>();
+        for (int def = 0; def < defNodes.length; def++)
+        {
+            if (Bits.get(reaching, def))
+            {
+                nodeList.add(defNodes[def]);
+            }
+        }
+        return nodeList;
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * @ClassName package-info
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @Description 位向量数据流分析: 方法的控制流图, 变量稠密编号, 以及用工作表求解的gen/kill问题, 如活跃变量与到达定值;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+package cn.misection.cvac.dataflow;
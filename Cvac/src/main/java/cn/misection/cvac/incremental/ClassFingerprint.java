@@ -0,0 +1,180 @@
+package cn.misection.cvac.incremental;
+
+import cn.misection.cvac.ast.decl.AbstractDeclaration;
+import cn.misection.cvac.ast.type.ICvaType;
+import cn.misection.cvac.ast.type.reference.CvaClassType;
+import cn.misection.cvac.config.VersionMacro;
+import cn.misection.cvac.context.CompileOptions;
+import cn.misection.cvac.lexer.CvaTokenBuffer;
+import cn.misection.cvac.lexer.EnumCvaToken;
+import cn.misection.cvac.parser.ClassSpan;
+import cn.misection.cvac.semantic.ClassBinding;
+import cn.misection.cvac.semantic.ClassMap;
+import cn.misection.cvac.semantic.MethodType;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName ClassFingerprint
+ * @Description 一个类的缓存键: 它自己的token, 它用到的类的签名, 编译选项与编译器版本的SHA-256;
+ * 只看token不看空白与行号, 生成的class里没有行号表, 挪动位置或改格式不算改动;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class ClassFingerprint
+{
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ClassFingerprint()
+    {
+    }
+
+    /**
+     * @param classMap 语义检查之后的签名表;
+     * @return 64位十六进制串;
+     */
+    public static String of(CvaTokenBuffer tokens,
+                            ClassSpan span,
+                            ClassMap classMap,
+                            CompileOptions options)
+    {
+        // 每段前面写上长度, 相邻的段拼不出同一个输入;
+        StringBuilder builder = new StringBuilder();
+        append(builder, VersionMacro.VERSION);
+        append(builder, String.format("optimize=%b,peephole=%b,ssa=%b",
+                options.isOptimize(), options.isPeephole(), options.isSsa()));
+        char[] source = tokens.source();
+        for (int i = span.getFirstToken(); i < span.getEndToken(); i++)
+        {
+            // 原文决定了转义后的字面量, 不必逐个构造String;
+            int length = tokens.length(i);
+            builder.append((char) tokens.kind(i).ordinal())
+                    .append((char) length)
+                    .append((char) (length >>> 16))
+                    .append(source, tokens.start(i), length);
+        }
+        for (String className : dependencyOf(tokens, span, classMap))
+        {
+            append(builder, className);
+            append(builder, signatureOf(classMap.getClassBinding(className)));
+        }
+        return toHex(newDigest().digest(builder.toString().getBytes(StandardCharsets.UTF_16LE)));
+    }
+
+    /**
+     * 区间里出现的类名与父类, 再沿签名里的类型与父类传递闭包;
+     * 签名里的类会决定调用哪个方法, 表达式是什么类型, 所以它们的签名也要算进来;
+     *
+     * @return 排好序的类名, 不含类自己;
+     */
+    static SortedSet<String> dependencyOf(CvaTokenBuffer tokens, ClassSpan span, ClassMap classMap)
+    {
+        String self = span.getClassName();
+        Deque<String> workList = new ArrayDeque<>();
+        for (int i = span.getFirstToken(); i < span.getEndToken(); i++)
+        {
+            if (tokens.kind(i) == EnumCvaToken.IDENTIFIER)
+            {
+                workList.add(tokens.literal(i));
+            }
+        }
+        // 自己的签名由自己的token决定, 但父类要从这里进闭包;
+        workList.addAll(referenceOf(classMap.getClassBinding(self)));
+
+        SortedSet<String> dependencySet = new TreeSet<>();
+        while (!workList.isEmpty())
+        {
+            String className = workList.poll();
+            if (!className.equals(self)
+                    && classMap.containsKey(className)
+                    && dependencySet.add(className))
+            {
+                workList.addAll(referenceOf(classMap.getClassBinding(className)));
+            }
+        }
+        return dependencySet;
+    }
+
+    /**
+     * 父类, 字段与方法按名字排序, 与HashMap的遍历顺序无关;
+     */
+    static String signatureOf(ClassBinding binding)
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("extends ").append(binding.getParent()).append(';');
+        new TreeMap<>(binding.getFieldMap()).forEach((name, type) ->
+                builder.append(name).append(':').append(type).append(';'));
+        new TreeMap<>(binding.getMethodMap()).forEach((name, methodType) ->
+        {
+            builder.append(name).append('(');
+            for (AbstractDeclaration arg : methodType.getArgsType())
+            {
+                builder.append(arg.type()).append(',');
+            }
+            builder.append(')').append(methodType.getRetType()).append(';');
+        });
+        return builder.toString();
+    }
+
+    private static List<String> referenceOf(ClassBinding binding)
+    {
+        List<String> referenceList = new ArrayList<>();
+        if (binding == null)
+        {
+            return referenceList;
+        }
+        if (binding.getParent() != null)
+        {
+            referenceList.add(binding.getParent());
+        }
+        binding.getFieldMap().values().forEach(type -> addClassType(type, referenceList));
+        for (MethodType methodType : binding.getMethodMap().values())
+        {
+            addClassType(methodType.getRetType(), referenceList);
+            methodType.getArgsType().forEach(arg -> addClassType(arg.type(), referenceList));
+        }
+        return referenceList;
+    }
+
+    private static void addClassType(ICvaType type, List<String> referenceList)
+    {
+        if (type instanceof CvaClassType)
+        {
+            referenceList.add(((CvaClassType) type).getName());
+        }
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // 每个JRE都必须带SHA-256;
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void append(StringBuilder builder, String text)
+    {
+        int length = text.length();
+        builder.append((char) length).append((char) (length >>> 16)).append(text);
+    }
+
+    private static String toHex(byte[] bytes)
+    {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,237 @@
+package cn.misection.cvac.incremental;
+
+import cn.misection.cvac.ast.program.AbstractProgram;
+import cn.misection.cvac.codegen.ParallelCodeGenerator;
+import cn.misection.cvac.codegen.peephole.PeepholeOptimizer;
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.context.CompileOptions;
+import cn.misection.cvac.io.MappedBufferedHandler;
+import cn.misection.cvac.lexer.CvaTokenBuffer;
+import cn.misection.cvac.lexer.DfaLexer;
+import cn.misection.cvac.optimize.Optimizer;
+import cn.misection.cvac.parser.ClassSpan;
+import cn.misection.cvac.parser.Parser;
+import cn.misection.cvac.semantic.SemanticVisitor;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName IncrementalCompiler
+ * @Description 带缓存的compile(): 词法, 语法与语义检查每次都做, 只有指纹变了的类才翻译与生成;
+ * 缓存是目录下的一个文件, 每个类记着上次的指纹与字节, 整个读进来, 有变化时整个写回;
+ * 一个类一个文件时几百个类的读写都是系统调用, 比生成本身还慢;
+ * 缓存对应一个输出目录, 不同输出目录请用不同的缓存目录; 一个实例不能同时编译;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class IncrementalCompiler
+{
+    private static final String CACHE_FILE = "classes.cache";
+
+    /**
+     * "CVC1";
+     */
+    private static final int MAGIC = 0x43564331;
+
+    private final File cacheDir;
+
+    /**
+     * 上次compile()里指纹变了, 重新生成也需要重新写出的类;
+     */
+    private final List<String> changedList = new ArrayList<>();
+
+    /**
+     * 类名 -> 上次的指纹与字节, 第一次compile()时从缓存文件读入, 之后以内存里的为准;
+     */
+    private Map<String, CacheEntry> cacheMap;
+
+    public IncrementalCompiler(File cacheDir)
+    {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * @return 类名 -> class文件字节, 全部的类, 入口类在前, 与CvaCompiler.compile()逐字节相同;
+     * @throws cn.misection.cvac.context.CompileException 编译错误或缓存不可写;
+     */
+    public Map<String, byte[]> compile(CharSequence source, CompilationContext context)
+    {
+        changedList.clear();
+        // 与CvaCompiler.compile()读同样的字符, 指纹也才对得上;
+        char[] chars = MappedBufferedHandler.of(source).array();
+        CvaTokenBuffer tokens = new DfaLexer(chars, context).tokenize();
+        Parser parser = new Parser(tokens, context);
+        AbstractProgram program = parser.parse();
+        SemanticVisitor checker = new SemanticVisitor(context);
+        checker.visit(program);
+        if (!checker.isOkay())
+        {
+            throw context.abort(0, "check failed");
+        }
+
+        CompileOptions options = context.getOptions();
+        if (cacheMap == null)
+        {
+            cacheMap = readCache();
+        }
+        Map<String, String> keyMap = new HashMap<>();
+        Set<String> changedSet = new HashSet<>();
+        for (ClassSpan span : parser.getClassSpanList())
+        {
+            String className = span.getClassName();
+            String key = ClassFingerprint.of(tokens, span, checker.getClassMap(), options);
+            keyMap.put(className, key);
+            CacheEntry entry = cacheMap.get(className);
+            if (entry == null || !entry.key.equals(key))
+            {
+                changedSet.add(className);
+            }
+        }
+
+        Map<String, byte[]> generatedMap = Collections.emptyMap();
+        if (!changedSet.isEmpty())
+        {
+            if (options.isOptimize())
+            {
+                // 各遍都在方法内, 没变的类不用优化, 反正也不再生成;
+                new Optimizer(context).optimize(program, changedSet::contains);
+            }
+            PeepholeOptimizer peepholeOptimizer = options.isPeephole() ? new PeepholeOptimizer() : null;
+            generatedMap = new ParallelCodeGenerator(context, ForkJoinPool.commonPool(), peepholeOptimizer)
+                    .generate(program, changedSet::contains);
+        }
+
+        Map<String, byte[]> classFileMap = new LinkedHashMap<>();
+        Map<String, CacheEntry> nextCacheMap = new HashMap<>();
+        List<String> classNameList = new ArrayList<>();
+        classNameList.add(program.getEntryClass().name());
+        program.getClassList().forEach(cvaClass -> classNameList.add(cvaClass.name()));
+        for (String className : classNameList)
+        {
+            CacheEntry entry = cacheMap.get(className);
+            if (changedSet.contains(className))
+            {
+                changedList.add(className);
+                entry = new CacheEntry(keyMap.get(className), generatedMap.get(className));
+            }
+            classFileMap.put(className, entry.bytes);
+            nextCacheMap.put(className, entry);
+        }
+        // 删掉的类也要从缓存里去掉;
+        boolean dirty = !changedList.isEmpty() || nextCacheMap.size() != cacheMap.size();
+        cacheMap = nextCacheMap;
+        if (dirty)
+        {
+            writeCache(context);
+        }
+        return classFileMap;
+    }
+
+    public List<String> getChangedList()
+    {
+        return Collections.unmodifiableList(changedList);
+    }
+
+    private Map<String, CacheEntry> readCache()
+    {
+        Map<String, CacheEntry> map = new HashMap<>();
+        File file = new File(cacheDir, CACHE_FILE);
+        if (!file.isFile())
+        {
+            return map;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (in.readInt() != MAGIC)
+            {
+                return map;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                String className = in.readUTF();
+                String key = in.readUTF();
+                byte[] bytes = new byte[readLength(in, file.length())];
+                in.readFully(bytes);
+                map.put(className, new CacheEntry(key, bytes));
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // 读不出来就当全变了;
+            map.clear();
+        }
+        return map;
+    }
+
+    /**
+     * @param limit 缓存文件的大小, 坏文件给出的长度不能让它先分配一大块;
+     * @return 校验过的长度;
+     */
+    private static int readLength(DataInputStream in, long limit) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0 || length > limit)
+        {
+            throw new IOException(String.format("bad cache entry length %d", length));
+        }
+        return length;
+    }
+
+    /**
+     * 先写临时文件再改名, 中途退出不会留下半个缓存;
+     */
+    private void writeCache(CompilationContext context)
+    {
+        try
+        {
+            Path dir = Files.createDirectories(cacheDir.toPath());
+            Path temp = Files.createTempFile(dir, "cvac", ".tmp");
+            try
+            {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temp))))
+                {
+                    out.writeInt(MAGIC);
+                    out.writeInt(cacheMap.size());
+                    for (Map.Entry<String, CacheEntry> entry : cacheMap.entrySet())
+                    {
+                        out.writeUTF(entry.getKey());
+                        out.writeUTF(entry.getValue().key);
+                        out.writeInt(entry.getValue().bytes.length);
+                        out.write(entry.getValue().bytes);
+                    }
+                }
+                Files.move(temp, dir.resolve(CACHE_FILE),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally
+            {
+                Files.deleteIfExists(temp);
+            }
+        }
+        catch (IOException e)
+        {
+            throw context.abort(0, String.format("cannot write cache %s: %s", cacheDir, e.getMessage()));
+        }
+    }
+
+    private static final class CacheEntry
+    {
+        private final String key;
+
+        private final byte[] bytes;
+
+        private CacheEntry(String key, byte[] bytes)
+        {
+            this.key = key;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * @ClassName package-info
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @Description 增量编译, 按类的源码区间与所依赖的签名算指纹, 没变的类直接取缓存;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+package cn.misection.cvac.incremental;
@@ -0,0 +1,266 @@
+package cn.misection.cvac.io;
+
+import cn.misection.cvac.constant.LexerCommon;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName ChannelBufferedHandler
+ * @Description 环形缓冲区, 按需从channel分块读入, 内存占用固定, 用于stdin与管道;
+ * DfaLexer经poll(char[], int, int)成块取走字符, 源文件本身不整段留在内存里;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class ChannelBufferedHandler implements IBufferedQueue
+{
+    /**
+     * 默认环形缓冲区大小, 必须为2的幂;
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 13;
+
+    private final ReadableByteChannel channel;
+
+    private final CharsetDecoder decoder;
+
+    private final ByteBuffer byteChunk;
+
+    private final CharBuffer charChunk;
+
+    private final char[] ring;
+
+    private final int mask;
+
+    /**
+     * 队首下标;
+     */
+    private int head;
+
+    /**
+     * 环中已解码未poll的字符数;
+     */
+    private int count;
+
+    /**
+     * channel读到末尾;
+     */
+    private boolean channelEof;
+
+    /**
+     * 末尾EOF已经装载;
+     */
+    private boolean finished;
+
+    /**
+     * 上一个字符是'\r', 用于把"\r\n"折叠成'\n';
+     */
+    private boolean lastCr;
+
+    /**
+     * 最后装载进环的字符, 用于判断是否需要补'\n';
+     */
+    private char lastLoaded = LexerCommon.NEW_LINE;
+
+    public ChannelBufferedHandler(ReadableByteChannel channel)
+    {
+        this(channel, DEFAULT_CAPACITY, StandardCharsets.UTF_8);
+    }
+
+    public ChannelBufferedHandler(ReadableByteChannel channel, int capacity, Charset charset)
+    {
+        if (capacity < 16 || Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException(
+                    String.format("capacity must be a power of two and >= 16, but got %d", capacity));
+        }
+        this.channel = channel;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.ring = new char[capacity];
+        this.mask = capacity - 1;
+        // 每次最多解码半个环, 再加上补的'\n'与EOF, 见fill;
+        this.byteChunk = ByteBuffer.allocate(capacity >> 1);
+        this.charChunk = CharBuffer.allocate(capacity >> 1);
+    }
+
+    /**
+     * 保证环中至少有need个字符, 除非已经读到EOF;
+     * 只在count < need时装载, 一次最多装半个环加'\n'与EOF两个字符,
+     * 所以need小于半个环才不会覆盖队首;
+     *
+     * @param need 需要的字符数;
+     */
+    private void fill(int need)
+    {
+        if (need >= (ring.length >> 1))
+        {
+            throw new IllegalArgumentException(
+                    String.format("lookahead %d exceeds half of ring capacity %d", need, ring.length));
+        }
+        try
+        {
+            while (count < need && !finished)
+            {
+                load();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void load() throws IOException
+    {
+        if (!channelEof && channel.read(byteChunk) < 0)
+        {
+            channelEof = true;
+        }
+        byteChunk.flip();
+        charChunk.clear();
+        decoder.decode(byteChunk, charChunk, channelEof);
+        if (channelEof)
+        {
+            decoder.flush(charChunk);
+        }
+        byteChunk.compact();
+        charChunk.flip();
+        while (charChunk.hasRemaining())
+        {
+            push(charChunk.get());
+        }
+        if (channelEof && byteChunk.position() == 0)
+        {
+            // 与BufferedHandler一致, 最后一行补'\n', 再装载一个EOF;
+            if (lastLoaded != LexerCommon.NEW_LINE)
+            {
+                offer(LexerCommon.NEW_LINE);
+            }
+            offer(LexerCommon.EOF);
+            finished = true;
+        }
+    }
+
+    private void push(char ch)
+    {
+        if (ch == '\r')
+        {
+            lastCr = true;
+            offer(LexerCommon.NEW_LINE);
+            return;
+        }
+        if (ch == LexerCommon.NEW_LINE && lastCr)
+        {
+            lastCr = false;
+            return;
+        }
+        lastCr = false;
+        offer(ch);
+    }
+
+    private void offer(char ch)
+    {
+        ring[(head + count) & mask] = ch;
+        count++;
+        lastLoaded = ch;
+    }
+
+    @Override
+    public char peek()
+    {
+        fill(1);
+        return count == 0 ? LexerCommon.EOF : ring[head];
+    }
+
+    @Override
+    public char peek(int advance)
+    {
+        // 与BufferedHandler一致, advance从1开始;
+        fill(advance);
+        return count < advance ? LexerCommon.EOF : ring[(head + advance - 1) & mask];
+    }
+
+    @Override
+    public char poll()
+    {
+        char c = peek();
+        if (count > 0)
+        {
+            head = (head + 1) & mask;
+            count--;
+        }
+        return c;
+    }
+
+    @Override
+    public String poll(int advance)
+    {
+        fill(advance);
+        if (count < advance)
+        {
+            throw new StringIndexOutOfBoundsException(advance);
+        }
+        char[] polled = new char[advance];
+        for (int i = 0; i < advance; i++)
+        {
+            polled[i] = ring[(head + i) & mask];
+        }
+        head = (head + advance) & mask;
+        count -= advance;
+        return new String(polled);
+    }
+
+    /**
+     * 成块取走, 环里没有时才装载;
+     */
+    @Override
+    public int poll(char[] dest, int offset, int length)
+    {
+        fill(1);
+        int polled = Math.min(count, length);
+        int first = Math.min(polled, ring.length - head);
+        System.arraycopy(ring, head, dest, offset, first);
+        System.arraycopy(ring, 0, dest, offset + first, polled - first);
+        head = (head + polled) & mask;
+        count -= polled;
+        return polled;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        // 剩余只有EOF时为false;
+        fill(2);
+        return count > 1;
+    }
+
+    @Override
+    public boolean hasNext(int advance)
+    {
+        fill(advance + 1);
+        return count > advance;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        fill(1);
+        return count == 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("ChannelBufferedHandler{capacity=%d, count=%d, finished=%s}",
+                ring.length, count, finished);
+    }
+}
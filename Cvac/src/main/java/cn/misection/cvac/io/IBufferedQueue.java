@@ -1,5 +1,7 @@
 package cn.misection.cvac.io;
 
+import cn.misection.cvac.constant.LexerCommon;
+
 /**
  * @author Military Intelligence 6 root
  * @version 1.0.0
@@ -35,6 +37,28 @@ public interface IBufferedQueue
      */
     String poll(int num);
 
+    /**
+     * 成块出队, 取到EOF为止;
+     * @param dest 目标数组;
+     * @param offset 目标起点;
+     * @param length 最多取的个数;
+     * @return 取到的个数, 队列已空时为0;
+     */
+    default int poll(char[] dest, int offset, int length)
+    {
+        int polled = 0;
+        while (polled < length && !isEmpty())
+        {
+            char ch = poll();
+            dest[offset + polled++] = ch;
+            if (ch == LexerCommon.EOF)
+            {
+                break;
+            }
+        }
+        return polled;
+    }
+
     /**
      * 是否有下一个;
      * @return
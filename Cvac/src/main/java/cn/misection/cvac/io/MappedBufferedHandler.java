@@ -0,0 +1,180 @@
+package cn.misection.cvac.io;
+
+import cn.misection.cvac.constant.LexerCommon;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName MappedBufferedHandler
+ * @Description 内存映射读入整个源文件, 用char[]加游标实现队列, peek/poll均为O(1);
+ * 库用法给的CharSequence经of()整段装入, 之后一样按数组切token; stdin与管道见ChannelBufferedHandler;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class MappedBufferedHandler implements IBufferedQueue
+{
+    private final char[] buffer;
+
+    /**
+     * 有效长度, 含末尾EOF;
+     */
+    private final int length;
+
+    /**
+     * 读游标, 游标之前的都算poll掉了;
+     */
+    private int cursor;
+
+    /**
+     * 按UTF-8解码, 与CompileOptions的默认编码一致;
+     */
+    public MappedBufferedHandler(String filePath) throws IOException
+    {
+        this(filePath, StandardCharsets.UTF_8);
+    }
+
+    public MappedBufferedHandler(String filePath, Charset charset) throws IOException
+    {
+        this(decode(filePath, charset));
+    }
+
+    private MappedBufferedHandler(CharBuffer decoded)
+    {
+        this.buffer = new char[decoded.remaining() + 2];
+        this.length = normalize(decoded);
+        this.cursor = 0;
+    }
+
+    /**
+     * @param source 已经读完的整个源, 行尾与末尾的处理同文件;
+     */
+    public static MappedBufferedHandler of(CharSequence source)
+    {
+        return new MappedBufferedHandler(CharBuffer.wrap(source));
+    }
+
+    private static CharBuffer decode(String filePath, Charset charset) throws IOException
+    {
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r");
+             FileChannel channel = file.getChannel())
+        {
+            MappedByteBuffer mapped = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return charset.decode(mapped);
+        }
+    }
+
+    /**
+     * 与BufferedHandler保持一致, 行尾统一为'\n', 最后一行补'\n', 末尾装载EOF;
+     *
+     * @param decoded 解码后的源文件;
+     * @return 有效长度;
+     */
+    private int normalize(CharBuffer decoded)
+    {
+        int len = 0;
+        while (decoded.hasRemaining())
+        {
+            char ch = decoded.get();
+            if (ch == '\r')
+            {
+                // \r\n 与单独的 \r 都视作换行;
+                if (decoded.hasRemaining() && decoded.get(decoded.position()) == LexerCommon.NEW_LINE)
+                {
+                    decoded.get();
+                }
+                ch = LexerCommon.NEW_LINE;
+            }
+            buffer[len++] = ch;
+        }
+        if (len > 0 && buffer[len - 1] != LexerCommon.NEW_LINE)
+        {
+            buffer[len++] = LexerCommon.NEW_LINE;
+        }
+        buffer[len++] = LexerCommon.EOF;
+        return len;
+    }
+
+    @Override
+    public char peek()
+    {
+        // 末位是eof, 一般不会溢出, 防御一下;
+        return cursor < length ? buffer[cursor] : LexerCommon.EOF;
+    }
+
+    @Override
+    public char peek(int advance)
+    {
+        // 与BufferedHandler一致, advance从1开始;
+        int pos = cursor + advance - 1;
+        return pos < length ? buffer[pos] : LexerCommon.EOF;
+    }
+
+    @Override
+    public char poll()
+    {
+        char c = peek();
+        if (cursor < length)
+        {
+            cursor++;
+        }
+        return c;
+    }
+
+    @Override
+    public String poll(int advance)
+    {
+        String polled = new String(buffer, cursor, advance);
+        cursor += advance;
+        return polled;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        // 剩余只有EOF时为false;
+        return length - cursor > 1;
+    }
+
+    @Override
+    public boolean hasNext(int advance)
+    {
+        return length - cursor > advance;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return cursor >= length;
+    }
+
+    /**
+     * @return 当前游标, 即已经poll掉的字符数;
+     */
+    public int position()
+    {
+        return cursor;
+    }
+
+    /**
+     * @return 装载的全部字符, 含末尾EOF, 供token切片引用, 不要修改;
+     */
+    public char[] array()
+    {
+        return buffer;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("MappedBufferedHandler{cursor=%d, buffer=\n\n%s}",
+                cursor, new String(buffer, cursor, length - cursor));
+    }
+}
@@ -0,0 +1,221 @@
+package cn.misection.cvac.lexer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName CvaTokenBuffer
+ * @Description 列式token缓冲, 每个token只占四个int, literal引用源文件切片, 用时才生成String;
+ * 流式词法分析时源文件不留在内存里, token的文本依次拷进自己的数组, 切片引用那里;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class CvaTokenBuffer
+{
+    private static final int INIT_CAPACITY = 1 << 10;
+
+    private static final EnumCvaToken[] KINDS = EnumCvaToken.values();
+
+    private char[] source;
+
+    private int[] kinds;
+
+    private int[] starts;
+
+    private int[] lengths;
+
+    private int[] lines;
+
+    /**
+     * 带literal的token, 关键字char与字符常量同为CHAR, 需要区分;
+     */
+    private final BitSet literalSet = new BitSet();
+
+    private int size;
+
+    /**
+     * 拷进来的文本长度, 只在流式时用;
+     */
+    private int textSize;
+
+    /**
+     * 流式用, 文本经add(kind, window, ...)拷进来;
+     */
+    public CvaTokenBuffer()
+    {
+        this(new char[INIT_CAPACITY << 2]);
+    }
+
+    public CvaTokenBuffer(char[] source)
+    {
+        this.source = source;
+        this.kinds = new int[INIT_CAPACITY];
+        this.starts = new int[INIT_CAPACITY];
+        this.lengths = new int[INIT_CAPACITY];
+        this.lines = new int[INIT_CAPACITY];
+    }
+
+    public void add(EnumCvaToken kind, int start, int length, int line, boolean literalFlag)
+    {
+        if (literalFlag)
+        {
+            literalSet.set(size);
+        }
+        if (size == kinds.length)
+        {
+            int capacity = size << 1;
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+        kinds[size] = kind.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        size++;
+    }
+
+    /**
+     * 把token的文本从window拷进来再记下, window之后可以覆盖;
+     *
+     * @param window 词法分析当前的窗口;
+     * @param start 文本在window里的起点;
+     */
+    public void add(EnumCvaToken kind, char[] window, int start, int length, int line, boolean literalFlag)
+    {
+        if (textSize + length > source.length)
+        {
+            source = Arrays.copyOf(source, Math.max(source.length << 1, textSize + length));
+        }
+        System.arraycopy(window, start, source, textSize, length);
+        add(kind, textSize, length, line, literalFlag);
+        textSize += length;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public EnumCvaToken kind(int index)
+    {
+        return KINDS[kinds[index]];
+    }
+
+    public int start(int index)
+    {
+        return starts[index];
+    }
+
+    public int length(int index)
+    {
+        return lengths[index];
+    }
+
+    public int line(int index)
+    {
+        return lines[index];
+    }
+
+    public char[] source()
+    {
+        return source;
+    }
+
+    /**
+     * 源文件在词法分析过程中扩容过时, 换成最终的数组;
+     *
+     * @param source 源文件;
+     */
+    void attachSource(char[] source)
+    {
+        this.source = source;
+    }
+
+    /**
+     * 只有标识符, 数字, 字符串, 字符这几种token的literal有意义;
+     *
+     * @param index 下标;
+     * @return literal, 字符串与字符会处理转义;
+     */
+    public String literal(int index)
+    {
+        int start = starts[index];
+        int length = lengths[index];
+        switch (kind(index))
+        {
+            case STRING:
+            case CHAR:
+            {
+                return unescape(start, length);
+            }
+            default:
+            {
+                return new String(source, start, length);
+            }
+        }
+    }
+
+    /**
+     * 与Lexer.nextToken()产生的token一致;
+     *
+     * @param index 下标;
+     * @return token对象;
+     */
+    public CvaToken toToken(int index)
+    {
+        EnumCvaToken kind = kind(index);
+        if (literalSet.get(index))
+        {
+            return new CvaToken(kind, lines[index], literal(index));
+        }
+        return new CvaToken(kind, lines[index]);
+    }
+
+    private String unescape(int start, int length)
+    {
+        StringBuilder builder = new StringBuilder(length);
+        int end = start + length;
+        for (int i = start; i < end; i++)
+        {
+            char ch = source[i];
+            if (ch == '\\' && i + 1 < end)
+            {
+                i++;
+                switch (source[i])
+                {
+                    case 'r':
+                    {
+                        ch = '\r';
+                        break;
+                    }
+                    case 'n':
+                    {
+                        ch = '\n';
+                        break;
+                    }
+                    case 't':
+                    {
+                        ch = '\t';
+                        break;
+                    }
+                    default:
+                    {
+                        ch = source[i];
+                        break;
+                    }
+                }
+            }
+            builder.append(ch);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("CvaTokenBuffer{size=%d}", size);
+    }
+}
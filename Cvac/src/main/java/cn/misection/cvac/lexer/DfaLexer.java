@@ -0,0 +1,692 @@
+package cn.misection.cvac.lexer;
+
+import cn.misection.cvac.constant.LexerCommon;
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.io.IBufferedQueue;
+import cn.misection.cvac.io.MappedBufferedHandler;
+
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName DfaLexer
+ * @Description 表驱动词法分析, 转移表在类初始化时由EnumCvaToken的literal与运算符拼写生成,
+ * 在char[]上一个循环跑完, 结果与Lexer.tokenize()一致;
+ * stdin等没有整段数组的来源经固定大小的窗口边读边切, 见refill;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class DfaLexer
+{
+    private static final int ASCII = 128;
+
+    /**
+     * 字符类别;
+     */
+    private static final byte CLASS_WORD = 0;
+
+    private static final byte CLASS_SPACE = 1;
+
+    private static final byte CLASS_NEW_LINE = 2;
+
+    private static final byte CLASS_EOF = 3;
+
+    private static final byte CLASS_OPERATOR = 4;
+
+    private static final byte CLASS_DOUBLE_QUOTES = 5;
+
+    private static final byte CLASS_APOSTROPHE = 6;
+
+    /**
+     * 能截断单词但不能开始任何token的字符, 与Lexer.isSpecialCharacter一致;
+     */
+    private static final byte CLASS_ILLEGAL = 7;
+
+    /**
+     * 接受状态的动作, 非负即token序号;
+     */
+    private static final int ACCEPT_NONE = -1;
+
+    private static final int ACCEPT_LINE_COMMENT = -2;
+
+    private static final int ACCEPT_BLOCK_COMMENT = -3;
+
+    private static final int NO_STATE = -1;
+
+    /**
+     * 运算符没有在EnumCvaToken里登记literal(前缀字符不能进单字符表), 拼写在这里补上;
+     */
+    private static final Map<EnumCvaToken, String> OPERATOR_SPELLING = new EnumMap<>(EnumCvaToken.class);
+
+    private static final byte[] CHAR_CLASS = new byte[ASCII];
+
+    /**
+     * 展平的转移表, TRANSITION[state * ASCII + ch];
+     */
+    private static final int[] TRANSITION;
+
+    private static final int[] ACCEPT;
+
+    private static final EnumCvaToken[] KINDS = EnumCvaToken.values();
+
+    static
+    {
+        OPERATOR_SPELLING.put(EnumCvaToken.ADD, "+");
+        OPERATOR_SPELLING.put(EnumCvaToken.INCREMENT, "++");
+        OPERATOR_SPELLING.put(EnumCvaToken.ADD_ASSIGN, "+=");
+        OPERATOR_SPELLING.put(EnumCvaToken.SUB, "-");
+        OPERATOR_SPELLING.put(EnumCvaToken.DECREMENT, "--");
+        OPERATOR_SPELLING.put(EnumCvaToken.SUB_ASSIGN, "-=");
+        OPERATOR_SPELLING.put(EnumCvaToken.ARROW, "->");
+        OPERATOR_SPELLING.put(EnumCvaToken.STAR, "*");
+        OPERATOR_SPELLING.put(EnumCvaToken.MULTIPLY_ASSIGN, "*=");
+        OPERATOR_SPELLING.put(EnumCvaToken.DIV, "/");
+        OPERATOR_SPELLING.put(EnumCvaToken.DIV_ASSIGN, "/=");
+        OPERATOR_SPELLING.put(EnumCvaToken.REM, "%");
+        OPERATOR_SPELLING.put(EnumCvaToken.REM_ASSIGN, "%=");
+        OPERATOR_SPELLING.put(EnumCvaToken.BIT_AND, "&");
+        OPERATOR_SPELLING.put(EnumCvaToken.AND_AND, "&&");
+        OPERATOR_SPELLING.put(EnumCvaToken.BIT_AND_ASSIGN, "&=");
+        OPERATOR_SPELLING.put(EnumCvaToken.BIT_OR, "|");
+        OPERATOR_SPELLING.put(EnumCvaToken.OR_OR, "||");
+        OPERATOR_SPELLING.put(EnumCvaToken.BIT_OR_ASSIGN, "|=");
+        OPERATOR_SPELLING.put(EnumCvaToken.BIT_XOR, "^");
+        OPERATOR_SPELLING.put(EnumCvaToken.BIT_XOR_ASSIGN, "^=");
+        OPERATOR_SPELLING.put(EnumCvaToken.BIT_NEGATE, "~");
+        OPERATOR_SPELLING.put(EnumCvaToken.BIT_NEGATE_ASSIGN, "~=");
+        OPERATOR_SPELLING.put(EnumCvaToken.ASSIGN, "=");
+        OPERATOR_SPELLING.put(EnumCvaToken.EQUALS, "==");
+        OPERATOR_SPELLING.put(EnumCvaToken.LESS_THAN, "<");
+        OPERATOR_SPELLING.put(EnumCvaToken.LESS_OR_EQUALS, "<=");
+        OPERATOR_SPELLING.put(EnumCvaToken.LEFT_SHIFT, "<<");
+        OPERATOR_SPELLING.put(EnumCvaToken.LEFT_SHIFT_ASSIGN, "<<=");
+        OPERATOR_SPELLING.put(EnumCvaToken.MORE_THAN, ">");
+        OPERATOR_SPELLING.put(EnumCvaToken.MORE_OR_EQUALS, ">=");
+        OPERATOR_SPELLING.put(EnumCvaToken.RIGHT_SHIFT, ">>");
+        OPERATOR_SPELLING.put(EnumCvaToken.RIGHT_SHIFT_ASSIGN, ">>=");
+        OPERATOR_SPELLING.put(EnumCvaToken.UNSIGNED_RIGHT_SHIFT, ">>>");
+        OPERATOR_SPELLING.put(EnumCvaToken.UNSIGNED_RIGHT_SHIFT_ASSIGN, ">>>=");
+
+        for (int ch = 0; ch < ASCII; ch++)
+        {
+            if (ch == LexerCommon.EOF)
+            {
+                CHAR_CLASS[ch] = CLASS_EOF;
+            }
+            else if (ch == LexerCommon.NEW_LINE)
+            {
+                CHAR_CLASS[ch] = CLASS_NEW_LINE;
+            }
+            else if (Character.isWhitespace(ch))
+            {
+                CHAR_CLASS[ch] = CLASS_SPACE;
+            }
+            else
+            {
+                CHAR_CLASS[ch] = CLASS_WORD;
+            }
+        }
+        CHAR_CLASS['"'] = CLASS_DOUBLE_QUOTES;
+        CHAR_CLASS['\''] = CLASS_APOSTROPHE;
+        CHAR_CLASS['@'] = CLASS_ILLEGAL;
+        CHAR_CLASS['#'] = CLASS_ILLEGAL;
+        CHAR_CLASS['`'] = CLASS_ILLEGAL;
+        CHAR_CLASS['\\'] = CLASS_ILLEGAL;
+
+        // 最多的状态数不超过所有拼写字符数之和 + 1;
+        int capacity = 1 + 4;
+        for (String spelling : OPERATOR_SPELLING.values())
+        {
+            capacity += spelling.length();
+        }
+        for (EnumCvaToken kind : KINDS)
+        {
+            capacity += kind.literal() == null ? 0 : 1;
+        }
+        int[] transition = new int[capacity * ASCII];
+        int[] accept = new int[capacity];
+        Arrays.fill(transition, NO_STATE);
+        Arrays.fill(accept, ACCEPT_NONE);
+        int[] stateCount = {1};
+
+        for (Map.Entry<EnumCvaToken, String> entry : OPERATOR_SPELLING.entrySet())
+        {
+            addSpelling(transition, accept, stateCount, entry.getValue(), entry.getKey().ordinal());
+        }
+        // 单字符标点直接来自EnumCvaToken的literal;
+        for (EnumCvaToken kind : KINDS)
+        {
+            String literal = kind.literal();
+            if (literal != null && literal.length() == 1
+                    && EnumCvaToken.selectPunctuation(literal.charAt(0)) == kind)
+            {
+                addSpelling(transition, accept, stateCount, literal, kind.ordinal());
+            }
+        }
+        addSpelling(transition, accept, stateCount, "//", ACCEPT_LINE_COMMENT);
+        addSpelling(transition, accept, stateCount, "/*", ACCEPT_BLOCK_COMMENT);
+
+        for (int ch = 0; ch < ASCII; ch++)
+        {
+            if (transition[ch] != NO_STATE)
+            {
+                CHAR_CLASS[ch] = CLASS_OPERATOR;
+            }
+        }
+        TRANSITION = Arrays.copyOf(transition, stateCount[0] * ASCII);
+        ACCEPT = Arrays.copyOf(accept, stateCount[0]);
+    }
+
+    private static void addSpelling(int[] transition, int[] accept, int[] stateCount,
+                                    String spelling, int action)
+    {
+        int state = 0;
+        for (int i = 0; i < spelling.length(); i++)
+        {
+            int slot = state * ASCII + spelling.charAt(i);
+            if (transition[slot] == NO_STATE)
+            {
+                transition[slot] = stateCount[0]++;
+            }
+            state = transition[slot];
+        }
+        accept[state] = action;
+    }
+
+    /**
+     * 流式时窗口的初始大小, 只有比窗口一半还长的单个token才会让它变大;
+     */
+    public static final int DEFAULT_WINDOW = 1 << 13;
+
+    /**
+     * 运算符与字符常量开始前窗口里至少要有的字符数, 最长的>>>=与'\n'都是4个;
+     */
+    private static final int LOOKAHEAD = 4;
+
+    /**
+     * 以EOF结尾的源文件, 如MappedBufferedHandler.array();
+     * 流式时只是源文件的一段窗口, 见refill;
+     */
+    private char[] source;
+
+    /**
+     * 流式时窗口从它成块取字符, 整段数组时为null;
+     */
+    private final IBufferedQueue stream;
+
+    /**
+     * 窗口里有效字符的个数, source[limit]放EOF作哨兵, 扫到它才去refill;
+     * 整段数组时为Integer.MAX_VALUE, 哨兵永远碰不到;
+     */
+    private int limit;
+
+    /**
+     * stream已经取完, 真正的EOF已在窗口里;
+     */
+    private boolean drained;
+
+    private int lineNum;
+
+    /**
+     * 词法错误经它报告, 终止本次编译;
+     */
+    private final CompilationContext context;
+
+    public DfaLexer(char[] source)
+    {
+        this(source, new CompilationContext());
+    }
+
+    public DfaLexer(char[] source, CompilationContext context)
+    {
+        this.source = source;
+        this.stream = null;
+        this.limit = Integer.MAX_VALUE;
+        this.drained = true;
+        this.lineNum = 1;
+        this.context = context;
+    }
+
+    public DfaLexer(IBufferedQueue stream, CompilationContext context)
+    {
+        this(stream, DEFAULT_WINDOW, context);
+    }
+
+    /**
+     * @param stream 未读过的MappedBufferedHandler直接用其数组,
+     *               其余的经固定大小的窗口边读边切, token的文本拷进token缓冲, 源文件不整段留在内存里;
+     * @param window 窗口的初始大小;
+     */
+    public DfaLexer(IBufferedQueue stream, int window, CompilationContext context)
+    {
+        if (stream instanceof MappedBufferedHandler && ((MappedBufferedHandler) stream).position() == 0)
+        {
+            this.source = ((MappedBufferedHandler) stream).array();
+            this.stream = null;
+            this.limit = Integer.MAX_VALUE;
+            this.drained = true;
+        }
+        else
+        {
+            // 起初窗口是空的, 第一个字符就是哨兵;
+            this.source = new char[Math.max(window, LOOKAHEAD << 1) + 1];
+            this.source[0] = LexerCommon.EOF;
+            this.stream = stream;
+            this.limit = 0;
+            this.drained = false;
+        }
+        this.lineNum = 1;
+        this.context = context;
+    }
+
+    /**
+     * 丢掉keep之前的字符, 其余移到窗口开头, 再从stream取到窗口满或取完为止;
+     * 留下的超过窗口一半时窗口翻倍, 一个很长的token也能放下;
+     *
+     * @param keep 还要用到的第一个字符;
+     * @return 窗口里的字符向前移动的距离, 调用方的下标都要减去它, 并重新取source;
+     */
+    private int refill(int keep)
+    {
+        int kept = limit - keep;
+        char[] target = kept > (source.length - 1) >> 1 ? new char[((source.length - 1) << 1) + 1] : source;
+        System.arraycopy(source, keep, target, 0, kept);
+        source = target;
+        limit = kept;
+        int room = source.length - 1;
+        try
+        {
+            while (limit < room)
+            {
+                int polled = stream.poll(source, limit, room - limit);
+                limit += polled;
+                if (polled == 0 || source[limit - 1] == LexerCommon.EOF)
+                {
+                    drained = true;
+                    break;
+                }
+            }
+        }
+        catch (UncheckedIOException e)
+        {
+            throw context.abort(lineNum, String.format("cannot read the source: %s", e.getCause().getMessage()));
+        }
+        if (drained && (limit == 0 || source[limit - 1] != LexerCommon.EOF))
+        {
+            // stream没有给EOF就空了, 补上;
+            source[limit++] = LexerCommon.EOF;
+        }
+        source[limit] = LexerCommon.EOF;
+        return keep;
+    }
+
+    /**
+     * @return 扫到的EOF是窗口末尾的哨兵, 后面还有字符;
+     */
+    private boolean atSentinel(int pos)
+    {
+        return pos == limit && !drained;
+    }
+
+    /**
+     * 整段数组时token只记切片, 流式时窗口会被覆盖, 文本拷进token缓冲;
+     */
+    private void emit(CvaTokenBuffer buffer, EnumCvaToken kind, int start, int length, boolean literalFlag)
+    {
+        if (stream == null)
+        {
+            buffer.add(kind, start, length, lineNum, literalFlag);
+        }
+        else
+        {
+            buffer.add(kind, source, start, length, lineNum, literalFlag);
+        }
+    }
+
+    private void errorLog(String excepted, String got)
+    {
+        throw context.abort(lineNum, String.format("Excepted: %s, but got %s", excepted, got));
+    }
+
+    private static byte classOf(char ch)
+    {
+        if (ch < ASCII)
+        {
+            return CHAR_CLASS[ch];
+        }
+        return Character.isWhitespace(ch) ? CLASS_SPACE : CLASS_WORD;
+    }
+
+    public CvaTokenBuffer tokenize()
+    {
+        char[] src = this.source;
+        CvaTokenBuffer buffer = stream == null ? new CvaTokenBuffer(src) : new CvaTokenBuffer();
+        int pos = 0;
+        while (true)
+        {
+            char ch = src[pos];
+            switch (classOf(ch))
+            {
+                case CLASS_SPACE:
+                {
+                    pos++;
+                    continue;
+                }
+                case CLASS_NEW_LINE:
+                {
+                    lineNum++;
+                    pos++;
+                    continue;
+                }
+                case CLASS_EOF:
+                {
+                    if (atSentinel(pos))
+                    {
+                        pos -= refill(pos);
+                        src = this.source;
+                        continue;
+                    }
+                    emit(buffer, EnumCvaToken.EOF, pos, 1, false);
+                    return buffer;
+                }
+                case CLASS_OPERATOR:
+                {
+                    if (limit - pos < LOOKAHEAD && !drained)
+                    {
+                        pos -= refill(pos);
+                        src = this.source;
+                        continue;
+                    }
+                    pos = scanOperator(buffer, pos);
+                    // 注释可能跨窗口, 扫完窗口也许换了;
+                    src = this.source;
+                    continue;
+                }
+                case CLASS_DOUBLE_QUOTES:
+                {
+                    pos = scanString(buffer, pos);
+                    src = this.source;
+                    continue;
+                }
+                case CLASS_APOSTROPHE:
+                {
+                    if (limit - pos < LOOKAHEAD && !drained)
+                    {
+                        pos -= refill(pos);
+                        src = this.source;
+                        continue;
+                    }
+                    pos = scanChar(buffer, pos);
+                    continue;
+                }
+                case CLASS_WORD:
+                {
+                    pos = scanWord(buffer, pos);
+                    src = this.source;
+                    continue;
+                }
+                default:
+                {
+                    errorLog("identifier or number which can only include alphabet, number or _, $",
+                            "an illegal identifier with illegal char");
+                    return buffer;
+                }
+            }
+        }
+    }
+
+    private int scanOperator(CvaTokenBuffer buffer, int start)
+    {
+        char[] src = this.source;
+        int state = 0;
+        int pos = start;
+        int lastAction = ACCEPT_NONE;
+        int lastEnd = start;
+        while (src[pos] < ASCII)
+        {
+            int next = TRANSITION[state * ASCII + src[pos]];
+            if (next == NO_STATE)
+            {
+                break;
+            }
+            state = next;
+            pos++;
+            if (ACCEPT[state] != ACCEPT_NONE)
+            {
+                lastAction = ACCEPT[state];
+                lastEnd = pos;
+            }
+        }
+        switch (lastAction)
+        {
+            case ACCEPT_LINE_COMMENT:
+            {
+                while (src[lastEnd] != LexerCommon.NEW_LINE)
+                {
+                    if (src[lastEnd] == LexerCommon.EOF)
+                    {
+                        if (atSentinel(lastEnd))
+                        {
+                            // 注释不用留, 窗口整个换掉;
+                            lastEnd -= refill(lastEnd);
+                            src = this.source;
+                            continue;
+                        }
+                        // 最后一行注释后没有换行, EOF留给主循环;
+                        return lastEnd;
+                    }
+                    lastEnd++;
+                }
+                lineNum++;
+                return lastEnd + 1;
+            }
+            case ACCEPT_BLOCK_COMMENT:
+            {
+                return skipBlockComment(lastEnd);
+            }
+            case ACCEPT_NONE:
+            {
+                // 所有运算符前缀都可接受, 不可达;
+                errorLog("operator", String.valueOf(src[start]));
+                return start + 1;
+            }
+            default:
+            {
+                emit(buffer, KINDS[lastAction], start, lastEnd - start, false);
+                return lastEnd;
+            }
+        }
+    }
+
+    private int skipBlockComment(int pos)
+    {
+        char[] src = this.source;
+        while (true)
+        {
+            switch (src[pos])
+            {
+                case '*':
+                {
+                    if (atSentinel(pos + 1))
+                    {
+                        // 看不到下一个字符, 留下'*'换窗口后再看;
+                        pos -= refill(pos);
+                        src = this.source;
+                        continue;
+                    }
+                    if (src[pos + 1] == '/')
+                    {
+                        return pos + 2;
+                    }
+                    break;
+                }
+                case LexerCommon.NEW_LINE:
+                {
+                    lineNum++;
+                    break;
+                }
+                case LexerCommon.EOF:
+                {
+                    if (atSentinel(pos))
+                    {
+                        pos -= refill(pos);
+                        src = this.source;
+                        continue;
+                    }
+                    errorLog("end of block comment '*/'", "EOF in error place");
+                    return pos;
+                }
+                default:
+                {
+                    break;
+                }
+            }
+            pos++;
+        }
+    }
+
+    private int scanString(CvaTokenBuffer buffer, int quote)
+    {
+        char[] src = this.source;
+        int start = quote + 1;
+        int pos = start;
+        while (true)
+        {
+            switch (src[pos])
+            {
+                case '"':
+                {
+                    // 切片不含两端引号, 转义保持原样;
+                    emit(buffer, EnumCvaToken.STRING, start, pos - start, true);
+                    return pos + 1;
+                }
+                case '\\':
+                {
+                    if (atSentinel(pos + 1))
+                    {
+                        int shift = refill(start);
+                        start -= shift;
+                        pos -= shift;
+                        src = this.source;
+                        continue;
+                    }
+                    checkEscape(src[pos + 1]);
+                    pos += 2;
+                    continue;
+                }
+                case LexerCommon.EOF:
+                {
+                    if (atSentinel(pos))
+                    {
+                        int shift = refill(start);
+                        start -= shift;
+                        pos -= shift;
+                        src = this.source;
+                        continue;
+                    }
+                    errorLog("string literal char or end of string '\"'",
+                            "EOF in error place");
+                    return pos;
+                }
+                default:
+                {
+                    pos++;
+                }
+            }
+        }
+    }
+
+    /**
+     * 流式时主循环已保证窗口里至少有LOOKAHEAD个字符;
+     */
+    private int scanChar(CvaTokenBuffer buffer, int apostrophe)
+    {
+        final char[] src = this.source;
+        int start = apostrophe + 1;
+        if (src[start] == LexerCommon.EOF)
+        {
+            // EOF是数组最后一格, 不能再往后读;
+            errorLog("char literal", "EOF in error place");
+            return start;
+        }
+        int end = start + 1;
+        if (src[start] == '\\')
+        {
+            checkEscape(src[start + 1]);
+            end++;
+        }
+        if (src[end] != '\'')
+        {
+            errorLog("end of char which refer to '",
+                    String.valueOf(src[end]));
+        }
+        emit(buffer, EnumCvaToken.CHAR, start, end - start, true);
+        return end + 1;
+    }
+
+    private void checkEscape(char escapeCh)
+    {
+        switch (escapeCh)
+        {
+            case 'r':
+            case 'n':
+            case 't':
+            case '"':
+            {
+                return;
+            }
+            default:
+            {
+                errorLog("escape char only '\\n', '\\r', '\\t', '\\\"' supported!",
+                        String.valueOf(escapeCh));
+            }
+        }
+    }
+
+    private int scanWord(CvaTokenBuffer buffer, int start)
+    {
+        char[] src = this.source;
+        int pos = start + 1;
+        boolean digitFlag = src[start] >= '0' && src[start] <= '9';
+        while (true)
+        {
+            while (classOf(src[pos]) == CLASS_WORD)
+            {
+                digitFlag &= src[pos] >= '0' && src[pos] <= '9';
+                pos++;
+            }
+            if (!atSentinel(pos))
+            {
+                break;
+            }
+            // 单词被窗口截断, 留下已扫的部分接着扫;
+            int shift = refill(start);
+            start -= shift;
+            pos -= shift;
+            src = this.source;
+        }
+        int length = pos - start;
+        EnumCvaToken keyword = EnumCvaToken.selectKeyword(src, start, length);
+        if (keyword != null)
+        {
+            emit(buffer, keyword, start, length, false);
+        }
+        else if (digitFlag)
+        {
+            emit(buffer, EnumCvaToken.CONST_INT, start, length, true);
+        }
+        else if (Character.isAlphabetic(src[start]))
+        {
+            emit(buffer, EnumCvaToken.IDENTIFIER, start, length, true);
+        }
+        else
+        {
+            errorLog("identifier or number which can only include alphabet, number or _, $",
+                    "an illegal identifier with illegal char");
+        }
+        return pos;
+    }
+}
@@ -1,7 +1,9 @@
 package cn.misection.cvac.lexer;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public enum EnumCvaToken
@@ -430,11 +432,155 @@ public enum EnumCvaToken
         }
     }
 
+    /**
+     * 单字符标点, 按char下标直接查表;
+     */
+    private static final EnumCvaToken[] punctuationTable = new EnumCvaToken[128];
+
+    /**
+     * 关键字完美哈希表, 大小为 1 << keywordBits, 无冲突;
+     */
+    private static final EnumCvaToken[] keywordTable;
+
+    private static final int keywordBits;
+
+    private static final int keywordSeed;
+
+    static
+    {
+        List<EnumCvaToken> keywordList = new ArrayList<>();
+        for (EnumCvaToken kind : lookup.values())
+        {
+            if (kind.kindLiteral.length() == 1)
+            {
+                punctuationTable[kind.kindLiteral.charAt(0)] = kind;
+            }
+            else
+            {
+                keywordList.add(kind);
+            }
+        }
+        // 从两倍大小开始找无冲突的乘数, 找不到就扩表;
+        int bits = 32 - Integer.numberOfLeadingZeros(keywordList.size());
+        EnumCvaToken[] table = null;
+        int seed = 0;
+        while (table == null)
+        {
+            bits++;
+            if (bits > 16)
+            {
+                throw new IllegalStateException("cannot build perfect hash for keywords");
+            }
+            for (int attempt = 0; table == null && attempt < (1 << 16); attempt++)
+            {
+                // 乘数取奇数;
+                seed = 0x9E3779B1 + (attempt << 1);
+                table = tryBuildKeywordTable(keywordList, seed, bits);
+            }
+        }
+        keywordTable = table;
+        keywordBits = bits;
+        keywordSeed = seed;
+    }
+
+    private static EnumCvaToken[] tryBuildKeywordTable(List<EnumCvaToken> keywordList, int seed, int bits)
+    {
+        EnumCvaToken[] table = new EnumCvaToken[1 << bits];
+        for (EnumCvaToken kind : keywordList)
+        {
+            int slot = keywordSlot(kind.kindLiteral.hashCode(), seed, bits);
+            if (table[slot] != null)
+            {
+                return null;
+            }
+            table[slot] = kind;
+        }
+        return table;
+    }
+
+    private static int keywordSlot(int hash, int seed, int bits)
+    {
+        return (hash * seed) >>> (32 - bits);
+    }
+
     public static boolean containsKind(String literal)
     {
         return lookup.containsKey(literal);
     }
 
+    public static boolean isPunctuation(char ch)
+    {
+        return ch < punctuationTable.length && punctuationTable[ch] != null;
+    }
+
+    /**
+     * @param ch 单字符;
+     * @return 单字符标点, 不是则返回null;
+     */
+    public static EnumCvaToken selectPunctuation(char ch)
+    {
+        return ch < punctuationTable.length ? punctuationTable[ch] : null;
+    }
+
+    /**
+     * 不分配对象的关键字查找;
+     *
+     * @param seq 单词;
+     * @return 关键字, 不是则返回null;
+     */
+    public static EnumCvaToken selectKeyword(CharSequence seq)
+    {
+        int hash = 0;
+        int len = seq.length();
+        for (int i = 0; i < len; i++)
+        {
+            hash = 31 * hash + seq.charAt(i);
+        }
+        EnumCvaToken kind = keywordTable[keywordSlot(hash, keywordSeed, keywordBits)];
+        if (kind == null || kind.kindLiteral.length() != len)
+        {
+            return null;
+        }
+        for (int i = 0; i < len; i++)
+        {
+            if (kind.kindLiteral.charAt(i) != seq.charAt(i))
+            {
+                return null;
+            }
+        }
+        return kind;
+    }
+
+    /**
+     * 在源文件切片上直接查关键字;
+     *
+     * @param buf 源文件;
+     * @param start 起始下标;
+     * @param len 长度;
+     * @return 关键字, 不是则返回null;
+     */
+    public static EnumCvaToken selectKeyword(char[] buf, int start, int len)
+    {
+        int hash = 0;
+        for (int i = 0; i < len; i++)
+        {
+            hash = 31 * hash + buf[start + i];
+        }
+        EnumCvaToken kind = keywordTable[keywordSlot(hash, keywordSeed, keywordBits)];
+        if (kind == null || kind.kindLiteral.length() != len)
+        {
+            return null;
+        }
+        for (int i = 0; i < len; i++)
+        {
+            if (kind.kindLiteral.charAt(i) != buf[start + i])
+            {
+                return null;
+            }
+        }
+        return kind;
+    }
+
     public static EnumCvaToken selectReverse(String literal)
     {
         // 可能出null;
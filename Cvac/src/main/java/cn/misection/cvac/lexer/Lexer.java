@@ -2,9 +2,15 @@ package cn.misection.cvac.lexer;
 
 import cn.misection.cvac.constant.EnumLexerCommon;
 import cn.misection.cvac.constant.LexerCommon;
+import cn.misection.cvac.context.CompilationContext;
 import cn.misection.cvac.io.IBufferedQueue;
+import cn.misection.cvac.io.MappedBufferedHandler;
+
+import java.util.Arrays;
 
 /**
+ * 手写的逐字符词法分析, 编译入口都改用DfaLexer, 这里只留作差分测试的参照;
+ *
  * @author MI6 root;
  */
 public final class Lexer
@@ -16,39 +22,161 @@ public final class Lexer
 
     private int lineNum;
 
+    /**
+     * 已经poll掉的字符数, 即下一个字符在源文件中的下标;
+     */
+    private int offset;
+
+    /**
+     * 当前token首字符下标;
+     */
+    private int tokenStart;
+
+    /**
+     * 当前token是否带literal, 及其在源文件中的切片;
+     */
+    private boolean literalFlag;
+
+    private int literalStart;
+
+    private int literalLength;
+
+    /**
+     * 复用的literal缓冲, 转义已处理;
+     */
+    private final StringBuilder literal = new StringBuilder();
+
+    /**
+     * stream没有底层数组时, tokenize()把poll掉的字符全部记在这里, 作为token切片的源,
+     * 与token数组一样随源文件长度增长;
+     */
+    private char[] echo;
+
+    /**
+     * 词法错误经它报告, 终止本次编译;
+     */
+    private final CompilationContext context;
+
     public Lexer(IBufferedQueue stream)
+    {
+        this(stream, new CompilationContext());
+    }
+
+    public Lexer(IBufferedQueue stream, CompilationContext context)
     {
         this.stream = stream;
         this.lineNum = 1;
+        this.context = context;
     }
 
     public CvaToken nextToken()
     {
-        return lex();
+        EnumCvaToken kind = scan();
+        return literalFlag
+                ? new CvaToken(kind, lineNum, literal.toString())
+                : new CvaToken(kind, lineNum);
+    }
+
+    /**
+     * 一次性词法分析到EOF, 结果存入列式token缓冲, literal只记录切片;
+     *
+     * @param source stream所装载的源文件字符, 如MappedBufferedHandler.array();
+     * @return 含末尾EOF的token缓冲;
+     */
+    public CvaTokenBuffer tokenize(char[] source)
+    {
+        CvaTokenBuffer buffer = new CvaTokenBuffer(source);
+        while (true)
+        {
+            EnumCvaToken kind = scan();
+            if (literalFlag)
+            {
+                buffer.add(kind, literalStart, literalLength, lineNum, true);
+            }
+            else
+            {
+                buffer.add(kind, tokenStart, offset - tokenStart, lineNum, false);
+            }
+            if (kind == EnumCvaToken.EOF)
+            {
+                return buffer;
+            }
+        }
+    }
+
+    /**
+     * 一次性词法分析到EOF, 源文件取自stream;
+     * 不是MappedBufferedHandler时会把整个源另存一份;
+     *
+     * @return 含末尾EOF的token缓冲;
+     */
+    public CvaTokenBuffer tokenize()
+    {
+        if (stream instanceof MappedBufferedHandler)
+        {
+            return tokenize(((MappedBufferedHandler) stream).array());
+        }
+        echo = new char[1 << 12];
+        CvaTokenBuffer buffer = tokenize(echo);
+        buffer.attachSource(echo);
+        echo = null;
+        return buffer;
+    }
+
+    private char poll()
+    {
+        char ch = stream.poll();
+        if (echo != null)
+        {
+            record(ch);
+        }
+        offset++;
+        return ch;
+    }
+
+    private void poll(int advance)
+    {
+        String polled = stream.poll(advance);
+        if (echo != null)
+        {
+            for (int i = 0; i < advance; i++)
+            {
+                record(polled.charAt(i));
+            }
+        }
+        offset += advance;
+    }
+
+    private void record(char ch)
+    {
+        if (offset == echo.length)
+        {
+            echo = Arrays.copyOf(echo, offset << 1);
+        }
+        echo[offset] = ch;
     }
 
     private void errorLog()
     {
-        System.err.printf("line %d: unknown error occur!", lineNum);
-        System.exit(1);
+        throw context.abort(lineNum, "unknown error occur!");
     }
 
     private void errorLog(String excepted, String got)
     {
-        System.err.printf("line %d: Excepted: %s, but got %s",
-                lineNum, excepted, got);
-        System.exit(1);
+        throw context.abort(lineNum, String.format("Excepted: %s, but got %s", excepted, got));
     }
 
-    private CvaToken lex()
+    private EnumCvaToken scan()
     {
-        char ch = stream.poll();
+        char ch = poll();
         // skip all kinds of blanks
         ch = handleWhiteSpace(ch);
+        tokenStart = offset - 1;
+        literalFlag = false;
         switch (ch)
         {
             case LexerCommon.EOF:
-                return new CvaToken(EnumCvaToken.EOF, lineNum);
+                return EnumCvaToken.EOF;
             case '+':
                 return handlePlus();
             case '-':
@@ -85,7 +213,7 @@ public final class Lexer
     private static boolean isSpecialCharacter(char ch)
     {
         // _ $ ' " 都没算;
-        return EnumCvaToken.containsKind(String.valueOf(ch))
+        return EnumCvaToken.isPunctuation(ch)
                 ||'+' == ch || '-' == ch || '*' == ch || ch == '/'
                 || '&' == ch || ch == '|' || ch == '~' || ch == '^'
                 || '=' == ch || '<' == ch || ch == '>'
@@ -94,7 +222,7 @@ public final class Lexer
                 || ch == LexerCommon.EOF;
     }
 
-    private static boolean isNumber(String str)
+    private static boolean isNumber(CharSequence str)
     {
         for (int i = 0; i < str.length(); i++)
         {
@@ -106,13 +234,13 @@ public final class Lexer
         return true;
     }
 
-    private static boolean isIdentifier(String str)
+    private static boolean isIdentifier(CharSequence str)
     {
         // 只接受字母开头, 不接受下划线开头;
         return Character.isAlphabetic(str.charAt(0));
     }
 
-    private CvaToken handlePlus()
+    private EnumCvaToken handlePlus()
     {
         if (stream.hasNext())
         {
@@ -121,13 +249,13 @@ public final class Lexer
                 case '+':
                 {
                     // 截取两个;
-                    stream.poll();
-                    return new CvaToken(EnumCvaToken.INCREMENT, lineNum);
+                    poll();
+                    return EnumCvaToken.INCREMENT;
                 }
                 case '=':
                 {
-                    stream.poll();
-                    return new CvaToken(EnumCvaToken.ADD_ASSIGN, lineNum);
+                    poll();
+                    return EnumCvaToken.ADD_ASSIGN;
                 }
                 default:
                 {
@@ -135,10 +263,10 @@ public final class Lexer
                 }
             }
         }
-        return new CvaToken(EnumCvaToken.ADD, lineNum);
+        return EnumCvaToken.ADD;
     }
 
-    private CvaToken handleMinus()
+    private EnumCvaToken handleMinus()
     {
         if (stream.hasNext())
         {
@@ -146,18 +274,18 @@ public final class Lexer
             {
                 case '>':
                 {
-                    stream.poll();
-                    return new CvaToken(EnumCvaToken.ARROW, lineNum);
+                    poll();
+                    return EnumCvaToken.ARROW;
                 }
                 case '-':
                 {
-                    stream.poll();
-                    return new CvaToken(EnumCvaToken.DECREMENT, lineNum);
+                    poll();
+                    return EnumCvaToken.DECREMENT;
                 }
                 case '=':
                 {
-                    stream.poll();
-                    return new CvaToken(EnumCvaToken.SUB_ASSIGN, lineNum);
+                    poll();
+                    return EnumCvaToken.SUB_ASSIGN;
                 }
                 default:
                 {
@@ -166,30 +294,30 @@ public final class Lexer
                 }
             }
         }
-        return new CvaToken(EnumCvaToken.SUB, lineNum);
+        return EnumCvaToken.SUB;
     }
 
-    private CvaToken handleStar()
+    private EnumCvaToken handleStar()
     {
         if (stream.hasNext() && stream.peek() == '=')
         {
-            stream.poll();
-            return new CvaToken(EnumCvaToken.MULTIPLY_ASSIGN, lineNum);
+            poll();
+            return EnumCvaToken.MULTIPLY_ASSIGN;
         }
-        return new CvaToken(EnumCvaToken.STAR, lineNum);
+        return EnumCvaToken.STAR;
     }
 
-    private CvaToken handleEqual()
+    private EnumCvaToken handleEqual()
     {
         if (stream.hasNext() && stream.peek() == '=')
         {
-            stream.poll();
-            return new CvaToken(EnumCvaToken.EQUALS, lineNum);
+            poll();
+            return EnumCvaToken.EQUALS;
         }
-        return new CvaToken(EnumCvaToken.ASSIGN, lineNum);
+        return EnumCvaToken.ASSIGN;
     }
 
-    private CvaToken handleAnd()
+    private EnumCvaToken handleAnd()
     {
         if (stream.hasNext())
         {
@@ -197,13 +325,13 @@ public final class Lexer
             {
                 case '&':
                 {
-                    stream.poll();
-                    return new CvaToken(EnumCvaToken.AND_AND, lineNum);
+                    poll();
+                    return EnumCvaToken.AND_AND;
                 }
                 case '=':
                 {
-                    stream.poll();
-                    return new CvaToken(EnumCvaToken.BIT_AND_ASSIGN, lineNum);
+                    poll();
+                    return EnumCvaToken.BIT_AND_ASSIGN;
                 }
                 default:
                 {
@@ -212,10 +340,10 @@ public final class Lexer
             }
         }
 
-        return new CvaToken(EnumCvaToken.BIT_AND, lineNum);
+        return EnumCvaToken.BIT_AND;
     }
 
-    private CvaToken handleOr()
+    private EnumCvaToken handleOr()
     {
         if (stream.hasNext())
         {
@@ -223,13 +351,13 @@ public final class Lexer
             {
                 case '|':
                 {
-                    stream.poll();
-                    return new CvaToken(EnumCvaToken.OR_OR, lineNum);
+                    poll();
+                    return EnumCvaToken.OR_OR;
                 }
                 case '=':
                 {
-                    stream.poll();
-                    return new CvaToken(EnumCvaToken.BIT_OR_ASSIGN, lineNum);
+                    poll();
+                    return EnumCvaToken.BIT_OR_ASSIGN;
                 }
                 default:
                 {
@@ -238,22 +366,22 @@ public final class Lexer
             }
         }
 
-        return new CvaToken(EnumCvaToken.BIT_OR, lineNum);
+        return EnumCvaToken.BIT_OR;
     }
 
-    private CvaToken handleXOr()
+    private EnumCvaToken handleXOr()
     {
         if (stream.hasNext()
                 && stream.peek() == '=')
         {
-            stream.poll();
-            return new CvaToken(EnumCvaToken.BIT_XOR_ASSIGN, lineNum);
+            poll();
+            return EnumCvaToken.BIT_XOR_ASSIGN;
         }
 
-        return new CvaToken(EnumCvaToken.BIT_XOR, lineNum);
+        return EnumCvaToken.BIT_XOR;
     }
 
-    private CvaToken handleSlash()
+    private EnumCvaToken handleSlash()
     {
         if (stream.hasNext())
         {
@@ -271,44 +399,44 @@ public final class Lexer
                 }
                 case '=':
                 {
-                    stream.poll();
-                    return new CvaToken(EnumCvaToken.DIV_ASSIGN, lineNum);
+                    poll();
+                    return EnumCvaToken.DIV_ASSIGN;
                 }
                 default:
                 {
-                    return new CvaToken(EnumCvaToken.DIV, lineNum);
+                    return EnumCvaToken.DIV;
                 }
             }
         }
         // 说明是注释, 继续执行;
-        return lex();
+        return scan();
     }
 
-    private CvaToken handlePercent()
+    private EnumCvaToken handlePercent()
     {
         if (stream.hasNext()
                 && stream.peek() == '=')
         {
-            stream.poll();
-            return new CvaToken(EnumCvaToken.REM_ASSIGN, lineNum);
+            poll();
+            return EnumCvaToken.REM_ASSIGN;
         }
 
-        return new CvaToken(EnumCvaToken.REM, lineNum);
+        return EnumCvaToken.REM;
     }
 
-    private CvaToken handleBitNegate()
+    private EnumCvaToken handleBitNegate()
     {
         if (stream.hasNext()
                 && stream.peek() == '=')
         {
-            stream.poll();
-            return new CvaToken(EnumCvaToken.BIT_NEGATE_ASSIGN, lineNum);
+            poll();
+            return EnumCvaToken.BIT_NEGATE_ASSIGN;
         }
 
-        return new CvaToken(EnumCvaToken.BIT_NEGATE, lineNum);
+        return EnumCvaToken.BIT_NEGATE;
     }
 
-    private CvaToken handleMoreThan()
+    private EnumCvaToken handleMoreThan()
     {
         if (stream.hasNext())
         {
@@ -316,8 +444,8 @@ public final class Lexer
             {
                 case '=':
                 {
-                    stream.poll();
-                    return new CvaToken(EnumCvaToken.MORE_OR_EQUALS, lineNum);
+                    poll();
+                    return EnumCvaToken.MORE_OR_EQUALS;
                 }
                 case '>':
                 {
@@ -330,35 +458,35 @@ public final class Lexer
                                 if (stream.hasNext(3)
                                         && stream.peek(3) == '=')
                                 {
-                                    stream.poll(3);
-                                    return new CvaToken(EnumCvaToken.UNSIGNED_RIGHT_SHIFT_ASSIGN, lineNum);
+                                    poll(3);
+                                    return EnumCvaToken.UNSIGNED_RIGHT_SHIFT_ASSIGN;
                                 }
-                                stream.poll(2);
-                                return new CvaToken(EnumCvaToken.UNSIGNED_RIGHT_SHIFT, lineNum);
+                                poll(2);
+                                return EnumCvaToken.UNSIGNED_RIGHT_SHIFT;
                             }
                             case '=':
                             {
-                                stream.poll(2);
-                                return new CvaToken(EnumCvaToken.RIGHT_SHIFT_ASSIGN, lineNum);
+                                poll(2);
+                                return EnumCvaToken.RIGHT_SHIFT_ASSIGN;
                             }
                             default:
                             {
-                                stream.poll();
-                                return new CvaToken(EnumCvaToken.RIGHT_SHIFT, lineNum);
+                                poll();
+                                return EnumCvaToken.RIGHT_SHIFT;
                             }
                         }
                     }
                 }
                 default:
                 {
-                    return new CvaToken(EnumCvaToken.MORE_THAN, lineNum);
+                    return EnumCvaToken.MORE_THAN;
                 }
             }
         }
-        return new CvaToken(EnumCvaToken.MORE_THAN, lineNum);
+        return EnumCvaToken.MORE_THAN;
     }
 
-    private CvaToken handleLessThan()
+    private EnumCvaToken handleLessThan()
     {
         if (stream.hasNext())
         {
@@ -366,39 +494,41 @@ public final class Lexer
             {
                 case '=':
                 {
-                    stream.poll();
+                    poll();
                     // TODO 看不懂???;
-                    return new CvaToken(EnumCvaToken.LESS_OR_EQUALS, lineNum);
+                    return EnumCvaToken.LESS_OR_EQUALS;
                 }
                 case '<':
                 {
                     if (stream.hasNext(2)
                             && stream.peek(2) == '=')
                     {
-                        stream.poll(2);
-                        return new CvaToken(EnumCvaToken.LEFT_SHIFT_ASSIGN, lineNum);
+                        poll(2);
+                        return EnumCvaToken.LEFT_SHIFT_ASSIGN;
                     }
-                    stream.poll();
-                    return new CvaToken(EnumCvaToken.LEFT_SHIFT, lineNum);
+                    poll();
+                    return EnumCvaToken.LEFT_SHIFT;
                 }
                 default:
                 {
                     // TODO 为啥?;
-                    return new CvaToken(EnumCvaToken.LESS_THAN, lineNum);
+                    return EnumCvaToken.LESS_THAN;
                 }
             }
         }
-        return new CvaToken(EnumCvaToken.LESS_THAN, lineNum);
+        return EnumCvaToken.LESS_THAN;
     }
 
-    private CvaToken handleNorPrefOrIdOrNum(char ch)
+    private EnumCvaToken handleNorPrefOrIdOrNum(char ch)
     {
         // 先看c是否是非前缀字符, 这里是 int, 必须先转成char看在不在表中;
-        if (EnumCvaToken.containsKind(String.valueOf(ch)))
+        EnumCvaToken punctuation = EnumCvaToken.selectPunctuation(ch);
+        if (punctuation != null)
         {
-            return new CvaToken(EnumCvaToken.selectReverse(String.valueOf(ch)), lineNum);
+            return punctuation;
         }
-        StringBuilder builder = new StringBuilder();
+        StringBuilder builder = literal;
+        builder.setLength(0);
         builder.append(ch);
         while (true)
         {
@@ -409,31 +539,32 @@ public final class Lexer
                     && !isSpecialCharacter(ch))
             {
                 builder.append(ch);
-                this.stream.poll();
+                poll();
                 continue;
             }
             break;
         }
-        String literal = builder.toString();
-        // 关键字;
-        if (EnumCvaToken.containsKind(literal))
+        // 关键字, 完美哈希直接查builder, 不生成String;
+        EnumCvaToken keyword = EnumCvaToken.selectKeyword(builder);
+        if (keyword != null)
         {
-            return new CvaToken(EnumCvaToken.selectReverse(literal), lineNum);
+            return keyword;
         }
         else
         {
-            if (isNumber(literal))
+            markLiteral(tokenStart, offset - tokenStart);
+            if (isNumber(builder))
             {
                 // FIXME 自动机;
-                if (isInt(literal))
+                if (isInt(builder))
                 {
                     // FIXME 联系后端改成 INT;
-                    return new CvaToken(EnumCvaToken.CONST_INT, lineNum, builder.toString());
+                    return EnumCvaToken.CONST_INT;
                 }
             }
-            else if (isIdentifier(literal))
+            else if (isIdentifier(builder))
             {
-                return new CvaToken(EnumCvaToken.IDENTIFIER, lineNum, builder.toString());
+                return EnumCvaToken.IDENTIFIER;
             }
             else
             {
@@ -444,36 +575,44 @@ public final class Lexer
         return null;
     }
 
-    private CvaToken handleApostrophe()
+    private EnumCvaToken handleApostrophe()
     {
-        char chch = stream.poll();
+        int start = offset;
+        char chch = poll();
         if (chch == '\\')
         {
             chch = handleEscape();
         }
-        char eoc = stream.poll();
+        markLiteral(start, offset - start);
+        char eoc = poll();
         if (eoc != '\'')
         {
             errorLog("end of char which refer to '",
                     String.valueOf(eoc));
         }
-        return new CvaToken(EnumCvaToken.CHAR, lineNum, String.valueOf(chch));
+        literal.setLength(0);
+        literal.append(chch);
+        return EnumCvaToken.CHAR;
     }
 
-    private CvaToken handleDoubleQuotes()
+    private EnumCvaToken handleDoubleQuotes()
     {
         // 全局 index 不仅仅在循环中;
         // TODO 转义字符都出现在字符串里, 这里应该处理;
 //        StringBuilder builder = new StringBuilder("\"");
-        StringBuilder builder = new StringBuilder();
+        StringBuilder builder = literal;
+        builder.setLength(0);
+        int start = offset;
         // hasNext() 会屏蔽eof, 所以用true;
         while (true)
         {
-            char ch = stream.poll();
+            char ch = poll();
             switch (ch)
             {
                 case '"':
                 {
+                    // 切片不含两端引号, 转义保持原样;
+                    markLiteral(start, offset - 1 - start);
                     break;
                 }
                 case '\\':
@@ -497,8 +636,14 @@ public final class Lexer
             }
             break;
         }
-        String literal = String.valueOf(builder);
-        return new CvaToken(EnumCvaToken.STRING, lineNum, literal);
+        return EnumCvaToken.STRING;
+    }
+
+    private void markLiteral(int start, int length)
+    {
+        literalFlag = true;
+        literalStart = start;
+        literalLength = length;
     }
 
     private char handleWhiteSpace(char ch)
@@ -521,7 +666,7 @@ public final class Lexer
                     break;
                 }
             }
-            ch = this.stream.poll();
+            ch = poll();
         }
         return ch;
     }
@@ -532,7 +677,7 @@ public final class Lexer
      */
     private char handleEscape()
     {
-        char escapeCh = stream.poll();
+        char escapeCh = poll();
         switch (escapeCh)
         {
             case 'r':
@@ -565,7 +710,12 @@ public final class Lexer
     {
         while (true)
         {
-            if (stream.poll() == LexerCommon.NEW_LINE)
+            if (stream.peek() == LexerCommon.EOF)
+            {
+                // 最后一行注释后没有换行, EOF留给下一个token;
+                return;
+            }
+            if (poll() == LexerCommon.NEW_LINE)
             {
                 break;
             }
@@ -576,19 +726,19 @@ public final class Lexer
     private void handleBlockComment()
     {
         // 推掉*;
-        stream.poll();
+        poll();
         while (true)
         {
             // switch case 内部引进了 break, 所以不用goto跳不出去;
             // 还是就if, 虽然丑一点, 判定也多一点;
-            switch (stream.poll())
+            switch (poll())
             {
                 case '*':
                 {
                     if (stream.peek() == '/')
                     {
                         // 结束了;
-                        stream.poll();
+                        poll();
                         break;
                     }
                     continue;
@@ -598,6 +748,12 @@ public final class Lexer
                     lineNum++;
                     continue;
                 }
+                case LexerCommon.EOF:
+                {
+                    // 读到末尾后stream一直给EOF, 不报错会死循环;
+                    errorLog("end of block comment '*/'", "EOF in error place");
+                    break;
+                }
                 default:
                 {
                     // 这里用 continue 来中断switch继续while true;
@@ -608,7 +764,7 @@ public final class Lexer
         }
     }
 
-    private boolean isInt(String literal)
+    private boolean isInt(CharSequence literal)
     {
         // FIXME 修改;
         return true;
@@ -1,394 +1,153 @@
 package cn.misection.cvac.optimize;
 
-import cn.misection.cvac.ast.IVisitor;
 import cn.misection.cvac.ast.clas.*;
-import cn.misection.cvac.ast.decl.*;
-import cn.misection.cvac.ast.entry.*;
 import cn.misection.cvac.ast.expr.*;
 import cn.misection.cvac.ast.expr.nonterminal.binary.*;
 import cn.misection.cvac.ast.expr.terminator.*;
 import cn.misection.cvac.ast.expr.nonterminal.unary.*;
 import cn.misection.cvac.ast.method.*;
-import cn.misection.cvac.ast.program.*;
-import cn.misection.cvac.ast.statement.*;
-import cn.misection.cvac.ast.type.basic.EnumCvaType;
-import cn.misection.cvac.ast.type.reference.CvaClassType;
-import cn.misection.cvac.ast.type.advance.CvaStringType;
 import cn.misection.cvac.codegen.bst.instructor.EnumOperandType;
-import cn.misection.cvac.codegen.bst.instructor.EnumOperator;
-
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Created by MI6 root 1/23.
  */
 public final class ConstantFolder
-        implements IVisitor, Optimizable
+        implements FusablePass
 {
-    private AbstractExpression lastExpr;
     private boolean isOptimizing;
 
-    private boolean isConstant()
-    {
-        return isConstant(lastExpr);
-    }
-
-    private boolean isConstant(AbstractExpression expr)
+    private boolean isBoolConstant(AbstractExpression expr)
     {
-        return expr instanceof CvaConstIntExpr
-                || expr instanceof CvaConstTrueExpr
+        return expr instanceof CvaConstTrueExpr
                 || expr instanceof CvaConstFalseExpr;
     }
 
-
-    @Override
-    public void visit(EnumCvaType basicType) {}
-
-    @Override
-    public void visit(CvaStringType type) {}
-
-    @Override
-    public void visit(CvaClassType type) {}
-
-    @Override
-    public void visit(CvaDeclaration decl) {}
-
-
-    @Override
-    public void visit(CvaAndAndExpr expr)
-    {
-        this.visit(expr.getLeft());
-        AbstractExpression temLeft = this.lastExpr;
-        this.visit(expr.getRight());
-        AbstractExpression temRight = this.lastExpr;
-
-        this.isOptimizing = true;
-        if (temLeft instanceof CvaConstFalseExpr
-                || temRight instanceof CvaConstFalseExpr)
-        {
-            this.lastExpr = new CvaConstFalseExpr(expr.getLineNum());
-        }
-        else if (temLeft instanceof CvaConstTrueExpr
-                && temRight instanceof CvaConstTrueExpr)
-        {
-            this.lastExpr = temLeft;
-        }
-        else if (temLeft instanceof CvaConstTrueExpr)
-        {
-            this.lastExpr = temRight;
-        }
-        else if (temRight instanceof CvaConstTrueExpr)
-        {
-            this.lastExpr = temLeft;
-        }
-        else
-        {
-            this.isOptimizing = false;
-            this.lastExpr = expr;
-        }
-    }
-
-    @Override
-    public void visit(CvaCallExpr expr)
-    {
-        List<AbstractExpression> argList = new ArrayList<>();
-        expr.getArgs().forEach(arg ->
-        {
-            this.visit(arg);
-            argList.add(this.lastExpr);
-        });
-        expr.setArgs(argList);
-        this.lastExpr = expr;
-    }
-
-    @Override
-    public void visit(CvaConstFalseExpr expr)
-    {
-        this.lastExpr = expr;
-    }
-
     @Override
-    public void visit(CvaIdentifierExpr expr)
+    public void enterMethod(CvaClass cvaClass, CvaMethod method)
     {
-        this.lastExpr = expr;
+        this.isOptimizing = false;
     }
 
+    /**
+     * 子表达式已经折过了, 这里只看自己;
+     */
     @Override
-    public void visit(CvaLessOrMoreThanExpr expr)
+    public AbstractExpression exitExpr(AbstractExpression expr)
     {
-        this.visit(expr.getLeft());
-        if (isConstant())
+        switch (expr.toEnum())
         {
-            CvaConstIntExpr temLeft = (CvaConstIntExpr) this.lastExpr;
-            this.visit(expr.getRight());
-            if (isConstant())
+            case AND_AND:
             {
-                this.isOptimizing = true;
-                this.lastExpr = temLeft.getValue() < ((CvaConstIntExpr) this.lastExpr).getValue()
-                        ? new CvaConstTrueExpr(this.lastExpr.getLineNum())
-                        : new CvaConstFalseExpr(this.lastExpr.getLineNum());
+                return fold((CvaAndAndExpr) expr);
             }
-            else
+            case LESS_OR_MORE_THAN:
             {
-                this.lastExpr = new CvaLessOrMoreThanExpr(
-                        this.lastExpr.getLineNum(),
-                        temLeft,
-                        this.lastExpr);
+                return fold((CvaLessOrMoreThanExpr) expr);
+            }
+            case NEGATE:
+            {
+                return fold((CvaNegateExpr) expr);
+            }
+            case BINARY_OPERAND_OP:
+            {
+                return fold((CvaOperandOperatorExpr) expr);
+            }
+            default:
+            {
+                return expr;
             }
         }
-        else
-        {
-            this.lastExpr = expr;
-        }
-    }
-
-    @Override
-    public void visit(CvaNewExpr expr)
-    {
-        this.lastExpr = expr;
     }
 
-    @Override
-    public void visit(CvaNegateExpr expr)
+    private AbstractExpression fold(CvaAndAndExpr expr)
     {
-        this.visit(expr.getExpr());
-        if (isConstant())
+        // 右边是false时左边可能有调用, 不能整个丢掉;
+        if (expr.getLeft() instanceof CvaConstFalseExpr)
         {
             this.isOptimizing = true;
-            this.lastExpr = this.lastExpr instanceof CvaConstTrueExpr
-                    ? new CvaConstFalseExpr(this.lastExpr.getLineNum())
-                    : new CvaConstTrueExpr(this.lastExpr.getLineNum());
+            return expr.getLeft();
         }
-        else
+        if (expr.getLeft() instanceof CvaConstTrueExpr)
         {
-            this.lastExpr = expr;
+            this.isOptimizing = true;
+            return expr.getRight();
         }
+        if (expr.getRight() instanceof CvaConstTrueExpr)
+        {
+            this.isOptimizing = true;
+            return expr.getLeft();
+        }
+        return expr;
     }
 
-    @Override
-    public void visit(CvaConstIntExpr expr)
-    {
-        this.lastExpr = expr;
-    }
-
-    @Override
-    public void visit(CvaConstStringExpr expr)
-    {
-        this.lastExpr = expr;
-    }
-
-    @Override
-    public void visit(CvaThisExpr expr)
+    private AbstractExpression fold(CvaLessOrMoreThanExpr expr)
     {
-        this.lastExpr = expr;
+        if (expr.getLeft() instanceof CvaConstIntExpr
+                && expr.getRight() instanceof CvaConstIntExpr)
+        {
+            this.isOptimizing = true;
+            return ((CvaConstIntExpr) expr.getLeft()).getValue() < ((CvaConstIntExpr) expr.getRight()).getValue()
+                    ? new CvaConstTrueExpr(expr.getLineNum())
+                    : new CvaConstFalseExpr(expr.getLineNum());
+        }
+        return expr;
     }
 
-    @Override
-    public void visit(CvaConstTrueExpr expr)
+    private AbstractExpression fold(CvaNegateExpr expr)
     {
-        this.lastExpr = expr;
+        if (isBoolConstant(expr.getExpr()))
+        {
+            this.isOptimizing = true;
+            return expr.getExpr() instanceof CvaConstTrueExpr
+                    ? new CvaConstFalseExpr(expr.getLineNum())
+                    : new CvaConstTrueExpr(expr.getLineNum());
+        }
+        return expr;
     }
 
-    @Override
-    public void visit(CvaOperandOperatorExpr expr)
+    private AbstractExpression fold(CvaOperandOperatorExpr expr)
     {
-        switch (expr.toEnum())
+        // toEnum()对所有二元运算都是BINARY_OPERAND_OP, 要按运算符分;
+        if (expr.getInstType() != EnumOperandType.INT
+                || !(expr.getLeft() instanceof CvaConstIntExpr)
+                || !(expr.getRight() instanceof CvaConstIntExpr))
+        {
+            return expr;
+        }
+        int left = ((CvaConstIntExpr) expr.getLeft()).getValue();
+        int right = ((CvaConstIntExpr) expr.getRight()).getValue();
+        switch (expr.getInstOp())
         {
             case ADD:
             {
-                this.visit(expr.getLeft());
-                if (isConstant())
-                {
-                    CvaConstIntExpr temLeft = (CvaConstIntExpr) this.lastExpr;
-                    this.visit(expr.getRight());
-                    if (isConstant())
-                    {
-                        this.isOptimizing = true;
-                        this.lastExpr = new CvaConstIntExpr(
-                                temLeft.getValue() + ((CvaConstIntExpr) this.lastExpr).getValue(),
-                                this.lastExpr.getLineNum());
-                    }
-                    else
-                    {
-//                this.lastExpr = new CvaAddExpr(
-//                        this.lastExpr.getLineNum(),
-//                        temLeft,
-//                        this.lastExpr);
-                        lastExpr = new CvaOperandOperatorExpr.Builder()
-                                .putLineNum(lastExpr.getLineNum())
-                                .putLeft(temLeft)
-                                .putRight(lastExpr)
-                                .putInstType(EnumOperandType.INT)
-                                .putInstOp(EnumOperator.ADD)
-                                .build();
-                    }
-                }
-                else
-                {
-                    this.lastExpr = expr;
-                }
-                break;
+                return fold(left + right, expr);
             }
             case SUB:
             {
-                this.visit(expr.getLeft());
-                if (isConstant())
-                {
-                    CvaConstIntExpr temLeft = (CvaConstIntExpr) this.lastExpr;
-                    this.visit(expr.getRight());
-                    if (isConstant())
-                    {
-                        this.isOptimizing = true;
-                        this.lastExpr = new CvaConstIntExpr(
-                                temLeft.getValue() - ((CvaConstIntExpr) this.lastExpr).getValue(),
-                                this.lastExpr.getLineNum());
-                    }
-                    else
-                    {
-//                this.lastExpr = new CvaSubExpr(
-//                        this.lastExpr.getLineNum(),
-//                        temLeft,
-//                        this.lastExpr);
-                        lastExpr = new CvaOperandOperatorExpr.Builder()
-                                .putLineNum(lastExpr.getLineNum())
-                                .putLeft(temLeft)
-                                .putRight(lastExpr)
-                                .putInstType(EnumOperandType.INT)
-                                .putInstOp(EnumOperator.SUB)
-                                .build();
-                    }
-                }
-                else
-                {
-                    this.lastExpr = expr;
-                }
-                break;
+                return fold(left - right, expr);
             }
             case MUL:
             {
-                this.visit(expr.getLeft());
-                if (isConstant())
-                {
-                    CvaConstIntExpr temLeft = (CvaConstIntExpr) this.lastExpr;
-                    this.visit(expr.getRight());
-                    if (isConstant())
-                    {
-                        this.isOptimizing = true;
-                        this.lastExpr = new CvaConstIntExpr(
-                                temLeft.getValue() * ((CvaConstIntExpr) this.lastExpr).getValue(),
-                                this.lastExpr.getLineNum());
-                    }
-                    else
-                    {
-//                this.lastExpr = new CvaMulExpr(
-//                        this.lastExpr.getLineNum(),
-//                        temLeft,
-//                        this.lastExpr);
-                        lastExpr = new CvaOperandOperatorExpr.Builder()
-                                .putLineNum(lastExpr.getLineNum())
-                                .putLeft(temLeft)
-                                .putRight(lastExpr)
-                                .putInstType(EnumOperandType.INT)
-                                .putInstOp(EnumOperator.MUL)
-                                .build();
-                    }
-                }
-                else
-                {
-                    this.lastExpr = expr;
-                }
-                break;
+                return fold(left * right, expr);
             }
             default:
             {
-                break;
+                // 其余运算还不折叠, 除零等要留到运行时;
+                return expr;
             }
         }
     }
 
-    @Override
-    public void visit(CvaIncDecExpr expr)
-    {
-        // TODO;
-    }
-
-    @Override
-    public void visit(CvaAssignStatement stm)
-    {
-        this.visit(stm.getExpr());
-        stm.setExpr(this.lastExpr);
-    }
-
-    @Override
-    public void visit(CvaBlockStatement stm)
-    {
-        stm.getStatementList().forEach(this::visit);
-    }
-
-    @Override
-    public void visit(CvaIfStatement stm)
-    {
-        this.visit(stm.getCondition());
-        stm.setCondition(this.lastExpr);
-        this.visit(stm.getThenStatement());
-        this.visit(stm.getElseStatement());
-    }
-
-    @Override
-    public void visit(CvaWriteStatement stm)
-    {
-        this.visit(stm.getExpr());
-        stm.setExpr(this.lastExpr);
-    }
-
-    @Override
-    public void visit(CvaWhileForStatement stm)
-    {
-        this.visit(stm.getCondition());
-        stm.setCondition(this.lastExpr);
-        this.visit(stm.getBody());
-    }
-
-    @Override
-    public void visit(CvaExprStatement stm)
-    {
-        visit(stm.getExpr());
-    }
-
-
-    @Override
-    public void visit(CvaMethod cvaMethod)
+    private AbstractExpression fold(int value, CvaOperandOperatorExpr expr)
     {
-        cvaMethod.getStatementList().forEach(this::visit);
-        this.visit(cvaMethod.getRetExpr());
-        cvaMethod.setRetExpr(this.lastExpr);
-    }
-
-    @Override
-    public void visit(CvaMainMethod entryMethod)
-    {
-        // FIXME;
-    }
-
-    @Override
-    public void visit(CvaClass cvaClass)
-    {
-        cvaClass.getMethodList().forEach(this::visit);
-    }
-
-    @Override
-    public void visit(CvaEntryClass entryClass)
-    {
-        this.visit((CvaMainMethod) entryClass.getMainMethod());
+        this.isOptimizing = true;
+        return new CvaConstIntExpr(expr.getLineNum(), value);
     }
 
     @Override
-    public void visit(CvaProgram program)
+    public boolean exitMethod(CvaMethod method)
     {
-        this.isOptimizing = false;
-        this.visit(program.getEntryClass());
-        program.getClassList().forEach(this::visit);
+        return this.isOptimizing;
     }
 
     @Override
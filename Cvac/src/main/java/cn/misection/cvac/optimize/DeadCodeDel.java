@@ -2,6 +2,7 @@ package cn.misection.cvac.optimize;
 
 import cn.misection.cvac.ast.IVisitor;
 import cn.misection.cvac.ast.clas.*;
+import cn.misection.cvac.dataflow.*;
 import cn.misection.cvac.ast.decl.*;
 import cn.misection.cvac.ast.entry.*;
 import cn.misection.cvac.ast.expr.nonterminal.binary.*;
@@ -16,20 +17,18 @@ import cn.misection.cvac.ast.type.reference.CvaClassType;
 import cn.misection.cvac.ast.type.advance.CvaStringType;
 
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
 
 /**
  * Created by MI6 root 1/27.
+ * 活跃性在方法的控制流图上用位向量求解, 走树时只问赋值之后左边的变量还活不活;
+ * 一次只删按原树算出的死赋值, 删完后新变死的留给PassManager重跑;
  */
 public final class DeadCodeDel
         implements IVisitor, Optimizable
 {
-    private Set<String> curFields;  // the fields of current class
-    private Set<String> localVars;  // the local variables and formals in current method
-    private Set<String> localLiveness;  // the living id in current statement
-    // private boolean isAssign;   // current id is in the left of assign(true), or is being evaluated(false)
-    private boolean containsCall;   // current statement contains method call?
+    private ControlFlowGraph graph;
+    private LivenessAnalysis liveness;
     private boolean shouldDel;  // should delete current statement?
     private boolean isOptimizing;
 
@@ -45,62 +44,32 @@ public final class DeadCodeDel
     @Override
     public void visit(CvaDeclaration decl) {}
 
-
     @Override
-    public void visit(CvaAndAndExpr expr)
-    {
-        visit(expr.getLeft());
-        visit(expr.getRight());
-    }
+    public void visit(CvaAndAndExpr expr) {}
 
     @Override
-    public void visit(CvaCallExpr expr)
-    {
-        visit(expr.getExpr());
-        expr.getArgs().forEach(this::visit);
-        this.containsCall = true;
-    }
+    public void visit(CvaCallExpr expr) {}
 
     @Override
-    public void visit(CvaConstFalseExpr expr)
-    {
-    }
+    public void visit(CvaConstFalseExpr expr) {}
 
     @Override
-    public void visit(CvaIdentifierExpr expr)
-    {
-        if (this.localVars.contains(expr.name()))
-        {
-            this.localLiveness.add(expr.name());
-        }
-    }
+    public void visit(CvaIdentifierExpr expr) {}
 
     @Override
-    public void visit(CvaLessOrMoreThanExpr expr)
-    {
-        visit(expr.getLeft());
-        visit(expr.getRight());
-    }
+    public void visit(CvaLessOrMoreThanExpr expr) {}
 
     @Override
-    public void visit(CvaNewExpr expr)
-    {
-    }
+    public void visit(CvaNewExpr expr) {}
 
     @Override
-    public void visit(CvaNegateExpr expr)
-    {
-        visit(expr.getExpr());
-    }
+    public void visit(CvaNegateExpr expr) {}
 
     @Override
     public void visit(CvaConstIntExpr expr) {}
 
     @Override
-    public void visit(CvaConstStringExpr expr)
-    {
-        // FIXME
-    }
+    public void visit(CvaConstStringExpr expr) {}
 
     @Override
     public void visit(CvaThisExpr expr) {}
@@ -109,49 +78,20 @@ public final class DeadCodeDel
     public void visit(CvaConstTrueExpr expr) {}
 
     @Override
-    public void visit(CvaOperandOperatorExpr expr)
-    {
-        switch (expr.toEnum())
-        {
-            case ADD:
-            case SUB:
-            case MUL:
-            {
-                visit(expr.getLeft());
-                visit(expr.getRight());
-                break;
-            }
-            default:
-            {
-                break;
-            }
-        }
-    }
+    public void visit(CvaOperandOperatorExpr expr) {}
 
     @Override
-    public void visit(CvaIncDecExpr expr)
-    {
-        // TODO;
-    }
+    public void visit(CvaIncDecExpr expr) {}
 
     @Override
     public void visit(CvaAssignStatement stm)
     {
-        if (this.localLiveness.contains(stm.getVarName())
-                || this.curFields.contains(stm.getVarName()))
-        {
-            this.localLiveness.remove(stm.getVarName());
-            visit(stm.getExpr());
-            this.shouldDel = false;
-            return;
-        }
-
-        this.containsCall = false;
-        visit(stm.getExpr());
-        if (this.containsCall)
-        {
-            this.shouldDel = false;
-        }
+        // 字段与继承来的字段在别处可能被读, 只有局部变量能判死;
+        int var = graph.varIndexOf(stm.getVarName());
+        int node = graph.nodeOf(stm);
+        this.shouldDel = var >= 0
+                && !graph.getNode(node).hasSideEffect()
+                && !liveness.isLiveAfter(node, var);
     }
 
     @Override
@@ -166,78 +106,77 @@ public final class DeadCodeDel
                 stm.getStatementList().remove(i);
             }
         }
-        this.shouldDel = stm.getStatementList().size() == 0;
+        this.shouldDel = stm.getStatementList().isEmpty();
     }
 
     @Override
     public void visit(CvaIfStatement stm)
     {
-        Set<String> temOriginal = new HashSet<>(localLiveness);
-        visit(stm.getThenStatement());
-        if (this.shouldDel)
+        boolean thenEmpty = visitBranch(stm.getThenStatement());
+        boolean elseEmpty = visitBranch(stm.getElseStatement());
+        if (thenEmpty && !(stm.getThenStatement() instanceof CvaBlockStatement))
         {
-            stm.setThenStatement(null);
+            this.isOptimizing = true;
+            stm.setThenStatement(new CvaBlockStatement(stm.getLineNum(), new ArrayList<>()));
         }
-        Set<String> tehLeftLiveness = this.localLiveness;
-
-        this.localLiveness = temOriginal;
-        visit(stm.getElseStatement());
-        if (this.shouldDel)
+        if (elseEmpty && !stm.getElseStatement().isNull()
+                && !(stm.getElseStatement() instanceof CvaBlockStatement))
         {
+            this.isOptimizing = true;
             stm.setElseStatement(CvaNullStatement.getInstance());
         }
-        this.localLiveness.addAll(tehLeftLiveness);
+        this.shouldDel = thenEmpty && elseEmpty
+                && !graph.getNode(graph.nodeOf(stm.getCondition())).hasSideEffect();
+    }
 
-        this.shouldDel = stm.getThenStatement() == null;
-        if (this.shouldDel)
+    /**
+     * @return 分支是否什么都不剩;
+     */
+    private boolean visitBranch(AbstractStatement branch)
+    {
+        if (branch == null || branch.isNull())
         {
-            this.localLiveness = temOriginal;
-            return;
+            return true;
         }
-        visit(stm.getCondition());
+        visit(branch);
+        return this.shouldDel;
     }
 
     @Override
     public void visit(CvaWriteStatement stm)
     {
-        visit(stm.getExpr());
         this.shouldDel = false;
     }
 
     @Override
     public void visit(CvaWhileForStatement stm)
     {
-        Set<String> temOriginal = new HashSet<>(localLiveness);
+        // 回边上的活跃性已经在图上解好, 这里不用再迭代;
         visit(stm.getBody());
-        if (this.shouldDel) // this statement will be deleted totally
+        if (!stm.getForInit().isNull())
         {
-            this.localLiveness = temOriginal;
-            return;         // so return is safe.
+            visit(stm.getForInit());
+            if (this.shouldDel)
+            {
+                this.isOptimizing = true;
+                stm.setForInit(CvaNullStatement.getInstance());
+            }
         }
-        // this.isAssign = false;
-        visit(stm.getCondition());
+        // 空循环也可能不终止, 不删;
+        this.shouldDel = false;
     }
 
     @Override
     public void visit(CvaExprStatement stm)
     {
-        visit(stm.getExpr());
+        this.shouldDel = false;
     }
 
-
     @Override
     public void visit(CvaMethod m)
     {
-        this.localVars = new HashSet<>();
-        m.getArgumentList().forEach(f ->
-                localVars.add((f.name())));
-
-        m.getLocalVarList().forEach(l ->
-                localVars.add((l.name())));
-
-        localLiveness = new HashSet<>();
-
-        visit(m.getRetExpr());
+        this.graph = ControlFlowGraph.of(m);
+        this.liveness = new LivenessAnalysis(graph);
         for (int i = m.getStatementList().size() - 1; i >= 0; i--)
         {
             visit(m.getStatementList().get(i));
@@ -258,10 +197,6 @@ public final class DeadCodeDel
     @Override
     public void visit(CvaClass c)
     {
-        this.curFields = new HashSet<>();
-        c.getFieldList().forEach(f ->
-                this.curFields.add((f.name())));
-
         c.getMethodList().forEach(this::visit);
     }
 
@@ -277,6 +212,14 @@ public final class DeadCodeDel
         program.getClassList().forEach(this::visit);
     }
 
+    @Override
+    public boolean optimize(CvaClass cvaClass, CvaMethod method)
+    {
+        this.isOptimizing = false;
+        visit(method);
+        return this.isOptimizing;
+    }
+
     @Override
     public boolean isOptimizing()
     {
@@ -0,0 +1,103 @@
+package cn.misection.cvac.optimize;
+
+import cn.misection.cvac.context.CompilationContext;
+
+import java.util.EnumSet;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName EnumOptimizePass
+ * @Description ast上的各优化遍, 声明顺序就是同一方法上的执行顺序;
+ * 每一遍改了方法后, 只有invalidates()里的遍需要在这个方法上重跑;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public enum EnumOptimizePass
+{
+    /**
+     * 删掉没用的局部变量声明, 不影响语句, 不让别的遍重跑;
+     */
+    UN_USED_VAR_DECL,
+
+    /**
+     * 折出来的常量条件给UnReachableDel, 常量赋值给传播, false && x 丢掉的读给两个删除遍;
+     */
+    CONSTANT_FOLDER,
+
+    /**
+     * 删掉的分支里的赋值与读影响其余各遍;
+     */
+    UN_REACHABLE_DEL,
+
+    /**
+     * 删掉一句后它右边读的变量可能也死了, 所以也让自己重跑;
+     */
+    DEAD_CODE_DEL,
+
+    /**
+     * 换进来的常量可以折叠, 条件可能变成常量, 原来的读没了, 拷贝链要再传一步;
+     */
+    SPARSE_CONDITIONAL_PROPAGATION,
+    ;
+
+    /**
+     * @param context 警告报到这次编译里;
+     */
+    public Optimizable newPass(CompilationContext context)
+    {
+        switch (this)
+        {
+            case UN_USED_VAR_DECL:
+            {
+                return new UnUsedVarDecl(context);
+            }
+            case CONSTANT_FOLDER:
+            {
+                return new ConstantFolder();
+            }
+            case UN_REACHABLE_DEL:
+            {
+                return new UnReachableDel(context);
+            }
+            case DEAD_CODE_DEL:
+            {
+                return new DeadCodeDel();
+            }
+            default:
+            {
+                return new SparseConditionalPropagation();
+            }
+        }
+    }
+
+    /**
+     * @return 这一遍改了某个方法之后, 该方法上需要重跑的遍;
+     */
+    public EnumSet<EnumOptimizePass> invalidates()
+    {
+        switch (this)
+        {
+            case UN_USED_VAR_DECL:
+            {
+                return EnumSet.noneOf(EnumOptimizePass.class);
+            }
+            case CONSTANT_FOLDER:
+            {
+                return EnumSet.of(UN_USED_VAR_DECL, UN_REACHABLE_DEL, DEAD_CODE_DEL, SPARSE_CONDITIONAL_PROPAGATION);
+            }
+            case UN_REACHABLE_DEL:
+            {
+                return EnumSet.of(UN_USED_VAR_DECL, DEAD_CODE_DEL, SPARSE_CONDITIONAL_PROPAGATION);
+            }
+            case DEAD_CODE_DEL:
+            {
+                return EnumSet.of(UN_USED_VAR_DECL, DEAD_CODE_DEL);
+            }
+            default:
+            {
+                return EnumSet.of(UN_USED_VAR_DECL, CONSTANT_FOLDER, UN_REACHABLE_DEL,
+                        DEAD_CODE_DEL, SPARSE_CONDITIONAL_PROPAGATION);
+            }
+        }
+    }
+}
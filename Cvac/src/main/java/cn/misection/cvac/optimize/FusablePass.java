@@ -0,0 +1,59 @@
+package cn.misection.cvac.optimize;
+
+import cn.misection.cvac.ast.clas.CvaClass;
+import cn.misection.cvac.ast.expr.AbstractExpression;
+import cn.misection.cvac.ast.method.CvaMethod;
+import cn.misection.cvac.ast.statement.AbstractStatement;
+
+import java.util.Collections;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName FusablePass
+ * @Description 能和别的遍合在一次遍历里跑的遍, 自己不走树, 只在每个节点上做这个节点的事;
+ * 走树由FusedPass负责, 节点钩子都是后序的, 调用时子节点已经被所有的遍处理完;
+ * 前一个遍换掉的节点, 后一个遍看到的是换过的;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public interface FusablePass extends Optimizable
+{
+    /**
+     * 开始一个方法, 清掉上一个方法的状态;
+     */
+    void enterMethod(CvaClass cvaClass, CvaMethod method);
+
+    /**
+     * @return 替换expr的表达式, 不换就返回expr;
+     */
+    default AbstractExpression exitExpr(AbstractExpression expr)
+    {
+        return expr;
+    }
+
+    /**
+     * @return 替换stm的语句, 不换就返回stm, 整句删掉返回null;
+     */
+    default AbstractStatement exitStm(AbstractStatement stm)
+    {
+        return stm;
+    }
+
+    /**
+     * 方法里的语句与返回值都走完了;
+     *
+     * @return 这个方法是否被改了;
+     */
+    boolean exitMethod(CvaMethod method);
+
+    /**
+     * 单独跑时就是只有自己的一次遍历;
+     */
+    @Override
+    default boolean optimize(CvaClass cvaClass, CvaMethod method)
+    {
+        return !new FusedPass(Collections.singletonList(this))
+                .optimize(cvaClass, method)
+                .isEmpty();
+    }
+}
@@ -0,0 +1,333 @@
+package cn.misection.cvac.optimize;
+
+import cn.misection.cvac.ast.IVisitor;
+import cn.misection.cvac.ast.clas.*;
+import cn.misection.cvac.ast.decl.*;
+import cn.misection.cvac.ast.entry.*;
+import cn.misection.cvac.ast.expr.*;
+import cn.misection.cvac.ast.expr.nonterminal.binary.*;
+import cn.misection.cvac.ast.expr.terminator.*;
+import cn.misection.cvac.ast.expr.nonterminal.unary.*;
+import cn.misection.cvac.ast.method.*;
+import cn.misection.cvac.ast.program.*;
+import cn.misection.cvac.ast.statement.*;
+import cn.misection.cvac.ast.statement.nullptr.CvaNullStatement;
+import cn.misection.cvac.ast.type.basic.EnumCvaType;
+import cn.misection.cvac.ast.type.reference.CvaClassType;
+import cn.misection.cvac.ast.type.advance.CvaStringType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName FusedPass
+ * @Description 把几个FusablePass合成一次遍历: 每个节点只按toEnum()分派一次,
+ * 先走完子节点, 再按顺序调各遍的钩子, 钩子换掉的节点写回父节点;
+ * 被删的if分支与循环体换成空块, 被删的else与for初始化换成空语句;
+ * DeadCodeDel要倒着走, 传播要在语句之间带着状态, 都不能合进来;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class FusedPass implements IVisitor
+{
+    private final List<FusablePass> passList;
+
+    private AbstractExpression curExpr;
+
+    private AbstractStatement curStm;
+
+    /**
+     * @param passList 钩子的调用顺序;
+     */
+    public FusedPass(List<FusablePass> passList)
+    {
+        this.passList = passList;
+    }
+
+    /**
+     * @return 改了这个方法的遍, 按passList的顺序;
+     */
+    public List<FusablePass> optimize(CvaClass cvaClass, CvaMethod method)
+    {
+        passList.forEach(pass -> pass.enterMethod(cvaClass, method));
+        this.visit(method);
+        List<FusablePass> changedList = new ArrayList<>();
+        for (FusablePass pass : passList)
+        {
+            if (pass.exitMethod(method))
+            {
+                changedList.add(pass);
+            }
+        }
+        return changedList;
+    }
+
+    /**
+     * 没有visit()的节点, 比如null与空表达式, 原样返回;
+     */
+    private AbstractExpression walk(AbstractExpression expr)
+    {
+        this.curExpr = expr;
+        this.visit(expr);
+        return this.curExpr;
+    }
+
+    /**
+     * @return 处理后的语句, 整句删掉时为null;
+     */
+    private AbstractStatement walk(AbstractStatement stm)
+    {
+        this.curStm = stm;
+        this.visit(stm);
+        return this.curStm;
+    }
+
+    private void exit(AbstractExpression expr)
+    {
+        for (FusablePass pass : passList)
+        {
+            expr = pass.exitExpr(expr);
+        }
+        this.curExpr = expr;
+    }
+
+    private void exit(AbstractStatement stm)
+    {
+        for (FusablePass pass : passList)
+        {
+            stm = pass.exitStm(stm);
+            if (stm == null)
+            {
+                break;
+            }
+        }
+        this.curStm = stm;
+    }
+
+    private List<AbstractStatement> walk(List<AbstractStatement> stmList)
+    {
+        List<AbstractStatement> resultList = new ArrayList<>(stmList.size());
+        for (AbstractStatement stm : stmList)
+        {
+            AbstractStatement result = walk(stm);
+            if (result != null)
+            {
+                resultList.add(result);
+            }
+        }
+        return resultList;
+    }
+
+    /**
+     * 被删的分支要留个位置, 空块还能挂语句;
+     */
+    private AbstractStatement walkOrEmpty(AbstractStatement stm)
+    {
+        AbstractStatement result = walk(stm);
+        return result == null
+                ? new CvaBlockStatement(stm.getLineNum(), new ArrayList<>())
+                : result;
+    }
+
+    private AbstractStatement walkOrNull(AbstractStatement stm)
+    {
+        if (stm.isNull())
+        {
+            return stm;
+        }
+        AbstractStatement result = walk(stm);
+        return result == null ? CvaNullStatement.getInstance() : result;
+    }
+
+    @Override
+    public void visit(EnumCvaType basicType) {}
+
+    @Override
+    public void visit(CvaStringType type) {}
+
+    @Override
+    public void visit(CvaClassType type) {}
+
+    @Override
+    public void visit(CvaDeclaration decl) {}
+
+    @Override
+    public void visit(CvaAndAndExpr expr)
+    {
+        expr.setLeft(walk(expr.getLeft()));
+        expr.setRight(walk(expr.getRight()));
+        exit(expr);
+    }
+
+    @Override
+    public void visit(CvaCallExpr expr)
+    {
+        expr.setExpr(walk(expr.getExpr()));
+        List<AbstractExpression> argList = new ArrayList<>(expr.getArgs().size());
+        expr.getArgs().forEach(arg -> argList.add(walk(arg)));
+        expr.setArgs(argList);
+        exit(expr);
+    }
+
+    @Override
+    public void visit(CvaConstFalseExpr expr)
+    {
+        exit(expr);
+    }
+
+    @Override
+    public void visit(CvaIdentifierExpr expr)
+    {
+        exit(expr);
+    }
+
+    @Override
+    public void visit(CvaLessOrMoreThanExpr expr)
+    {
+        expr.setLeft(walk(expr.getLeft()));
+        expr.setRight(walk(expr.getRight()));
+        exit(expr);
+    }
+
+    @Override
+    public void visit(CvaNewExpr expr)
+    {
+        exit(expr);
+    }
+
+    @Override
+    public void visit(CvaNegateExpr expr)
+    {
+        expr.setExpr(walk(expr.getExpr()));
+        exit(expr);
+    }
+
+    @Override
+    public void visit(CvaConstIntExpr expr)
+    {
+        exit(expr);
+    }
+
+    @Override
+    public void visit(CvaConstStringExpr expr)
+    {
+        exit(expr);
+    }
+
+    @Override
+    public void visit(CvaThisExpr expr)
+    {
+        exit(expr);
+    }
+
+    @Override
+    public void visit(CvaConstTrueExpr expr)
+    {
+        exit(expr);
+    }
+
+    @Override
+    public void visit(CvaOperandOperatorExpr expr)
+    {
+        // 钩子换下的子树按后序压栈, 到节点处弹出右左两个写回;
+        ArrayDeque<AbstractExpression> resultStack = new ArrayDeque<>();
+        walkOperandTree(expr, operand -> resultStack.push(walk(operand)), node ->
+        {
+            node.setRight(resultStack.pop());
+            node.setLeft(resultStack.pop());
+            exit(node);
+            resultStack.push(this.curExpr);
+        });
+        this.curExpr = resultStack.pop();
+    }
+
+    @Override
+    public void visit(CvaIncDecExpr expr)
+    {
+        // 自增的变量只能是变量, 只给钩子看, 不换;
+        walk(expr.getIdentifier());
+        exit(expr);
+    }
+
+    @Override
+    public void visit(CvaAssignStatement stm)
+    {
+        stm.setExpr(walk(stm.getExpr()));
+        exit(stm);
+    }
+
+    @Override
+    public void visit(CvaBlockStatement stm)
+    {
+        stm.setStatementList(walk(stm.getStatementList()));
+        exit(stm);
+    }
+
+    @Override
+    public void visit(CvaIfStatement stm)
+    {
+        stm.setCondition(walk(stm.getCondition()));
+        stm.setThenStatement(walkOrEmpty(stm.getThenStatement()));
+        stm.setElseStatement(walkOrNull(stm.getElseStatement()));
+        exit(stm);
+    }
+
+    @Override
+    public void visit(CvaWriteStatement stm)
+    {
+        stm.setExpr(walk(stm.getExpr()));
+        exit(stm);
+    }
+
+    @Override
+    public void visit(CvaWhileForStatement stm)
+    {
+        stm.setForInit(walkOrNull(stm.getForInit()));
+        stm.setCondition(walk(stm.getCondition()));
+        stm.setBody(walkOrEmpty(stm.getBody()));
+        // 步进也只是自增, 不换;
+        walk(stm.getAfterBody());
+        exit(stm);
+    }
+
+    @Override
+    public void visit(CvaExprStatement stm)
+    {
+        // 调用与自增都不会被换掉;
+        walk(stm.getExpr());
+        exit(stm);
+    }
+
+    @Override
+    public void visit(CvaMethod cvaMethod)
+    {
+        cvaMethod.setStatementList(walk(cvaMethod.getStatementList()));
+        cvaMethod.setRetExpr(walk(cvaMethod.getRetExpr()));
+    }
+
+    @Override
+    public void visit(CvaMainMethod entryMethod)
+    {
+        // FIXME;
+    }
+
+    @Override
+    public void visit(CvaClass cvaClass)
+    {
+        // 按方法调度, 见PassManager;
+    }
+
+    @Override
+    public void visit(CvaEntryClass entryClass)
+    {
+        // FIXME;
+    }
+
+    @Override
+    public void visit(CvaProgram program)
+    {
+        // 按方法调度, 见PassManager;
+    }
+}
@@ -1,9 +1,21 @@
 package cn.misection.cvac.optimize;
 
+import cn.misection.cvac.ast.clas.CvaClass;
+import cn.misection.cvac.ast.method.CvaMethod;
+
 /**
  * Created by MI6 root 1/31.
  */
 public interface Optimizable
 {
     boolean isOptimizing();
+
+    /**
+     * 只优化一个方法, PassManager按方法调度;
+     *
+     * @param cvaClass 方法所在的类;
+     * @param method 方法;
+     * @return 这个方法是否真的被改了;
+     */
+    boolean optimize(CvaClass cvaClass, CvaMethod method);
 }
@@ -1,35 +1,39 @@
 package cn.misection.cvac.optimize;
 
 import cn.misection.cvac.ast.program.AbstractProgram;
+import cn.misection.cvac.context.CompilationContext;
+
+import java.util.function.Predicate;
 
 /**
  * Created by MI6 root 1/31.
  */
 public final class Optimizer
 {
+    private final CompilationContext context;
+
+    /**
+     * @param context 各遍的警告报到这次编译里, 不直接打到标准输出;
+     */
+    public Optimizer(CompilationContext context)
+    {
+        this.context = context;
+    }
+
     public void optimize(AbstractProgram cvaProgram)
     {
-        UnUsedVarDecl varDeler = new UnUsedVarDecl();
-        varDeler.givesWarning = true;
-        ConstantFolder folder = new ConstantFolder();
-        UnReachableDel deler = new UnReachableDel();
-        DeadCodeDel deadDeler = new DeadCodeDel();
-        ConstantAndCopyPropagation proper = new ConstantAndCopyPropagation();
+        optimize(cvaProgram, className -> true);
+    }
 
-        boolean flag;
-        do
-        {
-            varDeler.visit(cvaProgram);
-            varDeler.givesWarning = false;
-            folder.visit(cvaProgram);
-            deler.visit(cvaProgram);
-            deadDeler.visit(cvaProgram);
-            proper.visit(cvaProgram);
-            flag = varDeler.isOptimizing()
-                    || folder.isOptimizing()
-                    || deler.isOptimizing()
-                    || deadDeler.isOptimizing()
-                    || proper.isOptimizing();
-        } while (flag);
+    /**
+     * @param classFilter 按类名选出要优化的类, 其余的类原样不动;
+     */
+    public void optimize(AbstractProgram cvaProgram, Predicate<String> classFilter)
+    {
+        // 原先整个程序的五遍轮流跑到都不报改动为止, 一处改动就重跑所有方法, 现在按方法调度;
+        PassManager passManager = new PassManager(context);
+        passManager.optimize(cvaProgram, classFilter);
+        passManager.getExhaustedMethodList().forEach(method -> context.report(0,
+                String.format("Warning: optimize %s did not converge, stop at the budget.", method)));
     }
 }
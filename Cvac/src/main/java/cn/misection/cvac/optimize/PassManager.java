@@ -0,0 +1,181 @@
+package cn.misection.cvac.optimize;
+
+import cn.misection.cvac.ast.clas.AbstractCvaClass;
+import cn.misection.cvac.ast.clas.CvaClass;
+import cn.misection.cvac.ast.method.AbstractMethod;
+import cn.misection.cvac.ast.method.CvaMethod;
+import cn.misection.cvac.ast.program.AbstractProgram;
+import cn.misection.cvac.context.CompilationContext;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName PassManager
+ * @Description 按方法调度ast优化遍: 每个方法记一个待跑遍的集合, 开始时是全部,
+ * 每次取声明顺序最靠前的一遍来跑, 改了方法就把它invalidates()的遍加回集合, 集合空了这个方法就结束;
+ * 各遍都只看一个方法, 一个方法的改动不会让别的方法重跑, 总耗时与方法数成线性;
+ * 每个方法最多跑roundBudget轮那么多遍, 用完就停在当前结果上, 记进getExhaustedMethodList();
+ * 待跑的遍里能合并的(FusablePass)一起放进一次FusedPass遍历, 省掉重复走树;
+ * 入口类的各遍都还没实现, 不调度;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class PassManager
+{
+    private static final int DEFAULT_ROUND_BUDGET = 16;
+
+    private final int roundBudget;
+
+    private final boolean fusing;
+
+    private final Map<EnumOptimizePass, Optimizable> passMap = new EnumMap<>(EnumOptimizePass.class);
+
+    /**
+     * 遍 -> 在多少个方法上跑过, 改了多少次;
+     */
+    private final Map<EnumOptimizePass, Integer> runCountMap = new EnumMap<>(EnumOptimizePass.class);
+
+    private final Map<EnumOptimizePass, Integer> changeCountMap = new EnumMap<>(EnumOptimizePass.class);
+
+    private final List<String> exhaustedMethodList = new ArrayList<>();
+
+    public PassManager(CompilationContext context)
+    {
+        this(context, DEFAULT_ROUND_BUDGET, true);
+    }
+
+    /**
+     * @param context 各遍的警告报到这次编译里;
+     * @param roundBudget 每个方法最多相当于把全部遍跑几轮;
+     * @param fusing 能合并的遍是否合在一次遍历里, 结果相同, 关掉用来对比;
+     */
+    public PassManager(CompilationContext context, int roundBudget, boolean fusing)
+    {
+        this.roundBudget = roundBudget;
+        this.fusing = fusing;
+        for (EnumOptimizePass pass : EnumOptimizePass.values())
+        {
+            passMap.put(pass, pass.newPass(context));
+            runCountMap.put(pass, 0);
+            changeCountMap.put(pass, 0);
+        }
+    }
+
+    public void optimize(AbstractProgram program)
+    {
+        optimize(program, className -> true);
+    }
+
+    /**
+     * 各遍只看一个方法, 所以只优化一部分类不影响其余类的结果, 供增量编译只处理变了的类;
+     *
+     * @param classFilter 按类名选出要优化的类;
+     */
+    public void optimize(AbstractProgram program, Predicate<String> classFilter)
+    {
+        UnUsedVarDecl varDeler = (UnUsedVarDecl) passMap.get(EnumOptimizePass.UN_USED_VAR_DECL);
+        for (AbstractCvaClass abstClass : program.getClassList())
+        {
+            if (!classFilter.test(abstClass.name()))
+            {
+                continue;
+            }
+            CvaClass cvaClass = (CvaClass) abstClass;
+            for (AbstractMethod method : cvaClass.getMethodList())
+            {
+                // 没用的变量每个方法只警告一次;
+                varDeler.givesWarning = true;
+                optimize(cvaClass, (CvaMethod) method);
+            }
+        }
+    }
+
+    private void optimize(CvaClass cvaClass, CvaMethod method)
+    {
+        EnumSet<EnumOptimizePass> dirtySet = EnumSet.allOf(EnumOptimizePass.class);
+        int budget = roundBudget * passMap.size();
+        while (!dirtySet.isEmpty())
+        {
+            if (budget <= 0)
+            {
+                exhaustedMethodList.add(String.format("%s.%s", cvaClass.name(), method.name()));
+                return;
+            }
+            List<EnumOptimizePass> runList = nextRun(dirtySet);
+            dirtySet.removeAll(runList);
+            budget -= runList.size();
+            Set<Optimizable> changedSet = run(runList, cvaClass, method);
+            if (runList.contains(EnumOptimizePass.UN_USED_VAR_DECL))
+            {
+                ((UnUsedVarDecl) passMap.get(EnumOptimizePass.UN_USED_VAR_DECL)).givesWarning = false;
+            }
+            for (EnumOptimizePass pass : runList)
+            {
+                runCountMap.merge(pass, 1, Integer::sum);
+                if (changedSet.contains(passMap.get(pass)))
+                {
+                    changeCountMap.merge(pass, 1, Integer::sum);
+                    dirtySet.addAll(pass.invalidates());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 最靠前的待跑遍, 它能合并时连同其余能合并的待跑遍, 按声明顺序;
+     */
+    private List<EnumOptimizePass> nextRun(EnumSet<EnumOptimizePass> dirtySet)
+    {
+        EnumOptimizePass first = dirtySet.iterator().next();
+        if (!fusing || !(passMap.get(first) instanceof FusablePass))
+        {
+            return Collections.singletonList(first);
+        }
+        List<EnumOptimizePass> runList = new ArrayList<>();
+        for (EnumOptimizePass pass : dirtySet)
+        {
+            if (passMap.get(pass) instanceof FusablePass)
+            {
+                runList.add(pass);
+            }
+        }
+        return runList;
+    }
+
+    /**
+     * @return 改了方法的遍;
+     */
+    private Set<Optimizable> run(List<EnumOptimizePass> runList, CvaClass cvaClass, CvaMethod method)
+    {
+        if (runList.size() == 1)
+        {
+            Optimizable pass = passMap.get(runList.get(0));
+            return pass.optimize(cvaClass, method)
+                    ? Collections.singleton(pass)
+                    : Collections.emptySet();
+        }
+        List<FusablePass> fusedList = new ArrayList<>();
+        runList.forEach(pass -> fusedList.add((FusablePass) passMap.get(pass)));
+        return new HashSet<>(new FusedPass(fusedList).optimize(cvaClass, method));
+    }
+
+    public Map<EnumOptimizePass, Integer> getRunCountMap()
+    {
+        return Collections.unmodifiableMap(runCountMap);
+    }
+
+    public Map<EnumOptimizePass, Integer> getChangeCountMap()
+    {
+        return Collections.unmodifiableMap(changeCountMap);
+    }
+
+    /**
+     * @return 用完预算还没收敛的方法, 类名.方法名;
+     */
+    public List<String> getExhaustedMethodList()
+    {
+        return Collections.unmodifiableList(exhaustedMethodList);
+    }
+}
@@ -0,0 +1,739 @@
+package cn.misection.cvac.optimize;
+
+import cn.misection.cvac.ast.StackSegment;
+import cn.misection.cvac.ast.clas.*;
+import cn.misection.cvac.ast.decl.*;
+import cn.misection.cvac.ast.expr.*;
+import cn.misection.cvac.ast.expr.nonterminal.binary.*;
+import cn.misection.cvac.ast.expr.terminator.*;
+import cn.misection.cvac.ast.expr.nonterminal.unary.*;
+import cn.misection.cvac.ast.method.*;
+import cn.misection.cvac.ast.statement.*;
+import cn.misection.cvac.ast.type.ICvaType;
+import cn.misection.cvac.ast.type.basic.EnumCvaType;
+import cn.misection.cvac.codegen.bst.instructor.EnumOperandType;
+import cn.misection.cvac.dataflow.*;
+
+import java.util.*;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SparseConditionalPropagation
+ * @Description 条件常量与拷贝传播, 取代原来按语句结构走的ConstantAndCopyPropagation;
+ * 在方法的控制流图上求解, 每个变量的格值是 未定义 > 常量或拷贝 > 不定, 只降不升;
+ * 只有可达的块才有入口值, 条件算出常量的分支只有一边的边可达, 不可达的边不参与汇合,
+ * 所以循环里赋成同一个常量的变量, 以及被证明走不到的分支里改过的变量, 仍然是常量;
+ * 工作表里只放入口值变了的可达块, 不可达的块一次都不算;
+ * 解完后把可达块里读到常量的变量换成字面量, 拷贝换成源变量, 其余的折叠留给ConstantFolder;
+ * 算出常量的无副作用条件直接换成true/false, 由UnReachableDel删分支;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SparseConditionalPropagation
+        implements Optimizable
+{
+    /**
+     * 格值的种类, 放在long的高32位, 低32位是常量值或拷贝源的变量编号;
+     * 未定义是0, 新数组就是全未定义;
+     */
+    private static final long UNDEF = 0L;
+
+    private static final int CONST = 1;
+
+    private static final int COPY = 2;
+
+    private static final long VARYING = (long) 3 << 32;
+
+    private ControlFlowGraph graph;
+
+    private CvaMethod method;
+
+    /**
+     * 变量编号 -> 声明的类型, boolean的常量换成true/false;
+     */
+    private ICvaType[] varTypes;
+
+    /**
+     * 块 -> 入口的格值, 不可达的块为null;
+     */
+    private long[][] ins;
+
+    /**
+     * 当前走到的格值;
+     */
+    private long[] state;
+
+    /**
+     * 刚算完的表达式的格值, 是否boolean, 是否没有副作用;
+     */
+    private long curValue;
+
+    private boolean curBool;
+
+    private boolean curPure;
+
+    /**
+     * 大于0时在&&的右边, 不一定执行, 里面的自增只能让变量不定;
+     */
+    private int conditional;
+
+    /**
+     * 解完之后才改ast;
+     */
+    private boolean rewriting;
+
+    /**
+     * 条件节点 -> 换掉整个条件的表达式, 要回到if与循环上去换;
+     */
+    private AbstractExpression[] conditions;
+
+    private boolean isOptimizing;
+
+    private static long constant(int value)
+    {
+        return ((long) CONST << 32) | (value & 0xffffffffL);
+    }
+
+    private static long copyOf(int var)
+    {
+        return ((long) COPY << 32) | var;
+    }
+
+    private static int kindOf(long value)
+    {
+        return (int) (value >>> 32);
+    }
+
+    private static int valueOf(long value)
+    {
+        return (int) value;
+    }
+
+    private static boolean isConst(long value)
+    {
+        return kindOf(value) == CONST;
+    }
+
+    /**
+     * 拷贝只在整个右边就是一个变量时有用, 参与运算时就是不定;
+     */
+    private static long plain(long value)
+    {
+        return kindOf(value) == COPY ? VARYING : value;
+    }
+
+    private static long meet(long first, long second)
+    {
+        if (first == second || second == UNDEF)
+        {
+            return first;
+        }
+        return first == UNDEF ? second : VARYING;
+    }
+
+    @Override
+    public boolean optimize(CvaClass cvaClass, CvaMethod method)
+    {
+        this.isOptimizing = false;
+        this.method = method;
+        this.graph = ControlFlowGraph.of(method);
+        this.varTypes = new ICvaType[graph.varCount()];
+        List<AbstractDeclaration> declList = new ArrayList<>(method.getArgumentList());
+        declList.addAll(method.getLocalVarList());
+        for (AbstractDeclaration decl : declList)
+        {
+            int var = graph.varIndexOf(decl.name());
+            if (varTypes[var] == null)
+            {
+                varTypes[var] = decl.type();
+            }
+        }
+        solve();
+        rewrite();
+        return this.isOptimizing;
+    }
+
+    private void solve()
+    {
+        int blockCount = graph.blockCount();
+        this.ins = new long[blockCount][];
+        this.state = new long[graph.varCount()];
+        this.rewriting = false;
+        long[] entry = new long[graph.varCount()];
+        // 参数是调用者给的, 局部变量开始时未定义;
+        Arrays.fill(entry, 0, graph.argCount(), VARYING);
+        ins[0] = entry;
+
+        // 循环队列, 每块最多在表里一次;
+        int[] queue = new int[blockCount + 1];
+        boolean[] queued = new boolean[blockCount];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = 0;
+        queued[0] = true;
+        while (head != tail)
+        {
+            int b = queue[head];
+            head = head == blockCount ? 0 : head + 1;
+            queued[b] = false;
+
+            long branch = run(b);
+            for (int next : liveSuccessorsOf(b, branch))
+            {
+                if (flowInto(next) && !queued[next])
+                {
+                    queued[next] = true;
+                    queue[tail] = next;
+                    tail = tail == blockCount ? 0 : tail + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * 从块的入口值开始走完块里的节点, 结果在state里;
+     *
+     * @return 块以条件结尾时条件的格值, 否则为不定;
+     */
+    private long run(int block)
+    {
+        System.arraycopy(ins[block], 0, state, 0, state.length);
+        long branch = VARYING;
+        for (int node = graph.firstNodeOf(block); node < graph.endNodeOf(block); node++)
+        {
+            branch = transfer(graph.getNode(node));
+        }
+        return branch;
+    }
+
+    /**
+     * 条件是常量时只走一边, 后继按[真, 假]排; 未定义的条件只能是读了没赋过值的变量, 两边都走;
+     */
+    private int[] liveSuccessorsOf(int block, long branch)
+    {
+        int[] successors = graph.successorsOf(block);
+        if (successors.length != 2 || !isConst(branch))
+        {
+            return successors;
+        }
+        return new int[] {successors[valueOf(branch) != 0 ? 0 : 1]};
+    }
+
+    /**
+     * 把state汇合进后继的入口;
+     *
+     * @return 后继的入口值是否变了;
+     */
+    private boolean flowInto(int block)
+    {
+        long[] in = ins[block];
+        if (in == null)
+        {
+            ins[block] = state.clone();
+            return true;
+        }
+        boolean changed = false;
+        for (int var = 0; var < in.length; var++)
+        {
+            long value = meet(in[var], state[var]);
+            if (value != in[var])
+            {
+                in[var] = value;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private void rewrite()
+    {
+        this.rewriting = true;
+        this.conditions = new AbstractExpression[graph.nodeCount()];
+        for (int b = 0; b < graph.blockCount(); b++)
+        {
+            // 不可达的块留给UnReachableDel删;
+            if (ins[b] != null)
+            {
+                run(b);
+            }
+        }
+        replaceConditions(method.getStatementList());
+    }
+
+    /**
+     * @return 条件节点的格值, 其余为不定;
+     */
+    private long transfer(FlowNode node)
+    {
+        switch (node.getKind())
+        {
+            case ASSIGN:
+            {
+                CvaAssignStatement stm = (CvaAssignStatement) node.getStatement();
+                AbstractExpression expr = rewrite(stm.getExpr());
+                if (rewriting)
+                {
+                    stm.setExpr(expr);
+                }
+                int var = graph.varIndexOf(stm.getVarName());
+                if (var >= 0)
+                {
+                    define(var, curValue);
+                }
+                return VARYING;
+            }
+            case EFFECT:
+            {
+                AbstractStatement stm = node.getStatement();
+                if (stm instanceof CvaWriteStatement)
+                {
+                    CvaWriteStatement write = (CvaWriteStatement) stm;
+                    AbstractExpression expr = rewrite(write.getExpr());
+                    if (rewriting)
+                    {
+                        write.setExpr(expr);
+                    }
+                }
+                else
+                {
+                    // 调用与自增本身都不会被换掉;
+                    rewrite(stm != null ? ((CvaExprStatement) stm).getExpr() : node.getExpr());
+                }
+                return VARYING;
+            }
+            case BRANCH:
+            {
+                AbstractExpression expr = rewrite(node.getExpr());
+                if (rewriting && isConst(curValue) && curPure && !isLiteral(expr))
+                {
+                    expr = literalOf(expr);
+                }
+                if (rewriting && expr != node.getExpr())
+                {
+                    conditions[node.getIndex()] = expr;
+                }
+                return curValue;
+            }
+            default:
+            {
+                AbstractExpression expr = rewrite(node.getExpr());
+                if (rewriting)
+                {
+                    method.setRetExpr(expr);
+                }
+                return VARYING;
+            }
+        }
+    }
+
+    /**
+     * 变量被赋值, 拷贝自它的值都失效;
+     */
+    private void define(int var, long value)
+    {
+        long copy = copyOf(var);
+        for (int other = 0; other < state.length; other++)
+        {
+            if (state[other] == copy)
+            {
+                state[other] = VARYING;
+            }
+        }
+        state[var] = value == copy ? VARYING : value;
+    }
+
+    /**
+     * 算出expr的格值, 解完之后还换掉读到常量的变量;
+     *
+     * @return 换过的表达式, 不换就是expr;
+     */
+    private AbstractExpression rewrite(AbstractExpression expr)
+    {
+        AbstractExpression result = eval(expr);
+        if (rewriting && isConst(curValue) && result instanceof CvaIdentifierExpr)
+        {
+            return literalOf(result);
+        }
+        return result;
+    }
+
+    /**
+     * @return 刚算出的常量的字面量;
+     */
+    private AbstractExpression literalOf(AbstractExpression expr)
+    {
+        this.isOptimizing = true;
+        int value = valueOf(curValue);
+        if (!curBool)
+        {
+            return new CvaConstIntExpr(expr.getLineNum(), value);
+        }
+        return value != 0
+                ? new CvaConstTrueExpr(expr.getLineNum())
+                : new CvaConstFalseExpr(expr.getLineNum());
+    }
+
+    private boolean isLiteral(AbstractExpression expr)
+    {
+        return expr instanceof CvaConstIntExpr
+                || expr instanceof CvaConstTrueExpr
+                || expr instanceof CvaConstFalseExpr;
+    }
+
+    /**
+     * 结果放在curValue, curBool与curPure里;
+     */
+    private AbstractExpression eval(AbstractExpression expr)
+    {
+        if (!StackSegment.enter())
+        {
+            // 嵌套太深, 换一段新栈继续;
+            return StackSegment.spill(() -> eval(expr));
+        }
+        try
+        {
+            this.curBool = false;
+            this.curPure = true;
+            switch (expr.toEnum())
+            {
+                case CONST_INT:
+                {
+                    this.curValue = constant(((CvaConstIntExpr) expr).getValue());
+                    return expr;
+                }
+                case CONST_TRUE:
+                {
+                    this.curValue = constant(1);
+                    this.curBool = true;
+                    return expr;
+                }
+                case CONST_FALSE:
+                {
+                    this.curValue = constant(0);
+                    this.curBool = true;
+                    return expr;
+                }
+                case IDENTIFIER:
+                {
+                    return eval((CvaIdentifierExpr) expr);
+                }
+                case AND_AND:
+                {
+                    return eval((CvaAndAndExpr) expr);
+                }
+                case LESS_OR_MORE_THAN:
+                {
+                    return eval((CvaLessOrMoreThanExpr) expr);
+                }
+                case NEGATE:
+                {
+                    return eval((CvaNegateExpr) expr);
+                }
+                case BINARY_OPERAND_OP:
+                {
+                    return eval((CvaOperandOperatorExpr) expr);
+                }
+                case INCREMENT:
+                {
+                    return eval((CvaIncDecExpr) expr);
+                }
+                case CALL:
+                {
+                    return eval((CvaCallExpr) expr);
+                }
+                case NEW:
+                {
+                    this.curValue = VARYING;
+                    this.curPure = false;
+                    return expr;
+                }
+                default:
+                {
+                    // this, 字符串等不跟踪;
+                    this.curValue = VARYING;
+                    return expr;
+                }
+            }
+        }
+        finally
+        {
+            StackSegment.exit();
+        }
+    }
+
+    private AbstractExpression eval(CvaIdentifierExpr expr)
+    {
+        int var = graph.varIndexOf(expr.name());
+        if (var < 0)
+        {
+            // 字段可能被调用改掉;
+            this.curValue = VARYING;
+            return expr;
+        }
+        long value = state[var];
+        this.curBool = varTypes[var].toEnum() == EnumCvaType.BOOLEAN;
+        if (value == VARYING)
+        {
+            this.curValue = copyOf(var);
+            return expr;
+        }
+        this.curValue = value;
+        if (rewriting && kindOf(value) == COPY)
+        {
+            this.isOptimizing = true;
+            int source = valueOf(value);
+            return new CvaIdentifierExpr(expr.getLineNum(),
+                    graph.varNameOf(source), varTypes[source], false);
+        }
+        return expr;
+    }
+
+    private AbstractExpression eval(CvaAndAndExpr expr)
+    {
+        expr.setLeft(rewrite(expr.getLeft()));
+        long left = plain(curValue);
+        boolean leftPure = curPure;
+        // 左边是常量时右边执不执行是确定的;
+        boolean sure = left == constant(1);
+        if (!sure)
+        {
+            conditional++;
+        }
+        expr.setRight(rewrite(expr.getRight()));
+        if (!sure)
+        {
+            conditional--;
+        }
+        long right = plain(curValue);
+        boolean rightPure = curPure;
+        this.curBool = true;
+        if (left == constant(0))
+        {
+            // 右边不会执行, 它的副作用不算;
+            this.curValue = left;
+            this.curPure = leftPure;
+            return expr;
+        }
+        this.curPure = leftPure && rightPure;
+        if (sure || right == constant(0))
+        {
+            this.curValue = right;
+        }
+        else
+        {
+            this.curValue = left == VARYING || right == VARYING ? VARYING : UNDEF;
+        }
+        return expr;
+    }
+
+    private AbstractExpression eval(CvaLessOrMoreThanExpr expr)
+    {
+        expr.setLeft(rewrite(expr.getLeft()));
+        long left = plain(curValue);
+        boolean leftPure = curPure;
+        expr.setRight(rewrite(expr.getRight()));
+        long right = plain(curValue);
+        this.curPure &= leftPure;
+        this.curBool = true;
+        if (isConst(left) && isConst(right))
+        {
+            this.curValue = constant(valueOf(left) < valueOf(right) ? 1 : 0);
+        }
+        else
+        {
+            this.curValue = left == VARYING || right == VARYING ? VARYING : UNDEF;
+        }
+        return expr;
+    }
+
+    private AbstractExpression eval(CvaNegateExpr expr)
+    {
+        expr.setExpr(rewrite(expr.getExpr()));
+        long value = plain(curValue);
+        this.curBool = true;
+        this.curValue = isConst(value) ? constant(valueOf(value) == 0 ? 1 : 0) : value;
+        return expr;
+    }
+
+    private AbstractExpression eval(CvaOperandOperatorExpr expr)
+    {
+        expr.setLeft(rewrite(expr.getLeft()));
+        long left = plain(curValue);
+        boolean leftPure = curPure;
+        expr.setRight(rewrite(expr.getRight()));
+        long right = plain(curValue);
+        this.curPure &= leftPure;
+        this.curBool = false;
+        if (expr.getInstType() != EnumOperandType.INT)
+        {
+            this.curValue = VARYING;
+        }
+        else if (isConst(left) && isConst(right))
+        {
+            this.curValue = compute(expr, valueOf(left), valueOf(right));
+        }
+        else
+        {
+            this.curValue = left == VARYING || right == VARYING ? VARYING : UNDEF;
+        }
+        return expr;
+    }
+
+    /**
+     * 按int的语义算, 除零留到运行时;
+     */
+    private long compute(CvaOperandOperatorExpr expr, int left, int right)
+    {
+        switch (expr.getInstOp())
+        {
+            case ADD:
+            {
+                return constant(left + right);
+            }
+            case SUB:
+            {
+                return constant(left - right);
+            }
+            case MUL:
+            {
+                return constant(left * right);
+            }
+            case DIV:
+            {
+                return right == 0 ? VARYING : constant(left / right);
+            }
+            case REM:
+            {
+                return right == 0 ? VARYING : constant(left % right);
+            }
+            case BIT_AND:
+            {
+                return constant(left & right);
+            }
+            case BIT_OR:
+            {
+                return constant(left | right);
+            }
+            case BIT_XOR:
+            {
+                return constant(left ^ right);
+            }
+            case LEFT_SHIFT:
+            {
+                return constant(left << right);
+            }
+            case RIGHT_SHIFT:
+            {
+                return constant(left >> right);
+            }
+            case UNSIGNED_RIGHT_SHIFT:
+            {
+                return constant(left >>> right);
+            }
+            default:
+            {
+                return VARYING;
+            }
+        }
+    }
+
+    private AbstractExpression eval(CvaIncDecExpr expr)
+    {
+        // 被自增的是变量本身, 不换;
+        int var = graph.varIndexOf(expr.name());
+        if (var >= 0)
+        {
+            long value = state[var];
+            define(var, conditional == 0 && isConst(value)
+                    ? constant(valueOf(value) + expr.getDirection().direction())
+                    : VARYING);
+        }
+        this.curValue = VARYING;
+        this.curPure = false;
+        return expr;
+    }
+
+    private AbstractExpression eval(CvaCallExpr expr)
+    {
+        expr.setExpr(rewrite(expr.getExpr()));
+        List<AbstractExpression> argList = expr.getArgs();
+        for (int i = 0; i < argList.size(); i++)
+        {
+            argList.set(i, rewrite(argList.get(i)));
+        }
+        this.curValue = VARYING;
+        this.curBool = false;
+        this.curPure = false;
+        return expr;
+    }
+
+    /**
+     * 条件节点的表达式挂在if与循环上, 回到语句上去换;
+     */
+    private void replaceConditions(List<AbstractStatement> stmList)
+    {
+        stmList.forEach(this::replaceConditions);
+    }
+
+    private void replaceConditions(AbstractStatement stm)
+    {
+        if (!StackSegment.enter())
+        {
+            // 嵌套太深, 换一段新栈继续;
+            StackSegment.spill(() -> replaceConditions(stm));
+            return;
+        }
+        try
+        {
+            if (stm == null)
+            {
+                return;
+            }
+            switch (stm.toEnum())
+            {
+                case BLOCK:
+                {
+                    replaceConditions(((CvaBlockStatement) stm).getStatementList());
+                    break;
+                }
+                case IF:
+                {
+                    CvaIfStatement ifStm = (CvaIfStatement) stm;
+                    AbstractExpression condition = conditions[graph.nodeOf(ifStm.getCondition())];
+                    if (condition != null)
+                    {
+                        ifStm.setCondition(condition);
+                    }
+                    replaceConditions(ifStm.getThenStatement());
+                    replaceConditions(ifStm.getElseStatement());
+                    break;
+                }
+                case WHILE_FOR:
+                {
+                    CvaWhileForStatement loop = (CvaWhileForStatement) stm;
+                    AbstractExpression condition = conditions[graph.nodeOf(loop.getCondition())];
+                    if (condition != null)
+                    {
+                        loop.setCondition(condition);
+                    }
+                    replaceConditions(loop.getBody());
+                    break;
+                }
+                default:
+                {
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            StackSegment.exit();
+        }
+    }
+
+    @Override
+    public boolean isOptimizing()
+    {
+        return this.isOptimizing;
+    }
+}
@@ -1,218 +1,123 @@
 package cn.misection.cvac.optimize;
 
-import cn.misection.cvac.ast.IVisitor;
 import cn.misection.cvac.ast.clas.*;
-import cn.misection.cvac.ast.decl.*;
-import cn.misection.cvac.ast.entry.*;
-import cn.misection.cvac.ast.expr.nonterminal.binary.*;
 import cn.misection.cvac.ast.expr.terminator.*;
-import cn.misection.cvac.ast.expr.nonterminal.unary.*;
 import cn.misection.cvac.ast.method.*;
-import cn.misection.cvac.ast.program.*;
 import cn.misection.cvac.ast.statement.*;
-import cn.misection.cvac.ast.type.basic.EnumCvaType;
-import cn.misection.cvac.ast.type.reference.CvaClassType;
-import cn.misection.cvac.ast.type.advance.CvaStringType;
+import cn.misection.cvac.context.CompilationContext;
 
-
-import java.util.ArrayList;
+import java.util.*;
 
 /**
  * Created by MI6 root 1/25.
  */
 public final class UnReachableDel
-        implements IVisitor, Optimizable
+        implements FusablePass
 {
-    private AbstractStatement curStm;
-    private boolean isOptimizing;
-
-    @Override
-    public void visit(EnumCvaType basicType) {}
-
-    @Override
-    public void visit(CvaStringType type) {}
-
-    @Override
-    public void visit(CvaClassType type) {}
-
-    @Override
-    public void visit(CvaDeclaration decl) {}
+    private final CompilationContext context;
 
-    @Override
-    public void visit(CvaAndAndExpr expr) {}
-
-    @Override
-    public void visit(CvaCallExpr expr) {}
-
-    @Override
-    public void visit(CvaConstFalseExpr expr) {}
+    /**
+     * 同一方法上这一遍会重跑多次, 每个死循环只警告一次;
+     */
+    private final Set<AbstractStatement> warnedLoopSet = Collections.newSetFromMap(new IdentityHashMap<>());
 
-    @Override
-    public void visit(CvaIdentifierExpr expr) {}
-
-    @Override
-    public void visit(CvaLessOrMoreThanExpr expr) {}
-
-    @Override
-    public void visit(CvaNewExpr expr) {}
-
-    @Override
-    public void visit(CvaNegateExpr expr) {}
-
-    @Override
-    public void visit(CvaConstIntExpr expr) {}
-
-    @Override
-    public void visit(CvaConstStringExpr expr) {}
-
-    @Override
-    public void visit(CvaThisExpr expr) {}
-
-    @Override
-    public void visit(CvaConstTrueExpr expr) {}
+    private boolean isOptimizing;
 
-    @Override
-    public void visit(CvaOperandOperatorExpr expr)
+    public UnReachableDel(CompilationContext context)
     {
-        // TODO
+        this.context = context;
     }
 
     @Override
-    public void visit(CvaIncDecExpr expr)
+    public void enterMethod(CvaClass cvaClass, CvaMethod method)
     {
-        // TODO;
-    }
-
-    @Override
-    public void visit(CvaAssignStatement stm)
-    {
-        this.curStm = stm;
+        this.isOptimizing = false;
     }
 
+    /**
+     * 条件已经折过了, 分支也已经删过了;
+     */
     @Override
-    public void visit(CvaBlockStatement s)
+    public AbstractStatement exitStm(AbstractStatement stm)
     {
-        ArrayList<AbstractStatement> stmList = new ArrayList<>();
-        s.getStatementList().forEach(stm ->
+        switch (stm.toEnum())
         {
-            this.visit(stm);
-            if (curStm != null)
+            case IF:
             {
-                if (curStm instanceof CvaBlockStatement)
-                {
-                    stmList.addAll(((CvaBlockStatement) curStm).getStatementList());
-                }
-                else
-                {
-                    stmList.add(curStm);
-                }
+                return reduce((CvaIfStatement) stm);
             }
-        });
-        s.setStatementList(stmList);
-        this.curStm = s;
+            case WHILE_FOR:
+            {
+                return reduce((CvaWhileForStatement) stm);
+            }
+            case BLOCK:
+            {
+                CvaBlockStatement block = (CvaBlockStatement) stm;
+                block.setStatementList(flatten(block.getStatementList()));
+                return block;
+            }
+            default:
+            {
+                return stm;
+            }
+        }
     }
 
-    @Override
-    public void visit(CvaIfStatement stm)
+    private AbstractStatement reduce(CvaIfStatement stm)
     {
         if (stm.getCondition() instanceof CvaConstTrueExpr)
         {
             this.isOptimizing = true;
-            this.curStm = stm.getThenStatement();
-            this.visit(this.curStm);
+            return stm.getThenStatement();
         }
-        else if (stm.getCondition() instanceof CvaConstFalseExpr)
+        if (stm.getCondition() instanceof CvaConstFalseExpr)
         {
             this.isOptimizing = true;
-            this.curStm = stm.getElseStatement();
-            this.visit(this.curStm);
-        }
-        else
-        {
-            this.curStm = stm;
+            return stm.getElseStatement().isNull() ? null : stm.getElseStatement();
         }
+        return stm;
     }
 
-    @Override
-    public void visit(CvaWriteStatement stm)
-    {
-        this.curStm = stm;
-    }
-
-    @Override
-    public void visit(CvaWhileForStatement stm)
+    private AbstractStatement reduce(CvaWhileForStatement stm)
     {
         if (stm.getCondition() instanceof CvaConstFalseExpr)
         {
+            // 循环体不会执行, for的初始化还是要执行;
             this.isOptimizing = true;
-            this.curStm = null;
+            return stm.getForInit().isNull() ? null : stm.getForInit();
         }
-        else if (stm.getCondition() instanceof CvaConstTrueExpr)
+        if (stm.getCondition() instanceof CvaConstTrueExpr && warnedLoopSet.add(stm))
         {
-            System.out.printf("Warning: at Line %d:  unend-loop!%n",
-                    stm.getLineNum());
-            this.curStm = stm;
-        }
-        else
-        {
-            this.curStm = stm;
+            context.report(stm.getLineNum(), "Warning: unend-loop!");
         }
+        return stm;
     }
 
-    @Override
-    public void visit(CvaExprStatement stm)
+    /**
+     * 删分支留下的块摊平到外层;
+     */
+    private List<AbstractStatement> flatten(List<AbstractStatement> stmList)
     {
-        visit(stm.getExpr());
-    }
-
-
-    @Override
-    public void visit(CvaMethod m)
-    {
-        ArrayList<AbstractStatement> stmList = new ArrayList<>();
-        m.getStatementList().forEach(stm ->
+        List<AbstractStatement> resultList = new ArrayList<>(stmList.size());
+        stmList.forEach(stm ->
         {
-            this.visit(stm);
-            if (curStm != null)
+            if (stm instanceof CvaBlockStatement)
+            {
+                resultList.addAll(((CvaBlockStatement) stm).getStatementList());
+            }
+            else
             {
-                if (this.curStm instanceof CvaBlockStatement)
-                {
-                    stmList.addAll(((CvaBlockStatement) this.curStm).getStatementList());
-                }
-                else
-                {
-                    stmList.add(curStm);
-                }
+                resultList.add(stm);
             }
         });
-        m.setStatementList(stmList);
+        return resultList;
     }
 
     @Override
-    public void visit(CvaClass c)
+    public boolean exitMethod(CvaMethod method)
     {
-        c.getMethodList().forEach(this::visit);
-    }
-
-    @Override
-    public void visit(CvaEntryClass entryClass)
-    {
-        this.visit((CvaMainMethod) entryClass.getMainMethod());
-        entryClass.setStatement(this.curStm);
-    }
-
-    @Override
-    public void visit(CvaMainMethod entryMethod)
-    {
-        // FIXME;
-    }
-
-    @Override
-    public void visit(CvaProgram program)
-    {
-        this.isOptimizing = false;
-        this.visit(program.getEntryClass());
-        program.getClassList().forEach(this::visit);
+        method.setStatementList(flatten(method.getStatementList()));
+        return this.isOptimizing;
     }
 
     @Override
@@ -1,24 +1,15 @@
 package cn.misection.cvac.optimize;
 
-import cn.misection.cvac.ast.IVisitor;
 import cn.misection.cvac.ast.clas.CvaClass;
 import cn.misection.cvac.ast.decl.CvaDeclaration;
-import cn.misection.cvac.ast.entry.CvaEntryClass;
-import cn.misection.cvac.ast.expr.nonterminal.binary.CvaAndAndExpr;
-import cn.misection.cvac.ast.expr.nonterminal.binary.CvaLessOrMoreThanExpr;
-import cn.misection.cvac.ast.expr.nonterminal.binary.CvaOperandOperatorExpr;
-import cn.misection.cvac.ast.expr.nonterminal.unary.CvaCallExpr;
-import cn.misection.cvac.ast.expr.nonterminal.unary.CvaIncDecExpr;
-import cn.misection.cvac.ast.expr.nonterminal.unary.CvaNegateExpr;
-import cn.misection.cvac.ast.expr.nonterminal.unary.CvaNewExpr;
-import cn.misection.cvac.ast.expr.terminator.*;
-import cn.misection.cvac.ast.method.CvaMainMethod;
+import cn.misection.cvac.ast.expr.AbstractExpression;
+import cn.misection.cvac.ast.expr.EnumCvaExpr;
+import cn.misection.cvac.ast.expr.terminator.CvaIdentifierExpr;
 import cn.misection.cvac.ast.method.CvaMethod;
-import cn.misection.cvac.ast.program.CvaProgram;
-import cn.misection.cvac.ast.statement.*;
-import cn.misection.cvac.ast.type.advance.CvaStringType;
-import cn.misection.cvac.ast.type.basic.EnumCvaType;
-import cn.misection.cvac.ast.type.reference.CvaClassType;
+import cn.misection.cvac.ast.statement.AbstractStatement;
+import cn.misection.cvac.ast.statement.CvaAssignStatement;
+import cn.misection.cvac.ast.statement.EnumCvaStatement;
+import cn.misection.cvac.context.CompilationContext;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -27,161 +18,36 @@ import java.util.Map;
  * @author MI6 root
  */
 public final class UnUsedVarDecl
-        implements IVisitor, Optimizable
+        implements FusablePass
 {
+    private final CompilationContext context;
+
     private Map<String, CvaDeclaration> unUsedLocals;
     private Map<String, CvaDeclaration> unUsedArgs;
     private boolean isOptimizing;
     public boolean givesWarning;
 
-    @Override
-    public void visit(EnumCvaType basicType)
-    {
-    }
-
-    @Override
-    public void visit(CvaStringType type)
-    {
-    }
-
-    @Override
-    public void visit(CvaClassType type)
-    {
-    }
-
-    @Override
-    public void visit(CvaDeclaration decl)
+    public UnUsedVarDecl(CompilationContext context)
     {
+        this.context = context;
     }
 
-    @Override
-    public void visit(CvaAndAndExpr expr)
+    private void use(String name)
     {
-        visit(expr.getLeft());
-        visit(expr.getRight());
-    }
-
-    @Override
-    public void visit(CvaCallExpr expr)
-    {
-        visit(expr.getExpr());
-        expr.getArgs().forEach(this::visit);
-    }
-
-    @Override
-    public void visit(CvaConstFalseExpr expr)
-    {
-    }
-
-    @Override
-    public void visit(CvaIdentifierExpr expr)
-    {
-        if (this.unUsedLocals.containsKey(expr.name()))
+        if (this.unUsedLocals.containsKey(name))
         {
-            this.unUsedLocals.remove(expr.name());
+            this.unUsedLocals.remove(name);
         }
         else
         {
-            this.unUsedArgs.remove(expr.name());
+            this.unUsedArgs.remove(name);
         }
     }
 
     @Override
-    public void visit(CvaLessOrMoreThanExpr expr)
-    {
-        visit(expr.getLeft());
-        visit(expr.getRight());
-    }
-
-    @Override
-    public void visit(CvaNewExpr expr)
-    {
-    }
-
-    @Override
-    public void visit(CvaNegateExpr expr)
-    {
-        visit(expr.getExpr());
-    }
-
-    @Override
-    public void visit(CvaConstIntExpr expr)
-    {
-    }
-
-    @Override
-    public void visit(CvaConstStringExpr expr)
-    {
-        // FIXME
-    }
-
-    @Override
-    public void visit(CvaThisExpr expr)
-    {
-    }
-
-    @Override
-    public void visit(CvaConstTrueExpr expr)
-    {
-    }
-
-    @Override
-    public void visit(CvaOperandOperatorExpr expr)
-    {
-        visit(expr.getLeft());
-        visit(expr.getRight());
-    }
-
-    @Override
-    public void visit(CvaIncDecExpr expr)
-    {
-        // TODO;
-    }
-
-    @Override
-    public void visit(CvaAssignStatement stm)
-    {
-        visit(new CvaIdentifierExpr(stm.getLineNum(), stm.getVarName()));
-        visit(stm.getExpr());
-    }
-
-    @Override
-    public void visit(CvaBlockStatement stm)
-    {
-        stm.getStatementList().forEach(this::visit);
-    }
-
-    @Override
-    public void visit(CvaIfStatement stm)
-    {
-        visit(stm.getCondition());
-        visit(stm.getThenStatement());
-        visit(stm.getElseStatement());
-    }
-
-    @Override
-    public void visit(CvaWriteStatement stm)
-    {
-        visit(stm.getExpr());
-    }
-
-    @Override
-    public void visit(CvaWhileForStatement stm)
-    {
-        visit(stm.getCondition());
-        visit(stm.getBody());
-    }
-
-    @Override
-    public void visit(CvaExprStatement stm)
-    {
-        visit(stm.getExpr());
-    }
-
-
-    @Override
-    public void visit(CvaMethod m)
+    public void enterMethod(CvaClass cvaClass, CvaMethod m)
     {
+        this.isOptimizing = false;
         this.unUsedLocals = new HashMap<>();
         m.getLocalVarList().forEach(local ->
         {
@@ -195,19 +61,42 @@ public final class UnUsedVarDecl
             CvaDeclaration f = (CvaDeclaration) formal;
             this.unUsedArgs.put(f.name(), f);
         });
+    }
+
+    /**
+     * 自增里的变量也会走到这里;
+     */
+    @Override
+    public AbstractExpression exitExpr(AbstractExpression expr)
+    {
+        if (expr.toEnum() == EnumCvaExpr.IDENTIFIER)
+        {
+            use(((CvaIdentifierExpr) expr).name());
+        }
+        return expr;
+    }
 
-        m.getStatementList().forEach(this::visit);
-        visit(m.getRetExpr());
+    @Override
+    public AbstractStatement exitStm(AbstractStatement stm)
+    {
+        if (stm.toEnum() == EnumCvaStatement.ASSIGN)
+        {
+            use(((CvaAssignStatement) stm).getVarName());
+        }
+        return stm;
+    }
 
-        this.isOptimizing = this.unUsedArgs.size() > 0
-                || this.unUsedLocals.size() > 0;
+    @Override
+    public boolean exitMethod(CvaMethod m)
+    {
+        // 参数删不掉, 只有删了局部变量才算改动;
+        this.isOptimizing = this.unUsedLocals.size() > 0;
         this.unUsedArgs.forEach((uak, uao) ->
         {
             if (givesWarning)
             {
-                System.out.printf("Warning: at Line %d:  the argument \"%s\" of" +
-                                " method \"%s\" you have never used.%n",
-                        uao.getLineNum(), uak, m.name());
+                context.report(uao.getLineNum(), String.format("Warning: the argument \"%s\" of" +
+                        " method \"%s\" you have never used.", uak, m.name()));
             }
         });
 
@@ -215,36 +104,12 @@ public final class UnUsedVarDecl
         {
             if (givesWarning)
             {
-                System.out.printf("Warning: at Line %d:  the local variable " +
-                                "\"%s\" you have never used. Now we delete it.%n",
-                        ulo.getLineNum(), ulk);
+                context.report(ulo.getLineNum(), String.format("Warning: the local variable " +
+                        "\"%s\" you have never used. Now we delete it.", ulk));
             }
             m.getLocalVarList().remove(ulo);
         });
-    }
-
-    @Override
-    public void visit(CvaMainMethod entryMethod)
-    {
-        // FIXME;
-    }
-
-    @Override
-    public void visit(CvaClass c)
-    {
-        c.getMethodList().forEach(this::visit);
-    }
-
-    @Override
-    public void visit(CvaEntryClass entryClass)
-    {
-    }
-
-    @Override
-    public void visit(CvaProgram program)
-    {
-        this.isOptimizing = false;
-        program.getClassList().forEach(this::visit);
+        return this.isOptimizing;
     }
 
     @Override
@@ -0,0 +1,39 @@
+package cn.misection.cvac.parser;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName ClassSpan
+ * @Description 一个类(含入口类)在token缓冲中的区间, 左闭右开, 增量编译按它给类算指纹;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class ClassSpan
+{
+    private final String className;
+
+    private final int firstToken;
+
+    private final int endToken;
+
+    public ClassSpan(String className, int firstToken, int endToken)
+    {
+        this.className = className;
+        this.firstToken = firstToken;
+        this.endToken = endToken;
+    }
+
+    public String getClassName()
+    {
+        return className;
+    }
+
+    public int getFirstToken()
+    {
+        return firstToken;
+    }
+
+    public int getEndToken()
+    {
+        return endToken;
+    }
+}
@@ -1,5 +1,6 @@
 package cn.misection.cvac.parser;
 
+import cn.misection.cvac.ast.StackSegment;
 import cn.misection.cvac.ast.clas.AbstractCvaClass;
 import cn.misection.cvac.ast.clas.CvaClass;
 import cn.misection.cvac.ast.decl.AbstractDeclaration;
@@ -32,10 +33,12 @@ import cn.misection.cvac.codegen.bst.instructor.EnumOperator;
 import cn.misection.cvac.codegen.bst.instructor.write.EnumWriteMode;
 import cn.misection.cvac.constant.EnumIncDirection;
 import cn.misection.cvac.constant.EnumLexerCommon;
+import cn.misection.cvac.context.CompilationContext;
 import cn.misection.cvac.io.IBufferedQueue;
 import cn.misection.cvac.lexer.CvaToken;
+import cn.misection.cvac.lexer.CvaTokenBuffer;
+import cn.misection.cvac.lexer.DfaLexer;
 import cn.misection.cvac.lexer.EnumCvaToken;
-import cn.misection.cvac.lexer.Lexer;
 
 import java.util.*;
 
@@ -45,7 +48,72 @@ import java.util.*;
  */
 public final class Parser
 {
-    private final Lexer lexer;
+    private static final int NOT_INFIX = 0;
+
+    private static final int LOWEST_PRECEDENCE = 1;
+
+    /**
+     * 中缀运算符优先级, 按EnumCvaToken序号查表;
+     */
+    private static final int[] INFIX_PRECEDENCE = new int[EnumCvaToken.values().length];
+
+    private static final Map<EnumCvaToken, EnumOperator> INFIX_OPERATOR = new EnumMap<>(EnumCvaToken.class);
+
+    static
+    {
+        EnumCvaToken[] levels = {
+                EnumCvaToken.AND_AND,
+                EnumCvaToken.LESS_THAN,
+                EnumCvaToken.ADD,
+                EnumCvaToken.STAR,
+                EnumCvaToken.DIV,
+                EnumCvaToken.REM,
+                EnumCvaToken.BIT_AND,
+                EnumCvaToken.BIT_OR,
+                EnumCvaToken.BIT_XOR,
+                EnumCvaToken.LEFT_SHIFT,
+                EnumCvaToken.RIGHT_SHIFT,
+                EnumCvaToken.UNSIGNED_RIGHT_SHIFT,
+        };
+        for (int i = 0; i < levels.length; i++)
+        {
+            INFIX_PRECEDENCE[levels[i].ordinal()] = LOWEST_PRECEDENCE + i;
+        }
+        // 同级;
+        INFIX_PRECEDENCE[EnumCvaToken.MORE_THAN.ordinal()] = INFIX_PRECEDENCE[EnumCvaToken.LESS_THAN.ordinal()];
+        INFIX_PRECEDENCE[EnumCvaToken.SUB.ordinal()] = INFIX_PRECEDENCE[EnumCvaToken.ADD.ordinal()];
+
+        INFIX_OPERATOR.put(EnumCvaToken.ADD, EnumOperator.ADD);
+        INFIX_OPERATOR.put(EnumCvaToken.SUB, EnumOperator.SUB);
+        INFIX_OPERATOR.put(EnumCvaToken.STAR, EnumOperator.MUL);
+        INFIX_OPERATOR.put(EnumCvaToken.DIV, EnumOperator.DIV);
+        INFIX_OPERATOR.put(EnumCvaToken.REM, EnumOperator.REM);
+        INFIX_OPERATOR.put(EnumCvaToken.BIT_AND, EnumOperator.BIT_AND);
+        INFIX_OPERATOR.put(EnumCvaToken.BIT_OR, EnumOperator.BIT_OR);
+        INFIX_OPERATOR.put(EnumCvaToken.BIT_XOR, EnumOperator.BIT_XOR);
+        INFIX_OPERATOR.put(EnumCvaToken.LEFT_SHIFT, EnumOperator.LEFT_SHIFT);
+        INFIX_OPERATOR.put(EnumCvaToken.RIGHT_SHIFT, EnumOperator.RIGHT_SHIFT);
+        INFIX_OPERATOR.put(EnumCvaToken.UNSIGNED_RIGHT_SHIFT, EnumOperator.UNSIGNED_RIGHT_SHIFT);
+    }
+
+    private static final EnumCvaToken[] OPERATOR_KINDS = EnumCvaToken.values();
+
+    private static final int INIT_EXPR_STACK = 16;
+
+    /**
+     * 整个文件的token, 随机访问;
+     */
+    private final CvaTokenBuffer tokens;
+
+    /**
+     * 已经生成过的token对象, 回溯时复用;
+     */
+    private final CvaToken[] tokenCache;
+
+    /**
+     * curToken在tokens中的下标;
+     */
+    private int position;
 
     private CvaToken curToken;
 
@@ -54,19 +122,66 @@ public final class Parser
      */
     private boolean varDeclFlag;
 
-    private boolean markingFlag;
-
     private boolean hasEntry;
 
-    private final Queue<CvaToken> markedTokenQueue;
+    /**
+     * packrat: 以起始下标记忆parseType的结果与结束下标;
+     */
+    private final ICvaType[] typeMemo;
+
+    private final int[] typeMemoEnd;
 
 
+    /**
+     * 语法错误经它报告, 终止本次编译;
+     */
+    private final CompilationContext context;
+
+    /**
+     * 按声明顺序记下各类的token区间;
+     */
+    private final List<ClassSpan> classSpanList = new ArrayList<>();
+
+    /**
+     * parseBinaryExpr共用的运算符栈, 存运算符的序号, 左括号存为-1 - 括号前!的个数;
+     */
+    private int[] operatorStack = new int[INIT_EXPR_STACK];
+
+    private int operatorTop;
+
+    private AbstractExpression[] operandStack = new AbstractExpression[INIT_EXPR_STACK];
+
+    private int operandTop;
+
+    /**
+     * parseStatement共用的语句栈, 每帧是一个还没读完子语句的嵌套语句;
+     */
+    private final List<StatementFrame> frameStack = new ArrayList<>();
+
     public Parser(IBufferedQueue queueStream)
     {
-        lexer = new Lexer(queueStream);
-        curToken = lexer.nextToken();
-        markingFlag = false;
-        markedTokenQueue = new LinkedList<>();
+        this(queueStream, new CompilationContext());
+    }
+
+    public Parser(IBufferedQueue queueStream, CompilationContext context)
+    {
+        this(new DfaLexer(queueStream, context).tokenize(), context);
+    }
+
+    public Parser(CvaTokenBuffer tokens)
+    {
+        this(tokens, new CompilationContext());
+    }
+
+    public Parser(CvaTokenBuffer tokens, CompilationContext context)
+    {
+        this.context = context;
+        this.tokens = tokens;
+        this.tokenCache = new CvaToken[tokens.size()];
+        this.typeMemo = new ICvaType[tokens.size()];
+        this.typeMemoEnd = new int[tokens.size()];
+        this.position = 0;
+        this.curToken = tokenAt(0);
     }
 
     public CvaProgram parse()
@@ -74,56 +189,69 @@ public final class Parser
         return parseProgram();
     }
 
+    /**
+     * @return parse()之后各类的token区间, 按声明顺序;
+     */
+    public List<ClassSpan> getClassSpanList()
+    {
+        return Collections.unmodifiableList(classSpanList);
+    }
+
     /**
      * utility methods;
      */
-    private void advance()
+    private CvaToken tokenAt(int index)
     {
-        if (markingFlag)
+        // 越界的都当作末尾EOF;
+        int last = tokens.size() - 1;
+        if (index > last)
         {
-            curToken = lexer.nextToken();
-            markedTokenQueue.offer(curToken);
+            index = last;
         }
-        else if (!markedTokenQueue.isEmpty())
+        CvaToken token = tokenCache[index];
+        if (token == null)
         {
-            curToken = markedTokenQueue.poll();
-        }
-        else
-        {
-            curToken = lexer.nextToken();
+            token = tokens.toToken(index);
+            tokenCache[index] = token;
         }
+        return token;
     }
 
-    private char peekCh()
+    private void advance()
     {
-        return lexer.peekCh();
+        if (position < tokens.size() - 1)
+        {
+            position++;
+        }
+        curToken = tokenAt(position);
     }
 
     /**
-     * start recording the tokens;
+     * @param advance 向后看几个token, 1为下一个;
+     * @return token种类;
      */
-    private void mark()
+    private EnumCvaToken peekKind(int advance)
     {
-        markingFlag = true;
-        markedTokenQueue.offer(curToken);
+        return tokens.kind(Math.min(position + advance, tokens.size() - 1));
     }
 
     /**
-     * stop recording the tokens and clear recorded
+     * @return 当前位置, 供reset回溯;
      */
-    private void deMark()
+    private int mark()
     {
-        markingFlag = false;
-        markedTokenQueue.clear();
+        return position;
     }
 
     /**
-     * reset current token and stop recording
+     * 回溯到mark的位置;
+     *
+     * @param marked mark()的返回值;
      */
-    private void reset()
+    private void reset(int marked)
     {
-        markingFlag = false;
-        advance();
+        position = marked;
+        curToken = tokenAt(marked);
     }
 
     private void eatToken(EnumCvaToken kind)
@@ -150,31 +278,33 @@ public final class Parser
 
     private void errorLog()
     {
-        System.err.printf("Syntax error at line %s compilation aborting...\n%n",
-                curToken != null ? curToken.getLineNum() : "unknown");
-        System.exit(1);
+        throw context.abort(lineNumOrZero(),
+                "Syntax error, compilation aborting...");
     }
 
     private void errorLog(String expected, CvaToken got)
     {
-        System.err.printf("Line %d: Expects: %s, but got: %s which literal is %s%n",
-                curToken.getLineNum(), expected, got.toEnum(), got.getLiteral());
-        System.exit(1);
+        throw context.abort(curToken.getLineNum(), String.format(
+                "Expects: %s, but got: %s which literal is %s",
+                expected, got.toEnum(), got.getLiteral()));
     }
 
     private void errorLog(String expected, EnumCvaToken got)
     {
-        System.err.printf("Line %d: Expects: %s, but got: %s%n",
-                curToken.getLineNum(), expected, got);
-        System.exit(1);
+        throw context.abort(curToken.getLineNum(), String.format(
+                "Expects: %s, but got: %s", expected, got));
     }
 
 
     private void errorLog(String expected, String got)
     {
-        System.err.printf("Line %d: Expects: %s, but got: %s%n",
-                curToken.getLineNum(), expected, got);
-        System.exit(1);
+        throw context.abort(curToken.getLineNum(), String.format(
+                "Expects: %s, but got: %s", expected, got));
+    }
+
+    private int lineNumOrZero()
+    {
+        return curToken != null ? curToken.getLineNum() : 0;
     }
 
     /**
@@ -186,6 +316,23 @@ public final class Parser
      * @return Exprlist;
      */
     private List<AbstractExpression> parseExprList()
+    {
+        // 实参里的调用还会回到这里, 只有这一处按层递归, 太深就换一段新栈;
+        if (!StackSegment.enter())
+        {
+            return StackSegment.spill(this::parseExprList);
+        }
+        try
+        {
+            return doParseExprList();
+        }
+        finally
+        {
+            StackSegment.exit();
+        }
+    }
+
+    private List<AbstractExpression> doParseExprList()
     {
         List<AbstractExpression> expList = new ArrayList<>();
         if (curToken.toEnum() == EnumCvaToken.CLOSE_PAREN)
@@ -207,8 +354,7 @@ public final class Parser
 
     /**
      * 原子操作层解析;
-     * AtomExpr -> (exp)
-     * -> Integer Literal
+     * AtomExpr -> Integer Literal
      * -> true
      * -> false
      * -> this
@@ -221,15 +367,7 @@ public final class Parser
     {
         switch (curToken.toEnum())
         {
-            case OPEN_PAREN:
-            {
-                advance();
-                AbstractExpression expr = parseLinkedExpr();
-                expr.setLineNum(curToken.getLineNum());
-                //advance();
-                eatToken(EnumCvaToken.CLOSE_PAREN);
-                return expr;
-            }
+            // (exp) 在parseBinaryExpr中用显式栈处理;
             case CONST_INT:
             {
                 AbstractExpression expr = new CvaConstIntExpr(curToken.getLineNum(), Integer.parseInt(curToken.getLiteral()));
@@ -353,15 +491,14 @@ public final class Parser
 
 
     /**
-     * NegateExpr -> AtomExpr
+     * CallExpr -> AtomExpr
      * -> AtomExpr.id(exprList)
      *
-     * @return negateExpr
+     * @param expr 已经解析好的atom;
+     * @return callExpr
      */
-    private AbstractExpression parseCallExpr()
+    private AbstractExpression parseCallExpr(AbstractExpression expr)
     {
-        // FIXME, 这里不要先给终结符!!有问题的是;
-        AbstractExpression expr = parseAtomExpr();
         while (curToken.toEnum() == EnumCvaToken.DOT)
         {
             advance();
@@ -379,310 +516,177 @@ public final class Parser
         return expr;
     }
 
-    private AbstractExpression parseNegateExpr()
-    {
-        int i = 0;
-        while (curToken.toEnum() == EnumCvaToken.NEGATE)
-        {
-            advance();
-            i++;
-        }
-        AbstractExpression expr = parseCallExpr();
-        AbstractExpression tem = new CvaNegateExpr(
-                expr.getLineNum(), expr);
-        return i % 2 == 0 ? expr : tem;
-    }
-
     /**
-     * @return p;
-     * @TODO 给几个枚举做反查map, 可以直接查;
+     * 奇数个!才取反;
      */
-    private AbstractExpression parseUnsignedRightShiftExpr()
+    private AbstractExpression applyNegate(AbstractExpression expr, int negateCount)
     {
-        AbstractExpression tem = parseNegateExpr();
-        AbstractExpression expr = tem;
-        while (curToken.toEnum() == EnumCvaToken.UNSIGNED_RIGHT_SHIFT)
-        {
-            advance();
-            tem = parseNegateExpr();
-            expr = new CvaOperandOperatorExpr.Builder()
-                    .putLineNum(tem.getLineNum())
-                    .putLeft(expr)
-                    .putRight(tem)
-                    .putInstType(EnumOperandType.INT)
-                    .putInstOp(EnumOperator.UNSIGNED_RIGHT_SHIFT)
-                    .build();
-        }
-        return expr;
+        return negateCount % 2 == 0
+                ? expr
+                : new CvaNegateExpr(expr.getLineNum(), expr);
     }
 
-    private AbstractExpression parseRightShiftExpr()
-    {
-        AbstractExpression tem = parseUnsignedRightShiftExpr();
-        AbstractExpression expr = tem;
-        while (curToken.toEnum() == EnumCvaToken.RIGHT_SHIFT)
-        {
-            advance();
-            tem = parseUnsignedRightShiftExpr();
-            expr = new CvaOperandOperatorExpr.Builder()
-                    .putLineNum(tem.getLineNum())
-                    .putLeft(expr)
-                    .putRight(tem)
-                    .putInstType(EnumOperandType.INT)
-                    .putInstOp(EnumOperator.RIGHT_SHIFT)
-                    .build();
-        }
-        return expr;
-    }
-
-    private AbstractExpression parseLeftShiftExpr()
+    /**
+     * 优先级爬升, 用显式的操作数栈与运算符栈代替递归, 左括号也压在运算符栈上,
+     * 括号嵌套深度只受堆大小限制;
+     * 数值越大结合越紧, 顺序与原递归链保持一致, 全部左结合;
+     * 后面不跟运算符的单个操作数不碰栈直接返回;
+     *
+     * @return binary expr;
+     */
+    private AbstractExpression parseBinaryExpr()
     {
-        AbstractExpression tem = parseRightShiftExpr();
-        AbstractExpression expr = tem;
-        while (curToken.toEnum() == EnumCvaToken.LEFT_SHIFT)
+        EnumCvaToken first = curToken.toEnum();
+        AbstractExpression expr = null;
+        if (first != EnumCvaToken.NEGATE && first != EnumCvaToken.OPEN_PAREN)
         {
-            advance();
-            tem = parseRightShiftExpr();
-            expr = new CvaOperandOperatorExpr.Builder()
-                    .putLineNum(tem.getLineNum())
-                    .putLeft(expr)
-                    .putRight(tem)
-                    .putInstType(EnumOperandType.INT)
-                    .putInstOp(EnumOperator.LEFT_SHIFT)
-                    .build();
+            expr = parseCallExpr(parseAtomExpr());
+            if (INFIX_PRECEDENCE[curToken.toEnum().ordinal()] == NOT_INFIX)
+            {
+                return expr;
+            }
         }
-        return expr;
-    }
-
-    private AbstractExpression parseBitXOrExpr()
-    {
-        AbstractExpression tem = parseLeftShiftExpr();
-        AbstractExpression expr = tem;
-        while (curToken.toEnum() == EnumCvaToken.BIT_XOR)
+        // 实参里的表达式会在栈顶之上再来一次, 本次只动base以上;
+        int base = operatorTop;
+        int parenDepth = 0;
+        while (true)
         {
-            advance();
-            tem = parseLeftShiftExpr();
-            expr = new CvaOperandOperatorExpr.Builder()
-                    .putLineNum(tem.getLineNum())
-                    .putLeft(expr)
-                    .putRight(tem)
-                    .putInstType(EnumOperandType.INT)
-                    .putInstOp(EnumOperator.BIT_XOR)
-                    .build();
-        }
-        return expr;
-    }
+            if (expr == null)
+            {
+                // 操作数位置: 前缀!与左括号;
+                int negateCount = 0;
+                while (curToken.toEnum() == EnumCvaToken.NEGATE)
+                {
+                    advance();
+                    negateCount++;
+                }
+                if (curToken.toEnum() == EnumCvaToken.OPEN_PAREN)
+                {
+                    advance();
+                    pushOperator(-1 - negateCount);
+                    parenDepth++;
+                    continue;
+                }
+                expr = applyNegate(parseCallExpr(parseAtomExpr()), negateCount);
+            }
+            pushOperand(expr);
+            expr = null;
 
-    private AbstractExpression parseBitOrExpr()
-    {
-        AbstractExpression tem = parseBitXOrExpr();
-        AbstractExpression expr = tem;
-        while (curToken.toEnum() == EnumCvaToken.BIT_OR)
-        {
-            advance();
-            tem = parseBitXOrExpr();
-            expr = new CvaOperandOperatorExpr.Builder()
-                    .putLineNum(tem.getLineNum())
-                    .putLeft(expr)
-                    .putRight(tem)
-                    .putInstType(EnumOperandType.INT)
-                    .putInstOp(EnumOperator.BIT_OR)
-                    .build();
+            // 运算符位置;
+            while (true)
+            {
+                EnumCvaToken op = curToken.toEnum();
+                int precedence = INFIX_PRECEDENCE[op.ordinal()];
+                if (precedence != NOT_INFIX)
+                {
+                    reduce(base, precedence);
+                    pushOperator(op.ordinal());
+                    advance();
+                    break;
+                }
+                reduce(base, LOWEST_PRECEDENCE);
+                AbstractExpression closed = popOperand();
+                if (parenDepth == 0)
+                {
+                    return closed;
+                }
+                // 右括号;
+                closed.setLineNum(curToken.getLineNum());
+                eatToken(EnumCvaToken.CLOSE_PAREN);
+                int negateCount = -1 - operatorStack[--operatorTop];
+                parenDepth--;
+                pushOperand(applyNegate(parseCallExpr(closed), negateCount));
+            }
         }
-        return expr;
     }
 
-
-    private AbstractExpression parseBitAndExpr()
+    /**
+     * base以上, 遇到左括号前, 栈顶优先级不低于precedence的运算符都先结合;
+     */
+    private void reduce(int base, int precedence)
     {
-        AbstractExpression tem = parseBitOrExpr();
-        AbstractExpression expr = tem;
-        while (curToken.toEnum() == EnumCvaToken.BIT_AND)
+        while (operatorTop > base)
         {
-            advance();
-            tem = parseBitOrExpr();
-            expr = new CvaOperandOperatorExpr.Builder()
-                    .putLineNum(tem.getLineNum())
-                    .putLeft(expr)
-                    .putRight(tem)
-                    .putInstType(EnumOperandType.INT)
-                    .putInstOp(EnumOperator.BIT_AND)
-                    .build();
+            int op = operatorStack[operatorTop - 1];
+            if (op < 0 || INFIX_PRECEDENCE[op] < precedence)
+            {
+                return;
+            }
+            operatorTop--;
+            AbstractExpression right = popOperand();
+            AbstractExpression left = popOperand();
+            pushOperand(buildBinaryExpr(OPERATOR_KINDS[op], left, right));
         }
-        return expr;
     }
 
-
-    private AbstractExpression parseRemExpr()
+    private void pushOperator(int op)
     {
-        AbstractExpression tem = parseBitAndExpr();
-        AbstractExpression expr = tem;
-        while (curToken.toEnum() == EnumCvaToken.REM)
+        if (operatorTop == operatorStack.length)
         {
-            advance();
-            tem = parseBitAndExpr();
-            expr = new CvaOperandOperatorExpr.Builder()
-                    .putLineNum(tem.getLineNum())
-                    .putLeft(expr)
-                    .putRight(tem)
-                    // FIXME, 后面改成从表达式获取;
-                    .putInstType(EnumOperandType.INT)
-                    .putInstOp(EnumOperator.REM)
-                    .build();
+            operatorStack = Arrays.copyOf(operatorStack, operatorTop << 1);
         }
-        return expr;
+        operatorStack[operatorTop++] = op;
     }
 
-    /**
-     * MulExpr -> ! MulExpr
-     * -> NegateExpr
-     *
-     * @return MulExpr
-     */
-    private AbstractExpression parseDivExpr()
+    private void pushOperand(AbstractExpression expr)
     {
-        AbstractExpression tem = parseRemExpr();
-        AbstractExpression expr = tem;
-        while (curToken.toEnum() == EnumCvaToken.DIV)
+        if (operandTop == operandStack.length)
         {
-            advance();
-            tem = parseRemExpr();
-            expr = new CvaOperandOperatorExpr.Builder()
-                    .putLineNum(tem.getLineNum())
-                    .putLeft(expr)
-                    .putRight(tem)
-                    .putInstType(EnumOperandType.INT)
-                    .putInstOp(EnumOperator.DIV)
-                    .build();
+            operandStack = Arrays.copyOf(operandStack, operandTop << 1);
         }
-        return expr;
+        operandStack[operandTop++] = expr;
     }
 
-    /**
-     * AddSubExpr -> MulExpr * MulExpr
-     * -> MulExpr
-     *
-     * @return AddSubExpr
-     */
-    private AbstractExpression parseMulExpr()
+    private AbstractExpression popOperand()
     {
-        AbstractExpression tem = parseDivExpr();
-        AbstractExpression expr = tem;
-        while (curToken.toEnum() == EnumCvaToken.STAR)
-        {
-            advance();
-            tem = parseDivExpr();
-            expr = new CvaOperandOperatorExpr.Builder()
-                    .putLineNum(tem.getLineNum())
-                    .putLeft(expr)
-                    .putRight(tem)
-                    .putInstType(EnumOperandType.INT)
-                    .putInstOp(EnumOperator.MUL)
-                    .build();
-        }
+        AbstractExpression expr = operandStack[--operandTop];
+        // 不留引用, 表达式树用完能回收;
+        operandStack[operandTop] = null;
         return expr;
     }
 
-    /**
-     * LessThanExpr -> AddSubExpr + AddSubExpr
-     * -> AddSubExpr - AddSubExpr
-     * -> AddSubExpr
-     *
-     * @return LessThanExpr
-     */
-    private AbstractExpression parseAddSubExpr()
+    private AbstractExpression buildBinaryExpr(EnumCvaToken op,
+                                               AbstractExpression left,
+                                               AbstractExpression right)
     {
-        AbstractExpression expr = parseMulExpr();
-        while (curToken.toEnum() == EnumCvaToken.ADD
-                || curToken.toEnum() == EnumCvaToken.SUB)
+        switch (op)
         {
-            boolean addFlag = curToken.toEnum() == EnumCvaToken.ADD;
-            advance();
-            AbstractExpression tem = parseMulExpr();
-            if (addFlag)
+            case AND_AND:
+            {
+                return new CvaAndAndExpr(left.getLineNum(), left, right);
+            }
+            case LESS_THAN:
+            {
+                return new CvaLessOrMoreThanExpr(left.getLineNum(), left, right);
+            }
+            case MORE_THAN:
             {
-//                expr = new CvaAddExpr(expr.getLineNum(), expr, tem);
-                expr = new CvaOperandOperatorExpr.Builder()
+                // more than 倒一下即可;
+                return new CvaLessOrMoreThanExpr(left.getLineNum(), right, left);
+            }
+            case ADD:
+            case SUB:
+            {
+                return new CvaOperandOperatorExpr.Builder()
                         .putLineNum(curToken.getLineNum())
-                        .putInstOp(EnumOperator.ADD)
+                        .putInstOp(INFIX_OPERATOR.get(op))
                         .putInstType(EnumOperandType.INT)
-                        .putLeft(expr)
-                        .putRight(tem)
+                        .putLeft(left)
+                        .putRight(right)
                         .build();
             }
-            // 减法;
-            else
+            default:
             {
-                expr = new CvaOperandOperatorExpr.Builder()
-                        .putLineNum(curToken.getLineNum())
-                        .putInstOp(EnumOperator.SUB)
+                // FIXME, 后面改成从表达式获取;
+                return new CvaOperandOperatorExpr.Builder()
+                        .putLineNum(right.getLineNum())
+                        .putLeft(left)
+                        .putRight(right)
                         .putInstType(EnumOperandType.INT)
-                        .putLeft(expr)
-                        .putRight(tem)
+                        .putInstOp(INFIX_OPERATOR.get(op))
                         .build();
             }
         }
-        return expr;
-    }
-
-    /**
-     * AndAndExpr -> LessThanExpr < LessThanExp
-     * -> LtExp
-     *
-     * @return AndAndExpr;
-     */
-    private AbstractExpression parseLessOrMoreThanExpr()
-    {
-        AbstractExpression expr = parseAddSubExpr();
-        while (true)
-        {
-            switch (curToken.toEnum())
-            {
-                case LESS_THAN:
-                {
-                    advance();
-                    AbstractExpression tem = parseAddSubExpr();
-                    expr = new CvaLessOrMoreThanExpr(expr.getLineNum(), expr, tem);
-                    continue;
-                }
-                case MORE_THAN:
-                {
-                    // more than 倒一下即可;
-                    advance();
-                    AbstractExpression tem = parseAddSubExpr();
-                    expr = new CvaLessOrMoreThanExpr(expr.getLineNum(), tem, expr);
-                    continue;
-                }
-                case MORE_OR_EQUALS:
-                {
-                    // >=;
-                    break;
-                }
-                case LESS_OR_EQUALS:
-                {
-                    // <=
-                    break;
-                }
-                default:
-                {
-                    break;
-                }
-            }
-            break;
-        }
-        return expr;
-    }
-
-    private AbstractExpression parseAndAndExpr()
-    {
-        AbstractExpression expr = parseLessOrMoreThanExpr();
-        while (curToken.toEnum() == EnumCvaToken.AND_AND)
-        {
-            advance();
-            AbstractExpression tem = parseLessOrMoreThanExpr();
-            expr = new CvaAndAndExpr(expr.getLineNum(), expr, tem);
-        }
-        return expr;
     }
 
     /**
@@ -694,7 +698,7 @@ public final class Parser
     private AbstractExpression parseLinkedExpr()
     {
         // start;
-        return parseAndAndExpr();
+        return parseBinaryExpr();
     }
 
     /**
@@ -708,24 +712,62 @@ public final class Parser
      * @return single Statement;
      */
     private AbstractStatement parseStatement()
+    {
+        // 嵌套语句不按层递归: 读到语句头压一帧, 每读完一个子语句就逐帧往外收;
+        // for初始化里再进来时从当前栈顶接着压, 只收到自己的base为止;
+        int base = frameStack.size();
+        while (true)
+        {
+            AbstractStatement statement = openStatement();
+            while (statement != null && frameStack.size() > base)
+            {
+                statement = closeFrame(statement);
+            }
+            if (statement != null)
+            {
+                return statement;
+            }
+        }
+    }
+
+    /**
+     * @return 读完的简单语句或空块; 压了帧时为null, 接着读它的子语句;
+     */
+    private AbstractStatement openStatement()
     {
         switch (curToken.toEnum())
         {
             case OPEN_CURLY_BRACE:
             {
-                return handleOpenCurly();
+                advance();
+                StatementFrame frame = StatementFrame.block(curToken.getLineNum());
+                if (startsListStatement(curToken.toEnum()))
+                {
+                    frameStack.add(frame);
+                    return null;
+                }
+                eatToken(EnumCvaToken.CLOSE_CURLY_BRACE);
+                return new CvaBlockStatement(frame.getLineNum(), frame.getStatementList());
             }
             case IF_STATEMENT:
-            {
-                return handleIf();
-            }
             case WHILE_STATEMENT:
             {
-                return handleWhile();
+                EnumCvaToken kind = curToken.toEnum();
+                int lineNum = curToken.getLineNum();
+                advance();
+                eatToken(EnumCvaToken.OPEN_PAREN);
+                AbstractExpression condition = parseLinkedExpr();
+                eatToken(EnumCvaToken.CLOSE_PAREN);
+                frameStack.add(StatementFrame.conditional(kind, lineNum, condition));
+                return null;
             }
             case FOR_STATEMENT:
             {
-                return handleFor();
+                int lineNum = curToken.getLineNum();
+                advance();
+                eatToken(EnumCvaToken.OPEN_PAREN);
+                frameStack.add(new StatementFrame(EnumCvaToken.FOR_STATEMENT, lineNum));
+                return null;
             }
             case WRITE:
             {
@@ -769,39 +811,96 @@ public final class Parser
     }
 
     /**
-     * // StatementList -> Statement Statements
-     * //  ->
+     * 把读完的子语句交给栈顶帧;
      *
-     * @return StatementList;
+     * @param child 子语句;
+     * @return 栈顶帧读完时拼好的语句并出栈, 还要读下一个子语句时为null;
      */
-    private List<AbstractStatement> parseStatementList()
+    private AbstractStatement closeFrame(AbstractStatement child)
     {
-        List<AbstractStatement> statementList = new ArrayList<>();
-        while (true)
+        StatementFrame frame = frameStack.get(frameStack.size() - 1);
+        switch (frame.getKind())
         {
-            switch (curToken.toEnum())
+            case OPEN_CURLY_BRACE:
             {
-                case OPEN_CURLY_BRACE:
-                case IF_STATEMENT:
-                case WHILE_STATEMENT:
-                case IDENTIFIER:
-                case WRITE:
-                    // TODO 不优雅, 想办法改;
-                case WRITE_LINE:
-                case WRITE_FORMAT:
+                frame.getStatementList().add(child);
+                if (startsListStatement(curToken.toEnum()))
                 {
-                    statementList.add(parseStatement());
-                    continue;
+                    return null;
                 }
-                default:
+                eatToken(EnumCvaToken.CLOSE_CURLY_BRACE);
+                frameStack.remove(frameStack.size() - 1);
+                return new CvaBlockStatement(frame.getLineNum(), frame.getStatementList());
+            }
+            case IF_STATEMENT:
+            {
+                if (!frame.isSecond())
                 {
-                    break;
+                    frame.putFirst(child);
+                    if (curToken.toEnum() == EnumCvaToken.ELSE_STATEMENT)
+                    {
+                        // else if 也只是else后的一条if, 同样压帧, 不递归;
+                        advance();
+                        return null;
+                    }
+                    child = CvaNullStatement.getInstance();
                 }
+                frameStack.remove(frameStack.size() - 1);
+                return new CvaIfStatement(frame.getLineNum(), frame.getCondition(), frame.getFirst(), child);
+            }
+            case WHILE_STATEMENT:
+            {
+                frameStack.remove(frameStack.size() - 1);
+                return new CvaWhileForStatement(frame.getLineNum(), frame.getCondition(), child);
+            }
+            default:
+            {
+                if (!frame.isSecond())
+                {
+                    // for的初始化读完, 接着读条件与步进, 再读循环体;
+                    frame.putFirst(child);
+                    AbstractExpression condition = parseLinkedExpr();
+                    eatToken(EnumCvaToken.SEMI);
+                    AbstractExpression afterBody = parseLinkedExpr();
+                    eatToken(EnumCvaToken.CLOSE_PAREN);
+                    frame.putForHeader(condition, afterBody);
+                    return null;
+                }
+                frameStack.remove(frameStack.size() - 1);
+                return new CvaWhileForStatement.Builder()
+                        .putLineNum(frame.getLineNum())
+                        .putForInit(frame.getFirst())
+                        .putCondition(frame.getCondition())
+                        .putAfterBody(frame.getAfterBody())
+                        .putBody(child)
+                        .build();
+            }
+        }
+    }
+
+    /**
+     * 块里能接着读的语句开头;
+     * TODO 不优雅, 想办法改;
+     */
+    private static boolean startsListStatement(EnumCvaToken kind)
+    {
+        switch (kind)
+        {
+            case OPEN_CURLY_BRACE:
+            case IF_STATEMENT:
+            case WHILE_STATEMENT:
+            case IDENTIFIER:
+            case WRITE:
+            case WRITE_LINE:
+            case WRITE_FORMAT:
+            {
+                return true;
+            }
+            default:
+            {
+                return false;
             }
-            // 走到这里就会break掉;
-            break;
         }
-        return statementList;
     }
 
     /**
@@ -810,6 +909,20 @@ public final class Parser
      * @return Type;
      */
     private ICvaType parseType()
+    {
+        int start = position;
+        if (typeMemo[start] != null)
+        {
+            reset(typeMemoEnd[start]);
+            return typeMemo[start];
+        }
+        ICvaType type = doParseType();
+        typeMemo[start] = type;
+        typeMemoEnd[start] = position;
+        return type;
+    }
+
+    private ICvaType doParseType()
     {
         ICvaType type = null;
         // 放map只能反射, 不放了还是;
@@ -917,14 +1030,14 @@ public final class Parser
      */
     private AbstractDeclaration parseVarDecl()
     {
-        mark();
+        int marked = mark();
         ICvaType type = parseType();
         // maybe a assign statement in method;
         switch (curToken.toEnum())
         {
             case ASSIGN:
             {
-                this.reset();
+                this.reset(marked);
                 varDeclFlag = false;
                 return null;
             }
@@ -936,7 +1049,6 @@ public final class Parser
                 {
                     case SEMI:
                     {
-                        this.deMark();
                         varDeclFlag = true;
                         AbstractDeclaration decl = new CvaDeclaration(
                                 curToken.getLineNum(), literal, type);
@@ -947,7 +1059,7 @@ public final class Parser
                     case OPEN_PAREN:
                     {
                         varDeclFlag = false;
-                        this.reset();
+                        this.reset(marked);
                         return CvaNullDecl.getInstance();
                     }
                     default:
@@ -1048,8 +1160,7 @@ public final class Parser
             {
                 case IDENTIFIER:
                 {
-                    char pCh = peekCh();
-                    if (Character.isAlphabetic(pCh) || pCh == '_' || pCh == '$')
+                    if (peekKind(1) == EnumCvaToken.IDENTIFIER)
                     {
                         // 2连 identifier, 说明是定义;
                         CvaDeclStatement stm = parseDeclStatement();
@@ -1160,6 +1271,7 @@ public final class Parser
      */
     private AbstractCvaClass parseClassDecl()
     {
+        int firstToken = position;
         eatToken(EnumCvaToken.CLASS_DECL);
         String literal = curToken.getLiteral();
         eatToken(EnumCvaToken.IDENTIFIER);
@@ -1174,6 +1286,7 @@ public final class Parser
         List<AbstractDeclaration> declList = parseVarDeclList();
         List<AbstractMethod> methodList = parseMethodDeclList();
         eatToken(EnumCvaToken.CLOSE_CURLY_BRACE);
+        classSpanList.add(new ClassSpan(literal, firstToken, position));
         return new CvaClass(
                 literal,
                 superClass,
@@ -1210,6 +1323,7 @@ public final class Parser
      */
     private CvaEntryClass parseEntryClass()
     {
+        int firstToken = position;
         String mainClassName;
         AbstractMethod mainMethod;
         if (curToken.toEnum() == EnumCvaToken.CLASS_DECL)
@@ -1260,6 +1374,7 @@ public final class Parser
             }
         }
 
+        classSpanList.add(new ClassSpan(mainClassName, firstToken, position));
         return new CvaEntryClass.Builder()
                 .putName(mainClassName)
                 .putMainMethod(mainMethod)
@@ -1482,71 +1597,6 @@ public final class Parser
         }
     }
 
-    /**
-     * @return 处理if;
-     * @TODO 嵌套判定有无else之类;
-     */
-    private AbstractStatement handleIf()
-    {
-        int lineNum = curToken.getLineNum();
-        advance();
-        eatToken(EnumCvaToken.OPEN_PAREN);
-        AbstractExpression condition = parseLinkedExpr();
-        eatToken(EnumCvaToken.CLOSE_PAREN);
-        AbstractStatement thenStm = parseStatement();
-        AbstractStatement elseStm = handleElse();
-        return new CvaIfStatement(
-                lineNum,
-                condition,
-                thenStm,
-                elseStm);
-    }
-
-    private AbstractStatement handleElse()
-    {
-        if (curToken.toEnum() == EnumCvaToken.ELSE_STATEMENT)
-        {
-            advance();
-            return parseStatement();
-        }
-        return CvaNullStatement.getInstance();
-    }
-
-    private AbstractStatement handleWhile()
-    {
-        int lineNum = curToken.getLineNum();
-        advance();
-        eatToken(EnumCvaToken.OPEN_PAREN);
-        AbstractExpression condition = parseLinkedExpr();
-        eatToken(EnumCvaToken.CLOSE_PAREN);
-        AbstractStatement body = parseStatement();
-        return new CvaWhileForStatement(lineNum, condition, body);
-    }
-
-    /**
-     * @return statement;
-     * @TODO for 中实现本地变量;
-     */
-    private AbstractStatement handleFor()
-    {
-        int lineNum = curToken.getLineNum();
-        advance();
-        eatToken(EnumCvaToken.OPEN_PAREN);
-        AbstractStatement forInit = parseStatement();
-        AbstractExpression condition = parseLinkedExpr();
-        eatToken(EnumCvaToken.SEMI);
-        AbstractExpression afterBody = parseLinkedExpr();
-        eatToken(EnumCvaToken.CLOSE_PAREN);
-        AbstractStatement body = parseStatement();
-        return new CvaWhileForStatement.Builder()
-                .putLineNum(lineNum)
-                .putForInit(forInit)
-                .putCondition(condition)
-                .putAfterBody(afterBody)
-                .putBody(body)
-                .build();
-    }
-
     /**
      * 处理Id;
      * @return stm;
@@ -1665,15 +1715,6 @@ public final class Parser
         return new CvaAssignStatement(lineNum, idLiteral, addAssignExpr);
     }
 
-    private AbstractStatement handleOpenCurly()
-    {
-        advance();
-        int lineNum = curToken.getLineNum();
-        AbstractStatement statement = new CvaBlockStatement(lineNum, parseStatementList());
-        eatToken(EnumCvaToken.CLOSE_CURLY_BRACE);
-        return statement;
-    }
-
     private AbstractExpression handleIncDecExpr(AbstractExpression expr)
     {
         if (expr instanceof CvaIdentifierExpr)
@@ -1709,9 +1750,10 @@ public final class Parser
     private CvaDeclStatement parseDeclStatement()
     {
         ICvaType declType = parseType();
-        switch (peekCh())
+        // cur是id, 下一个看是分号还是assign;
+        switch (peekKind(1))
         {
-            case ';':
+            case SEMI:
             {
                 String idLiteral = curToken.getLiteral();
                 AbstractDeclaration decl = handleMethodVarDecl(idLiteral, declType);
@@ -1721,7 +1763,7 @@ public final class Parser
                         .putDecl(decl)
                         .build();
             }
-            case '=':
+            case ASSIGN:
             {
                 String idLiteral = curToken.getLiteral();
                 AbstractDeclaration decl = handleMethodVarDecl(idLiteral, declType);
@@ -1736,7 +1778,7 @@ public final class Parser
             }
             default:
             {
-                errorLog("semi or assign", lexer.nextToken());
+                errorLog("semi or assign", tokenAt(position + 1));
                 return null;
             }
         }
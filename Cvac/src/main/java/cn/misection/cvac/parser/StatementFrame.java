@@ -0,0 +1,115 @@
+package cn.misection.cvac.parser;
+
+import cn.misection.cvac.ast.expr.AbstractExpression;
+import cn.misection.cvac.ast.statement.AbstractStatement;
+import cn.misection.cvac.lexer.EnumCvaToken;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName StatementFrame
+ * @Description Parser显式语句栈上的一帧, 一个还没读完子语句的块, if, while或for;
+ * 块收集子语句, if先收then再收else, for先收初始化再收循环体, 生命周期只在Parser中;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+final class StatementFrame
+{
+    /**
+     * 语句头的token, 块是左花括号;
+     */
+    private final EnumCvaToken kind;
+
+    private final int lineNum;
+
+    private AbstractExpression condition;
+
+    private AbstractExpression afterBody;
+
+    /**
+     * if的then, for的初始化;
+     */
+    private AbstractStatement first;
+
+    /**
+     * 已收了first, 下一个子语句是else或循环体;
+     */
+    private boolean second;
+
+    private List<AbstractStatement> statementList;
+
+    StatementFrame(EnumCvaToken kind, int lineNum)
+    {
+        this.kind = kind;
+        this.lineNum = lineNum;
+    }
+
+    static StatementFrame block(int lineNum)
+    {
+        StatementFrame frame = new StatementFrame(EnumCvaToken.OPEN_CURLY_BRACE, lineNum);
+        frame.statementList = new ArrayList<>();
+        return frame;
+    }
+
+    static StatementFrame conditional(EnumCvaToken kind, int lineNum, AbstractExpression condition)
+    {
+        StatementFrame frame = new StatementFrame(kind, lineNum);
+        frame.condition = condition;
+        return frame;
+    }
+
+    EnumCvaToken getKind()
+    {
+        return kind;
+    }
+
+    int getLineNum()
+    {
+        return lineNum;
+    }
+
+    AbstractExpression getCondition()
+    {
+        return condition;
+    }
+
+    AbstractExpression getAfterBody()
+    {
+        return afterBody;
+    }
+
+    AbstractStatement getFirst()
+    {
+        return first;
+    }
+
+    boolean isSecond()
+    {
+        return second;
+    }
+
+    List<AbstractStatement> getStatementList()
+    {
+        return statementList;
+    }
+
+    /**
+     * 收下first, 之后等第二个子语句;
+     */
+    void putFirst(AbstractStatement first)
+    {
+        this.first = first;
+        this.second = true;
+    }
+
+    /**
+     * for读完初始化后再读的条件与步进;
+     */
+    void putForHeader(AbstractExpression condition, AbstractExpression afterBody)
+    {
+        this.condition = condition;
+        this.afterBody = afterBody;
+    }
+}
@@ -1,6 +1,7 @@
 package cn.misection.cvac.semantic;
 
 import cn.misection.cvac.ast.type.ICvaType;
+import cn.misection.cvac.context.CompilationContext;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -14,8 +15,14 @@ public final class ClassBinding
     private Map<String, ICvaType> fieldMap;
     private Map<String, MethodType> methodMap;
 
-    public ClassBinding(String parent)
+    /**
+     * 重复定义经它报告;
+     */
+    private final CompilationContext context;
+
+    public ClassBinding(String parent, CompilationContext context)
     {
+        this.context = context;
         this.setParent(parent);
         this.setFieldMap(new HashMap<>());
         this.setMethodMap(new HashMap<>());
@@ -23,8 +30,10 @@ public final class ClassBinding
 
     public ClassBinding(String parent,
                         Map<String, ICvaType> fieldMap,
-                        Map<String, MethodType> methodMap)
+                        Map<String, MethodType> methodMap,
+                        CompilationContext context)
     {
+        this.context = context;
         this.parent = parent;
         this.fieldMap = fieldMap;
         this.methodMap = methodMap;
@@ -34,8 +43,7 @@ public final class ClassBinding
     {
         if (fieldMap.containsKey(literal))
         {
-            System.out.printf("duplicated class field: %s%n", literal);
-            System.exit(1);
+            throw context.abort(0, String.format("duplicated class field: %s", literal));
         }
         else
         {
@@ -47,8 +55,7 @@ public final class ClassBinding
     {
         if (methodMap.containsKey(literal))
         {
-            System.out.printf("duplicated class method: %s%n", literal);
-            System.exit(1);
+            throw context.abort(0, String.format("duplicated class method: %s", literal));
         }
         else
         {
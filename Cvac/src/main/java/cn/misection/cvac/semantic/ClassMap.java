@@ -1,6 +1,7 @@
 package cn.misection.cvac.semantic;
 
 import cn.misection.cvac.ast.type.ICvaType;
+import cn.misection.cvac.context.CompilationContext;
 
 import java.util.HashMap;
 
@@ -10,17 +11,22 @@ import java.util.HashMap;
  */
 public final class ClassMap extends HashMap<String, ClassBinding>
 {
-    public ClassMap()
+    /**
+     * 重复定义经它报告;
+     */
+    private final CompilationContext context;
+
+    public ClassMap(CompilationContext context)
     {
         super();
+        this.context = context;
     }
 
     public void putClassBinding(String className, ClassBinding bind)
     {
         if (this.containsKey(className))
         {
-            System.out.printf("duplicated class: %s%n", className);
-            System.exit(1);
+            throw context.abort(0, String.format("duplicated class: %s", className));
         }
         else
         {
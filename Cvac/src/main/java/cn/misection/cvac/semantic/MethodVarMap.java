@@ -2,6 +2,7 @@ package cn.misection.cvac.semantic;
 
 import cn.misection.cvac.ast.decl.AbstractDeclaration;
 import cn.misection.cvac.ast.type.ICvaType;
+import cn.misection.cvac.context.CompilationContext;
 
 import java.util.HashMap;
 import java.util.List;
@@ -12,9 +13,15 @@ import java.util.List;
 public final class MethodVarMap
         extends HashMap<String, ICvaType>
 {
-    public MethodVarMap()
+    /**
+     * 重复定义经它报告;
+     */
+    private final CompilationContext context;
+
+    public MethodVarMap(CompilationContext context)
     {
         super();
+        this.context = context;
     }
 
     /**
@@ -48,9 +55,8 @@ public final class MethodVarMap
             // FIXME 不知道有无隐患!;
             if (this.containsKey(decl.name()))
             {
-                System.err.printf("duplicated parameter: %s at line %d%n",
-                        decl.name(), decl.getLineNum());
-                System.exit(1);
+                throw context.abort(decl.getLineNum(),
+                        String.format("duplicated parameter: %s", decl.name()));
             }
             else
             {
@@ -21,7 +21,9 @@ import cn.misection.cvac.ast.type.ICvaType;
 import cn.misection.cvac.ast.type.advance.CvaStringType;
 import cn.misection.cvac.ast.type.basic.EnumCvaType;
 import cn.misection.cvac.ast.type.reference.CvaClassType;
+import cn.misection.cvac.context.CompilationContext;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -49,10 +51,21 @@ public final class SemanticVisitor implements IVisitor
      */
     private Set<String> curMethodLocalSet;
 
+    /**
+     * 诊断的去处, 语义错误记下后继续检查;
+     */
+    private final CompilationContext context;
+
     public SemanticVisitor()
     {
-        this.classMap = new ClassMap();
-        this.methodVarMap = new MethodVarMap();
+        this(new CompilationContext());
+    }
+
+    public SemanticVisitor(CompilationContext context)
+    {
+        this.context = context;
+        this.classMap = new ClassMap(context);
+        this.methodVarMap = new MethodVarMap(context);
         this.curClassName = null;
         this.type = null;
         this.okFlag = true;
@@ -63,10 +76,18 @@ public final class SemanticVisitor implements IVisitor
         return this.okFlag;
     }
 
+    /**
+     * @return visit()之后所有类的字段与方法签名, 增量编译按它算依赖;
+     */
+    public ClassMap getClassMap()
+    {
+        return classMap;
+    }
+
     private void errorLog(int lineNum, String msg)
     {
         this.okFlag = false;
-        System.err.printf("Error: Line %d %s%n", lineNum, msg);
+        context.report(lineNum, msg);
     }
 
     private boolean isNotMatch(ICvaType src, ICvaType target)
@@ -309,26 +330,25 @@ public final class SemanticVisitor implements IVisitor
     @Override
     public void visit(CvaOperandOperatorExpr expr)
     {
-        switch (expr.toEnum())
+        // 子树的类型按后序压栈, 到节点处弹出右左两个;
+        ArrayDeque<ICvaType> typeStack = new ArrayDeque<>();
+        walkOperandTree(expr, operand ->
         {
-            case ADD:
-            case SUB:
-            case MUL:
-            default:
-            {
-                handleOperandOp(expr.toEnum().name(), expr);
-                break;
-            }
-        }
-
+            visit(operand);
+            typeStack.push(this.type);
+        }, node ->
+        {
+            this.type = typeStack.pop();
+            handleOperandOp(node.toEnum().name(), node, typeStack.pop());
+            typeStack.push(this.type);
+        });
+        this.type = typeStack.pop();
     }
 
     private void handleOperandOp(String op,
-                                 CvaOperandOperatorExpr expr)
+                                 CvaOperandOperatorExpr expr,
+                                 ICvaType leftType)
     {
-        visit(expr.getLeft());
-        ICvaType leftType = this.type;
-        visit(expr.getRight());
         if (type.toEnum() != leftType.toEnum())
         {
             errorLog(expr.getLineNum(),
@@ -427,7 +447,7 @@ public final class SemanticVisitor implements IVisitor
     @Override
     public void visit(CvaMethod cvaMethod)
     {
-        this.methodVarMap = new MethodVarMap();
+        this.methodVarMap = new MethodVarMap(context);
         this.methodVarMap.putVarList(
                 cvaMethod.getArgumentList(),
                 cvaMethod.getLocalVarList()
@@ -452,7 +472,7 @@ public final class SemanticVisitor implements IVisitor
     @Override
     public void visit(CvaMainMethod mainMethod)
     {
-        this.methodVarMap = new MethodVarMap();
+        this.methodVarMap = new MethodVarMap(context);
         this.methodVarMap.putVarList(
                 mainMethod.getArgumentList(),
                 mainMethod.getLocalVarList()
@@ -492,12 +512,12 @@ public final class SemanticVisitor implements IVisitor
     {
         // put main class to class table
         classMap.putClassBinding((program.getEntryClass()).name(),
-                new ClassBinding(null));
+                new ClassBinding(null, context));
 
         for (AbstractCvaClass abstractCvaClass : program.getClassList())
         {
             CvaClass cla = ((CvaClass) abstractCvaClass);
-            classMap.putClassBinding(cla.name(), new ClassBinding(cla.parent()));
+            classMap.putClassBinding(cla.name(), new ClassBinding(cla.parent(), context));
 
             cla.getFieldList().forEach(field -> classMap.putFieldToClass(cla.name(),
                     field.name(),
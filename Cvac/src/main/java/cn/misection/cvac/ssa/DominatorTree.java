@@ -0,0 +1,203 @@
+package cn.misection.cvac.ssa;
+
+import java.util.*;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName DominatorTree
+ * @Description 函数的支配树, 按逆后序反复求交直到直接支配者不再变(Cooper-Harvey-Kennedy);
+ * 建好后在树上先序与后序各编一次号, dominates()只比区间, 不走树;
+ * 只对建树时走得到的块有效, 函数改了要重建;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class DominatorTree
+{
+    private final List<SsaBlock> orderList;
+
+    /**
+     * 块 -> 逆后序号;
+     */
+    private final Map<SsaBlock, Integer> orderMap = new IdentityHashMap<>();
+
+    /**
+     * 逆后序号 -> 直接支配者的逆后序号, 入口是自己;
+     */
+    private final int[] idom;
+
+    private final Map<SsaBlock, List<SsaBlock>> childrenMap = new IdentityHashMap<>();
+
+    private final int[] preNum;
+
+    private final int[] postNum;
+
+    public DominatorTree(SsaFunction function)
+    {
+        this.orderList = function.reversePostOrder();
+        int size = orderList.size();
+        for (int i = 0; i < size; i++)
+        {
+            orderMap.put(orderList.get(i), i);
+        }
+        this.idom = new int[size];
+        Arrays.fill(idom, -1);
+        idom[0] = 0;
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            for (int i = 1; i < size; i++)
+            {
+                int newIdom = -1;
+                for (SsaBlock pred : orderList.get(i).getPredList())
+                {
+                    Integer p = orderMap.get(pred);
+                    if (p == null || idom[p] == -1)
+                    {
+                        // 走不到的前驱或还没处理的前驱;
+                        continue;
+                    }
+                    newIdom = newIdom == -1 ? p : intersect(p, newIdom);
+                }
+                if (idom[i] != newIdom)
+                {
+                    idom[i] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+        for (SsaBlock block : orderList)
+        {
+            childrenMap.put(block, new ArrayList<>());
+        }
+        for (int i = 1; i < size; i++)
+        {
+            childrenMap.get(orderList.get(idom[i])).add(orderList.get(i));
+        }
+        this.preNum = new int[size];
+        this.postNum = new int[size];
+        number();
+    }
+
+    private int intersect(int a, int b)
+    {
+        while (a != b)
+        {
+            while (a > b)
+            {
+                a = idom[a];
+            }
+            while (b > a)
+            {
+                b = idom[b];
+            }
+        }
+        return a;
+    }
+
+    /**
+     * 树可能很深, 用栈不用递归;
+     */
+    private void number()
+    {
+        int pre = 0;
+        int post = 0;
+        Deque<SsaBlock> stack = new ArrayDeque<>();
+        Deque<Iterator<SsaBlock>> iterStack = new ArrayDeque<>();
+        stack.push(orderList.get(0));
+        iterStack.push(childrenMap.get(orderList.get(0)).iterator());
+        preNum[0] = pre++;
+        while (!stack.isEmpty())
+        {
+            Iterator<SsaBlock> iter = iterStack.peek();
+            if (iter.hasNext())
+            {
+                SsaBlock child = iter.next();
+                preNum[orderMap.get(child)] = pre++;
+                stack.push(child);
+                iterStack.push(childrenMap.get(child).iterator());
+                continue;
+            }
+            postNum[orderMap.get(stack.pop())] = post++;
+            iterStack.pop();
+        }
+    }
+
+    /**
+     * @return a是否支配b, 块支配自己;
+     */
+    public boolean dominates(SsaBlock a, SsaBlock b)
+    {
+        int i = indexOf(a);
+        int j = indexOf(b);
+        return preNum[i] <= preNum[j] && postNum[j] <= postNum[i];
+    }
+
+    /**
+     * @return 直接支配者, 入口为null;
+     */
+    public SsaBlock idomOf(SsaBlock block)
+    {
+        int i = indexOf(block);
+        return i == 0 ? null : orderList.get(idom[i]);
+    }
+
+    public List<SsaBlock> childrenOf(SsaBlock block)
+    {
+        indexOf(block);
+        return Collections.unmodifiableList(childrenMap.get(block));
+    }
+
+    /**
+     * @return 支配边界: block支配某个前驱却不严格支配的块;
+     */
+    public Set<SsaBlock> frontierOf(SsaBlock block)
+    {
+        Set<SsaBlock> frontierSet = new LinkedHashSet<>();
+        for (SsaBlock join : orderList)
+        {
+            if (join.getPredList().size() < 2)
+            {
+                continue;
+            }
+            for (SsaBlock pred : join.getPredList())
+            {
+                // 从前驱沿支配树往上走到join的直接支配者为止, 经过的块都以join为边界;
+                SsaBlock runner = orderMap.containsKey(pred) ? pred : null;
+                while (runner != null && runner != idomOf(join))
+                {
+                    if (runner == block)
+                    {
+                        frontierSet.add(join);
+                        break;
+                    }
+                    runner = idomOf(runner);
+                }
+            }
+        }
+        return frontierSet;
+    }
+
+    /**
+     * @return 逆后序, 支配者总在被支配的块前;
+     */
+    public List<SsaBlock> getOrderList()
+    {
+        return Collections.unmodifiableList(orderList);
+    }
+
+    public boolean contains(SsaBlock block)
+    {
+        return orderMap.containsKey(block);
+    }
+
+    private int indexOf(SsaBlock block)
+    {
+        Integer i = orderMap.get(block);
+        if (i == null)
+        {
+            throw new IllegalStateException(String.format("block %s is not reachable", block.name()));
+        }
+        return i;
+    }
+}
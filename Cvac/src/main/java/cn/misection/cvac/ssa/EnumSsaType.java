@@ -0,0 +1,61 @@
+package cn.misection.cvac.ssa;
+
+import cn.misection.cvac.ast.type.ICvaType;
+import cn.misection.cvac.ast.type.basic.EnumCvaType;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName EnumSsaType
+ * @Description SSA值的类型, 只分到后端存取要区分的程度, boolean按int;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public enum EnumSsaType
+{
+    INT("int"),
+
+    REF("ref"),
+
+    /**
+     * 没有值的指令, 如跳转与字段写;
+     */
+    VOID("void"),
+    ;
+
+    private final String typeName;
+
+    EnumSsaType(String typeName)
+    {
+        this.typeName = typeName;
+    }
+
+    public static EnumSsaType of(ICvaType type)
+    {
+        if (type instanceof EnumCvaType)
+        {
+            switch ((EnumCvaType) type)
+            {
+                case VOID:
+                {
+                    return VOID;
+                }
+                case INT:
+                case BOOLEAN:
+                {
+                    return INT;
+                }
+                default:
+                {
+                    break;
+                }
+            }
+        }
+        return REF;
+    }
+
+    @Override
+    public String toString()
+    {
+        return typeName;
+    }
+}
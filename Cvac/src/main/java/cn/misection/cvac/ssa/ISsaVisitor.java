@@ -0,0 +1,122 @@
+package cn.misection.cvac.ssa;
+
+import cn.misection.cvac.ast.StackSegment;
+import cn.misection.cvac.ssa.value.*;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName ISsaVisitor
+ * @Description 按EnumSsaOp分派SSA指令, 与ast的IVisitor一样, 嵌套太深时换一段栈;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public interface ISsaVisitor
+{
+    default void visit(SsaInstr instr)
+    {
+        if (!StackSegment.enter())
+        {
+            // 嵌套太深, 换一段新栈继续;
+            StackSegment.spill(() -> visit(instr));
+            return;
+        }
+        try
+        {
+            switch (instr.toEnum())
+            {
+                case PHI:
+                {
+                    visit((SsaPhi) instr);
+                    break;
+                }
+                case BINARY:
+                {
+                    visit((SsaBinary) instr);
+                    break;
+                }
+                case LESS_THAN:
+                {
+                    visit((SsaLessThan) instr);
+                    break;
+                }
+                case NOT:
+                {
+                    visit((SsaNot) instr);
+                    break;
+                }
+                case CALL:
+                {
+                    visit((SsaCall) instr);
+                    break;
+                }
+                case NEW:
+                {
+                    visit((SsaNew) instr);
+                    break;
+                }
+                case GET_FIELD:
+                {
+                    visit((SsaGetField) instr);
+                    break;
+                }
+                case PUT_FIELD:
+                {
+                    visit((SsaPutField) instr);
+                    break;
+                }
+                case WRITE:
+                {
+                    visit((SsaWrite) instr);
+                    break;
+                }
+                case JUMP:
+                {
+                    visit((SsaJump) instr);
+                    break;
+                }
+                case BRANCH:
+                {
+                    visit((SsaBranch) instr);
+                    break;
+                }
+                case RETURN:
+                {
+                    visit((SsaReturn) instr);
+                    break;
+                }
+                default:
+                {
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            StackSegment.exit();
+        }
+    }
+
+    void visit(SsaPhi instr);
+
+    void visit(SsaBinary instr);
+
+    void visit(SsaLessThan instr);
+
+    void visit(SsaNot instr);
+
+    void visit(SsaCall instr);
+
+    void visit(SsaNew instr);
+
+    void visit(SsaGetField instr);
+
+    void visit(SsaPutField instr);
+
+    void visit(SsaWrite instr);
+
+    void visit(SsaJump instr);
+
+    void visit(SsaBranch instr);
+
+    void visit(SsaReturn instr);
+}
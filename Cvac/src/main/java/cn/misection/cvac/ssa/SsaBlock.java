@@ -0,0 +1,157 @@
+package cn.misection.cvac.ssa;
+
+import cn.misection.cvac.ssa.value.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaBlock
+ * @Description 基本块: 开头若干phi, 之后是普通指令, 最后一条是跳转或返回;
+ * 后继由结尾的指令决定, 前驱表的顺序就是各phi操作数的顺序;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaBlock
+{
+    private final int id;
+
+    private final List<SsaPhi> phiList = new ArrayList<>();
+
+    private final List<SsaInstr> instrList = new ArrayList<>();
+
+    private final List<SsaBlock> predList = new ArrayList<>();
+
+    SsaBlock(int id)
+    {
+        this.id = id;
+    }
+
+    public String name()
+    {
+        return "b" + id;
+    }
+
+    public void addPhi(SsaPhi phi)
+    {
+        phi.setBlock(this);
+        phiList.add(phi);
+    }
+
+    public void removePhi(SsaPhi phi)
+    {
+        phiList.remove(phi);
+    }
+
+    /**
+     * 加在块尾, 块已经有结尾时不能再加;
+     */
+    public void append(SsaInstr instr)
+    {
+        instr.setBlock(this);
+        instrList.add(instr);
+    }
+
+    public void remove(SsaInstr instr)
+    {
+        instrList.remove(instr);
+    }
+
+    /**
+     * 换掉结尾, 如把条件跳转换成无条件的;
+     */
+    public void setTerminator(SsaInstr terminator)
+    {
+        SsaInstr old = instrList.remove(instrList.size() - 1);
+        old.dropOperands();
+        append(terminator);
+    }
+
+    /**
+     * @return 还没加结尾时为null;
+     */
+    public SsaInstr getTerminator()
+    {
+        if (instrList.isEmpty())
+        {
+            return null;
+        }
+        SsaInstr last = instrList.get(instrList.size() - 1);
+        return last.isTerminator() ? last : null;
+    }
+
+    public List<SsaBlock> successors()
+    {
+        SsaInstr terminator = getTerminator();
+        if (terminator == null)
+        {
+            return Collections.emptyList();
+        }
+        switch (terminator.toEnum())
+        {
+            case JUMP:
+            {
+                return Collections.singletonList(((SsaJump) terminator).getTarget());
+            }
+            case BRANCH:
+            {
+                SsaBranch branch = (SsaBranch) terminator;
+                List<SsaBlock> succList = new ArrayList<>(2);
+                succList.add(branch.getIfTrue());
+                succList.add(branch.getIfFalse());
+                return succList;
+            }
+            default:
+            {
+                return Collections.emptyList();
+            }
+        }
+    }
+
+    public void addPred(SsaBlock pred)
+    {
+        predList.add(pred);
+    }
+
+    /**
+     * 去掉第index个前驱, 连同各phi对应的操作数;
+     */
+    public void removePred(int index)
+    {
+        predList.remove(index);
+        phiList.forEach(phi -> phi.removeOperand(index));
+    }
+
+    public void setPred(int index, SsaBlock pred)
+    {
+        predList.set(index, pred);
+    }
+
+    public int getId()
+    {
+        return id;
+    }
+
+    public List<SsaPhi> getPhiList()
+    {
+        return Collections.unmodifiableList(phiList);
+    }
+
+    public List<SsaInstr> getInstrList()
+    {
+        return Collections.unmodifiableList(instrList);
+    }
+
+    public List<SsaBlock> getPredList()
+    {
+        return Collections.unmodifiableList(predList);
+    }
+
+    @Override
+    public String toString()
+    {
+        return name();
+    }
+}
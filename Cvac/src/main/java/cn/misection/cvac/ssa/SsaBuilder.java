@@ -0,0 +1,597 @@
+package cn.misection.cvac.ssa;
+
+import cn.misection.cvac.ast.IVisitor;
+import cn.misection.cvac.ast.StackSegment;
+import cn.misection.cvac.ast.clas.*;
+import cn.misection.cvac.ast.decl.*;
+import cn.misection.cvac.ast.decl.nullptr.CvaNullDecl;
+import cn.misection.cvac.ast.entry.*;
+import cn.misection.cvac.ast.expr.AbstractExpression;
+import cn.misection.cvac.ast.expr.nonterminal.binary.*;
+import cn.misection.cvac.ast.expr.terminator.*;
+import cn.misection.cvac.ast.expr.nonterminal.unary.*;
+import cn.misection.cvac.ast.method.*;
+import cn.misection.cvac.ast.program.*;
+import cn.misection.cvac.ast.statement.*;
+import cn.misection.cvac.ast.type.basic.EnumCvaType;
+import cn.misection.cvac.ast.type.reference.CvaClassType;
+import cn.misection.cvac.ast.type.advance.CvaStringType;
+import cn.misection.cvac.codegen.bst.instructor.EnumOperandType;
+import cn.misection.cvac.codegen.bst.instructor.EnumOperator;
+import cn.misection.cvac.constant.EnumIncDirection;
+import cn.misection.cvac.ssa.value.*;
+
+import java.util.*;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaBuilder
+ * @Description 把语义检查过的方法降成SsaFunction, 边建块边建SSA, 不需要先算支配边界:
+ * 块内读变量取最近的写, 块外沿前驱找, 前驱还没到齐(未封口)的块先放一个空phi, 封口时再补操作数;
+ * 操作数都一样的phi随手去掉, 被去掉的phi记在replacedMap里, 读到时顺着换;
+ * 条件按控制流降, &&短路成块, 字面量条件直接跳, 走不到的块最后统一删;
+ * 只有参数与局部变量进SSA, 字段仍是读写this的指令;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaBuilder implements IVisitor
+{
+    private final SsaFunction function;
+
+    /**
+     * main里为null;
+     */
+    private SsaParam self;
+
+    /**
+     * 参数与局部变量 -> 类型, 不在这里的名字是字段;
+     */
+    private final Map<String, EnumSsaType> varTypeMap = new HashMap<>();
+
+    /**
+     * 块 -> 变量 -> 块末的值;
+     */
+    private final Map<SsaBlock, Map<String, SsaValue>> currentDefMap = new HashMap<>();
+
+    private final Map<SsaBlock, Map<String, SsaPhi>> incompletePhiMap = new HashMap<>();
+
+    private final Set<SsaBlock> sealedSet = new HashSet<>();
+
+    /**
+     * 正在补操作数的phi, 补完之前不能判它多余;
+     */
+    private final Set<SsaPhi> fillingSet = new HashSet<>();
+
+    private final Map<SsaValue, SsaValue> replacedMap = new IdentityHashMap<>();
+
+    private SsaBlock curBlock;
+
+    private SsaValue curValue;
+
+    private SsaBuilder(SsaFunction function)
+    {
+        this.function = function;
+    }
+
+    /**
+     * @param className 方法所在的类, main为入口类;
+     */
+    public static SsaFunction build(String className, AbstractMethod method)
+    {
+        SsaFunction function = new SsaFunction(className, method.name(), method.getRetType());
+        new SsaBuilder(function).lower(method, method instanceof CvaMainMethod);
+        return function;
+    }
+
+    private void lower(AbstractMethod method, boolean isMain)
+    {
+        this.curBlock = function.newBlock();
+        sealedSet.add(curBlock);
+        if (!isMain)
+        {
+            this.self = function.addParam(EnumSsaType.REF, "this");
+        }
+        for (AbstractDeclaration decl : method.getArgumentList())
+        {
+            if (decl instanceof CvaNullDecl)
+            {
+                continue;
+            }
+            EnumSsaType type = EnumSsaType.of(decl.type());
+            varTypeMap.put(decl.name(), type);
+            writeVariable(decl.name(), curBlock, function.addParam(type, decl.name()));
+        }
+        for (AbstractDeclaration decl : method.getLocalVarList())
+        {
+            if (!(decl instanceof CvaNullDecl))
+            {
+                varTypeMap.put(decl.name(), EnumSsaType.of(decl.type()));
+            }
+        }
+        method.getStatementList().forEach(this::visit);
+
+        AbstractExpression retExpr = method.getRetExpr();
+        SsaValue value = isMain || retExpr == null ? null : lower(retExpr);
+        if (isMain || value == null || EnumSsaType.of(method.getRetType()) == EnumSsaType.VOID)
+        {
+            // main的返回值不生成, 与TranslatorVisitor一致;
+            curBlock.append(new SsaReturn(function.nextId()));
+        }
+        else
+        {
+            curBlock.append(new SsaReturn(function.nextId(), value));
+        }
+        function.removeUnreachableBlocks();
+        function.removeTrivialPhis();
+    }
+
+    private SsaValue lower(AbstractExpression expr)
+    {
+        this.curValue = null;
+        visit(expr);
+        return this.curValue;
+    }
+
+    private SsaInstr append(SsaInstr instr)
+    {
+        curBlock.append(instr);
+        return instr;
+    }
+
+    private void writeVariable(String name, SsaBlock block, SsaValue value)
+    {
+        currentDefMap.computeIfAbsent(block, b -> new HashMap<>()).put(name, value);
+    }
+
+    private SsaValue resolve(SsaValue value)
+    {
+        while (replacedMap.containsKey(value))
+        {
+            value = replacedMap.get(value);
+        }
+        return value;
+    }
+
+    /**
+     * 只有一个前驱的块沿前驱往上找, 不递归;
+     */
+    private SsaValue readVariable(String name, SsaBlock block)
+    {
+        List<SsaBlock> walkedList = new ArrayList<>();
+        SsaBlock cur = block;
+        SsaValue value;
+        while (true)
+        {
+            SsaValue def = currentDefMap.getOrDefault(cur, Collections.emptyMap()).get(name);
+            if (def != null)
+            {
+                value = resolve(def);
+                break;
+            }
+            if (!sealedSet.contains(cur))
+            {
+                SsaPhi phi = newPhi(name, cur);
+                incompletePhiMap.computeIfAbsent(cur, b -> new LinkedHashMap<>()).put(name, phi);
+                value = phi;
+                writeVariable(name, cur, value);
+                break;
+            }
+            List<SsaBlock> predList = cur.getPredList();
+            if (predList.size() == 1)
+            {
+                walkedList.add(cur);
+                cur = predList.get(0);
+                continue;
+            }
+            if (predList.isEmpty())
+            {
+                // 入口处还没写过, 或走不到的块;
+                value = function.undef(varTypeMap.get(name));
+                writeVariable(name, cur, value);
+                break;
+            }
+            // 先把phi记成当前值, 沿环回来时读到它;
+            SsaPhi phi = newPhi(name, cur);
+            writeVariable(name, cur, phi);
+            value = addPhiOperands(name, phi);
+            writeVariable(name, cur, value);
+            break;
+        }
+        for (SsaBlock walked : walkedList)
+        {
+            writeVariable(name, walked, value);
+        }
+        return value;
+    }
+
+    private SsaPhi newPhi(String name, SsaBlock block)
+    {
+        SsaPhi phi = new SsaPhi(function.nextId(), varTypeMap.get(name));
+        block.addPhi(phi);
+        return phi;
+    }
+
+    private SsaValue addPhiOperands(String name, SsaPhi phi)
+    {
+        if (!StackSegment.enter())
+        {
+            // 汇合点套得太深, 换一段新栈继续;
+            return StackSegment.spill(() -> addPhiOperands(name, phi));
+        }
+        try
+        {
+            fillingSet.add(phi);
+            for (SsaBlock pred : new ArrayList<>(phi.getBlock().getPredList()))
+            {
+                phi.appendOperand(readVariable(name, pred));
+            }
+            fillingSet.remove(phi);
+            return tryRemoveTrivialPhi(phi);
+        }
+        finally
+        {
+            StackSegment.exit();
+        }
+    }
+
+    /**
+     * 去掉一个多余的phi后, 读它的phi可能也变得多余, 用工作表接着查;
+     *
+     * @return 顶替phi的值, 不多余时是phi自己;
+     */
+    private SsaValue tryRemoveTrivialPhi(SsaPhi phi)
+    {
+        Deque<SsaPhi> workList = new ArrayDeque<>();
+        workList.add(phi);
+        while (!workList.isEmpty())
+        {
+            SsaPhi cur = workList.poll();
+            if (cur.getBlock() == null || fillingSet.contains(cur))
+            {
+                continue;
+            }
+            SsaValue same = function.trivialValueOf(cur);
+            if (same == null)
+            {
+                continue;
+            }
+            List<SsaInstr> userList = new ArrayList<>(cur.getUserList());
+            function.replacePhi(cur, same);
+            replacedMap.put(cur, same);
+            for (SsaInstr user : userList)
+            {
+                if (user != cur && user.toEnum() == EnumSsaOp.PHI)
+                {
+                    workList.add((SsaPhi) user);
+                }
+            }
+        }
+        return resolve(phi);
+    }
+
+    /**
+     * 前驱都连上了, 补齐先放下的phi;
+     */
+    private void seal(SsaBlock block)
+    {
+        Map<String, SsaPhi> incompleteMap = incompletePhiMap.remove(block);
+        if (incompleteMap != null)
+        {
+            incompleteMap.forEach(this::addPhiOperands);
+        }
+        sealedSet.add(block);
+    }
+
+    /**
+     * 条件按控制流降, 结束后当前块已经有了结尾;
+     */
+    private void branch(AbstractExpression cond, SsaBlock ifTrue, SsaBlock ifFalse)
+    {
+        if (!StackSegment.enter())
+        {
+            // 嵌套太深, 换一段新栈继续;
+            StackSegment.spill(() -> branch(cond, ifTrue, ifFalse));
+            return;
+        }
+        try
+        {
+            switch (cond.toEnum())
+            {
+                case AND_AND:
+                {
+                    CvaAndAndExpr expr = (CvaAndAndExpr) cond;
+                    SsaBlock right = function.newBlock();
+                    branch(expr.getLeft(), right, ifFalse);
+                    seal(right);
+                    this.curBlock = right;
+                    branch(expr.getRight(), ifTrue, ifFalse);
+                    break;
+                }
+                case NEGATE:
+                {
+                    branch(((CvaNegateExpr) cond).getExpr(), ifFalse, ifTrue);
+                    break;
+                }
+                case CONST_TRUE:
+                {
+                    function.jump(curBlock, ifTrue);
+                    break;
+                }
+                case CONST_FALSE:
+                {
+                    function.jump(curBlock, ifFalse);
+                    break;
+                }
+                default:
+                {
+                    SsaValue value = lower(cond);
+                    function.branch(curBlock, value, ifTrue, ifFalse);
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            StackSegment.exit();
+        }
+    }
+
+    @Override
+    public void visit(EnumCvaType basicType) {}
+
+    @Override
+    public void visit(CvaStringType type) {}
+
+    @Override
+    public void visit(CvaClassType type) {}
+
+    @Override
+    public void visit(CvaDeclaration decl) {}
+
+    @Override
+    public void visit(CvaAndAndExpr expr)
+    {
+        // 要值时两支各给0/1, 在汇合处用phi取;
+        SsaBlock ifTrue = function.newBlock();
+        SsaBlock ifFalse = function.newBlock();
+        SsaBlock join = function.newBlock();
+        branch(expr, ifTrue, ifFalse);
+        seal(ifTrue);
+        seal(ifFalse);
+        function.jump(ifTrue, join);
+        function.jump(ifFalse, join);
+        seal(join);
+        SsaPhi phi = new SsaPhi(function.nextId(), EnumSsaType.INT);
+        join.addPhi(phi);
+        for (SsaBlock pred : join.getPredList())
+        {
+            phi.appendOperand(function.constInt(pred == ifTrue ? 1 : 0));
+        }
+        this.curBlock = join;
+        this.curValue = phi;
+    }
+
+    @Override
+    public void visit(CvaCallExpr expr)
+    {
+        SsaValue receiver = lower(expr.getExpr());
+        List<SsaValue> argList = new ArrayList<>(expr.getArgs().size());
+        for (AbstractExpression arg : expr.getArgs())
+        {
+            argList.add(lower(arg));
+        }
+        this.curValue = append(new SsaCall(function.nextId(),
+                expr.getFuncName(),
+                expr.getType(),
+                expr.getArgTypeList(),
+                expr.getRetType(),
+                receiver,
+                argList));
+    }
+
+    @Override
+    public void visit(CvaConstFalseExpr expr)
+    {
+        this.curValue = function.constInt(0);
+    }
+
+    @Override
+    public void visit(CvaIdentifierExpr expr)
+    {
+        if (expr.isField() || !varTypeMap.containsKey(expr.name()))
+        {
+            this.curValue = append(new SsaGetField(function.nextId(), expr.name(), expr.getType(), self));
+            return;
+        }
+        this.curValue = readVariable(expr.name(), curBlock);
+    }
+
+    @Override
+    public void visit(CvaLessOrMoreThanExpr expr)
+    {
+        SsaValue left = lower(expr.getLeft());
+        SsaValue right = lower(expr.getRight());
+        this.curValue = append(new SsaLessThan(function.nextId(), left, right));
+    }
+
+    @Override
+    public void visit(CvaNewExpr expr)
+    {
+        this.curValue = append(new SsaNew(function.nextId(), expr.getNewClassName()));
+    }
+
+    @Override
+    public void visit(CvaNegateExpr expr)
+    {
+        SsaValue value = lower(expr.getExpr());
+        this.curValue = append(new SsaNot(function.nextId(), value));
+    }
+
+    @Override
+    public void visit(CvaConstIntExpr expr)
+    {
+        this.curValue = function.constInt(expr.getValue());
+    }
+
+    @Override
+    public void visit(CvaConstStringExpr expr)
+    {
+        this.curValue = function.constString(expr.getLiteral());
+    }
+
+    @Override
+    public void visit(CvaThisExpr expr)
+    {
+        this.curValue = self;
+    }
+
+    @Override
+    public void visit(CvaConstTrueExpr expr)
+    {
+        this.curValue = function.constInt(1);
+    }
+
+    @Override
+    public void visit(CvaOperandOperatorExpr expr)
+    {
+        // 子树的值按后序压栈, 到节点处弹出右左两个;
+        ArrayDeque<SsaValue> valueStack = new ArrayDeque<>();
+        walkOperandTree(expr, operand -> valueStack.push(lower(operand)), node ->
+        {
+            SsaValue right = valueStack.pop();
+            SsaValue left = valueStack.pop();
+            valueStack.push(append(new SsaBinary(function.nextId(),
+                    node.getInstOp(), node.getInstType(), left, right)));
+        });
+        this.curValue = valueStack.pop();
+    }
+
+    @Override
+    public void visit(CvaIncDecExpr expr)
+    {
+        // 自增只是一次加法与一次写;
+        SsaValue old = readVariable(expr.name(), curBlock);
+        SsaInstr value = append(new SsaBinary(function.nextId(),
+                expr.getDirection() == EnumIncDirection.INCREMENT ? EnumOperator.ADD : EnumOperator.SUB,
+                EnumOperandType.INT, old, function.constInt(1)));
+        writeVariable(expr.name(), curBlock, value);
+        this.curValue = value;
+    }
+
+    @Override
+    public void visit(CvaAssignStatement stm)
+    {
+        SsaValue value = lower(stm.getExpr());
+        if (varTypeMap.containsKey(stm.getVarName()))
+        {
+            writeVariable(stm.getVarName(), curBlock, value);
+            return;
+        }
+        append(new SsaPutField(function.nextId(), stm.getVarName(), stm.getType(), self, value));
+    }
+
+    @Override
+    public void visit(CvaBlockStatement stm)
+    {
+        stm.getStatementList().forEach(this::visit);
+    }
+
+    @Override
+    public void visit(CvaIfStatement stm)
+    {
+        boolean hasElse = stm.getElseStatement() != null && !stm.getElseStatement().isNull();
+        SsaBlock thenBlock = function.newBlock();
+        SsaBlock elseBlock = hasElse ? function.newBlock() : null;
+        SsaBlock join = function.newBlock();
+        branch(stm.getCondition(), thenBlock, hasElse ? elseBlock : join);
+        seal(thenBlock);
+        this.curBlock = thenBlock;
+        visit(stm.getThenStatement());
+        function.jump(curBlock, join);
+        if (hasElse)
+        {
+            seal(elseBlock);
+            this.curBlock = elseBlock;
+            visit(stm.getElseStatement());
+            function.jump(curBlock, join);
+        }
+        seal(join);
+        this.curBlock = join;
+    }
+
+    @Override
+    public void visit(CvaWriteStatement stm)
+    {
+        AbstractExpression expr = stm.getExpr();
+        SsaValue value = lower(expr);
+        append(new SsaWrite(function.nextId(), stm.getWriteMode(), writeTypeOf(expr), value));
+    }
+
+    /**
+     * 与TranslatorVisitor按表达式种类定打印类型的做法一致;
+     */
+    private static EnumCvaType writeTypeOf(AbstractExpression expr)
+    {
+        switch (expr.toEnum())
+        {
+            case CONST_STRING:
+            {
+                return EnumCvaType.STRING;
+            }
+            case IDENTIFIER:
+            {
+                return ((CvaIdentifierExpr) expr).getType().toEnum();
+            }
+            case CALL:
+            {
+                return ((CvaCallExpr) expr).getRetType().toEnum();
+            }
+            default:
+            {
+                return EnumCvaType.INT;
+            }
+        }
+    }
+
+    @Override
+    public void visit(CvaWhileForStatement stm)
+    {
+        visit(stm.getForInit());
+        SsaBlock header = function.newBlock();
+        SsaBlock body = function.newBlock();
+        SsaBlock exit = function.newBlock();
+        function.jump(curBlock, header);
+        // 回边还没连上, 循环头先不封口;
+        this.curBlock = header;
+        branch(stm.getCondition(), body, exit);
+        seal(body);
+        this.curBlock = body;
+        visit(stm.getBody());
+        visit(stm.getAfterBody());
+        function.jump(curBlock, header);
+        seal(header);
+        seal(exit);
+        this.curBlock = exit;
+    }
+
+    @Override
+    public void visit(CvaExprStatement stm)
+    {
+        lower(stm.getExpr());
+    }
+
+    @Override
+    public void visit(CvaMethod cvaMethod) {}
+
+    @Override
+    public void visit(CvaMainMethod entryMethod) {}
+
+    @Override
+    public void visit(CvaClass cvaClass) {}
+
+    @Override
+    public void visit(CvaEntryClass entryClass) {}
+
+    @Override
+    public void visit(CvaProgram program) {}
+}
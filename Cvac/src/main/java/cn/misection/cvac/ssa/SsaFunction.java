@@ -0,0 +1,312 @@
+package cn.misection.cvac.ssa;
+
+import cn.misection.cvac.ast.type.ICvaType;
+import cn.misection.cvac.ssa.value.*;
+
+import java.util.*;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaFunction
+ * @Description 一个方法的SSA, 0号块是入口; 值与块的编号都在方法内唯一;
+ * 块之间的边只经jump()与branch()加, 两头一起维护;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaFunction
+{
+    private final String className;
+
+    private final String methodName;
+
+    private final ICvaType retType;
+
+    private final List<SsaParam> paramList = new ArrayList<>();
+
+    private final List<SsaBlock> blockList = new ArrayList<>();
+
+    private int nextValueId;
+
+    private int nextBlockId;
+
+    public SsaFunction(String className, String methodName, ICvaType retType)
+    {
+        this.className = className;
+        this.methodName = methodName;
+        this.retType = retType;
+    }
+
+    public int nextId()
+    {
+        return nextValueId++;
+    }
+
+    public SsaBlock newBlock()
+    {
+        SsaBlock block = new SsaBlock(nextBlockId++);
+        blockList.add(block);
+        return block;
+    }
+
+    /**
+     * 参数按局部变量表的顺序加, this在最前;
+     */
+    public SsaParam addParam(EnumSsaType type, String varName)
+    {
+        SsaParam param = new SsaParam(nextId(), type, paramList.size(), varName);
+        paramList.add(param);
+        return param;
+    }
+
+    public SsaConst constInt(int value)
+    {
+        return SsaConst.ofInt(nextId(), value);
+    }
+
+    public SsaConst constString(String literal)
+    {
+        return SsaConst.ofString(nextId(), literal);
+    }
+
+    public SsaConst undef(EnumSsaType type)
+    {
+        return SsaConst.undef(nextId(), type);
+    }
+
+    public void jump(SsaBlock from, SsaBlock to)
+    {
+        from.append(new SsaJump(nextId(), to));
+        to.addPred(from);
+    }
+
+    public void branch(SsaBlock from, SsaValue condition, SsaBlock ifTrue, SsaBlock ifFalse)
+    {
+        from.append(new SsaBranch(nextId(), condition, ifTrue, ifFalse));
+        ifTrue.addPred(from);
+        ifFalse.addPred(from);
+    }
+
+    /**
+     * 删掉从入口走不到的块, 连同它们在活块phi里的操作数;
+     *
+     * @return 是否删了;
+     */
+    public boolean removeUnreachableBlocks()
+    {
+        Set<SsaBlock> reachedSet = new HashSet<>(reversePostOrder());
+        if (reachedSet.size() == blockList.size())
+        {
+            return false;
+        }
+        for (SsaBlock block : blockList)
+        {
+            if (reachedSet.contains(block))
+            {
+                continue;
+            }
+            for (SsaBlock succ : block.successors())
+            {
+                if (reachedSet.contains(succ))
+                {
+                    removeEdge(block, succ);
+                }
+            }
+        }
+        for (SsaBlock block : blockList)
+        {
+            if (!reachedSet.contains(block))
+            {
+                block.getPhiList().forEach(SsaInstr::dropOperands);
+                block.getInstrList().forEach(SsaInstr::dropOperands);
+            }
+        }
+        blockList.retainAll(reachedSet);
+        removeTrivialPhis();
+        return true;
+    }
+
+    /**
+     * 去掉to的前驱表里所有的from, 不动from的结尾;
+     */
+    public void removeEdge(SsaBlock from, SsaBlock to)
+    {
+        for (int i = to.getPredList().size() - 1; i >= 0; i--)
+        {
+            if (to.getPredList().get(i) == from)
+            {
+                to.removePred(i);
+            }
+        }
+    }
+
+    /**
+     * @return phi的操作数除它自己外只有一个值时是那个值, 都是它自己时是undef, 否则为null;
+     */
+    public SsaValue trivialValueOf(SsaPhi phi)
+    {
+        SsaValue same = null;
+        for (SsaValue operand : phi.getOperandList())
+        {
+            if (operand == same || operand == phi)
+            {
+                continue;
+            }
+            if (same != null)
+            {
+                return null;
+            }
+            same = operand;
+        }
+        return same == null ? undef(phi.getType()) : same;
+    }
+
+    /**
+     * 用value顶替phi, 并把phi从块里拿掉;
+     */
+    public void replacePhi(SsaPhi phi, SsaValue value)
+    {
+        phi.replaceAllUsesWith(value);
+        phi.dropOperands();
+        phi.getBlock().removePhi(phi);
+        phi.setBlock(null);
+    }
+
+    /**
+     * 反复去掉多余的phi, 直到没有;
+     *
+     * @return 是否去掉了;
+     */
+    public boolean removeTrivialPhis()
+    {
+        boolean changed = false;
+        boolean again = true;
+        while (again)
+        {
+            again = false;
+            for (SsaBlock block : blockList)
+            {
+                for (SsaPhi phi : new ArrayList<>(block.getPhiList()))
+                {
+                    SsaValue value = trivialValueOf(phi);
+                    if (value != null)
+                    {
+                        replacePhi(phi, value);
+                        again = true;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 条件跳转到有phi的汇合块时, 在边上插一个只有跳转的块, 这样phi的拷贝可以放在前驱末尾;
+     */
+    public void splitCriticalEdges()
+    {
+        for (SsaBlock block : new ArrayList<>(blockList))
+        {
+            SsaInstr terminator = block.getTerminator();
+            if (terminator == null || terminator.toEnum() != EnumSsaOp.BRANCH)
+            {
+                continue;
+            }
+            SsaBranch branch = (SsaBranch) terminator;
+            if (isCritical(branch.getIfTrue()))
+            {
+                branch.setIfTrue(splitEdge(block, branch.getIfTrue()));
+            }
+            if (isCritical(branch.getIfFalse()))
+            {
+                branch.setIfFalse(splitEdge(block, branch.getIfFalse()));
+            }
+        }
+    }
+
+    private static boolean isCritical(SsaBlock target)
+    {
+        return target.getPredList().size() > 1 && !target.getPhiList().isEmpty();
+    }
+
+    private SsaBlock splitEdge(SsaBlock from, SsaBlock to)
+    {
+        SsaBlock middle = newBlock();
+        to.setPred(to.getPredList().indexOf(from), middle);
+        middle.addPred(from);
+        middle.append(new SsaJump(nextId(), to));
+        return middle;
+    }
+
+    /**
+     * 深度优先时后继倒着走, 这样条件为真的一支排在条件块后面, 方法的出口排在最后;
+     *
+     * @return 从入口走得到的块, 按逆后序;
+     */
+    public List<SsaBlock> reversePostOrder()
+    {
+        List<SsaBlock> postOrder = new ArrayList<>(blockList.size());
+        Set<SsaBlock> visitedSet = new HashSet<>();
+        Deque<SsaBlock> blockStack = new ArrayDeque<>();
+        Deque<Iterator<SsaBlock>> succStack = new ArrayDeque<>();
+        SsaBlock entry = getEntry();
+        visitedSet.add(entry);
+        blockStack.push(entry);
+        succStack.push(reversed(entry.successors()));
+        while (!blockStack.isEmpty())
+        {
+            Iterator<SsaBlock> succIter = succStack.peek();
+            if (succIter.hasNext())
+            {
+                SsaBlock succ = succIter.next();
+                if (visitedSet.add(succ))
+                {
+                    blockStack.push(succ);
+                    succStack.push(reversed(succ.successors()));
+                }
+                continue;
+            }
+            postOrder.add(blockStack.pop());
+            succStack.pop();
+        }
+        Collections.reverse(postOrder);
+        return postOrder;
+    }
+
+    private static Iterator<SsaBlock> reversed(List<SsaBlock> blockList)
+    {
+        List<SsaBlock> copy = new ArrayList<>(blockList);
+        Collections.reverse(copy);
+        return copy.iterator();
+    }
+
+    public SsaBlock getEntry()
+    {
+        return blockList.get(0);
+    }
+
+    public String getClassName()
+    {
+        return className;
+    }
+
+    public String getMethodName()
+    {
+        return methodName;
+    }
+
+    public ICvaType getRetType()
+    {
+        return retType;
+    }
+
+    public List<SsaParam> getParamList()
+    {
+        return Collections.unmodifiableList(paramList);
+    }
+
+    public List<SsaBlock> getBlockList()
+    {
+        return Collections.unmodifiableList(blockList);
+    }
+}
@@ -0,0 +1,172 @@
+package cn.misection.cvac.ssa;
+
+import cn.misection.cvac.ssa.value.*;
+
+import java.util.List;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaPrinter
+ * @Description 把SsaFunction输出成文本, 调试用, 只读不改;
+ * 块按getBlockList()的顺序, 块头注明前驱, phi操作数写成[前驱: 值];
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaPrinter implements ISsaVisitor
+{
+    private final StringBuilder builder = new StringBuilder();
+
+    private SsaPrinter() {}
+
+    public static String print(SsaFunction function)
+    {
+        SsaPrinter printer = new SsaPrinter();
+        printer.printFunction(function);
+        return printer.builder.toString();
+    }
+
+    private void printFunction(SsaFunction function)
+    {
+        builder.append("function ")
+                .append(function.getClassName())
+                .append('.')
+                .append(function.getMethodName())
+                .append('(');
+        List<SsaParam> paramList = function.getParamList();
+        for (int i = 0; i < paramList.size(); i++)
+        {
+            if (i > 0)
+            {
+                builder.append(", ");
+            }
+            builder.append(paramList.get(i).name())
+                    .append(": ")
+                    .append(paramList.get(i).getType());
+        }
+        builder.append("): ")
+                .append(EnumSsaType.of(function.getRetType()))
+                .append('\n');
+        for (SsaBlock block : function.getBlockList())
+        {
+            builder.append(block.name()).append(':');
+            if (!block.getPredList().isEmpty())
+            {
+                builder.append(" ; preds");
+                block.getPredList().forEach(pred -> builder.append(' ').append(pred.name()));
+            }
+            builder.append('\n');
+            block.getPhiList().forEach(this::visit);
+            block.getInstrList().forEach(this::visit);
+        }
+    }
+
+    private void line(SsaInstr instr, String text)
+    {
+        builder.append("    ");
+        if (instr.getType() != EnumSsaType.VOID)
+        {
+            builder.append(instr.name()).append(" = ");
+        }
+        builder.append(text);
+        for (SsaValue operand : instr.getOperandList())
+        {
+            builder.append(' ').append(operand.name());
+        }
+        builder.append('\n');
+    }
+
+    @Override
+    public void visit(SsaPhi instr)
+    {
+        builder.append("    ")
+                .append(instr.name())
+                .append(" = phi ")
+                .append(instr.getType());
+        List<SsaBlock> predList = instr.getBlock().getPredList();
+        for (int i = 0; i < instr.getOperandList().size(); i++)
+        {
+            builder.append(" [")
+                    .append(i < predList.size() ? predList.get(i).name() : "?")
+                    .append(": ")
+                    .append(instr.getOperand(i).name())
+                    .append(']');
+        }
+        builder.append('\n');
+    }
+
+    @Override
+    public void visit(SsaBinary instr)
+    {
+        line(instr, String.format("%s %s",
+                instr.getOperator().name().toLowerCase(),
+                instr.getOperandType().name().toLowerCase()));
+    }
+
+    @Override
+    public void visit(SsaLessThan instr)
+    {
+        line(instr, "lt");
+    }
+
+    @Override
+    public void visit(SsaNot instr)
+    {
+        line(instr, "not");
+    }
+
+    @Override
+    public void visit(SsaCall instr)
+    {
+        line(instr, String.format("call %s.%s", instr.getClassName(), instr.getFuncName()));
+    }
+
+    @Override
+    public void visit(SsaNew instr)
+    {
+        line(instr, "new " + instr.getNewClassName());
+    }
+
+    @Override
+    public void visit(SsaGetField instr)
+    {
+        line(instr, "getfield " + instr.getFieldName());
+    }
+
+    @Override
+    public void visit(SsaPutField instr)
+    {
+        line(instr, "putfield " + instr.getFieldName());
+    }
+
+    @Override
+    public void visit(SsaWrite instr)
+    {
+        line(instr, String.format("%s %s",
+                instr.getWriteMode().toInst(),
+                instr.getWriteType().name().toLowerCase()));
+    }
+
+    @Override
+    public void visit(SsaJump instr)
+    {
+        line(instr, "jump " + instr.getTarget().name());
+    }
+
+    @Override
+    public void visit(SsaBranch instr)
+    {
+        builder.append("    branch ")
+                .append(instr.getCondition().name())
+                .append(' ')
+                .append(instr.getIfTrue().name())
+                .append(' ')
+                .append(instr.getIfFalse().name())
+                .append('\n');
+    }
+
+    @Override
+    public void visit(SsaReturn instr)
+    {
+        line(instr, "return");
+    }
+}
@@ -0,0 +1,284 @@
+package cn.misection.cvac.ssa;
+
+import cn.misection.cvac.ssa.value.*;
+
+import java.util.*;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaVerifier
+ * @Description 检查SsaFunction是否合法, 每一步变换之后都可以跑一次:
+ * 每个块以唯一的结尾指令收尾, 前驱表与各块的结尾一致, phi操作数与前驱一一对应,
+ * 操作数的userList记着读者, 操作数的类型对得上, 值的定义支配每一处读;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaVerifier
+{
+    private final SsaFunction function;
+
+    private final List<String> errorList = new ArrayList<>();
+
+    /**
+     * 指令 -> 在块里的位置, phi都算-1;
+     */
+    private final Map<SsaInstr, Integer> positionMap = new IdentityHashMap<>();
+
+    /**
+     * 值 -> 读它的指令 -> 读几次, 由操作数数出来, 与各值的userList对;
+     */
+    private final Map<SsaValue, Map<SsaInstr, Integer>> useMap = new IdentityHashMap<>();
+
+    private SsaVerifier(SsaFunction function)
+    {
+        this.function = function;
+    }
+
+    /**
+     * @return 发现的问题, 合法时为空;
+     */
+    public static List<String> check(SsaFunction function)
+    {
+        SsaVerifier verifier = new SsaVerifier(function);
+        verifier.run();
+        return verifier.errorList;
+    }
+
+    /**
+     * 不合法是编译器自己的错, 抛IllegalStateException;
+     */
+    public static void verify(SsaFunction function)
+    {
+        List<String> errorList = check(function);
+        if (!errorList.isEmpty())
+        {
+            throw new IllegalStateException(String.format("invalid ssa in %s.%s: %s%n%s",
+                    function.getClassName(),
+                    function.getMethodName(),
+                    errorList,
+                    SsaPrinter.print(function)));
+        }
+    }
+
+    private void error(SsaBlock block, String format, Object... args)
+    {
+        errorList.add(String.format("%s: %s", block.name(), String.format(format, args)));
+    }
+
+    private void run()
+    {
+        List<SsaBlock> blockList = function.getBlockList();
+        if (!function.getEntry().getPredList().isEmpty())
+        {
+            error(function.getEntry(), "entry block has predecessors");
+        }
+        for (SsaBlock block : blockList)
+        {
+            checkShape(block);
+        }
+        if (!errorList.isEmpty())
+        {
+            // 结尾不对时前驱与支配都无从谈起;
+            return;
+        }
+        checkEdges(blockList);
+        if (function.reversePostOrder().size() != blockList.size())
+        {
+            errorList.add("function has unreachable blocks");
+        }
+        if (!errorList.isEmpty())
+        {
+            return;
+        }
+        DominatorTree domTree = new DominatorTree(function);
+        for (SsaBlock block : blockList)
+        {
+            block.getPhiList().forEach(phi -> checkOperands(domTree, block, phi));
+            block.getInstrList().forEach(instr -> checkOperands(domTree, block, instr));
+        }
+        useMap.forEach(this::checkUsers);
+    }
+
+    /**
+     * 一个常量可能被成千上万个phi读, 按值各数一遍, 不逐个去userList里找;
+     */
+    private void checkUsers(SsaValue value, Map<SsaInstr, Integer> expectedMap)
+    {
+        Map<SsaInstr, Integer> actualMap = new IdentityHashMap<>();
+        value.getUserList().forEach(user -> actualMap.merge(user, 1, Integer::sum));
+        if (!actualMap.equals(expectedMap))
+        {
+            errorList.add(String.format("users of %s are %s, but it is read by %s",
+                    value.name(), value.getUserList(), expectedMap.keySet()));
+        }
+    }
+
+    private void checkShape(SsaBlock block)
+    {
+        for (SsaPhi phi : block.getPhiList())
+        {
+            if (phi.getBlock() != block)
+            {
+                error(block, "%s belongs to another block", phi.name());
+            }
+            positionMap.put(phi, -1);
+        }
+        List<SsaInstr> instrList = block.getInstrList();
+        if (instrList.isEmpty() || !instrList.get(instrList.size() - 1).isTerminator())
+        {
+            error(block, "block does not end with a terminator");
+        }
+        for (int i = 0; i < instrList.size(); i++)
+        {
+            SsaInstr instr = instrList.get(i);
+            if (instr.toEnum() == EnumSsaOp.PHI)
+            {
+                error(block, "%s is a phi among instructions", instr.name());
+            }
+            if (instr.isTerminator() && i != instrList.size() - 1)
+            {
+                error(block, "%s terminates the block early", instr.name());
+            }
+            if (instr.getBlock() != block)
+            {
+                error(block, "%s belongs to another block", instr.name());
+            }
+            positionMap.put(instr, i);
+        }
+    }
+
+    /**
+     * 前驱表按重数与各块结尾指向的块对得上;
+     */
+    private void checkEdges(List<SsaBlock> blockList)
+    {
+        Set<SsaBlock> blockSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        blockSet.addAll(blockList);
+        Map<SsaBlock, List<SsaBlock>> expectedMap = new IdentityHashMap<>();
+        for (SsaBlock block : blockList)
+        {
+            for (SsaBlock succ : block.successors())
+            {
+                if (!blockSet.contains(succ))
+                {
+                    error(block, "jumps to removed block %s", succ.name());
+                    continue;
+                }
+                expectedMap.computeIfAbsent(succ, b -> new ArrayList<>()).add(block);
+            }
+        }
+        for (SsaBlock block : blockList)
+        {
+            List<SsaBlock> expectedList = expectedMap.getOrDefault(block, Collections.emptyList());
+            if (!sameBlocks(expectedList, block.getPredList()))
+            {
+                error(block, "predecessors %s, but jumped to from %s", block.getPredList(), expectedList);
+            }
+            for (SsaPhi phi : block.getPhiList())
+            {
+                if (phi.getOperandList().size() != block.getPredList().size())
+                {
+                    error(block, "%s has %d operands for %d predecessors",
+                            phi.name(), phi.getOperandList().size(), block.getPredList().size());
+                }
+            }
+        }
+    }
+
+    private static boolean sameBlocks(List<SsaBlock> expectedList, List<SsaBlock> actualList)
+    {
+        if (expectedList.size() != actualList.size())
+        {
+            return false;
+        }
+        if (expectedList.size() <= 1)
+        {
+            return expectedList.equals(actualList);
+        }
+        Map<SsaBlock, Integer> countMap = new IdentityHashMap<>();
+        expectedList.forEach(block -> countMap.merge(block, 1, Integer::sum));
+        for (SsaBlock block : actualList)
+        {
+            if (countMap.merge(block, -1, Integer::sum) < 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkOperands(DominatorTree domTree, SsaBlock block, SsaInstr instr)
+    {
+        List<SsaValue> operandList = instr.getOperandList();
+        for (int i = 0; i < operandList.size(); i++)
+        {
+            SsaValue operand = operandList.get(i);
+            if (operand == null)
+            {
+                error(block, "%s has a null operand", instr.name());
+                continue;
+            }
+            useMap.computeIfAbsent(operand, v -> new IdentityHashMap<>()).merge(instr, 1, Integer::sum);
+            if (operand.getType() == EnumSsaType.VOID)
+            {
+                error(block, "%s reads %s which has no value", instr.name(), operand.name());
+            }
+            if (!(operand instanceof SsaInstr))
+            {
+                continue;
+            }
+            SsaInstr def = (SsaInstr) operand;
+            if (def.getBlock() == null || !positionMap.containsKey(def))
+            {
+                error(block, "%s reads removed %s", instr.name(), def.name());
+                continue;
+            }
+            // phi的读在对应前驱的末尾;
+            SsaBlock useBlock = instr.toEnum() == EnumSsaOp.PHI ? block.getPredList().get(i) : block;
+            boolean dominated = def.getBlock() == useBlock
+                    ? instr.toEnum() == EnumSsaOp.PHI || positionMap.get(def) < positionMap.get(instr)
+                    : domTree.dominates(def.getBlock(), useBlock);
+            if (!dominated)
+            {
+                error(block, "%s does not dominate its use in %s", def.name(), instr.name());
+            }
+        }
+        checkTypes(block, instr);
+    }
+
+    private void checkTypes(SsaBlock block, SsaInstr instr)
+    {
+        switch (instr.toEnum())
+        {
+            case PHI:
+            {
+                for (SsaValue operand : instr.getOperandList())
+                {
+                    if (operand != null && operand.getType() != instr.getType())
+                    {
+                        error(block, "%s: %s operand %s is %s",
+                                instr.name(), instr.getType(), operand.name(), operand.getType());
+                    }
+                }
+                break;
+            }
+            case LESS_THAN:
+            case NOT:
+            case BRANCH:
+            {
+                for (SsaValue operand : instr.getOperandList())
+                {
+                    if (operand != null && operand.getType() != EnumSsaType.INT)
+                    {
+                        error(block, "%s reads non-int %s", instr.name(), operand.name());
+                    }
+                }
+                break;
+            }
+            default:
+            {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * @ClassName package-info
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @Description 语义检查之后的ast按方法降成的SSA中间表示: 基本块, phi, 支配树, 校验与文本输出;
+ * 后端由codegen.SsaTranslator从这里生成指令;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+package cn.misection.cvac.ssa;
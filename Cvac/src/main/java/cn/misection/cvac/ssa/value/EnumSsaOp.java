@@ -0,0 +1,42 @@
+package cn.misection.cvac.ssa.value;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName EnumSsaOp
+ * @Description SSA指令的种类, ISsaVisitor按它分派;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public enum EnumSsaOp
+{
+    PHI,
+
+    /**
+     * 四则与取余等二元int运算;
+     */
+    BINARY,
+
+    LESS_THAN,
+
+    /**
+     * 布尔取反;
+     */
+    NOT,
+
+    CALL,
+
+    NEW,
+
+    GET_FIELD,
+
+    PUT_FIELD,
+
+    WRITE,
+
+    JUMP,
+
+    BRANCH,
+
+    RETURN,
+    ;
+}
@@ -0,0 +1,59 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.codegen.bst.instructor.EnumOperandType;
+import cn.misection.cvac.codegen.bst.instructor.EnumOperator;
+import cn.misection.cvac.ssa.EnumSsaType;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaBinary
+ * @Description 二元int运算, 运算符沿用ast里CvaOperandOperatorExpr的; 除与取余会抛异常, 算作副作用;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaBinary extends SsaInstr
+{
+    private final EnumOperator operator;
+
+    private final EnumOperandType operandType;
+
+    public SsaBinary(int id, EnumOperator operator, EnumOperandType operandType,
+                     SsaValue left, SsaValue right)
+    {
+        super(id, EnumSsaType.INT, left, right);
+        this.operator = operator;
+        this.operandType = operandType;
+    }
+
+    @Override
+    public EnumSsaOp toEnum()
+    {
+        return EnumSsaOp.BINARY;
+    }
+
+    @Override
+    public boolean hasSideEffect()
+    {
+        return operator == EnumOperator.DIV || operator == EnumOperator.REM;
+    }
+
+    public EnumOperator getOperator()
+    {
+        return operator;
+    }
+
+    public EnumOperandType getOperandType()
+    {
+        return operandType;
+    }
+
+    public SsaValue getLeft()
+    {
+        return getOperand(0);
+    }
+
+    public SsaValue getRight()
+    {
+        return getOperand(1);
+    }
+}
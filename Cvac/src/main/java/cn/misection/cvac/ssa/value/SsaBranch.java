@@ -0,0 +1,62 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.ssa.EnumSsaType;
+import cn.misection.cvac.ssa.SsaBlock;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaBranch
+ * @Description 按0/1条件二选一跳转;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaBranch extends SsaInstr
+{
+    private SsaBlock ifTrue;
+
+    private SsaBlock ifFalse;
+
+    public SsaBranch(int id, SsaValue condition, SsaBlock ifTrue, SsaBlock ifFalse)
+    {
+        super(id, EnumSsaType.VOID, condition);
+        this.ifTrue = ifTrue;
+        this.ifFalse = ifFalse;
+    }
+
+    @Override
+    public EnumSsaOp toEnum()
+    {
+        return EnumSsaOp.BRANCH;
+    }
+
+    @Override
+    public boolean isTerminator()
+    {
+        return true;
+    }
+
+    public SsaValue getCondition()
+    {
+        return getOperand(0);
+    }
+
+    public SsaBlock getIfTrue()
+    {
+        return ifTrue;
+    }
+
+    public SsaBlock getIfFalse()
+    {
+        return ifFalse;
+    }
+
+    public void setIfTrue(SsaBlock ifTrue)
+    {
+        this.ifTrue = ifTrue;
+    }
+
+    public void setIfFalse(SsaBlock ifFalse)
+    {
+        this.ifFalse = ifFalse;
+    }
+}
@@ -0,0 +1,68 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.ast.type.ICvaType;
+import cn.misection.cvac.ssa.EnumSsaType;
+
+import java.util.List;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaCall
+ * @Description 虚方法调用, 第0个操作数是接收者, 其后是实参; 签名照抄CvaCallExpr;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaCall extends SsaInstr
+{
+    private final String funcName;
+
+    private final String className;
+
+    private final List<ICvaType> argTypeList;
+
+    private final ICvaType retType;
+
+    public SsaCall(int id, String funcName, String className,
+                   List<ICvaType> argTypeList, ICvaType retType,
+                   SsaValue receiver, List<SsaValue> argList)
+    {
+        super(id, EnumSsaType.of(retType), receiver);
+        argList.forEach(this::appendOperand);
+        this.funcName = funcName;
+        this.className = className;
+        this.argTypeList = argTypeList;
+        this.retType = retType;
+    }
+
+    @Override
+    public EnumSsaOp toEnum()
+    {
+        return EnumSsaOp.CALL;
+    }
+
+    @Override
+    public boolean hasSideEffect()
+    {
+        return true;
+    }
+
+    public String getFuncName()
+    {
+        return funcName;
+    }
+
+    public String getClassName()
+    {
+        return className;
+    }
+
+    public List<ICvaType> getArgTypeList()
+    {
+        return argTypeList;
+    }
+
+    public ICvaType getRetType()
+    {
+        return retType;
+    }
+}
@@ -0,0 +1,69 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.ssa.EnumSsaType;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaConst
+ * @Description int或字符串常量, 不进块, 用到的地方现取; 值为null的是undef, 读了没写过的局部变量;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaConst extends SsaValue
+{
+    private final Object value;
+
+    private SsaConst(int id, EnumSsaType type, Object value)
+    {
+        super(id, type);
+        this.value = value;
+    }
+
+    public static SsaConst ofInt(int id, int value)
+    {
+        return new SsaConst(id, EnumSsaType.INT, value);
+    }
+
+    public static SsaConst ofString(int id, String literal)
+    {
+        return new SsaConst(id, EnumSsaType.REF, literal);
+    }
+
+    public static SsaConst undef(int id, EnumSsaType type)
+    {
+        return new SsaConst(id, type, null);
+    }
+
+    public boolean isUndef()
+    {
+        return value == null;
+    }
+
+    public boolean isInt()
+    {
+        return value instanceof Integer;
+    }
+
+    public int intValue()
+    {
+        return (Integer) value;
+    }
+
+    /**
+     * @return 源码里的字面量, 不含引号, 转义未展开;
+     */
+    public String stringValue()
+    {
+        return (String) value;
+    }
+
+    @Override
+    public String name()
+    {
+        if (value == null)
+        {
+            return "undef";
+        }
+        return isInt() ? value.toString() : String.format("\"%s\"", value);
+    }
+}
@@ -0,0 +1,41 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.ast.type.ICvaType;
+import cn.misection.cvac.ssa.EnumSsaType;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaGetField
+ * @Description 读this的字段, 操作数是this; 没人读时可以删, 但字段会被调用改写, 不能越过调用挪动;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaGetField extends SsaInstr
+{
+    private final String fieldName;
+
+    private final ICvaType fieldType;
+
+    public SsaGetField(int id, String fieldName, ICvaType fieldType, SsaValue self)
+    {
+        super(id, EnumSsaType.of(fieldType), self);
+        this.fieldName = fieldName;
+        this.fieldType = fieldType;
+    }
+
+    @Override
+    public EnumSsaOp toEnum()
+    {
+        return EnumSsaOp.GET_FIELD;
+    }
+
+    public String getFieldName()
+    {
+        return fieldName;
+    }
+
+    public ICvaType getFieldType()
+    {
+        return fieldType;
+    }
+}
@@ -0,0 +1,110 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.ssa.EnumSsaType;
+import cn.misection.cvac.ssa.SsaBlock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaInstr
+ * @Description 块里的指令, 也是它算出的值; 改操作数一律经过这里, 以维护各操作数的userList;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public abstract class SsaInstr extends SsaValue
+{
+    private SsaBlock block;
+
+    private final List<SsaValue> operandList = new ArrayList<>();
+
+    protected SsaInstr(int id, EnumSsaType type, SsaValue... operands)
+    {
+        super(id, type);
+        for (SsaValue operand : operands)
+        {
+            appendOperand(operand);
+        }
+    }
+
+    public abstract EnumSsaOp toEnum();
+
+    /**
+     * @return 有副作用的指令不能删, 也不能越过别的副作用挪动;
+     */
+    public boolean hasSideEffect()
+    {
+        return false;
+    }
+
+    public boolean isTerminator()
+    {
+        return false;
+    }
+
+    @Override
+    public String name()
+    {
+        return "v" + getId();
+    }
+
+    public void appendOperand(SsaValue operand)
+    {
+        operandList.add(operand);
+        operand.addUser(this);
+    }
+
+    public void setOperand(int index, SsaValue operand)
+    {
+        operandList.get(index).removeUser(this);
+        operandList.set(index, operand);
+        operand.addUser(this);
+    }
+
+    public void removeOperand(int index)
+    {
+        operandList.remove(index).removeUser(this);
+    }
+
+    void replaceOperand(SsaValue from, SsaValue to)
+    {
+        for (int i = 0; i < operandList.size(); i++)
+        {
+            if (operandList.get(i) == from)
+            {
+                setOperand(i, to);
+            }
+        }
+    }
+
+    /**
+     * 删指令之前调用, 不再算作各操作数的读者;
+     */
+    public void dropOperands()
+    {
+        operandList.forEach(operand -> operand.removeUser(this));
+        operandList.clear();
+    }
+
+    public SsaValue getOperand(int index)
+    {
+        return operandList.get(index);
+    }
+
+    public List<SsaValue> getOperandList()
+    {
+        return Collections.unmodifiableList(operandList);
+    }
+
+    public SsaBlock getBlock()
+    {
+        return block;
+    }
+
+    public void setBlock(SsaBlock block)
+    {
+        this.block = block;
+    }
+}
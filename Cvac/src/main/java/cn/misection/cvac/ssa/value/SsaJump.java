@@ -0,0 +1,44 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.ssa.EnumSsaType;
+import cn.misection.cvac.ssa.SsaBlock;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaJump
+ * @Description 无条件跳转;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaJump extends SsaInstr
+{
+    private SsaBlock target;
+
+    public SsaJump(int id, SsaBlock target)
+    {
+        super(id, EnumSsaType.VOID);
+        this.target = target;
+    }
+
+    @Override
+    public EnumSsaOp toEnum()
+    {
+        return EnumSsaOp.JUMP;
+    }
+
+    @Override
+    public boolean isTerminator()
+    {
+        return true;
+    }
+
+    public SsaBlock getTarget()
+    {
+        return target;
+    }
+
+    public void setTarget(SsaBlock target)
+    {
+        this.target = target;
+    }
+}
@@ -0,0 +1,34 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.ssa.EnumSsaType;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaLessThan
+ * @Description int比较, 结果为0/1;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaLessThan extends SsaInstr
+{
+    public SsaLessThan(int id, SsaValue left, SsaValue right)
+    {
+        super(id, EnumSsaType.INT, left, right);
+    }
+
+    @Override
+    public EnumSsaOp toEnum()
+    {
+        return EnumSsaOp.LESS_THAN;
+    }
+
+    public SsaValue getLeft()
+    {
+        return getOperand(0);
+    }
+
+    public SsaValue getRight()
+    {
+        return getOperand(1);
+    }
+}
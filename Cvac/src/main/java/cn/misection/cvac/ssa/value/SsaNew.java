@@ -0,0 +1,38 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.ssa.EnumSsaType;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaNew
+ * @Description 新建对象并调无参构造;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaNew extends SsaInstr
+{
+    private final String newClassName;
+
+    public SsaNew(int id, String newClassName)
+    {
+        super(id, EnumSsaType.REF);
+        this.newClassName = newClassName;
+    }
+
+    @Override
+    public EnumSsaOp toEnum()
+    {
+        return EnumSsaOp.NEW;
+    }
+
+    @Override
+    public boolean hasSideEffect()
+    {
+        return true;
+    }
+
+    public String getNewClassName()
+    {
+        return newClassName;
+    }
+}
@@ -0,0 +1,29 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.ssa.EnumSsaType;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaNot
+ * @Description 0/1取反;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaNot extends SsaInstr
+{
+    public SsaNot(int id, SsaValue value)
+    {
+        super(id, EnumSsaType.INT, value);
+    }
+
+    @Override
+    public EnumSsaOp toEnum()
+    {
+        return EnumSsaOp.NOT;
+    }
+
+    public SsaValue getValue()
+    {
+        return getOperand(0);
+    }
+}
@@ -0,0 +1,40 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.ssa.EnumSsaType;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaParam
+ * @Description 方法入口处的参数, this也算, slot就是它在局部变量表里的位置;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaParam extends SsaValue
+{
+    private final int slot;
+
+    private final String varName;
+
+    public SsaParam(int id, EnumSsaType type, int slot, String varName)
+    {
+        super(id, type);
+        this.slot = slot;
+        this.varName = varName;
+    }
+
+    public int getSlot()
+    {
+        return slot;
+    }
+
+    public String getVarName()
+    {
+        return varName;
+    }
+
+    @Override
+    public String name()
+    {
+        return "%" + varName;
+    }
+}
@@ -0,0 +1,24 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.ssa.EnumSsaType;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaPhi
+ * @Description 块入口处按前驱选值, 第i个操作数对应块的第i个前驱;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaPhi extends SsaInstr
+{
+    public SsaPhi(int id, EnumSsaType type)
+    {
+        super(id, type);
+    }
+
+    @Override
+    public EnumSsaOp toEnum()
+    {
+        return EnumSsaOp.PHI;
+    }
+}
@@ -0,0 +1,52 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.ast.type.ICvaType;
+import cn.misection.cvac.ssa.EnumSsaType;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaPutField
+ * @Description 写this的字段, 操作数是this与值;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaPutField extends SsaInstr
+{
+    private final String fieldName;
+
+    private final ICvaType fieldType;
+
+    public SsaPutField(int id, String fieldName, ICvaType fieldType, SsaValue self, SsaValue value)
+    {
+        super(id, EnumSsaType.VOID, self, value);
+        this.fieldName = fieldName;
+        this.fieldType = fieldType;
+    }
+
+    @Override
+    public EnumSsaOp toEnum()
+    {
+        return EnumSsaOp.PUT_FIELD;
+    }
+
+    @Override
+    public boolean hasSideEffect()
+    {
+        return true;
+    }
+
+    public String getFieldName()
+    {
+        return fieldName;
+    }
+
+    public ICvaType getFieldType()
+    {
+        return fieldType;
+    }
+
+    public SsaValue getValue()
+    {
+        return getOperand(1);
+    }
+}
@@ -0,0 +1,43 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.ssa.EnumSsaType;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaReturn
+ * @Description 返回, void方法与main没有操作数;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaReturn extends SsaInstr
+{
+    public SsaReturn(int id)
+    {
+        super(id, EnumSsaType.VOID);
+    }
+
+    public SsaReturn(int id, SsaValue value)
+    {
+        super(id, EnumSsaType.VOID, value);
+    }
+
+    @Override
+    public EnumSsaOp toEnum()
+    {
+        return EnumSsaOp.RETURN;
+    }
+
+    @Override
+    public boolean isTerminator()
+    {
+        return true;
+    }
+
+    /**
+     * @return 返回值, 没有为null;
+     */
+    public SsaValue getValue()
+    {
+        return getOperandList().isEmpty() ? null : getOperand(0);
+    }
+}
@@ -0,0 +1,76 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.ssa.EnumSsaType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaValue
+ * @Description SSA的值, 只定义一次; 读它的指令按读的次数记在userList里, 换值时据此改写;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public abstract class SsaValue
+{
+    private final int id;
+
+    private final EnumSsaType type;
+
+    private final List<SsaInstr> userList = new ArrayList<>();
+
+    protected SsaValue(int id, EnumSsaType type)
+    {
+        this.id = id;
+        this.type = type;
+    }
+
+    /**
+     * @return 输出时的名字;
+     */
+    public abstract String name();
+
+    /**
+     * 所有读this的地方改读value;
+     */
+    public void replaceAllUsesWith(SsaValue value)
+    {
+        for (SsaInstr user : new ArrayList<>(userList))
+        {
+            user.replaceOperand(this, value);
+        }
+    }
+
+    void addUser(SsaInstr user)
+    {
+        userList.add(user);
+    }
+
+    void removeUser(SsaInstr user)
+    {
+        userList.remove(user);
+    }
+
+    public int getId()
+    {
+        return id;
+    }
+
+    public EnumSsaType getType()
+    {
+        return type;
+    }
+
+    public List<SsaInstr> getUserList()
+    {
+        return Collections.unmodifiableList(userList);
+    }
+
+    @Override
+    public String toString()
+    {
+        return name();
+    }
+}
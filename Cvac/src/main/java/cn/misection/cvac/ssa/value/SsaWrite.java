@@ -0,0 +1,53 @@
+package cn.misection.cvac.ssa.value;
+
+import cn.misection.cvac.ast.type.basic.EnumCvaType;
+import cn.misection.cvac.codegen.bst.instructor.write.EnumWriteMode;
+import cn.misection.cvac.ssa.EnumSsaType;
+
+/**
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @ClassName SsaWrite
+ * @Description print与println, 打印的类型按ast上的表达式定, 与TranslatorVisitor一致;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+public final class SsaWrite extends SsaInstr
+{
+    private final EnumWriteMode writeMode;
+
+    private final EnumCvaType writeType;
+
+    public SsaWrite(int id, EnumWriteMode writeMode, EnumCvaType writeType, SsaValue value)
+    {
+        super(id, EnumSsaType.VOID, value);
+        this.writeMode = writeMode;
+        this.writeType = writeType;
+    }
+
+    @Override
+    public EnumSsaOp toEnum()
+    {
+        return EnumSsaOp.WRITE;
+    }
+
+    @Override
+    public boolean hasSideEffect()
+    {
+        return true;
+    }
+
+    public EnumWriteMode getWriteMode()
+    {
+        return writeMode;
+    }
+
+    public EnumCvaType getWriteType()
+    {
+        return writeType;
+    }
+
+    public SsaValue getValue()
+    {
+        return getOperand(0);
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * @ClassName package-info
+ * @author Military Intelligence 6 root
+ * @version 1.0.0
+ * @Description SSA的值: 常量, 参数与各种指令, 每个值记着读它的指令;
+ * @CreateTime 2021年02月14日 14:10:00
+ */
+package cn.misection.cvac.ssa.value;
@@ -0,0 +1,125 @@
+package cn.misection.cvac.lexer;
+
+import cn.misection.cvac.constant.LexerCommon;
+import cn.misection.cvac.io.BufferedHandler;
+import cn.misection.cvac.io.ChannelBufferedHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * ChannelBufferedHandler Tester.
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class ChannelBufferedHandlerTest
+{
+    private File file;
+
+    private byte[] bytes;
+
+    @Before
+    public void before() throws Exception
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 50; i++)
+        {
+            builder.append("    a >>>= ").append(i).append(";\r\n");
+        }
+        builder.append("}");
+        bytes = builder.toString().getBytes();
+        file = File.createTempFile("cva", ".cva");
+        Files.write(file.toPath(), bytes);
+    }
+
+    @After
+    public void after() throws Exception
+    {
+        file.delete();
+    }
+
+    /**
+     * 环只有16个字符, 反复绕回, 与BufferedHandler逐字符比较;
+     */
+    @Test
+    public void testSameAsBufferedHandler() throws IOException
+    {
+        BufferedHandler expected = new BufferedHandler(file.getPath());
+        ChannelBufferedHandler actual = new ChannelBufferedHandler(
+                Channels.newChannel(new ByteArrayInputStream(bytes)), 16, Charset.defaultCharset());
+        while (!expected.isEmpty())
+        {
+            assertEquals(expected.hasNext(), actual.hasNext());
+            assertEquals(expected.hasNext(3), actual.hasNext(3));
+            assertEquals(expected.peek(), actual.peek());
+            assertEquals(expected.peek(4), actual.peek(4));
+            if (expected.hasNext(3))
+            {
+                assertEquals(expected.poll(3), actual.poll(3));
+            }
+            else
+            {
+                assertEquals(expected.poll(), actual.poll());
+            }
+        }
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+    }
+
+    /**
+     * 成块取走的字符与逐个poll相同, 最后一个是EOF;
+     */
+    @Test
+    public void testPollBlock() throws IOException
+    {
+        BufferedHandler expected = new BufferedHandler(file.getPath());
+        ChannelBufferedHandler actual = new ChannelBufferedHandler(
+                Channels.newChannel(new ByteArrayInputStream(bytes)), 16, Charset.defaultCharset());
+        char[] block = new char[5];
+        int polled;
+        char last = 0;
+        while ((polled = actual.poll(block, 0, block.length)) > 0)
+        {
+            for (int i = 0; i < polled; i++)
+            {
+                assertEquals(expected.poll(), block[i]);
+                last = block[i];
+            }
+        }
+        assertEquals(LexerCommon.EOF, last);
+        assertTrue(expected.isEmpty());
+    }
+
+    /**
+     * 一次装载可能多出'\n'与EOF两个字符, 16的环最多向前看7个;
+     */
+    @Test
+    public void testLookaheadLimit()
+    {
+        ChannelBufferedHandler handler = new ChannelBufferedHandler(
+                Channels.newChannel(new ByteArrayInputStream(bytes)), 16, Charset.defaultCharset());
+        handler.poll();
+        assertEquals((char) bytes[7], handler.peek(7));
+        try
+        {
+            handler.peek(8);
+            fail("lookahead of half the ring must be rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // 期望的;
+        }
+    }
+}
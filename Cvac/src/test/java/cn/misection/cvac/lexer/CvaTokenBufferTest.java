@@ -0,0 +1,69 @@
+package cn.misection.cvac.lexer;
+
+import cn.misection.cvac.io.MappedBufferedHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * CvaTokenBuffer Tester.
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class CvaTokenBufferTest
+{
+    private static final String SOURCE = "// comment\n"
+            + "pkg cn.misection.cva.test;\n"
+            + "class Calcer\n"
+            + "{\n"
+            + "    /* block\n comment */\n"
+            + "    char calc(int n)\n"
+            + "    {\n"
+            + "        int i = 10;\n"
+            + "        println \"i += 2\\n\";\n"
+            + "        i >>>= 2; i >>= 1; i <<= 3; i >= 4; i <= 5; i != 6;\n"
+            + "        i++; --i; i && i || !i;\n"
+            + "        return 'a';\n"
+            + "    }\n"
+            + "}\n";
+
+    private File file;
+
+    @Before
+    public void before() throws Exception
+    {
+        file = File.createTempFile("cva", ".cva");
+        Files.write(file.toPath(), SOURCE.getBytes());
+    }
+
+    @After
+    public void after() throws Exception
+    {
+        file.delete();
+    }
+
+    /**
+     * tokenize()的结果与逐个nextToken()一致;
+     */
+    @Test
+    public void testSameAsNextToken() throws IOException
+    {
+        Lexer expectedLexer = new Lexer(new MappedBufferedHandler(file.getPath()));
+        MappedBufferedHandler handler = new MappedBufferedHandler(file.getPath());
+        CvaTokenBuffer buffer = new Lexer(handler).tokenize(handler.array());
+
+        for (int i = 0; i < buffer.size(); i++)
+        {
+            assertEquals(expectedLexer.nextToken().toString(), buffer.toToken(i).toString());
+        }
+        assertEquals(EnumCvaToken.EOF, buffer.kind(buffer.size() - 1));
+    }
+}
@@ -0,0 +1,210 @@
+package cn.misection.cvac.lexer;
+
+import cn.misection.cvac.constant.LexerCommon;
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.context.CompileException;
+import cn.misection.cvac.io.BufferedHandler;
+import cn.misection.cvac.io.ChannelBufferedHandler;
+import cn.misection.cvac.io.MappedBufferedHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * DfaLexer Tester.
+ * 与Lexer做差分测试, main()报告两者吞吐(MB/s);
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class DfaLexerTest
+{
+    private static final String SOURCE = "// This is the entry point of the program\n"
+            + "pkg cn.misection.cva.test;\n"
+            + "call cva.native.io.*;\n"
+            + "/**\n * 原生string导入;\n */\n"
+            + "class Calcer extends Base\n"
+            + "{\n"
+            + "    int a;\n"
+            + "    char calc(int n, string s)\n"
+            + "    {\n"
+            + "        int i = 10;\n"
+            + "        println \"i += 2\\n \\\"q\\\"\";\n"
+            + "        i += 2; i -= 2; i *= 2; i /= 2; i %= 2; i &= 8; i |= 1; i ^= 3; i ~= 1;\n"
+            + "        i >>>= 2; i >>= 1; i <<= 3; i >= 4; i <= 5; i != 6; i == 7;\n"
+            + "        i >>> 1; i >> 1; i << 1; i -> a;\n"
+            + "        i++; --i; i && i || !i; ~i; i ? a : b;\n"
+            + "        while (i < 100) { i = i + 1 * 3 / 2 - 4 % 5 & 6 | 7 ^ 8; }\n"
+            + "        for (int j = 0; j < 10; j++) { echo j; }\n"
+            + "        if (this.a > 0) { return 'a'; } else { return '\\n'; }\n"
+            + "        x_1$ = new Calcer();\n"
+            + "        中文 = 1;\n"
+            + "        return 'b';\n"
+            + "    }\n"
+            + "}\n";
+
+    private File file;
+
+    @Before
+    public void before() throws Exception
+    {
+        file = File.createTempFile("cva", ".cva");
+        Files.write(file.toPath(), SOURCE.getBytes());
+    }
+
+    @After
+    public void after() throws Exception
+    {
+        file.delete();
+    }
+
+    /**
+     * 每个token的种类, 切片, 行号都与Lexer一致;
+     */
+    @Test
+    public void testSameAsLexer() throws IOException
+    {
+        MappedBufferedHandler handler = new MappedBufferedHandler(file.getPath());
+        CvaTokenBuffer expected = new Lexer(handler).tokenize(handler.array());
+        CvaTokenBuffer actual = new DfaLexer(handler.array()).tokenize();
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assertEquals(expected.toToken(i).toString(), actual.toToken(i).toString());
+            assertEquals(expected.start(i), actual.start(i));
+            assertEquals(expected.length(i), actual.length(i));
+        }
+    }
+
+    /**
+     * 不是MappedBufferedHandler的stream经窗口边读边切, 结果相同;
+     */
+    @Test
+    public void testFromQueue() throws IOException
+    {
+        MappedBufferedHandler handler = new MappedBufferedHandler(file.getPath());
+        CvaTokenBuffer expected = new DfaLexer(handler.array()).tokenize();
+        CvaTokenBuffer actual = new DfaLexer(
+                new BufferedHandler(file.getPath()), new CompilationContext()).tokenize();
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assertEquals(expected.toToken(i).toString(), actual.toToken(i).toString());
+        }
+    }
+
+    /**
+     * 经很小的窗口边读边切, 每种token都会在某个窗口大小下被截断, 结果仍与整段数组相同;
+     */
+    @Test
+    public void testStreamWindow()
+    {
+        CvaTokenBuffer expected = new DfaLexer(MappedBufferedHandler.of(SOURCE).array()).tokenize();
+        byte[] bytes = SOURCE.getBytes(StandardCharsets.UTF_8);
+        for (int window = 8; window < 48; window++)
+        {
+            ChannelBufferedHandler handler = new ChannelBufferedHandler(
+                    Channels.newChannel(new ByteArrayInputStream(bytes)), 16, StandardCharsets.UTF_8);
+            CvaTokenBuffer actual = new DfaLexer(handler, window, new CompilationContext()).tokenize();
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++)
+            {
+                assertEquals(expected.toToken(i).toString(), actual.toToken(i).toString());
+                assertEquals(expected.line(i), actual.line(i));
+            }
+        }
+    }
+
+    /**
+     * 比窗口还长的字符串常量, 窗口变大后照样切出来;
+     */
+    @Test
+    public void testTokenLongerThanWindow()
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+        {
+            builder.append((char) ('a' + i % 26));
+        }
+        String literal = builder.toString();
+        byte[] bytes = String.format("println \"%s\";%n", literal).getBytes(StandardCharsets.UTF_8);
+        ChannelBufferedHandler handler = new ChannelBufferedHandler(
+                Channels.newChannel(new ByteArrayInputStream(bytes)), 16, StandardCharsets.UTF_8);
+        CvaTokenBuffer actual = new DfaLexer(handler, 16, new CompilationContext()).tokenize();
+
+        assertEquals(4, actual.size());
+        assertEquals(literal, actual.literal(1));
+    }
+
+    /**
+     * 不经MappedBufferedHandler补换行的char[], 最后一行是注释时停在EOF, 不越界;
+     */
+    @Test
+    public void testLineCommentAtEof()
+    {
+        String source = "class A {}\n";
+        CvaTokenBuffer expected = new DfaLexer((source + LexerCommon.EOF).toCharArray()).tokenize();
+        CvaTokenBuffer actual = new DfaLexer((source + "// done" + LexerCommon.EOF).toCharArray()).tokenize();
+
+        assertEquals(expected.size(), actual.size());
+        assertEquals(EnumCvaToken.EOF, actual.kind(actual.size() - 1));
+    }
+
+    /**
+     * 末尾孤立的'要报错, 不越界;
+     */
+    @Test(expected = CompileException.class)
+    public void testApostropheAtEof()
+    {
+        new DfaLexer(("class A {}\n'" + LexerCommon.EOF).toCharArray()).tokenize();
+    }
+
+    private static final int REPEAT = 4000;
+
+    private static final int ROUND = 10;
+
+    public static void main(String[] args) throws IOException
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < REPEAT; i++)
+        {
+            builder.append(SOURCE);
+        }
+        File big = File.createTempFile("cva-big", ".cva");
+        big.deleteOnExit();
+        byte[] bytes = builder.toString().getBytes();
+        Files.write(big.toPath(), bytes);
+        double megaBytes = bytes.length / (1024.0 * 1024.0);
+
+        for (int round = 0; round < ROUND; round++)
+        {
+            MappedBufferedHandler handler = new MappedBufferedHandler(big.getPath());
+            long begin = System.nanoTime();
+            int lexerSize = new Lexer(handler).tokenize(handler.array()).size();
+            long lexerCost = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            int dfaSize = new DfaLexer(handler.array()).tokenize().size();
+            long dfaCost = System.nanoTime() - begin;
+
+            System.out.printf("round %d: %.2f MB, Lexer %.1f MB/s, DfaLexer %.1f MB/s, tokens %d/%d%n",
+                    round, megaBytes,
+                    megaBytes / (lexerCost / 1e9),
+                    megaBytes / (dfaCost / 1e9),
+                    lexerSize, dfaSize);
+        }
+    }
+}
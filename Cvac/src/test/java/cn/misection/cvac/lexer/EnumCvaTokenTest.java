@@ -0,0 +1,137 @@
+package cn.misection.cvac.lexer;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * EnumCvaToken Tester.
+ * main()为关键字与标点查表的微基准, 对比原HashMap查找;
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class EnumCvaTokenTest
+{
+    /**
+     * 完美哈希与HashMap结果一致;
+     */
+    @Test
+    public void testSelectKeyword()
+    {
+        for (EnumCvaToken kind : EnumCvaToken.values())
+        {
+            String literal = kind.literal();
+            if (literal == null)
+            {
+                continue;
+            }
+            if (literal.length() == 1)
+            {
+                assertEquals(EnumCvaToken.selectReverse(literal),
+                        EnumCvaToken.selectPunctuation(literal.charAt(0)));
+            }
+            else
+            {
+                assertEquals(EnumCvaToken.selectReverse(literal),
+                        EnumCvaToken.selectKeyword(literal));
+                char[] buf = ("  " + literal + " ").toCharArray();
+                assertEquals(EnumCvaToken.selectReverse(literal),
+                        EnumCvaToken.selectKeyword(buf, 2, literal.length()));
+            }
+        }
+        assertNull(EnumCvaToken.selectKeyword("iff"));
+        assertNull(EnumCvaToken.selectKeyword("main"));
+        assertNull(EnumCvaToken.selectKeyword(""));
+        assertNull(EnumCvaToken.selectPunctuation('a'));
+        assertNull(EnumCvaToken.selectPunctuation('中'));
+    }
+
+    private static final int WORD_COUNT = 1 << 20;
+
+    private static final int ROUND = 10;
+
+    public static void main(String[] args)
+    {
+        String[] pool = {"int", "i", "while", "fib", "return", "counter", "println", "x1", "class", "Calcer"};
+        String punctuations = "{}()[];,.!abcxyz \n";
+        Random random = new Random(42);
+        // 模拟词法分析: 单词逐字符进builder, 标点逐字符判断;
+        StringBuilder source = new StringBuilder();
+        int[] starts = new int[WORD_COUNT];
+        int[] lengths = new int[WORD_COUNT];
+        char[] chars = new char[WORD_COUNT];
+        for (int i = 0; i < WORD_COUNT; i++)
+        {
+            String word = pool[random.nextInt(pool.length)];
+            starts[i] = source.length();
+            lengths[i] = word.length();
+            source.append(word);
+            chars[i] = punctuations.charAt(random.nextInt(punctuations.length()));
+        }
+        char[] buf = source.toString().toCharArray();
+        StringBuilder builder = new StringBuilder();
+
+        for (int round = 0; round < ROUND; round++)
+        {
+            int hits = 0;
+            long begin = System.nanoTime();
+            for (int i = 0; i < WORD_COUNT; i++)
+            {
+                if (EnumCvaToken.containsKind(String.valueOf(chars[i])))
+                {
+                    hits++;
+                }
+                builder.setLength(0);
+                builder.append(buf, starts[i], lengths[i]);
+                String word = builder.toString();
+                if (EnumCvaToken.containsKind(word))
+                {
+                    hits++;
+                }
+            }
+            long mapCost = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            for (int i = 0; i < WORD_COUNT; i++)
+            {
+                if (EnumCvaToken.isPunctuation(chars[i]))
+                {
+                    hits--;
+                }
+                builder.setLength(0);
+                builder.append(buf, starts[i], lengths[i]);
+                if (EnumCvaToken.selectKeyword(builder) != null)
+                {
+                    hits--;
+                }
+            }
+            long builderCost = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            for (int i = 0; i < WORD_COUNT; i++)
+            {
+                if (EnumCvaToken.isPunctuation(chars[i]))
+                {
+                    hits++;
+                }
+                if (EnumCvaToken.selectKeyword(buf, starts[i], lengths[i]) != null)
+                {
+                    hits++;
+                }
+            }
+            long sliceCost = System.nanoTime() - begin;
+
+            System.out.printf("round %d: HashMap %.2f ns/op, table(builder) %.2f ns/op, table(slice) %.2f ns/op, check %d%n",
+                    round,
+                    (double) mapCost / WORD_COUNT,
+                    (double) builderCost / WORD_COUNT,
+                    (double) sliceCost / WORD_COUNT,
+                    hits);
+        }
+    }
+}
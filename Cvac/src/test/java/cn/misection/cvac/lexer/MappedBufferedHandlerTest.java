@@ -0,0 +1,89 @@
+package cn.misection.cvac.lexer;
+
+import cn.misection.cvac.context.CompileException;
+import cn.misection.cvac.io.BufferedHandler;
+import cn.misection.cvac.io.MappedBufferedHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * MappedBufferedHandler Tester.
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class MappedBufferedHandlerTest
+{
+    private File file;
+
+    @Before
+    public void before() throws Exception
+    {
+        file = File.createTempFile("cva", ".cva");
+        Files.write(file.toPath(),
+                "class A {\r\n    int a;\n    a >>>= 1;\r}".getBytes());
+    }
+
+    @After
+    public void after() throws Exception
+    {
+        file.delete();
+    }
+
+    /**
+     * 与BufferedHandler逐字符比较, 包括peek(advance), hasNext(advance);
+     */
+    @Test
+    public void testSameAsBufferedHandler() throws IOException
+    {
+        BufferedHandler expected = new BufferedHandler(file.getPath());
+        MappedBufferedHandler actual = new MappedBufferedHandler(file.getPath());
+        while (!expected.isEmpty())
+        {
+            assertEquals(expected.hasNext(), actual.hasNext());
+            assertEquals(expected.hasNext(3), actual.hasNext(3));
+            assertEquals(expected.peek(), actual.peek());
+            assertEquals(expected.peek(2), actual.peek(2));
+            assertEquals(expected.peek(4), actual.peek(4));
+            if (expected.hasNext(2))
+            {
+                assertEquals(expected.poll(2), actual.poll(2));
+            }
+            else
+            {
+                assertEquals(expected.poll(), actual.poll());
+            }
+        }
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+    }
+
+    /**
+     * 读到末尾后一直给EOF, 未闭合的块注释要报错而不是死循环;
+     */
+    @Test(timeout = 5000, expected = CompileException.class)
+    public void testUnterminatedBlockComment() throws IOException
+    {
+        Files.write(file.toPath(), "class A {\n/* open\n".getBytes());
+        new Lexer(new MappedBufferedHandler(file.getPath())).tokenize();
+    }
+
+    /**
+     * 按给定编码解码, 不依赖平台默认编码;
+     */
+    @Test
+    public void testCharset() throws IOException
+    {
+        Charset gbk = Charset.forName("GBK");
+        Files.write(file.toPath(), "\u7c7b\n".getBytes(gbk));
+        assertEquals('\u7c7b', new MappedBufferedHandler(file.getPath(), gbk).poll());
+    }
+}
@@ -0,0 +1,140 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.codegen.ClassFileGenerator;
+import cn.misection.cvac.codegen.TranslatorVisitor;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ClassFileGenerator Tester.
+ * 生成的字节直接在内存里加载运行;
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class ClassFileGeneratorTest
+{
+    private static final String SOURCE = "class Ops\n"
+            + "{\n"
+            + "    int fib(int n)\n"
+            + "    {\n"
+            + "        int r = n;\n"
+            + "        if (1 < n)\n"
+            + "        {\n"
+            + "            r = this.fib(n - 1) + this.fib(n - 2);\n"
+            + "        }\n"
+            + "        return r;\n"
+            + "    }\n"
+            + "    int run()\n"
+            + "    {\n"
+            + "        int i = 0;\n"
+            + "        int k = 0;\n"
+            + "        for (i = 0; i < 5; i++)\n"
+            + "        {\n"
+            + "            k = k + i * i;\n"
+            + "        }\n"
+            + "        echo \"k=\";\n"
+            + "        println k;\n"
+            + "        return this.fib(15);\n"
+            + "    }\n"
+            + "}\n"
+            + "int main(string[] args)\n"
+            + "{\n"
+            + "    println new Ops().run();\n"
+            + "    return 0;\n"
+            + "}\n";
+
+    /**
+     * 条件按跳转翻译后, !与&&仍要取对值;
+     */
+    private static final String CONDITION_SOURCE = "class Cond\n"
+            + "{\n"
+            + "    int check(int a)\n"
+            + "    {\n"
+            + "        int flag = 0;\n"
+            + "        if (0 < a && a < 100 && !(a > 50))\n"
+            + "        {\n"
+            + "            flag = 1;\n"
+            + "        }\n"
+            + "        return flag;\n"
+            + "    }\n"
+            + "    int run()\n"
+            + "    {\n"
+            + "        int j = 100;\n"
+            + "        while (0 < j)\n"
+            + "        {\n"
+            + "            j -= 17;\n"
+            + "            echo this.check(j);\n"
+            + "        }\n"
+            + "        return j;\n"
+            + "    }\n"
+            + "}\n"
+            + "int main(string[] args)\n"
+            + "{\n"
+            + "    println new Cond().run();\n"
+            + "    return 0;\n"
+            + "}\n";
+
+    /**
+     * 各编码边界上的常量: iconst, bipush, sipush, ldc;
+     */
+    private static final String CONSTANT_SOURCE = "int main(string[] args)\n"
+            + "{\n"
+            + "    println 0 - 1;\n"
+            + "    println 5;\n"
+            + "    println 6;\n"
+            + "    println 127;\n"
+            + "    println 128;\n"
+            + "    println 32767;\n"
+            + "    println 32768;\n"
+            + "    return 0;\n"
+            + "}\n";
+
+    @Test
+    public void testRunGeneratedClasses() throws Exception
+    {
+        assertEquals(String.format("k=30%n610%n"), compileAndRun(SOURCE));
+    }
+
+    @Test
+    public void testConditionJumps() throws Exception
+    {
+        assertEquals(String.format("001110-2%n"), compileAndRun(CONDITION_SOURCE));
+    }
+
+    @Test
+    public void testConstantEncodings() throws Exception
+    {
+        assertEquals(String.format("-1%n5%n6%n127%n128%n32767%n32768%n"),
+                compileAndRun(CONSTANT_SOURCE));
+    }
+
+    private String compileAndRun(String source) throws Exception
+    {
+        TranslatorVisitor translator = new TranslatorVisitor();
+        translator.visit(CvaTestSupport.check(source));
+        ClassFileGenerator generator = new ClassFileGenerator();
+        generator.visit(translator.getTargetProgram());
+
+        Map<String, byte[]> classFileMap = generator.getClassFileMap();
+        ClassLoader loader = new ClassLoader(getClass().getClassLoader())
+        {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException
+            {
+                byte[] bytes = classFileMap.get(name);
+                if (bytes == null)
+                {
+                    throw new ClassNotFoundException(name);
+                }
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        };
+
+        return CvaTestSupport.runMain(loader);
+    }
+}
@@ -0,0 +1,150 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.CvaCompiler;
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.context.CompileException;
+import cn.misection.cvac.context.CompileOptions;
+import cn.misection.cvac.daemon.CompileClient;
+import cn.misection.cvac.daemon.CompileDaemon;
+import cn.misection.cvac.daemon.DaemonProtocol;
+import cn.misection.cvac.daemon.SourceWatcher;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * CompileDaemon Tester.
+ * main()对比冷启动的进程内编译与热daemon上的编译耗时;
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class CompileDaemonTest
+{
+    private static final String SOURCE = "class Sq\n"
+            + "{\n"
+            + "    int sq(int n)\n"
+            + "    {\n"
+            + "        return n * n;\n"
+            + "    }\n"
+            + "}\n"
+            + "int main(string[] args)\n"
+            + "{\n"
+            + "    println new Sq().sq(12);\n"
+            + "    return 0;\n"
+            + "}\n";
+
+    @Test
+    public void testCompileThroughDaemon() throws Exception
+    {
+        try (CompileDaemon daemon = new CompileDaemon(0, 2))
+        {
+            daemon.start();
+            CompileClient client = new CompileClient(daemon.getPort());
+
+            Map<String, byte[]> remote = client.compile(SOURCE, new CompilationContext());
+            Map<String, byte[]> local = CvaCompiler.compile(SOURCE, CompileOptions.defaults());
+            assertEquals(local.keySet(), remote.keySet());
+            local.forEach((name, bytes) -> assertArrayEquals(name, bytes, remote.get(name)));
+
+            // 错误回给客户端, daemon继续服务;
+            CompilationContext context = new CompilationContext();
+            try
+            {
+                client.compile(SOURCE.replace("n * n;", "n * n"), context);
+                fail("missing semicolon should not compile");
+            }
+            catch (CompileException e)
+            {
+                assertEquals(6, e.getDiagnostic().getLineNum());
+                assertEquals(1, context.getDiagnosticList().size());
+            }
+            assertEquals(local.size(), client.compile(SOURCE, new CompilationContext()).size());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void testBadClientsDoNotStall() throws Exception
+    {
+        try (CompileDaemon daemon = new CompileDaemon(0, 1, 200))
+        {
+            daemon.start();
+            CompileClient client = new CompileClient(daemon.getPort());
+            // 只有一个工作线程, 先连上的客户端不发请求, 超时后断开, 后面的请求照常编译;
+            try (Socket idle = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort()))
+            {
+                assertEquals(2, client.compile(SOURCE, new CompilationContext()).size());
+                assertEquals(-1, idle.getInputStream().read());
+            }
+
+            // 谎报的长度直接断开, 不按它分配;
+            for (int length : new int[] {-1, Integer.MAX_VALUE})
+            {
+                try (Socket bad = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort()))
+                {
+                    DataOutputStream out = new DataOutputStream(bad.getOutputStream());
+                    out.writeInt(DaemonProtocol.MAGIC);
+                    out.writeByte(0);
+                    out.writeInt(length);
+                    out.flush();
+                    assertEquals(-1, bad.getInputStream().read());
+                }
+            }
+            assertEquals(2, client.compile(SOURCE, new CompilationContext()).size());
+        }
+    }
+
+    @Test
+    public void testWatcherSkipsUnchangedSource() throws Exception
+    {
+        Path dir = Files.createTempDirectory("cvac-watch");
+        Path source = dir.resolve("Main.cva");
+        Files.write(source, SOURCE.getBytes(StandardCharsets.UTF_8));
+        SourceWatcher watcher = new SourceWatcher(source,
+                new CompileOptions.Builder().putOutputDir(dir.toFile()).build());
+
+        assertTrue(watcher.recompile());
+        assertTrue(new File(dir.toFile(), "Application.class").isFile());
+        assertTrue(new File(dir.toFile(), "Sq.class").isFile());
+        assertFalse(watcher.recompile());
+
+        for (File file : dir.toFile().listFiles())
+        {
+            assertTrue(file.delete());
+        }
+        assertTrue(dir.toFile().delete());
+    }
+
+    /**
+     * 第一次是冷的, 之后在同一进程里是热的;
+     */
+    public static void main(String[] args) throws Exception
+    {
+        try (CompileDaemon daemon = new CompileDaemon(0, 1))
+        {
+            daemon.start();
+            CompileClient client = new CompileClient(daemon.getPort());
+            long start = System.nanoTime();
+            client.compile(SOURCE, new CompilationContext());
+            System.out.printf("cold: %8.2f ms%n", (System.nanoTime() - start) / 1e6);
+            CompileDaemon.warmUp(300);
+            int rounds = 1000;
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++)
+            {
+                client.compile(SOURCE, new CompilationContext());
+            }
+            System.out.printf("warm: %8.2f ms%n", (System.nanoTime() - start) / 1e6 / rounds);
+        }
+    }
+}
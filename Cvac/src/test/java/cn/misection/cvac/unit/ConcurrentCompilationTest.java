@@ -0,0 +1,137 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.CvaCompiler;
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.context.CompileException;
+import cn.misection.cvac.context.CompileOptions;
+import cn.misection.cvac.context.Diagnostic;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * CompilationContext Tester.
+ * 多个线程同时编译, 对的与错的混在一起, 错误只落在各自的上下文里, 进程不退出;
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class ConcurrentCompilationTest
+{
+    private static final int JOB_COUNT = 200;
+
+    private static final int THREAD_COUNT = 8;
+
+    @Test
+    public void testConcurrentCompilations() throws Exception
+    {
+        // 先串行编出每个正确程序的期望字节;
+        Map<Integer, Map<String, byte[]>> expectedMap = new HashMap<>();
+        for (int i = 0; i < JOB_COUNT; i++)
+        {
+            if (i % 4 < 2)
+            {
+                expectedMap.put(i, CvaCompiler.compile(source(i), new CompilationContext()));
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try
+        {
+            List<Future<CompilationContext>> futureList = new ArrayList<>();
+            Map<Integer, Map<String, byte[]>> actualMap = new ConcurrentHashMap<>();
+            CountDownLatch start = new CountDownLatch(1);
+            for (int i = 0; i < JOB_COUNT; i++)
+            {
+                int job = i;
+                futureList.add(executor.submit(() ->
+                {
+                    List<Diagnostic> sinkList = Collections.synchronizedList(new ArrayList<>());
+                    CompilationContext context = new CompilationContext(
+                            CompileOptions.defaults(), sinkList::add);
+                    start.await();
+                    try
+                    {
+                        actualMap.put(job, CvaCompiler.compile(source(job), context));
+                    }
+                    catch (CompileException e)
+                    {
+                        assertEquals(sinkList, context.getDiagnosticList());
+                    }
+                    return context;
+                }));
+            }
+            start.countDown();
+
+            for (int i = 0; i < JOB_COUNT; i++)
+            {
+                List<Diagnostic> diagnosticList = futureList.get(i).get(30, TimeUnit.SECONDS).getDiagnosticList();
+                switch (i % 4)
+                {
+                    case 2:
+                    {
+                        assertEquals(1, diagnosticList.size());
+                        assertTrue(diagnosticList.get(0).getMessage().contains("duplicated class"));
+                        break;
+                    }
+                    case 3:
+                    {
+                        // 第5行缺分号, 报在下一行的while上;
+                        assertEquals(1, diagnosticList.size());
+                        assertEquals(6, diagnosticList.get(0).getLineNum());
+                        break;
+                    }
+                    default:
+                    {
+                        assertTrue(diagnosticList.isEmpty());
+                        Map<String, byte[]> expected = expectedMap.get(i);
+                        Map<String, byte[]> actual = actualMap.get(i);
+                        assertEquals(expected.keySet(), actual.keySet());
+                        expected.forEach((name, bytes) -> assertArrayEquals(name, bytes, actual.get(name)));
+                        break;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 模4余0, 1的能编译, 余2的类重名, 余3的缺分号;
+     */
+    private static String source(int job)
+    {
+        String body = String.format("class W%d\n"
+                + "{\n"
+                + "    int run(int n)\n"
+                + "    {\n"
+                + "        int s = %d%s\n"
+                + "        while (0 < n)\n"
+                + "        {\n"
+                + "            if (n < %d)\n"
+                + "            {\n"
+                + "                s = s + n;\n"
+                + "            }\n"
+                + "            n -= 1;\n"
+                + "        }\n"
+                + "        return s;\n"
+                + "    }\n"
+                + "}\n", job, job, job % 4 == 3 ? "" : ";", job % 5);
+        String duplicate = job % 4 == 2
+                ? String.format("class W%d\n{\n}\n", job)
+                : "";
+        return body + duplicate
+                + "int main(string[] args)\n"
+                + "{\n"
+                + String.format("    println new W%d().run(10);\n", job)
+                + "    return 0;\n"
+                + "}\n";
+    }
+}
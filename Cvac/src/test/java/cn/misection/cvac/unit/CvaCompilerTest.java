@@ -0,0 +1,139 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.CvaCompiler;
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.context.CompileException;
+import cn.misection.cvac.context.CompileOptions;
+import cn.misection.cvac.context.Diagnostic;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * CvaCompiler Tester.
+ * 只走内存里的compile()与CvaClassLoader, 不碰文件;
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class CvaCompilerTest
+{
+    private static final String SOURCE = "class Adder\n"
+            + "{\n"
+            + "    int sum(int n)\n"
+            + "    {\n"
+            + "        int s = 0;\n"
+            + "        while (0 < n)\n"
+            + "        {\n"
+            + "            s = s + n;\n"
+            + "            n -= 1;\n"
+            + "        }\n"
+            + "        return s;\n"
+            + "    }\n"
+            + "}\n"
+            + "int main(string[] args)\n"
+            + "{\n"
+            + "    println new Adder().sum(100);\n"
+            + "    return 0;\n"
+            + "}\n";
+
+    @Test
+    public void testCompileAndRun() throws Exception
+    {
+        Map<String, byte[]> classFileMap = CvaCompiler.compile(SOURCE, CompileOptions.defaults());
+
+        assertEquals(Arrays.asList("Application", "Adder"), new ArrayList<>(classFileMap.keySet()));
+        assertEquals(String.format("5050%n"), CvaTestSupport.runMain(classFileMap));
+    }
+
+    /**
+     * 两个线程同时跑不同的程序, 各自只取到自己的输出;
+     */
+    @Test
+    public void testRunMainCapturesPerThread() throws Exception
+    {
+        Map<String, byte[]> adder = CvaCompiler.compile(SOURCE, CompileOptions.defaults());
+        Map<String, byte[]> other = CvaCompiler.compile(SOURCE.replace("sum(100)", "sum(10)"),
+                CompileOptions.defaults());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            List<Future<String>> futureList = new ArrayList<>();
+            for (int i = 0; i < 200; i++)
+            {
+                Map<String, byte[]> classFileMap = i % 2 == 0 ? adder : other;
+                futureList.add(executor.submit(() -> CvaTestSupport.runMain(classFileMap)));
+            }
+            for (int i = 0; i < futureList.size(); i++)
+            {
+                assertEquals(String.format(i % 2 == 0 ? "5050%n" : "55%n"), futureList.get(i).get());
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 最后一行是注释且没有换行, 与命令行读文件一样能编译;
+     */
+    @Test
+    public void testTrailingCommentWithoutNewLine() throws Exception
+    {
+        Map<String, byte[]> classFileMap = CvaCompiler.compile(SOURCE + "// done", CompileOptions.defaults());
+
+        assertEquals(String.format("5050%n"), CvaTestSupport.runMain(classFileMap));
+    }
+
+    @Test
+    public void testSemanticErrorsCollected()
+    {
+        String source = "int main(string[] args)\n"
+                + "{\n"
+                + "    println x;\n"
+                + "    println y;\n"
+                + "    return 0;\n"
+                + "}\n";
+        CompilationContext context = new CompilationContext(CompileOptions.defaults(), diagnostic -> {});
+        try
+        {
+            CvaCompiler.compile(source, context);
+            fail("undefined variables should not compile");
+        }
+        catch (CompileException e)
+        {
+            // 语义错误记下后继续检查, 两行都报到, 最后是终止的那条;
+            List<Diagnostic> diagnosticList = context.getDiagnosticList();
+            assertEquals(3, diagnosticList.get(0).getLineNum());
+            assertTrue(diagnosticList.stream().anyMatch(d -> d.getLineNum() == 4));
+            assertEquals(e.getDiagnostic(), diagnosticList.get(diagnosticList.size() - 1));
+        }
+    }
+
+    @Test
+    public void testOptimizeWarningsReported()
+    {
+        String source = SOURCE.replace("int s = 0;", "int s = 0;\n        int unused;");
+        List<Diagnostic> sinkList = new ArrayList<>();
+        CompilationContext context = new CompilationContext(
+                new CompileOptions.Builder().putOptimize(true).build(), sinkList::add);
+        CvaCompiler.compile(source, context);
+        // 优化遍的警告也进这次编译的诊断, 不打到宿主进程的标准输出;
+        assertEquals(1, sinkList.size());
+        assertEquals(6, sinkList.get(0).getLineNum());
+        assertTrue(sinkList.get(0).getMessage().contains("\"unused\""));
+        assertEquals(sinkList, context.getDiagnosticList());
+    }
+}
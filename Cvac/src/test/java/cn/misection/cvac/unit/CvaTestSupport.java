@@ -0,0 +1,149 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.CvaClassLoader;
+import cn.misection.cvac.CvaCompiler;
+import cn.misection.cvac.ast.program.AbstractProgram;
+import cn.misection.cvac.context.CompileOptions;
+import cn.misection.cvac.io.MappedBufferedHandler;
+import cn.misection.cvac.lexer.DfaLexer;
+import cn.misection.cvac.parser.Parser;
+import cn.misection.cvac.semantic.SemanticVisitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 各Tester共用的: 源码到ast, 以及在内存里跑生成的main并取回它的输出;
+ * 取输出不在每次运行时换掉System.out, 而是一次性装上按线程分发的流,
+ * 登记了缓冲的线程写进自己的缓冲, 其余线程照常写到原来的标准输出, 测试并行跑也互不串;
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public final class CvaTestSupport
+{
+    private static final ThreadLocal<ByteArrayOutputStream> CAPTURED = new ThreadLocal<>();
+
+    private CvaTestSupport() {}
+
+    /**
+     * 只做词法与语法;
+     */
+    public static AbstractProgram parse(String source)
+    {
+        char[] chars = MappedBufferedHandler.of(source).array();
+        return new Parser(new DfaLexer(chars).tokenize()).parse();
+    }
+
+    /**
+     * 再过语义检查, 表达式填上类型, 要求没有错误;
+     */
+    public static AbstractProgram check(String source)
+    {
+        AbstractProgram program = parse(source);
+        SemanticVisitor checker = new SemanticVisitor();
+        checker.visit(program);
+        assertTrue(checker.isOkay());
+        return program;
+    }
+
+    /**
+     * @return 按options编译后main的输出;
+     */
+    public static String run(String source, CompileOptions options) throws ReflectiveOperationException
+    {
+        return runMain(CvaCompiler.compile(source, options));
+    }
+
+    /**
+     * 在当前线程上跑入口类的main;
+     *
+     * @return main打到标准输出的内容;
+     */
+    public static String runMain(Map<String, byte[]> classFileMap) throws ReflectiveOperationException
+    {
+        CvaClassLoader loader = new CvaClassLoader(classFileMap);
+        return capture(loader::runMain);
+    }
+
+    /**
+     * 在当前线程上跑loader里入口类Application的main;
+     *
+     * @return main打到标准输出的内容;
+     */
+    public static String runMain(ClassLoader loader) throws ReflectiveOperationException
+    {
+        return capture(() -> loader.loadClass("Application")
+                .getMethod("main", String[].class)
+                .invoke(null, (Object) new String[0]));
+    }
+
+    private static String capture(MainRunner runner) throws ReflectiveOperationException
+    {
+        install();
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        CAPTURED.set(captured);
+        try
+        {
+            runner.run();
+        }
+        finally
+        {
+            CAPTURED.remove();
+        }
+        return captured.toString();
+    }
+
+    private static synchronized void install()
+    {
+        if (!(System.out instanceof DispatchingPrintStream))
+        {
+            System.setOut(new DispatchingPrintStream(System.out));
+        }
+    }
+
+    @FunctionalInterface
+    private interface MainRunner
+    {
+        void run() throws ReflectiveOperationException;
+    }
+
+    private static final class DispatchingPrintStream extends PrintStream
+    {
+        private DispatchingPrintStream(PrintStream original)
+        {
+            super(new OutputStream()
+            {
+                @Override
+                public void write(int b) throws IOException
+                {
+                    target().write(b);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException
+                {
+                    target().write(bytes, offset, length);
+                }
+
+                @Override
+                public void flush() throws IOException
+                {
+                    target().flush();
+                }
+
+                private OutputStream target()
+                {
+                    ByteArrayOutputStream captured = CAPTURED.get();
+                    return captured != null ? captured : original;
+                }
+            }, true);
+        }
+    }
+}
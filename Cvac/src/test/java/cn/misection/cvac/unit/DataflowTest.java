@@ -0,0 +1,214 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.ast.clas.CvaClass;
+import cn.misection.cvac.ast.method.CvaMethod;
+import cn.misection.cvac.ast.program.AbstractProgram;
+import cn.misection.cvac.ast.statement.CvaAssignStatement;
+import cn.misection.cvac.ast.statement.CvaBlockStatement;
+import cn.misection.cvac.ast.statement.CvaWhileForStatement;
+import cn.misection.cvac.dataflow.*;
+import cn.misection.cvac.optimize.DeadCodeDel;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Dataflow Tester.
+ * main()看局部变量很多时DeadCodeDel的耗时;
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class DataflowTest
+{
+    private static final String SOURCE = "class M\n"
+            + "{\n"
+            + "    int loop(int n)\n"
+            + "    {\n"
+            + "        int k = 0;\n"
+            + "        int dead = 3;\n"
+            + "        while (0 < n)\n"
+            + "        {\n"
+            + "            k = k + n;\n"
+            + "            n -= 1;\n"
+            + "        }\n"
+            + "        return k;\n"
+            + "    }\n"
+            + "    int merge(int n)\n"
+            + "    {\n"
+            + "        int x = 1;\n"
+            + "        if (n < 2)\n"
+            + "        {\n"
+            + "            x = 2;\n"
+            + "        }\n"
+            + "        return x + n;\n"
+            + "    }\n"
+            + "}\n"
+            + "int main(string[] args)\n"
+            + "{\n"
+            + "    println new M().loop(3);\n"
+            + "    return 0;\n"
+            + "}\n";
+
+    @Test
+    public void testLivenessAroundLoop()
+    {
+        CvaMethod loop = method(CvaTestSupport.check(SOURCE), 0);
+        ControlFlowGraph graph = ControlFlowGraph.of(loop);
+        LivenessAnalysis liveness = new LivenessAnalysis(graph);
+        int k = graph.varIndexOf("k");
+        int dead = graph.varIndexOf("dead");
+
+        // 循环语句本身不是节点, 它的条件才是;
+        assertEquals(-1, graph.nodeOf(loop.getStatementList().get(2)));
+        int header = graph.nodeOf(((CvaWhileForStatement) loop.getStatementList().get(2)).getCondition());
+        // k在下一轮与返回时都要读;
+        assertTrue(Bits.get(liveness.liveIn(graph.getNode(header).getBlock()), k));
+        assertFalse(liveness.isLiveAfter(graph.nodeOf(loop.getStatementList().get(1)), dead));
+        assertTrue(liveness.isLiveAfter(graph.nodeOf(loop.getStatementList().get(0)), k));
+        // 参数n在入口活跃, 字段与未声明的名字不编号;
+        assertTrue(Bits.get(liveness.liveIn(0), graph.varIndexOf("n")));
+        assertEquals(-1, graph.varIndexOf("M"));
+    }
+
+    @Test
+    public void testReachingDefinitionsMerge()
+    {
+        CvaMethod merge = method(CvaTestSupport.check(SOURCE), 1);
+        ControlFlowGraph graph = ControlFlowGraph.of(merge);
+        ReachingDefinitions reaching = new ReachingDefinitions(graph);
+        int ret = graph.nodeOf(merge.getRetExpr());
+
+        List<Integer> xDefs = reaching.defNodesOf(ret, graph.varIndexOf("x"));
+        assertEquals(2, xDefs.size());
+        assertEquals(Collections.singletonList(ReachingDefinitions.ENTRY),
+                reaching.defNodesOf(ret, graph.varIndexOf("n")));
+    }
+
+    @Test
+    public void testIntersectionMeet()
+    {
+        // 菱形: 0 -> 1, 0 -> 2, 1 -> 3, 2 -> 3, 只在一边生成的位在汇合处不成立;
+        EdgeListGraph diamond = new EdgeListGraph(new int[][] {{1, 2}, {3}, {3}, {}});
+        DataflowResult result = DataflowSolver.solve(diamond, new GenKillProblem()
+        {
+            @Override
+            public EnumFlowDirection direction()
+            {
+                return EnumFlowDirection.FORWARD;
+            }
+
+            @Override
+            public EnumMeet meet()
+            {
+                return EnumMeet.INTERSECTION;
+            }
+
+            @Override
+            public int bitCount()
+            {
+                return 70;
+            }
+
+            @Override
+            public void transfer(int block, long[] gen, long[] kill)
+            {
+                Bits.set(gen, block == 1 ? 1 : 69);
+            }
+        });
+        assertFalse(Bits.get(result.in(3), 1));
+        assertTrue(Bits.get(result.in(3), 69));
+        assertEquals(1, Bits.count(result.in(3)));
+    }
+
+    @Test
+    public void testDeadStoreRemovedLoopStoreKept()
+    {
+        AbstractProgram program = CvaTestSupport.check(SOURCE);
+        CvaMethod loop = method(program, 0);
+        new DeadCodeDel().optimize((CvaClass) program.getClassList().get(0), loop);
+
+        // 只删了dead = 3, k = 0 下一轮还要读;
+        assertEquals(2, loop.getStatementList().size());
+        assertEquals("k", ((CvaAssignStatement) loop.getStatementList().get(0)).getVarName());
+        CvaWhileForStatement whileStm = (CvaWhileForStatement) loop.getStatementList().get(1);
+        assertEquals(2, ((CvaBlockStatement) whileStm.getBody()).getStatementList().size());
+    }
+
+    private static CvaMethod method(AbstractProgram program, int index)
+    {
+        return (CvaMethod) ((CvaClass) program.getClassList().get(0)).getMethodList().get(index);
+    }
+
+    /**
+     * @param args [最少局部变量数, 最多局部变量数];
+     */
+    public static void main(String[] args)
+    {
+        int from = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int to = args.length > 1 ? Integer.parseInt(args[1]) : 800;
+        // 先热身;
+        time(to);
+        for (int count = from; count <= to; count *= 2)
+        {
+            System.out.printf("%5d locals: DeadCodeDel %9.3f ms%n", count, time(count) / 1e6);
+        }
+    }
+
+    /**
+     * @return 一次DeadCodeDel的最短耗时, 不含解析;
+     */
+    private static long time(int count)
+    {
+        String source = manyLocals(count);
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 20; round++)
+        {
+            AbstractProgram program = CvaTestSupport.check(source);
+            CvaClass cvaClass = (CvaClass) program.getClassList().get(0);
+            CvaMethod method = (CvaMethod) cvaClass.getMethodList().get(0);
+            long start = System.nanoTime();
+            new DeadCodeDel().optimize(cvaClass, method);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    /**
+     * count个局部变量, 两层循环里每个变量读下一个变量;
+     */
+    private static String manyLocals(int count)
+    {
+        StringBuilder builder = new StringBuilder("class Many\n{\n    int m(int n)\n    {\n");
+        for (int i = 0; i < count; i++)
+        {
+            builder.append(String.format("        int v%d = %d;\n", i, i));
+        }
+        builder.append("        int j = 0;\n"
+                + "        while (0 < n)\n"
+                + "        {\n"
+                + "            j = n;\n"
+                + "            while (0 < j)\n"
+                + "            {\n");
+        for (int i = 0; i < count; i++)
+        {
+            builder.append(String.format("                v%d = v%d + 1;\n", i, (i + 1) % count));
+        }
+        return builder.append("                j -= 1;\n"
+                + "            }\n"
+                + "            n -= 1;\n"
+                + "        }\n"
+                + "        return v0;\n"
+                + "    }\n"
+                + "}\n"
+                + "int main(string[] args)\n"
+                + "{\n"
+                + "    println new Many().m(1);\n"
+                + "    return 0;\n"
+                + "}\n").toString();
+    }
+}
@@ -0,0 +1,216 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.CvaCompiler;
+import cn.misection.cvac.ast.clas.AbstractCvaClass;
+import cn.misection.cvac.ast.clas.CvaClass;
+import cn.misection.cvac.ast.method.AbstractMethod;
+import cn.misection.cvac.ast.method.CvaMethod;
+import cn.misection.cvac.ast.program.AbstractProgram;
+import cn.misection.cvac.codegen.SsaTranslator;
+import cn.misection.cvac.codegen.TranslatorVisitor;
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.context.CompileOptions;
+import cn.misection.cvac.dataflow.ControlFlowGraph;
+import cn.misection.cvac.dataflow.LivenessAnalysis;
+import cn.misection.cvac.optimize.EnumOptimizePass;
+import cn.misection.cvac.optimize.Optimizer;
+import cn.misection.cvac.ssa.SsaBuilder;
+import cn.misection.cvac.ssa.SsaFunction;
+import cn.misection.cvac.ssa.SsaPrinter;
+import cn.misection.cvac.ssa.SsaVerifier;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 深嵌套伸缩测试, 在256KB的小栈上跑parser, semantic, 活跃变量, SSA, 每一个优化遍,
+ * 整个优化器与两种translator, 再整体走一遍-o与-o -ssa;
+ * 任一处按嵌套层数递归而没有经StackSegment分段都会StackOverflowError;
+ * 新加的优化遍只要登记在EnumOptimizePass里就自动被覆盖;
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class DeepNestingTest
+{
+    private static final int DEPTH = 100_000;
+
+    /**
+     * 整个编译要生成class, 方法体不能过64KB;
+     */
+    private static final int CLASS_FILE_DEPTH = 8_000;
+
+    /**
+     * 比常见的1MB默认栈小得多, 遍历的层数预算不能依赖调用方线程的栈大小;
+     */
+    private static final long SMALL_STACK = 256L << 10;
+
+    @Test
+    public void testDeepParen()
+    {
+        StringBuilder expr = new StringBuilder();
+        repeat(expr, "(", DEPTH);
+        expr.append('1');
+        repeat(expr, ")", DEPTH);
+        compileOnSmallStack(wrap("int r = " + expr + ";\n"));
+    }
+
+    /**
+     * 叶子是参数, 折不成常量, 优化遍看到的是整棵深树;
+     */
+    @Test
+    public void testDeepParenSum()
+    {
+        StringBuilder expr = new StringBuilder();
+        repeat(expr, "(n + ", DEPTH);
+        expr.append('1');
+        repeat(expr, ")", DEPTH);
+        compileOnSmallStack(wrap("int r = " + expr + ";\nprintln r;\n"));
+    }
+
+    @Test
+    public void testLongSum()
+    {
+        StringBuilder expr = new StringBuilder("1");
+        repeat(expr, " + 1", DEPTH);
+        compileOnSmallStack(wrap("int r = " + expr + ";\n"));
+    }
+
+    @Test
+    public void testElseIfChain()
+    {
+        StringBuilder body = new StringBuilder("int r = 0;\n");
+        for (int i = 0; i < DEPTH; i++)
+        {
+            body.append(i == 0 ? "if (r < " : "else if (r < ").append(i).append(") { r = 1; }\n");
+        }
+        body.append("else { r = 2; }\n");
+        compileOnSmallStack(wrap(body.toString()));
+    }
+
+    @Test
+    public void testNestedBlock()
+    {
+        StringBuilder body = new StringBuilder("int r = 0;\n");
+        repeat(body, "{", DEPTH);
+        body.append("r = 1;");
+        repeat(body, "}", DEPTH);
+        compileOnSmallStack(wrap(body.toString()));
+    }
+
+    @Test
+    public void testOptimizedDeepSum()
+    {
+        StringBuilder expr = new StringBuilder();
+        repeat(expr, "(n + ", CLASS_FILE_DEPTH);
+        expr.append('1');
+        repeat(expr, ")", CLASS_FILE_DEPTH);
+        String source = wrap("int r = " + expr + ";\nprintln r;\n");
+        onSmallStack(() ->
+        {
+            assertNotNull(CvaCompiler.compile(source,
+                    new CompileOptions.Builder().putOptimize(true).build()).get("Deep"));
+            assertNotNull(CvaCompiler.compile(source,
+                    new CompileOptions.Builder().putOptimize(true).putSsa(true).build()).get("Deep"));
+        });
+    }
+
+    private static void repeat(StringBuilder builder, String part, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            builder.append(part);
+        }
+    }
+
+    private static String wrap(String body)
+    {
+        return "class Deep\n{\n    int run(int n)\n    {\n"
+                + body
+                + "        return 0;\n    }\n}\n"
+                + "int main(string[] args)\n{\n    println new Deep().run(1);\n    return 0;\n}\n";
+    }
+
+    private static void compileOnSmallStack(String source)
+    {
+        onSmallStack(() ->
+        {
+            AbstractProgram program = CvaTestSupport.check(source);
+            for (AbstractCvaClass cvaClass : program.getClassList())
+            {
+                for (AbstractMethod method : cvaClass.getMethodList())
+                {
+                    ControlFlowGraph graph = ControlFlowGraph.of(method);
+                    new LivenessAnalysis(graph);
+                    SsaFunction function = SsaBuilder.build(cvaClass.name(), method);
+                    assertTrue(SsaVerifier.check(function).isEmpty());
+                    assertFalse(SsaPrinter.print(function).isEmpty());
+                }
+            }
+            translate(program);
+        });
+        // 每一遍各用一棵新树, 免得前一遍把深树折平了;
+        for (EnumOptimizePass pass : EnumOptimizePass.values())
+        {
+            onSmallStack(() ->
+            {
+                AbstractProgram program = CvaTestSupport.check(source);
+                for (AbstractCvaClass cvaClass : program.getClassList())
+                {
+                    for (AbstractMethod method : cvaClass.getMethodList())
+                    {
+                        pass.newPass(new CompilationContext()).optimize((CvaClass) cvaClass, (CvaMethod) method);
+                    }
+                }
+            });
+        }
+        onSmallStack(() ->
+        {
+            AbstractProgram program = CvaTestSupport.check(source);
+            new Optimizer(new CompilationContext()).optimize(program);
+            translate(program);
+        });
+    }
+
+    private static void translate(AbstractProgram program)
+    {
+        TranslatorVisitor translator = new TranslatorVisitor();
+        translator.visit(program);
+        assertNotNull(translator.getTargetProgram());
+        SsaTranslator ssaTranslator = new SsaTranslator(new CompilationContext());
+        program.getClassList().forEach(ssaTranslator::translate);
+        ssaTranslator.translate(program.getEntryClass());
+    }
+
+    private static void onSmallStack(Runnable stage)
+    {
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(null, () ->
+        {
+            try
+            {
+                stage.run();
+            }
+            catch (Throwable t)
+            {
+                failure[0] = t;
+            }
+        }, "deep-nesting", SMALL_STACK);
+        thread.start();
+        try
+        {
+            thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            throw new AssertionError(e);
+        }
+        if (failure[0] != null)
+        {
+            throw new AssertionError(failure[0]);
+        }
+    }
+}
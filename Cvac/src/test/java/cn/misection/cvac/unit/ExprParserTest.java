@@ -0,0 +1,49 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.context.CompileOptions;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Parser表达式部分 Tester.
+ * 优先级爬升共用一组栈, 实参里的表达式接着压在上面, 结果要与各自单独解析时相同;
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class ExprParserTest
+{
+    @Test
+    public void testPrecedenceAndNesting() throws Exception
+    {
+        String source = "class Calc\n"
+                + "{\n"
+                + "    int twice(int n)\n"
+                + "    {\n"
+                + "        return n + n;\n"
+                + "    }\n"
+                + "}\n"
+                + "int main(string[] args)\n"
+                + "{\n"
+                + "    int a = 5;\n"
+                + "    println a;\n"
+                + "    println 1 + 2 * 3 - (4 - 1);\n"
+                + "    println 20 - 5 - 3;\n"
+                + "    println 2 + new Calc().twice(3 * (a - 1)) - 1;\n"
+                + "    println 0 + (1 + 2) * ((3 + 4));\n"
+                + "    if (!(3 < 2) && 1 < a)\n"
+                + "    {\n"
+                + "        println 1;\n"
+                + "    }\n"
+                + "    else\n"
+                + "    {\n"
+                + "        println 0;\n"
+                + "    }\n"
+                + "    return 0;\n"
+                + "}\n";
+
+        assertEquals(String.format("5%n4%n12%n25%n21%n1%n"), CvaTestSupport.run(source, CompileOptions.defaults()));
+    }
+}
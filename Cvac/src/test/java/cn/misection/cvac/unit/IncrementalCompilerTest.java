@@ -0,0 +1,238 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.CvaCompiler;
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.context.CompileOptions;
+import cn.misection.cvac.incremental.IncrementalCompiler;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * IncrementalCompiler Tester.
+ * main()对比多类程序改一个方法体后全量与增量的编译耗时;
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class IncrementalCompilerTest
+{
+    private static final String SOURCE = "class Box\n"
+            + "{\n"
+            + "    int get(int n)\n"
+            + "    {\n"
+            + "        return n + 1;\n"
+            + "    }\n"
+            + "}\n"
+            + "class User\n"
+            + "{\n"
+            + "    int use(int n)\n"
+            + "    {\n"
+            + "        return new Box().get(n);\n"
+            + "    }\n"
+            + "}\n"
+            + "class Alone\n"
+            + "{\n"
+            + "    int id(int n)\n"
+            + "    {\n"
+            + "        return n;\n"
+            + "    }\n"
+            + "}\n"
+            + "int main(string[] args)\n"
+            + "{\n"
+            + "    println new User().use(41);\n"
+            + "    return 0;\n"
+            + "}\n";
+
+    @Test
+    public void testRebuildOnlyChangedClasses() throws Exception
+    {
+        File cacheDir = Files.createTempDirectory("cvac-cache").toFile();
+        IncrementalCompiler compiler = new IncrementalCompiler(cacheDir);
+
+        assertSameAsFull(SOURCE, compiler);
+        assertEquals(Arrays.asList("Application", "Box", "User", "Alone"), compiler.getChangedList());
+
+        // 只改空白, 什么都不用做;
+        assertSameAsFull(SOURCE.replace("    ", "  "), compiler);
+        assertTrue(compiler.getChangedList().isEmpty());
+
+        // 方法体变了, 签名没变, 只有Box重编;
+        String bodyEdit = SOURCE.replace("n + 1", "n + 2");
+        assertSameAsFull(bodyEdit, compiler);
+        assertEquals(Collections.singletonList("Box"), compiler.getChangedList());
+
+        // 签名变了, 用到Box的User跟着重编, Alone不动;
+        String signatureEdit = bodyEdit.replace("    int get(int n)\n", "    int get(int n, int m)\n")
+                .replace("new Box().get(n)", "new Box().get(n, n)");
+        assertSameAsFull(signatureEdit, compiler);
+        assertEquals(Arrays.asList("Box", "User"), compiler.getChangedList());
+
+        // 新实例从缓存文件读入, 删掉的类不再出现;
+        IncrementalCompiler reloaded = new IncrementalCompiler(cacheDir);
+        String removeAlone = signatureEdit.replaceAll("(?s)class Alone.*?\n}\n", "");
+        assertFalse(removeAlone.contains("Alone"));
+        assertSameAsFull(removeAlone, reloaded);
+        assertTrue(reloaded.getChangedList().isEmpty());
+
+        for (File file : cacheDir.listFiles())
+        {
+            assertTrue(file.delete());
+        }
+        assertTrue(cacheDir.delete());
+    }
+
+    /**
+     * 开着优化时只优化变了的类, 结果仍与全量编译相同;
+     */
+    @Test
+    public void testOptimizeOnlyChangedClasses() throws Exception
+    {
+        CompileOptions options = new CompileOptions.Builder().putOptimize(true).build();
+        File cacheDir = Files.createTempDirectory("cvac-cache").toFile();
+        IncrementalCompiler compiler = new IncrementalCompiler(cacheDir);
+
+        assertSameAsFull(SOURCE, compiler, options);
+        String bodyEdit = SOURCE.replace("n + 1", "n + 2");
+        assertSameAsFull(bodyEdit, compiler, options);
+        assertEquals(Collections.singletonList("Box"), compiler.getChangedList());
+
+        for (File file : cacheDir.listFiles())
+        {
+            assertTrue(file.delete());
+        }
+        assertTrue(cacheDir.delete());
+    }
+
+    /**
+     * 最后一行是注释且没有换行, 与全量编译一样能编译;
+     */
+    @Test
+    public void testTrailingCommentWithoutNewLine() throws Exception
+    {
+        File cacheDir = Files.createTempDirectory("cvac-cache").toFile();
+        IncrementalCompiler compiler = new IncrementalCompiler(cacheDir);
+
+        assertSameAsFull(SOURCE + "// done", compiler);
+
+        for (File file : cacheDir.listFiles())
+        {
+            assertTrue(file.delete());
+        }
+        assertTrue(cacheDir.delete());
+    }
+
+    /**
+     * 缓存文件坏了, 给出的字节数远超文件大小, 当作全变了, 不先分配那么大的数组;
+     */
+    @Test
+    public void testCorruptCacheLength() throws Exception
+    {
+        File cacheDir = Files.createTempDirectory("cvac-cache").toFile();
+        File cacheFile = new File(cacheDir, "classes.cache");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(cacheFile)))
+        {
+            // MAGIC, 一项, 类名, 指纹, 然后是坏长度;
+            out.writeInt(0x43564331);
+            out.writeInt(1);
+            out.writeUTF("Box");
+            out.writeUTF("key");
+            out.writeInt(Integer.MAX_VALUE - 8);
+        }
+        IncrementalCompiler compiler = new IncrementalCompiler(cacheDir);
+
+        assertSameAsFull(SOURCE, compiler);
+        assertEquals(Arrays.asList("Application", "Box", "User", "Alone"), compiler.getChangedList());
+
+        for (File file : cacheDir.listFiles())
+        {
+            assertTrue(file.delete());
+        }
+        assertTrue(cacheDir.delete());
+    }
+
+    private static void assertSameAsFull(String source, IncrementalCompiler compiler)
+    {
+        assertSameAsFull(source, compiler, CompileOptions.defaults());
+    }
+
+    private static void assertSameAsFull(String source, IncrementalCompiler compiler, CompileOptions options)
+    {
+        Map<String, byte[]> expected = CvaCompiler.compile(source, options);
+        Map<String, byte[]> actual = compiler.compile(source, new CompilationContext(options, diagnostic -> {}));
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        expected.forEach((name, bytes) -> assertArrayEquals(name, bytes, actual.get(name)));
+    }
+
+    /**
+     * @param args [类数, 轮数], 开着ast优化;
+     */
+    public static void main(String[] args) throws Exception
+    {
+        int classCount = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        CompileOptions options = new CompileOptions.Builder().putOptimize(true).build();
+        File cacheDir = Files.createTempDirectory("cvac-cache").toFile();
+        IncrementalCompiler compiler = new IncrementalCompiler(cacheDir);
+        long full = Long.MAX_VALUE;
+        long incremental = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++)
+        {
+            // 每轮改最后一个类的方法体;
+            String source = manyClasses(classCount, i);
+            long start = System.nanoTime();
+            CvaCompiler.compile(source, options);
+            full = Math.min(full, System.nanoTime() - start);
+            start = System.nanoTime();
+            compiler.compile(source, new CompilationContext(options, diagnostic -> {}));
+            if (i > 0)
+            {
+                incremental = Math.min(incremental, System.nanoTime() - start);
+            }
+        }
+        System.out.printf("full:        %8.2f ms%n", full / 1e6);
+        System.out.printf("incremental: %8.2f ms (%d changed)%n",
+                incremental / 1e6, compiler.getChangedList().size());
+        for (File file : cacheDir.listFiles())
+        {
+            file.delete();
+        }
+        cacheDir.delete();
+    }
+
+    private static String manyClasses(int count, int edit)
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++)
+        {
+            builder.append(String.format("class C%d\n"
+                    + "{\n"
+                    + "    int run(int n)\n"
+                    + "    {\n"
+                    + "        int s = 0;\n"
+                    + "        while (0 < n)\n"
+                    + "        {\n"
+                    + "            if (n < %d)\n"
+                    + "            {\n"
+                    + "                s = s + n * %d;\n"
+                    + "            }\n"
+                    + "            n -= 1;\n"
+                    + "        }\n"
+                    + "        return s;\n"
+                    + "    }\n"
+                    + "}\n", i, i % 7, i == count - 1 ? edit : i));
+        }
+        return builder.append("int main(string[] args)\n"
+                + "{\n"
+                + "    println new C0().run(10);\n"
+                + "    return 0;\n"
+                + "}\n").toString();
+    }
+}
@@ -0,0 +1,79 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.codegen.LocalSlotAllocator;
+import cn.misection.cvac.codegen.bst.Label;
+import cn.misection.cvac.codegen.bst.instructor.*;
+import cn.misection.cvac.constant.EnumIncDirection;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * LocalSlotAllocator Tester.
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class LocalSlotAllocatorTest
+{
+    @Test
+    public void testDisjointLifetimesShareSlot()
+    {
+        ILoad loadA = new ILoad(2);
+        ILoad loadB = new ILoad(3);
+        // a = 1; b = a; return b; a与b不同时活跃;
+        List<IInstructor> instrList = new ArrayList<>(Arrays.asList(
+                new Ldc<>(1),
+                new IStore(2),
+                loadA,
+                new IStore(3),
+                loadB,
+                EnumInstructor.I_RETURN));
+
+        int slotCount = new LocalSlotAllocator().allocate(instrList, 2);
+
+        assertEquals(3, slotCount);
+        assertEquals(2, loadA.getIndex());
+        assertEquals(2, loadB.getIndex());
+    }
+
+    @Test
+    public void testLoopKeepsLiveSlotsApart()
+    {
+        Label body = new Label(0);
+        Label cond = new Label(1);
+        ILoad loadI = new ILoad(1);
+        ILoad loadK = new ILoad(2);
+        List<IInstructor> instrList = new ArrayList<>(Arrays.asList(
+                new Ldc<>(0),
+                new IStore(1),
+                new Ldc<>(0),
+                new IStore(2),
+                new Goto(cond),
+                new LabelJ(body),
+                loadK,
+                new ILoad(1),
+                EnumOperandType.INT,
+                EnumOperator.ADD,
+                new IStore(2),
+                new IInc(1, EnumIncDirection.INCREMENT),
+                new LabelJ(cond),
+                loadI,
+                new Ldc<>(10),
+                new IfJump(EnumCondition.I_CMP_LT, body),
+                new ILoad(2),
+                EnumInstructor.I_RETURN));
+
+        // i与k都跨过回边活跃;
+        int slotCount = new LocalSlotAllocator().allocate(instrList, 1);
+
+        assertEquals(3, slotCount);
+        assertNotEquals(loadI.getIndex(), loadK.getIndex());
+    }
+}
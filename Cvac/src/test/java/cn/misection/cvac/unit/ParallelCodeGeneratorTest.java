@@ -0,0 +1,117 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.ast.program.AbstractProgram;
+import cn.misection.cvac.codegen.ClassFileGenerator;
+import cn.misection.cvac.codegen.ParallelCodeGenerator;
+import cn.misection.cvac.codegen.TranslatorVisitor;
+import cn.misection.cvac.codegen.peephole.PeepholeOptimizer;
+import cn.misection.cvac.context.CompilationContext;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ParallelCodeGenerator Tester.
+ * main()按不同并行度生成同一个多类程序并计时;
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class ParallelCodeGeneratorTest
+{
+    @Test
+    public void testSameAsSequential()
+    {
+        String source = manyClasses(40);
+        TranslatorVisitor translator = new TranslatorVisitor();
+        translator.visit(CvaTestSupport.check(source));
+        PeepholeOptimizer sequentialOptimizer = new PeepholeOptimizer();
+        sequentialOptimizer.optimize(translator.getTargetProgram());
+        ClassFileGenerator generator = new ClassFileGenerator();
+        generator.visit(translator.getTargetProgram());
+        Map<String, byte[]> expectedMap = generator.getClassFileMap();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            PeepholeOptimizer parallelOptimizer = new PeepholeOptimizer();
+            Map<String, byte[]> actualMap = new ParallelCodeGenerator(new CompilationContext(), pool, parallelOptimizer)
+                    .generate(CvaTestSupport.check(source));
+
+            // 入口类在前, 其余按源码顺序;
+            assertEquals(new ArrayList<>(expectedMap.keySet()), new ArrayList<>(actualMap.keySet()));
+            expectedMap.forEach((name, bytes) -> assertArrayEquals(name, bytes, actualMap.get(name)));
+            assertEquals(sequentialOptimizer.getHitCountMap(), parallelOptimizer.getHitCountMap());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @param args [类数, 轮数];
+     */
+    public static void main(String[] args)
+    {
+        int classCount = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String source = manyClasses(classCount);
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int parallelism = 1; parallelism <= cores; parallelism *= 2)
+        {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < rounds; i++)
+            {
+                AbstractProgram program = CvaTestSupport.check(source);
+                long start = System.nanoTime();
+                new ParallelCodeGenerator(new CompilationContext(), pool, new PeepholeOptimizer()).generate(program);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            pool.shutdown();
+            System.out.printf("parallelism %2d: %6.1f ms%n", parallelism, best / 1e6);
+        }
+    }
+
+    private static String manyClasses(int count)
+    {
+        List<String> classList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            classList.add(String.format("class C%d\n"
+                    + "{\n"
+                    + "    int run(int n)\n"
+                    + "    {\n"
+                    + "        int i = 0;\n"
+                    + "        int s = 0;\n"
+                    + "        for (i = 0; i < n; i++)\n"
+                    + "        {\n"
+                    + "            if (i < %d)\n"
+                    + "            {\n"
+                    + "                s = s + i * %d;\n"
+                    + "            }\n"
+                    + "        }\n"
+                    + "        while (0 < s && !(s < 3))\n"
+                    + "        {\n"
+                    + "            s -= 3;\n"
+                    + "        }\n"
+                    + "        return s;\n"
+                    + "    }\n"
+                    + "}\n", i, i % 7, i));
+        }
+        return String.join("", classList)
+                + "int main(string[] args)\n"
+                + "{\n"
+                + "    println new C0().run(10);\n"
+                + "    return 0;\n"
+                + "}\n";
+    }
+}
@@ -0,0 +1,206 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.ast.program.AbstractProgram;
+import cn.misection.cvac.codegen.ParallelCodeGenerator;
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.context.CompileOptions;
+import cn.misection.cvac.context.Diagnostic;
+import cn.misection.cvac.optimize.EnumOptimizePass;
+import cn.misection.cvac.optimize.PassManager;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * PassManager Tester.
+ * main()看方法数翻倍时优化耗时是否也只翻倍, 以及合并遍历前后的耗时;
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class PassManagerTest
+{
+    private static final String SOURCE = "class M\n"
+            + "{\n"
+            + "    int id(int unused, int n)\n"
+            + "    {\n"
+            + "        return n;\n"
+            + "    }\n"
+            + "    int fold()\n"
+            + "    {\n"
+            + "        int a = 2;\n"
+            + "        int b = a * 3;\n"
+            + "        return b + 1;\n"
+            + "    }\n"
+            + "    int loop(int n)\n"
+            + "    {\n"
+            + "        int i = 0;\n"
+            + "        int k = 0;\n"
+            + "        for (i = 0; i < n; i++)\n"
+            + "        {\n"
+            + "            k = k + i * i;\n"
+            + "        }\n"
+            + "        i = 5;\n"
+            + "        i %= 4;\n"
+            + "        return k + i;\n"
+            + "    }\n"
+            + "}\n"
+            + "int main(string[] args)\n"
+            + "{\n"
+            + "    println new M().id(1, 7);\n"
+            + "    println new M().fold();\n"
+            + "    println new M().loop(5);\n"
+            + "    return 0;\n"
+            + "}\n";
+
+    @Test
+    public void testEveryMethodConverges()
+    {
+        PassManager passManager = new PassManager(new CompilationContext());
+        passManager.optimize(CvaTestSupport.check(SOURCE));
+
+        assertTrue(passManager.getExhaustedMethodList().isEmpty());
+        // 每个方法每遍至少跑一次, 只有改了的方法才重跑;
+        for (EnumOptimizePass pass : EnumOptimizePass.values())
+        {
+            assertTrue(pass.name(), passManager.getRunCountMap().get(pass) >= 3);
+        }
+        assertTrue(passManager.getChangeCountMap().get(EnumOptimizePass.CONSTANT_FOLDER) > 0);
+    }
+
+    @Test
+    public void testBudgetStopsEarly()
+    {
+        PassManager passManager = new PassManager(new CompilationContext(), 1, true);
+        passManager.optimize(CvaTestSupport.check(SOURCE));
+
+        // fold()一轮折不完;
+        assertTrue(passManager.getExhaustedMethodList().contains("M.fold"));
+    }
+
+    @Test
+    public void testFusedSameAsSeparate()
+    {
+        AbstractProgram fused = CvaTestSupport.check(SOURCE);
+        new PassManager(new CompilationContext(), 16, true).optimize(fused);
+        AbstractProgram separate = CvaTestSupport.check(SOURCE);
+        new PassManager(new CompilationContext(), 16, false).optimize(separate);
+
+        Map<String, byte[]> expected = generate(separate);
+        Map<String, byte[]> actual = generate(fused);
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((name, bytes) -> assertArrayEquals(name, bytes, actual.get(name)));
+    }
+
+    @Test
+    public void testUnendLoopWarnedOnce()
+    {
+        String source = SOURCE.replace("    int loop(int n)\n", "    int spin(int n)\n"
+                + "    {\n"
+                + "        int a = 2;\n"
+                + "        int b = a * 3;\n"
+                + "        while (0 < 1)\n"
+                + "        {\n"
+                + "            n = n + b;\n"
+                + "        }\n"
+                + "        return n;\n"
+                + "    }\n"
+                + "    int loop(int n)\n");
+        List<Diagnostic> sinkList = new ArrayList<>();
+        PassManager passManager = new PassManager(new CompilationContext(CompileOptions.defaults(), sinkList::add));
+        passManager.optimize(CvaTestSupport.check(source));
+
+        // spin()上各遍重跑了好几轮, 警告还是只有一条;
+        assertTrue(passManager.getRunCountMap().get(EnumOptimizePass.UN_REACHABLE_DEL) > 4);
+        assertEquals(1, sinkList.stream().filter(d -> d.getMessage().contains("unend-loop")).count());
+    }
+
+    @Test
+    public void testOptimizedRunsTheSame() throws Exception
+    {
+        assertEquals(CvaTestSupport.run(SOURCE, CompileOptions.defaults()),
+                CvaTestSupport.run(SOURCE, new CompileOptions.Builder().putOptimize(true).build()));
+    }
+
+    private static Map<String, byte[]> generate(AbstractProgram program)
+    {
+        return new ParallelCodeGenerator(new CompilationContext(), ForkJoinPool.commonPool(), null)
+                .generate(program);
+    }
+
+    /**
+     * @param args [最少方法数, 最多方法数];
+     */
+    public static void main(String[] args)
+    {
+        int from = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int to = args.length > 1 ? Integer.parseInt(args[1]) : 1600;
+        // 先热身, 不然前几个规模量的是解释执行;
+        time(to);
+        for (int count = from; count <= to; count *= 2)
+        {
+            long[] best = time(count);
+            System.out.printf("%6d methods: fused %8.2f ms, separate %8.2f ms%n",
+                    count, best[0] / 1e6, best[1] / 1e6);
+        }
+    }
+
+    /**
+     * 两种交替着跑, GC与抖动对两边一样;
+     *
+     * @return [合并遍历的最短耗时, 分开遍历的最短耗时];
+     */
+    private static long[] time(int count)
+    {
+        String source = manyMethods(count);
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE};
+        for (int round = 0; round < 40; round++)
+        {
+            boolean fusing = round % 2 == 0;
+            AbstractProgram program = CvaTestSupport.check(source);
+            long start = System.nanoTime();
+            new PassManager(new CompilationContext(), 16, fusing).optimize(program);
+            int i = fusing ? 0 : 1;
+            best[i] = Math.min(best[i], System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static String manyMethods(int count)
+    {
+        StringBuilder builder = new StringBuilder("class Many\n{\n");
+        for (int i = 0; i < count; i++)
+        {
+            builder.append(String.format("    int m%d(int n)\n"
+                    + "    {\n"
+                    + "        int a = %d;\n"
+                    + "        int b = a * 3 + n;\n"
+                    + "        while (0 < n)\n"
+                    + "        {\n"
+                    + "            if (n < 3 && 0 < a)\n"
+                    + "            {\n"
+                    + "                b = b + (n + 1) * (n - 2);\n"
+                    + "            }\n"
+                    + "            else\n"
+                    + "            {\n"
+                    + "                b = b + a * (2 + 3);\n"
+                    + "            }\n"
+                    + "            n -= 1;\n"
+                    + "        }\n"
+                    + "        return b;\n"
+                    + "    }\n", i, i));
+        }
+        return builder.append("}\n"
+                + "int main(string[] args)\n"
+                + "{\n"
+                + "    println new Many().m0(2);\n"
+                + "    return 0;\n"
+                + "}\n").toString();
+    }
+}
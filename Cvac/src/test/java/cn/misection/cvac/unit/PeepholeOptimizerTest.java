@@ -0,0 +1,142 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.ast.program.AbstractProgram;
+import cn.misection.cvac.codegen.ClassFileGenerator;
+import cn.misection.cvac.codegen.TranslatorVisitor;
+import cn.misection.cvac.codegen.bst.Label;
+import cn.misection.cvac.codegen.bst.instructor.*;
+import cn.misection.cvac.codegen.bst.instructor.write.EnumWriteMode;
+import cn.misection.cvac.codegen.bst.btype.basic.EnumTargetType;
+import cn.misection.cvac.codegen.peephole.PeepholeOptimizer;
+import cn.misection.cvac.codegen.peephole.PeepholeRules;
+import cn.misection.cvac.semantic.SemanticVisitor;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PeepholeOptimizer Tester.
+ * main()报告给定程序优化前后的class字节数与各规则命中次数;
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class PeepholeOptimizerTest
+{
+    @Test
+    public void testRules()
+    {
+        Label next = new Label(0);
+        Label target = new Label(1);
+        List<IInstructor> instrList = new ArrayList<>(Arrays.asList(
+                new Ldc<>(5),
+                new IStore(1),
+                new ILoad(1),
+                new Ldc<>(0),
+                new IfJump(EnumCondition.I_CMP_GT, target),
+                new Goto(next),
+                new LabelJ(next),
+                new ILoad(1),
+                new WriteInstructor(EnumWriteMode.PRINT_LINE, EnumTargetType.INT),
+                new LabelJ(target)));
+
+        PeepholeOptimizer optimizer = new PeepholeOptimizer();
+        List<IInstructor> resultList = optimizer.optimize(instrList);
+
+        assertEquals(9, resultList.size());
+        assertSame(EnumInstructor.DUP, resultList.get(1));
+        assertEquals(EnumCondition.GT, ((IfJump) resultList.get(3)).getCondition());
+        assertTrue(resultList.get(4) instanceof LabelJ);
+        assertTrue(resultList.get(5) instanceof GetStatic);
+        assertTrue(((WriteInstructor) resultList.get(7)).isStreamLoaded());
+        assertEquals(1, optimizer.getHitCount(PeepholeRules.STORE_LOAD));
+        assertEquals(1, optimizer.getHitCount(PeepholeRules.COMPARE_ZERO));
+        assertEquals(1, optimizer.getHitCount(PeepholeRules.GOTO_NEXT));
+        assertEquals(1, optimizer.getHitCount(PeepholeRules.WRITE_STREAM));
+    }
+
+    @Test
+    public void testConstantBranch()
+    {
+        Label target = new Label(0);
+        List<IInstructor> instrList = new ArrayList<>(Arrays.asList(
+                new Ldc<>(1),
+                new IfJump(EnumCondition.EQ, target),
+                new Ldc<>(1),
+                new IfJump(EnumCondition.NE, target),
+                new LabelJ(target)));
+
+        List<IInstructor> resultList = new PeepholeOptimizer().optimize(instrList);
+
+        // 第一个跳转永不成立被删, 第二个总成立变goto, 又被goto-next删掉;
+        assertEquals(1, resultList.size());
+    }
+
+    /**
+     * @param args 若干cva源文件, 语法错误目前会直接退出, 只传能编译的;
+     */
+    public static void main(String[] args) throws Exception
+    {
+        int plainTotal = 0;
+        int optimizedTotal = 0;
+        PeepholeOptimizer optimizer = new PeepholeOptimizer();
+        for (String path : args)
+        {
+            File source = new File(path);
+            String text = new String(Files.readAllBytes(source.toPath()), StandardCharsets.UTF_8);
+            TranslatorVisitor translator = translate(text);
+            if (translator == null)
+            {
+                System.out.printf("%-20s skipped%n", source.getName());
+                continue;
+            }
+            int plain = classBytes(translator);
+            optimizer.optimize(translator.getTargetProgram());
+            int optimized = classBytes(translator);
+            plainTotal += plain;
+            optimizedTotal += optimized;
+            System.out.printf("%-20s %5d -> %5d bytes%n", source.getName(), plain, optimized);
+        }
+        System.out.printf("%-20s %5d -> %5d bytes%n", "total", plainTotal, optimizedTotal);
+        optimizer.getHitCountMap().forEach((rule, count) ->
+                System.out.printf("  %s: %d%n", rule, count));
+    }
+
+    private static TranslatorVisitor translate(String source)
+    {
+        try
+        {
+            AbstractProgram program = CvaTestSupport.parse(source);
+            SemanticVisitor checker = new SemanticVisitor();
+            checker.visit(program);
+            if (!checker.isOkay())
+            {
+                return null;
+            }
+            TranslatorVisitor translator = new TranslatorVisitor();
+            translator.visit(program);
+            return translator;
+        }
+        catch (RuntimeException e)
+        {
+            return null;
+        }
+    }
+
+    private static int classBytes(TranslatorVisitor translator)
+    {
+        ClassFileGenerator generator = new ClassFileGenerator();
+        generator.visit(translator.getTargetProgram());
+        return generator.getClassFileMap().values().stream().mapToInt(b -> b.length).sum();
+    }
+}
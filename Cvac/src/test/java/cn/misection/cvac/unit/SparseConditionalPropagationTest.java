@@ -0,0 +1,116 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.CvaCompiler;
+import cn.misection.cvac.context.CompileOptions;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * SparseConditionalPropagation Tester.
+ * 开关是常量的程序: 循环里重赋同一常量的变量, 走不到的分支里改过的变量, 都要传成常量, 分支删掉;
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class SparseConditionalPropagationTest
+{
+    private static final String SOURCE = "class Job\n"
+            + "{\n"
+            + "    int run(int n)\n"
+            + "    {\n"
+            + "        int verbose = 0;\n"
+            + "        int level = 2;\n"
+            + "        int mode = 1;\n"
+            + "        int i = 0;\n"
+            + "        int s = 0;\n"
+            + "        int x = 1;\n"
+            + "        while (i < n)\n"
+            + "        {\n"
+            + "            if (0 < verbose)\n"
+            + "            {\n"
+            + "                println \"verbose trace\";\n"
+            + "                s = s + 100;\n"
+            + "            }\n"
+            + "            if (level < 2)\n"
+            + "            {\n"
+            + "                println \"low level\";\n"
+            + "                mode = 0;\n"
+            + "            }\n"
+            + "            else\n"
+            + "            {\n"
+            + "                s = s + i;\n"
+            + "            }\n"
+            + "            if (mode < 1)\n"
+            + "            {\n"
+            + "                println \"mode off\";\n"
+            + "            }\n"
+            + "            mode = 1;\n"
+            + "            i++;\n"
+            + "        }\n"
+            + "        if (x < 0)\n"
+            + "        {\n"
+            + "            x = 5;\n"
+            + "        }\n"
+            + "        if (x < 1)\n"
+            + "        {\n"
+            + "            println \"dead after join\";\n"
+            + "        }\n"
+            + "        return s + x;\n"
+            + "    }\n"
+            + "}\n"
+            + "int main(string[] args)\n"
+            + "{\n"
+            + "    println new Job().run(5);\n"
+            + "    return 0;\n"
+            + "}\n";
+
+    private static final String[] DEAD_STRINGS = {"verbose trace", "low level", "mode off", "dead after join"};
+
+    @Test
+    public void testDeadBranchesPruned() throws Exception
+    {
+        String plain = classFileText(CompileOptions.defaults());
+        String optimized = classFileText(new CompileOptions.Builder().putOptimize(true).build());
+        for (String dead : DEAD_STRINGS)
+        {
+            assertTrue(dead, plain.contains(dead));
+            assertFalse(dead, optimized.contains(dead));
+        }
+    }
+
+    @Test
+    public void testOptimizedRunsTheSame() throws Exception
+    {
+        String expected = run(CompileOptions.defaults());
+        assertEquals(String.format("11%n"), expected);
+        assertEquals(expected, run(new CompileOptions.Builder().putOptimize(true).build()));
+        assertEquals(expected, run(new CompileOptions.Builder().putOptimize(true).putSsa(true).build()));
+    }
+
+    private static String classFileText(CompileOptions options) throws Exception
+    {
+        return new String(CvaCompiler.compile(SOURCE, options).get("Job"), StandardCharsets.ISO_8859_1);
+    }
+
+    private static String run(CompileOptions options) throws Exception
+    {
+        return CvaTestSupport.run(SOURCE, options);
+    }
+
+    /**
+     * 优化前后Job.class的大小;
+     */
+    public static void main(String[] args) throws Exception
+    {
+        for (boolean optimize : new boolean[] {false, true})
+        {
+            byte[] bytes = CvaCompiler.compile(SOURCE,
+                    new CompileOptions.Builder().putOptimize(optimize).build()).get("Job");
+            System.out.printf("optimize=%b: Job.class %d bytes%n", optimize, bytes.length);
+        }
+    }
+}
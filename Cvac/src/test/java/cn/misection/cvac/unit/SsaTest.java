@@ -0,0 +1,192 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.ast.clas.CvaClass;
+import cn.misection.cvac.ast.method.AbstractMethod;
+import cn.misection.cvac.ast.program.AbstractProgram;
+import cn.misection.cvac.codegen.ParallelCodeGenerator;
+import cn.misection.cvac.context.CompilationContext;
+import cn.misection.cvac.context.CompileOptions;
+import cn.misection.cvac.ssa.*;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Ssa Tester.
+ * 建SSA, 校验, 支配树, 以及-ssa生成的代码与原来的跑出一样的结果;
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class SsaTest
+{
+    private static final String SOURCE = "class Box\n"
+            + "{\n"
+            + "    int v;\n"
+            + "    int sum(int n)\n"
+            + "    {\n"
+            + "        int i = 0;\n"
+            + "        int s = 0;\n"
+            + "        int flip = 0;\n"
+            + "        while (i < n)\n"
+            + "        {\n"
+            + "            if (i < 3 && !(0 < flip))\n"
+            + "            {\n"
+            + "                s = s + i;\n"
+            + "            }\n"
+            + "            else\n"
+            + "            {\n"
+            + "                s = s - 1;\n"
+            + "            }\n"
+            + "            flip = 1 - flip;\n"
+            + "            i++;\n"
+            + "        }\n"
+            + "        v = s;\n"
+            + "        return v + this.twice(n);\n"
+            + "    }\n"
+            + "    int twice(int n)\n"
+            + "    {\n"
+            + "        if (n < 10 && !(n < 5))\n"
+            + "        {\n"
+            + "            println \"big\";\n"
+            + "        }\n"
+            + "        return n * 2;\n"
+            + "    }\n"
+            + "}\n"
+            + "int main(string[] args)\n"
+            + "{\n"
+            + "    println new Box().sum(6);\n"
+            + "    println new Box().sum(2);\n"
+            + "    return 0;\n"
+            + "}\n";
+
+    /**
+     * TranslatorVisitor读boolean的局部变量与参数用的是aload, 这里只跑SSA后端;
+     */
+    private static final String BOOLEAN_SOURCE = "class Flag\n"
+            + "{\n"
+            + "    int count(int n)\n"
+            + "    {\n"
+            + "        boolean on = false;\n"
+            + "        boolean odd = false;\n"
+            + "        int c = 0;\n"
+            + "        while (0 < n)\n"
+            + "        {\n"
+            + "            on = !on;\n"
+            + "            odd = on && 0 < n;\n"
+            + "            if (odd)\n"
+            + "            {\n"
+            + "                c++;\n"
+            + "            }\n"
+            + "            n--;\n"
+            + "        }\n"
+            + "        return c;\n"
+            + "    }\n"
+            + "}\n"
+            + "int main(string[] args)\n"
+            + "{\n"
+            + "    println new Flag().count(5);\n"
+            + "    return 0;\n"
+            + "}\n";
+
+    @Test
+    public void testLoopHeaderGetsPhis()
+    {
+        SsaFunction function = build("sum");
+        assertTrue(SsaVerifier.check(function).toString(), SsaVerifier.check(function).isEmpty());
+
+        // 入口只跳到循环头, 循环头给i, s, flip各一个phi;
+        SsaBlock header = function.getEntry().successors().get(0);
+        assertEquals(2, header.getPredList().size());
+        assertEquals(3, header.getPhiList().size());
+
+        DominatorTree domTree = new DominatorTree(function);
+        SsaBlock body = header.successors().get(0);
+        SsaBlock exit = header.successors().get(1);
+        assertSame(header, domTree.idomOf(body));
+        assertSame(header, domTree.idomOf(exit));
+        assertTrue(domTree.dominates(function.getEntry(), exit));
+        assertFalse(domTree.dominates(body, exit));
+        assertTrue(domTree.frontierOf(body).contains(header));
+    }
+
+    @Test
+    public void testVerifierCatchesBrokenPhi()
+    {
+        SsaFunction function = build("sum");
+        SsaBlock header = function.getEntry().successors().get(0);
+        header.getPhiList().get(0).removeOperand(1);
+
+        List<String> errorList = SsaVerifier.check(function);
+        assertFalse(errorList.isEmpty());
+        assertTrue(errorList.get(0), errorList.get(0).contains("operands"));
+    }
+
+    @Test
+    public void testDump()
+    {
+        String dump = SsaPrinter.print(build("sum"));
+
+        assertTrue(dump, dump.startsWith("function Box.sum(%this: ref, %n: int): int\n"));
+        assertTrue(dump, dump.contains(" = phi int ["));
+        assertTrue(dump, dump.contains("putfield v %this"));
+    }
+
+    @Test
+    public void testSsaRunsTheSame() throws Exception
+    {
+        String expected = run(CompileOptions.defaults());
+        assertEquals(expected, run(new CompileOptions.Builder().putSsa(true).build()));
+        assertEquals(expected, run(new CompileOptions.Builder().putSsa(true).putOptimize(true).build()));
+    }
+
+    @Test
+    public void testBooleanLocals() throws Exception
+    {
+        assertEquals(String.format("3%n"),
+                CvaTestSupport.run(BOOLEAN_SOURCE, new CompileOptions.Builder().putSsa(true).build()));
+    }
+
+    private static SsaFunction build(String methodName)
+    {
+        AbstractProgram program = CvaTestSupport.check(SOURCE);
+        CvaClass box = (CvaClass) program.getClassList().get(0);
+        for (AbstractMethod method : box.getMethodList())
+        {
+            if (method.name().equals(methodName))
+            {
+                return SsaBuilder.build(box.name(), method);
+            }
+        }
+        throw new AssertionError(methodName);
+    }
+
+    private static String run(CompileOptions options) throws Exception
+    {
+        return CvaTestSupport.run(SOURCE, options);
+    }
+
+    /**
+     * 比较两种后端生成的指令数, 看SSA后端的代码量;
+     */
+    public static void main(String[] args)
+    {
+        AbstractProgram program = CvaTestSupport.check(SOURCE);
+        for (boolean ssa : new boolean[] {false, true})
+        {
+            CompileOptions options = new CompileOptions.Builder().putSsa(ssa).build();
+            int size = new ParallelCodeGenerator(new CompilationContext(options, diagnostic -> {}),
+                    ForkJoinPool.commonPool(), null)
+                    .generate(program)
+                    .values()
+                    .stream()
+                    .mapToInt(bytes -> bytes.length)
+                    .sum();
+            System.out.printf("ssa=%b: %d bytes of class files%n", ssa, size);
+        }
+    }
+}
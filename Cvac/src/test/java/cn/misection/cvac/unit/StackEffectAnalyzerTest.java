@@ -0,0 +1,57 @@
+package cn.misection.cvac.unit;
+
+import cn.misection.cvac.codegen.StackEffectAnalyzer;
+import cn.misection.cvac.codegen.bst.Label;
+import cn.misection.cvac.codegen.bst.bentry.TargetEntryClass;
+import cn.misection.cvac.codegen.bst.instructor.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * StackEffectAnalyzer Tester.
+ *
+ * @author Military Intelligence 6 root
+ * @version 1.0
+ * @since <pre>2月 14, 2021</pre>
+ */
+public class StackEffectAnalyzerTest
+{
+    @Test
+    public void testExactLimits()
+    {
+        Label end = new Label(0);
+        List<IInstructor> instrList = new ArrayList<>();
+        instrList.add(new Ldc<>(1));
+        instrList.add(new Ldc<>(2));
+        instrList.add(new IfICmpLt(end));
+        instrList.add(new Ldc<>(3));
+        instrList.add(new IStore(5));
+        instrList.add(new LabelJ(end));
+
+        StackEffectAnalyzer analyzer = new StackEffectAnalyzer();
+        analyzer.visit(new TargetEntryClass("Application", instrList));
+        assertEquals(2, analyzer.getMaxStack());
+        assertEquals(6, analyzer.getMaxLocals());
+    }
+
+    /**
+     * 跳转与顺序流到end时栈高分别为0和1;
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testInconsistentHeight()
+    {
+        Label end = new Label(0);
+        List<IInstructor> instrList = new ArrayList<>();
+        instrList.add(new Ldc<>(1));
+        instrList.add(new Ldc<>(2));
+        instrList.add(new IfICmpLt(end));
+        instrList.add(new Ldc<>(3));
+        instrList.add(new LabelJ(end));
+
+        new StackEffectAnalyzer().visit(new TargetEntryClass("Application", instrList));
+    }
+}